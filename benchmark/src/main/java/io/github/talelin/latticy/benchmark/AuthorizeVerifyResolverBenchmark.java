@@ -0,0 +1,225 @@
+package io.github.talelin.latticy.benchmark;
+
+import io.github.talelin.autoconfigure.bean.MetaInfo;
+import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.core.token.Tokens;
+import io.github.talelin.latticy.common.LocalUser;
+import io.github.talelin.latticy.common.interceptor.AuthorizeVerifyResolverImpl;
+import io.github.talelin.latticy.model.GroupPermissionDO;
+import io.github.talelin.latticy.model.PermissionDO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import io.github.talelin.latticy.module.auth.PrincipalTokenProvider;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuthorizeVerifyResolverImpl 的基准测试
+ * UserService、GroupService 使用不访问数据库的桩实现，测量的是令牌解析、校验以及权限判断的开销
+ * 使用 -prof gc 查看每次操作分配的内存（gc.alloc.rate.norm）
+ *
+ * @author Juzi@TaleLin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorizeVerifyResolverBenchmark {
+
+    private static final String SECRET = "x88Wf0991079889x8796a0Ac68f9ecJJU17c5Vbe8beod7d8d3e695*4";
+
+    private static final long ACCESS_EXPIRE = 3600;
+
+    private static final long REFRESH_EXPIRE = 2592000;
+
+    private static final Integer ROOT_ID = 1;
+
+    private static final Integer USER_ID = 2;
+
+    /**
+     * 挂载的权限数量
+     */
+    @Param({"20", "200", "1000"})
+    private int permissionCount;
+
+    @Param({"true", "false"})
+    private boolean tokenCacheEnabled;
+
+    @Param({"false", "true"})
+    private boolean principalToken;
+
+    private AuthorizeVerifyResolverImpl resolver;
+
+    private MockHttpServletRequest userRequest;
+
+    private MockHttpServletRequest rootRequest;
+
+    private MockHttpServletRequest refreshRequest;
+
+    private MockHttpServletResponse response;
+
+    private MetaInfo groupMeta;
+
+    private MetaInfo adminMeta;
+
+    @Setup
+    public void setUp() {
+        DoubleJWT jwt = new DoubleJWT(SECRET, ACCESS_EXPIRE, REFRESH_EXPIRE);
+
+        StubGroupService groupService = new StubGroupService();
+        groupService.addUser(ROOT_ID, Collections.singletonList(1), true);
+        groupService.addUser(USER_ID, Arrays.asList(2, 3), false);
+
+        UserDO root = UserDO.builder().username("root").nickname("root").build();
+        root.setId(ROOT_ID);
+        UserDO user = UserDO.builder().username("pedro").nickname("pedro大大").avatar("2020/03/avatar.png").build();
+        user.setId(USER_ID);
+        StubUserService userService = new StubUserService();
+        userService.addUser(root);
+        userService.addUser(user);
+
+        TokenCache tokenCache = new TokenCache();
+        ReflectionTestUtils.setField(tokenCache, "enabled", tokenCacheEnabled);
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 10000);
+        ReflectionTestUtils.setField(tokenCache, "maxTtl", 600L);
+
+        // 分组 2 拥有编号为偶数的权限，分组 3 拥有编号为 3 的倍数的权限
+        List<MetaInfo> metas = new ArrayList<>();
+        List<PermissionDO> permissions = new ArrayList<>();
+        List<GroupPermissionDO> relations = new ArrayList<>();
+        for (int i = 0; i < permissionCount; i++) {
+            MetaInfo meta = new MetaInfo();
+            meta.setModule("模块" + i / 10);
+            meta.setPermission("权限" + i);
+            metas.add(meta);
+            PermissionDO permission = PermissionDO.builder().module(meta.getModule()).name(meta.getPermission()).build();
+            permission.setId(i + 1);
+            permissions.add(permission);
+            if (i % 2 == 0) {
+                relations.add(new GroupPermissionDO(2, i + 1));
+            }
+            if (i % 3 == 0) {
+                relations.add(new GroupPermissionDO(3, i + 1));
+            }
+        }
+        PermissionEngine permissionEngine = new PermissionEngine();
+        ReflectionTestUtils.setField(permissionEngine, "groupService", groupService);
+        permissionEngine.rebuild(metas, permissions, relations);
+        // 判断最后一个拥有的权限，线性查找时为最坏情况
+        groupMeta = metas.get((permissionCount - 1) / 2 * 2);
+        adminMeta = metas.get(0);
+
+        PrincipalTokenProvider principalTokenProvider = new PrincipalTokenProvider();
+        ReflectionTestUtils.setField(principalTokenProvider, "jwt", jwt);
+        ReflectionTestUtils.setField(principalTokenProvider, "groupService", groupService);
+        ReflectionTestUtils.setField(principalTokenProvider, "enabled", principalToken);
+        ReflectionTestUtils.setField(principalTokenProvider, "includeProfile", true);
+        ReflectionTestUtils.setField(principalTokenProvider, "secret", SECRET);
+        ReflectionTestUtils.setField(principalTokenProvider, "accessExpire", ACCESS_EXPIRE);
+
+        // 不连接数据库，吊销表为空，测量的是布隆过滤器未命中时的开销
+        TokenRevocationStore tokenRevocationStore = new TokenRevocationStore();
+        ReflectionTestUtils.setField(tokenRevocationStore, "expectedInsertions", 10000);
+        ReflectionTestUtils.setField(tokenRevocationStore, "fpp", 0.001);
+        ReflectionTestUtils.setField(tokenRevocationStore, "refreshExpire", REFRESH_EXPIRE);
+        tokenRevocationStore.init();
+        ReflectionTestUtils.setField(tokenRevocationStore, "enabled", true);
+
+        resolver = new AuthorizeVerifyResolverImpl();
+        ReflectionTestUtils.setField(resolver, "jwt", jwt);
+        ReflectionTestUtils.setField(resolver, "userService", userService);
+        ReflectionTestUtils.setField(resolver, "groupService", groupService);
+        ReflectionTestUtils.setField(resolver, "tokenCache", tokenCache);
+        ReflectionTestUtils.setField(resolver, "permissionEngine", permissionEngine);
+        ReflectionTestUtils.setField(resolver, "principalTokenProvider", principalTokenProvider);
+        ReflectionTestUtils.setField(resolver, "tokenRevocationStore", tokenRevocationStore);
+        ReflectionTestUtils.setField(resolver, "accessExpire", ACCESS_EXPIRE);
+        ReflectionTestUtils.setField(resolver, "refreshExpire", REFRESH_EXPIRE);
+        ReflectionTestUtils.setField(resolver, "domain", "http://localhost:5000/");
+        ReflectionTestUtils.setField(resolver, "servePath", "assets/**");
+
+        Tokens userTokens = principalTokenProvider.generateTokens(user);
+        Tokens rootTokens = principalTokenProvider.generateTokens(root);
+        userRequest = request(userTokens.getAccessToken());
+        rootRequest = request(rootTokens.getAccessToken());
+        refreshRequest = request(userTokens.getRefreshToken());
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public boolean handleLogin() {
+        try {
+            return resolver.handleLogin(userRequest, response, groupMeta);
+        } finally {
+            LocalUser.clearLocalUser();
+        }
+    }
+
+    @Benchmark
+    public boolean handleGroup() {
+        try {
+            return resolver.handleGroup(userRequest, response, groupMeta);
+        } finally {
+            LocalUser.clearLocalUser();
+        }
+    }
+
+    @Benchmark
+    public boolean handleAdmin() {
+        try {
+            return resolver.handleAdmin(rootRequest, response, adminMeta);
+        } finally {
+            LocalUser.clearLocalUser();
+        }
+    }
+
+    @Benchmark
+    public boolean handleRefresh() {
+        try {
+            return resolver.handleRefresh(refreshRequest, response, adminMeta);
+        } finally {
+            LocalUser.clearLocalUser();
+        }
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AuthorizeVerifyResolverImpl.AUTHORIZATION_HEADER, "Bearer " + token);
+        return request;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuthorizeVerifyResolverBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.talelin.latticy.benchmark;
+
+import io.github.talelin.core.util.BeanUtil;
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.log.LogTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 行为日志模板渲染的基准测试
+ * legacy 为原 LoggerImpl 的实现（每次请求正则匹配、字符串替换、反射取值），compiled 为预编译的 LogTemplate
+ * 使用 -prof gc 查看每次操作分配的内存（gc.alloc.rate.norm）
+ *
+ * @author Juzi@TaleLin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogTemplateBenchmark {
+
+    private static final Pattern PATTERN = Pattern.compile("(?<=\\{)[^}]*(?=})");
+
+    private static final Set<String> PRINCIPAL_PROPERTIES = new HashSet<>(Arrays.asList("id", "username", "nickname", "avatar"));
+
+    @Param({
+            "修改了密码",
+            "{user.username}修改了密码",
+            "{user.username}({user.id}) {request.method} {request.servletPath} -> {response.status}"
+    })
+    private String template;
+
+    private LogTemplate compiled;
+
+    private PrincipalBO principal;
+
+    private UserDO user;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        user = UserDO.builder().username("pedro").nickname("pedro大大").build();
+        user.setId(2);
+        principal = new PrincipalBO(user);
+        request = new MockHttpServletRequest("PUT", "/cms/user/2");
+        request.setServletPath("/cms/user/2");
+        response = new MockHttpServletResponse();
+        response.setStatus(201);
+        compiled = LogTemplate.compile(template);
+    }
+
+    @Benchmark
+    public String legacy() {
+        String result = template;
+        Matcher m = PATTERN.matcher(template);
+        while (m.find()) {
+            String group = m.group();
+            result = result.replace("{" + group + "}", extractProperty(group));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.render(principal, () -> user, request, response);
+    }
+
+    private String extractProperty(String item) {
+        int i = item.lastIndexOf('.');
+        String obj = item.substring(0, i);
+        String prop = item.substring(i + 1);
+        switch (obj) {
+            case "user":
+                if (PRINCIPAL_PROPERTIES.contains(prop) && BeanUtil.getValueByPropName(principal, prop) != null) {
+                    return BeanUtil.getValueByPropName(principal, prop);
+                }
+                return BeanUtil.getValueByPropName(user, prop);
+            case "request":
+                return BeanUtil.getValueByPropName(request, prop);
+            case "response":
+                return BeanUtil.getValueByPropName(response, prop);
+            default:
+                return "";
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LogTemplateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.talelin.latticy.benchmark;
+
+import io.github.talelin.latticy.service.impl.GroupServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 不访问数据库的 GroupService
+ *
+ * @author Juzi@TaleLin
+ */
+public class StubGroupService extends GroupServiceImpl {
+
+    private final Map<Integer, List<Integer>> userGroupIds = new HashMap<>();
+
+    private final Set<Integer> rootUserIds = new HashSet<>();
+
+    public void addUser(Integer userId, List<Integer> groupIds, boolean root) {
+        userGroupIds.put(userId, groupIds);
+        if (root) {
+            rootUserIds.add(userId);
+        }
+    }
+
+    @Override
+    public List<Integer> getUserGroupIdsByUserId(Integer userId) {
+        return new ArrayList<>(userGroupIds.getOrDefault(userId, Collections.emptyList()));
+    }
+
+    @Override
+    public boolean checkIsRootByUserId(Integer userId) {
+        return rootUserIds.contains(userId);
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.talelin.latticy.benchmark;
+
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.service.impl.UserServiceImpl;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 不访问数据库的 UserService，每次返回新的对象，与 MyBatis 的行为一致
+ *
+ * @author Juzi@TaleLin
+ */
+public class StubUserService extends UserServiceImpl {
+
+    private final Map<Integer, UserDO> users = new HashMap<>();
+
+    public void addUser(UserDO user) {
+        users.put(user.getId(), user);
+    }
+
+    @Override
+    public UserDO getById(Serializable id) {
+        UserDO user = users.get(id);
+        if (user == null) {
+            return null;
+        }
+        UserDO copy = UserDO.builder()
+                .username(user.getUsername())
+                .nickname(user.getNickname())
+                .avatar(user.getAvatar())
+                .email(user.getEmail())
+                .build();
+        copy.setId(user.getId());
+        return copy;
+    }
+}
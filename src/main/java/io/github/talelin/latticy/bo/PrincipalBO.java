@@ -0,0 +1,45 @@
+package io.github.talelin.latticy.bo;
+
+import io.github.talelin.latticy.model.UserDO;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 当前登录用户的简要信息，可以直接从令牌中得到，无需查询数据库
+ *
+ * @author Juzi@TaleLin
+ */
+@Data
+@NoArgsConstructor
+public class PrincipalBO {
+
+    private Integer id;
+
+    private String username;
+
+    private String nickname;
+
+    /**
+     * 头像url
+     */
+    private String avatar;
+
+    /**
+     * 签发令牌时用户所在分组集合的版本
+     */
+    private String groupSetVersion;
+
+    /**
+     * 令牌签发时间
+     */
+    private Date issuedAt;
+
+    public PrincipalBO(UserDO user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.nickname = user.getNickname();
+        this.avatar = user.getAvatar();
+    }
+}
@@ -1,23 +1,35 @@
 package io.github.talelin.latticy.common;
 
+import io.github.talelin.latticy.bo.PrincipalBO;
 import io.github.talelin.latticy.model.UserDO;
 
+import java.util.function.Supplier;
+
 /**
  * 线程安全的当前登录用户，如果用户为登录，则得到 null
  *
  * @author pedro@TaleLin
+ * @author Juzi@TaleLin
  */
 public class LocalUser {
 
-    private static ThreadLocal<UserDO> local = new ThreadLocal<>();
+    private static ThreadLocal<Holder> local = new ThreadLocal<>();
 
     /**
      * 得到当前登录用户
+     * 如果只设置了 principal，第一次调用时加载用户
      *
      * @return user | null
      */
     public static UserDO getLocalUser() {
-        return LocalUser.local.get();
+        Holder holder = LocalUser.local.get();
+        if (holder == null) {
+            return null;
+        }
+        if (holder.user == null && holder.loader != null) {
+            holder.user = holder.loader.get();
+        }
+        return holder.user;
     }
 
     /**
@@ -26,11 +38,35 @@ public class LocalUser {
      * @param user user
      */
     public static void setLocalUser(UserDO user) {
-        LocalUser.local.set(user);
+        if (user == null) {
+            LocalUser.local.remove();
+            return;
+        }
+        LocalUser.local.set(new Holder(new PrincipalBO(user), user, null));
+    }
+
+    /**
+     * 得到当前登录用户的简要信息，不会查询数据库
+     *
+     * @return principal | null
+     */
+    public static PrincipalBO getLocalPrincipal() {
+        Holder holder = LocalUser.local.get();
+        return holder == null ? null : holder.principal;
+    }
+
+    /**
+     * 设置登录用户的简要信息，完整的用户信息在需要时通过 loader 加载
+     *
+     * @param principal principal
+     * @param loader    用户加载器
+     */
+    public static void setLocalPrincipal(PrincipalBO principal, Supplier<UserDO> loader) {
+        LocalUser.local.set(new Holder(principal, null, loader));
     }
 
     public static <T> T getLocalUser(Class<T> clazz) {
-        return (T) local.get();
+        return (T) getLocalUser();
     }
 
     /**
@@ -39,4 +75,47 @@ public class LocalUser {
     public static void clearLocalUser() {
         LocalUser.local.remove();
     }
+
+    /**
+     * 包装在其它线程中执行的任务，任务执行时可以获得当前线程的登录用户
+     *
+     * @param task 任务
+     * @param <T>  任务结果类型
+     * @return 包装后的任务
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Holder captured = LocalUser.local.get();
+        return () -> {
+            Holder previous = LocalUser.local.get();
+            if (captured == null) {
+                LocalUser.local.remove();
+            } else {
+                LocalUser.local.set(captured);
+            }
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    LocalUser.local.remove();
+                } else {
+                    LocalUser.local.set(previous);
+                }
+            }
+        };
+    }
+
+    private static class Holder {
+
+        private final PrincipalBO principal;
+
+        private final Supplier<UserDO> loader;
+
+        private UserDO user;
+
+        private Holder(PrincipalBO principal, UserDO user, Supplier<UserDO> loader) {
+            this.principal = principal;
+            this.user = user;
+            this.loader = loader;
+        }
+    }
 }
@@ -5,6 +5,10 @@ import com.baomidou.mybatisplus.core.injector.ISqlInjector;
 import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import io.github.talelin.autoconfigure.bean.PermissionMetaCollector;
+import io.github.talelin.latticy.common.mybatis.CountCache;
+import io.github.talelin.latticy.common.mybatis.CountCacheInvalidationInterceptor;
+import io.github.talelin.latticy.common.mybatis.CountCachePaginationInterceptor;
+import io.github.talelin.latticy.common.interceptor.LocalUserCleanupInterceptor;
 import io.github.talelin.latticy.common.interceptor.RequestLogInterceptor;
 import io.github.talelin.latticy.module.file.FileProperties;
 import io.github.talelin.latticy.module.log.MDCAccessServletFilter;
@@ -27,8 +31,28 @@ public class CommonConfiguration {
     }
 
     @Bean
-    public PaginationInterceptor paginationInterceptor() {
-        return new PaginationInterceptor();
+    public LocalUserCleanupInterceptor localUserCleanupInterceptor() {
+        return new LocalUserCleanupInterceptor();
+    }
+
+    /**
+     * 分页插件，count 查询的结果缓存在 CountCache 中
+     *
+     * @return CountCachePaginationInterceptor
+     */
+    @Bean
+    public PaginationInterceptor paginationInterceptor(CountCache countCache) {
+        return new CountCachePaginationInterceptor(countCache);
+    }
+
+    /**
+     * 写入表后使 count 缓存失效
+     *
+     * @return CountCacheInvalidationInterceptor
+     */
+    @Bean
+    public CountCacheInvalidationInterceptor countCacheInvalidationInterceptor(CountCache countCache) {
+        return new CountCacheInvalidationInterceptor(countCache);
     }
 
     @Bean
@@ -1,5 +1,6 @@
 package io.github.talelin.latticy.common.configuration;
 
+import io.github.talelin.latticy.common.interceptor.LocalUserCleanupInterceptor;
 import io.github.talelin.latticy.common.interceptor.RequestLogInterceptor;
 import io.github.talelin.autoconfigure.interceptor.AuthorizeInterceptor;
 import io.github.talelin.autoconfigure.interceptor.LogInterceptor;
@@ -40,6 +41,9 @@ public class WebConfiguration implements WebMvcConfigurer {
     @Autowired
     private RequestLogInterceptor requestLogInterceptor;
 
+    @Autowired
+    private LocalUserCleanupInterceptor localUserCleanupInterceptor;
+
     @Value("${lin.file.store-dir:assets/}")
     private String dir;
 
@@ -64,6 +68,8 @@ public class WebConfiguration implements WebMvcConfigurer {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 异步请求开始后清理 LocalUser，与是否开启权限校验无关
+        registry.addInterceptor(localUserCleanupInterceptor);
         if (authEnabled) {
             //开发环境忽略签名认证
             registry.addInterceptor(authorizeInterceptor)
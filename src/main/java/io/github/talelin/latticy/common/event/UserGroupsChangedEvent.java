@@ -0,0 +1,39 @@
+package io.github.talelin.latticy.common.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 用户所在分组变化事件，在修改分组的事务提交后发布
+ *
+ * @author Juzi@TaleLin
+ */
+public class UserGroupsChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 2751329634917120931L;
+
+    private final Integer userId;
+
+    private final List<Integer> groupIds;
+
+    /**
+     * @param source   事件源
+     * @param userId   用户id
+     * @param groupIds 用户现在所在的所有分组id
+     */
+    public UserGroupsChangedEvent(Object source, Integer userId, List<Integer> groupIds) {
+        super(source);
+        this.userId = userId;
+        this.groupIds = Collections.unmodifiableList(groupIds);
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public List<Integer> getGroupIds() {
+        return groupIds;
+    }
+}
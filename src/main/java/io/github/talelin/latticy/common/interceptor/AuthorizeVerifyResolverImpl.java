@@ -13,9 +13,13 @@ import io.github.talelin.autoconfigure.exception.NotFoundException;
 import io.github.talelin.autoconfigure.exception.TokenInvalidException;
 import io.github.talelin.autoconfigure.interfaces.AuthorizeVerifyResolver;
 import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.latticy.bo.PrincipalBO;
 import io.github.talelin.latticy.common.LocalUser;
-import io.github.talelin.latticy.model.PermissionDO;
 import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import io.github.talelin.latticy.module.auth.PrincipalTokenProvider;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.UserService;
 import org.apache.logging.log4j.util.Strings;
@@ -25,7 +29,7 @@ import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.List;
+import java.util.Date;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -51,6 +55,24 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 	@Autowired
 	private GroupService groupService;
 
+	@Autowired
+	private TokenCache tokenCache;
+
+	@Autowired
+	private PermissionEngine permissionEngine;
+
+	@Autowired
+	private PrincipalTokenProvider principalTokenProvider;
+
+	@Autowired
+	private TokenRevocationStore tokenRevocationStore;
+
+	@Value("${lin.cms.token-access-expire}")
+	private long accessExpire;
+
+	@Value("${lin.cms.token-refresh-expire}")
+	private long refreshExpire;
+
 	@Value("${lin.file.domain}")
 	private String domain;
 
@@ -60,6 +82,18 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 	@Override
 	public boolean handleLogin(HttpServletRequest request, HttpServletResponse response, MetaInfo meta) {
 		String tokenStr = verifyHeader(request, response);
+		String tokenId = TokenCache.hashToken(tokenStr);
+		// 命中缓存的令牌已经校验过，无需再次校验签名和查询用户，但仍需检查是否被吊销
+		TokenCache.Entry cached = tokenCache.getByTokenId(tokenId);
+		if (cached != null) {
+			verifyNotRevoked(tokenId, cached.getPrincipal().getId(), cached.getPrincipal().getIssuedAt());
+			if (cached.getUser() != null) {
+				LocalUser.setLocalUser(cached.getUser());
+			} else {
+				setLocalPrincipal(cached.getPrincipal());
+			}
+			return true;
+		}
 		Map<String, Claim> claims;
 		try {
 			claims = jwt.decodeAccessToken(tokenStr);
@@ -69,23 +103,36 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 				| InvalidClaimException e) {
 			throw new TokenInvalidException(10041);
 		}
-		return getClaim(claims);
+		if (claims == null) {
+			throw new TokenInvalidException(10041);
+		}
+		Claim exp = claims.get("exp");
+		Date expireAt = exp == null ? null : exp.asDate();
+		Date issuedAt = getIssuedAt(claims, accessExpire);
+		verifyNotRevoked(tokenId, claims.get("identity").asInt(), issuedAt);
+		// 令牌携带用户信息时，无需查询用户
+		PrincipalBO principal = principalTokenProvider.parse(claims);
+		if (principal != null) {
+			principal.setAvatar(getAvatarUrl(principal.getAvatar()));
+			setLocalPrincipal(principal);
+			tokenCache.put(tokenStr, principal, expireAt);
+			return true;
+		}
+		UserDO user = getClaim(claims);
+		tokenCache.put(tokenStr, user, issuedAt, expireAt);
+		return true;
 	}
 
 	@Override
 	public boolean handleGroup(HttpServletRequest request, HttpServletResponse response, MetaInfo meta) {
 		handleLogin(request, response, meta);
-		UserDO user = LocalUser.getLocalUser();
-		if (verifyAdmin(user)) {
+		PrincipalBO principal = LocalUser.getLocalPrincipal();
+		if (verifyAdmin(principal)) {
 			return true;
 		}
-		Integer userId = user.getId();
 		String permission = meta.getPermission();
 		String module = meta.getModule();
-		List<PermissionDO> permissions = userService.getUserPermissions(userId);
-		boolean matched = permissions.stream()
-				.anyMatch(it -> it.getModule().equals(module) && it.getName().equals(permission));
-		if (!matched) {
+		if (!permissionEngine.hasPermission(principal, module, permission)) {
 			throw new AuthenticationException(10001);
 		}
 		return true;
@@ -94,8 +141,8 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 	@Override
 	public boolean handleAdmin(HttpServletRequest request, HttpServletResponse response, MetaInfo meta) {
 		handleLogin(request, response, meta);
-		UserDO user = LocalUser.getLocalUser();
-		if (!verifyAdmin(user)) {
+		PrincipalBO principal = LocalUser.getLocalPrincipal();
+		if (!verifyAdmin(principal)) {
 			throw new AuthenticationException(10001);
 		}
 		return true;
@@ -113,7 +160,9 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 				| InvalidClaimException e) {
 			throw new TokenInvalidException(10041);
 		}
-		return getClaim(claims);
+		UserDO user = getClaim(claims);
+		verifyNotRevoked(TokenCache.hashToken(tokenStr), user.getId(), getIssuedAt(claims, refreshExpire));
+		return true;
 	}
 
 	@Override
@@ -128,35 +177,71 @@ public class AuthorizeVerifyResolverImpl implements AuthorizeVerifyResolver {
 		LocalUser.clearLocalUser();
 	}
 
-	private boolean getClaim(Map<String, Claim> claims) {
+	private UserDO getClaim(Map<String, Claim> claims) {
 		if (claims == null) {
 			throw new TokenInvalidException(10041);
 		}
 		int identity = claims.get("identity").asInt();
-		UserDO user = userService.getById(identity);
+		UserDO user = loadUser(identity);
+		LocalUser.setLocalUser(user);
+		return user;
+	}
+
+	/**
+	 * 检查令牌是否已被吊销（退出登录或被强制下线）
+	 */
+	private void verifyNotRevoked(String tokenId, Integer userId, Date issuedAt) {
+		if (tokenRevocationStore.isRevoked(tokenId, userId, issuedAt)) {
+			throw new TokenInvalidException(10040);
+		}
+	}
+
+	/**
+	 * 获得令牌的签发时间，令牌没有 iat 时通过过期时间和有效期推算
+	 */
+	private Date getIssuedAt(Map<String, Claim> claims, long expire) {
+		Claim iat = claims.get("iat");
+		if (iat != null && !iat.isNull()) {
+			return iat.asDate();
+		}
+		Claim exp = claims.get("exp");
+		if (exp == null || exp.isNull()) {
+			return null;
+		}
+		return new Date(exp.asDate().getTime() - expire * 1000);
+	}
+
+	private void setLocalPrincipal(PrincipalBO principal) {
+		Integer userId = principal.getId();
+		LocalUser.setLocalPrincipal(principal, () -> loadUser(userId));
+	}
+
+	private UserDO loadUser(Integer id) {
+		UserDO user = userService.getById(id);
 		if (user == null) {
 			throw new NotFoundException(10021);
 		}
-		String avatarUrl;
-		if (user.getAvatar() == null) {
-			avatarUrl = null;
-		} else if (user.getAvatar().startsWith("http")) {
-			avatarUrl = user.getAvatar();
+		user.setAvatar(getAvatarUrl(user.getAvatar()));
+		return user;
+	}
+
+	private String getAvatarUrl(String avatar) {
+		if (avatar == null) {
+			return null;
+		} else if (avatar.startsWith("http")) {
+			return avatar;
 		} else {
-			avatarUrl = domain + servePath.split("/")[0] + "/" + user.getAvatar();
+			return domain + servePath.split("/")[0] + "/" + avatar;
 		}
-		user.setAvatar(avatarUrl);
-		LocalUser.setLocalUser(user);
-		return true;
 	}
 
 	/**
 	 * 检查用户是否为管理员
 	 *
-	 * @param user 用户
+	 * @param principal 用户
 	 */
-	private boolean verifyAdmin(UserDO user) {
-		return groupService.checkIsRootByUserId(user.getId());
+	private boolean verifyAdmin(PrincipalBO principal) {
+		return groupService.checkIsRootByUserId(principal.getId());
 	}
 
 	private String verifyHeader(HttpServletRequest request, HttpServletResponse response) {
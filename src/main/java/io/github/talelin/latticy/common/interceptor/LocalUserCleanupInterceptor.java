@@ -0,0 +1,22 @@
+package io.github.talelin.latticy.common.interceptor;
+
+import io.github.talelin.latticy.common.LocalUser;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 异步请求的登录用户清理
+ * 控制器返回 CompletableFuture、StreamingResponseBody 等异步结果时，原请求线程上不会调用 afterCompletion，
+ * 权限拦截器设置的 LocalUser 会残留在线程池的线程上，被之后的请求读到，因此在异步处理开始后清理
+ *
+ * @author Juzi@TaleLin
+ */
+public class LocalUserCleanupInterceptor extends HandlerInterceptorAdapter {
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        LocalUser.clearLocalUser();
+    }
+}
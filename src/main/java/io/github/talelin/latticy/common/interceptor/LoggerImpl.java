@@ -3,10 +3,11 @@ package io.github.talelin.latticy.common.interceptor;
 import io.github.talelin.autoconfigure.interfaces.LoggerResolver;
 import io.github.talelin.core.annotation.Logger;
 import io.github.talelin.core.annotation.PermissionMeta;
-import io.github.talelin.core.util.BeanUtil;
+import io.github.talelin.latticy.bo.PrincipalBO;
 import io.github.talelin.latticy.common.LocalUser;
-import io.github.talelin.latticy.model.UserDO;
-import io.github.talelin.latticy.service.LogService;
+import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.module.log.LogTemplateRegistry;
+import io.github.talelin.latticy.module.log.LogWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -14,8 +15,6 @@ import org.springframework.util.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author pedro@TaleLin
@@ -26,54 +25,36 @@ import java.util.regex.Pattern;
 public class LoggerImpl implements LoggerResolver {
 
     @Autowired
-    private LogService logService;
+    private LogWriter logWriter;
 
-    private static final Pattern pattern = Pattern.compile("(?<=\\{)[^}]*(?=})");
+    @Autowired
+    private LogTemplateRegistry logTemplateRegistry;
 
     @Override
     public void handle(PermissionMeta meta, Logger logger, HttpServletRequest request, HttpServletResponse response) {
-        String template = logger.template();
-        UserDO user = LocalUser.getLocalUser();
-        template = this.parseTemplate(template, user, request, response);
+        PrincipalBO principal = LocalUser.getLocalPrincipal();
+        // 模板在启动时已编译，principal 中没有的用户属性才会查询完整的用户信息
+        String template = logTemplateRegistry.get(logger.template())
+                .render(principal, LocalUser::getLocalUser, request, response);
         String permission = "";
         if (meta != null) {
             permission = StringUtils.isEmpty(meta.value()) ? meta.value() : meta.value();
         }
-        Integer userId = user.getId();
-        String username = user.getUsername();
+        Integer userId = principal.getId();
+        String username = principal.getUsername();
         String method = request.getMethod();
         String path = request.getServletPath();
         Integer status = response.getStatus();
-        logService.createLog(template, permission, userId, username, method, path, status);
-    }
-
-    private String parseTemplate(String template, UserDO user, HttpServletRequest request, HttpServletResponse response) {
-        // 调用 get 方法
-        Matcher m = pattern.matcher(template);
-        while (m.find()) {
-            String group = m.group();
-            String property = this.extractProperty(group, user, request, response);
-            template = template.replace("{" + group + "}", property);
-        }
-        return template;
-    }
-
-    private String extractProperty(String item, UserDO user, HttpServletRequest request, HttpServletResponse response) {
-        int i = item.lastIndexOf('.');
-        String obj = item.substring(0, i);
-        String prop = item.substring(i + 1);
-        switch (obj) {
-            case "user":
-                if (user == null) {
-                    return "";
-                }
-                return BeanUtil.getValueByPropName(user, prop);
-            case "request":
-                return BeanUtil.getValueByPropName(request, prop);
-            case "response":
-                return BeanUtil.getValueByPropName(response, prop);
-            default:
-                return "";
-        }
+        // 只是入队，由后台线程批量写入数据库
+        LogDO record = LogDO.builder()
+                .message(template)
+                .permission(permission)
+                .userId(userId)
+                .username(username)
+                .method(method)
+                .path(path)
+                .statusCode(status)
+                .build();
+        logWriter.write(record);
     }
 }
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import io.github.talelin.autoconfigure.bean.MetaInfo;
 import io.github.talelin.autoconfigure.bean.PermissionMetaCollector;
 import io.github.talelin.latticy.model.PermissionDO;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
 import io.github.talelin.latticy.service.PermissionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
@@ -26,10 +27,15 @@ public class PermissionHandleListener implements ApplicationListener<ContextRefr
 	@Autowired
 	private PermissionMetaCollector metaCollector;
 
+	@Autowired
+	private PermissionEngine permissionEngine;
+
 	@Override
 	public void onApplicationEvent(ContextRefreshedEvent event) {
 		addNewPermissions();
 		removeUnusedPermissions();
+		// 权限同步完成后，重建权限判断引擎
+		permissionEngine.rebuild();
 	}
 
 	/**
@@ -0,0 +1,208 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分页 count 查询结果缓存
+ * 以 count 语句和参数为键缓存总数，每张表维护一个版本号，写入表时递增版本号，
+ * 缓存时记录所查询的表的版本号，读取时版本号变化的缓存视为失效
+ * 估算模式（Page#setEstimatedTotal）下缓存不随写入失效，只受 estimated-ttl 限制，
+ * 适合持续写入、总数允许有偏差的表，如日志
+ *
+ * @author Juzi@TaleLin
+ */
+@Component
+public class CountCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    @Value("${lin.cms.count-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lin.cms.count-cache.max-size:1024}")
+    private int maxSize;
+
+    /**
+     * 缓存时长，单位毫秒
+     */
+    @Value("${lin.cms.count-cache.ttl:5000}")
+    private long ttl;
+
+    /**
+     * 估算模式的缓存时长，单位毫秒
+     */
+    @Value("${lin.cms.count-cache.estimated-ttl:60000}")
+    private long estimatedTtl;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获得缓存的总数
+     *
+     * @param key       count 语句和参数
+     * @param estimated 是否接受写入后未失效的总数
+     * @return 总数 | null
+     */
+    public Long get(String key, boolean estimated) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        long age = System.currentTimeMillis() - entry.createTime;
+        // 总数为 0 时分页插件不再查询数据，估算模式也不能返回过时的 0
+        boolean strict = !estimated || entry.total == 0;
+        if (age >= (estimated ? estimatedTtl : ttl) || (strict && !isCurrent(entry))) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.total;
+    }
+
+    /**
+     * 记录表当前的版本号，须在执行 count 查询之前调用，
+     * 查询期间发生的写入会使这次的结果在缓存中立即失效
+     *
+     * @param tables count 语句查询的表
+     * @return 版本号
+     */
+    public long[] snapshot(String[] tables) {
+        long[] snapshot = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            snapshot[i] = version(tables[i]).get();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 缓存总数
+     *
+     * @param key      count 语句和参数
+     * @param tables   count 语句查询的表
+     * @param snapshot 查询前的版本号
+     * @param total    总数
+     */
+    public void put(String key, String[] tables, long[] snapshot, long total) {
+        if (entries.size() >= maxSize) {
+            purge();
+        }
+        entries.put(key, new Entry(tables, snapshot, total, System.currentTimeMillis()));
+    }
+
+    /**
+     * 表写入后使相关的缓存失效
+     *
+     * @param tables 表名
+     */
+    public void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            version(table).incrementAndGet();
+        }
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * 清空缓存，无法确定写入的表时调用
+     */
+    public void invalidateAll() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * 获得缓存统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("size", entries.size());
+        metrics.put("max_size", maxSize);
+        metrics.put("ttl", ttl);
+        metrics.put("estimated_ttl", estimatedTtl);
+        metrics.put("hit_count", hits);
+        metrics.put("miss_count", misses);
+        metrics.put("hit_rate", hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        metrics.put("eviction_count", evictionCount.get());
+        metrics.put("invalidation_count", invalidationCount.get());
+        Map<String, Object> tables = new LinkedHashMap<>();
+        versions.forEach((table, version) -> tables.put(table, version.get()));
+        metrics.put("table_versions", tables);
+        return metrics;
+    }
+
+    private AtomicLong version(String table) {
+        return versions.computeIfAbsent(table, it -> new AtomicLong());
+    }
+
+    private boolean isCurrent(Entry entry) {
+        for (int i = 0; i < entry.tables.length; i++) {
+            if (version(entry.tables[i]).get() != entry.snapshot[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 缓存已满时，先清理过期的缓存，仍然不足则淘汰四分之一的缓存
+     */
+    private synchronized void purge() {
+        if (entries.size() < maxSize) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - Math.max(ttl, estimatedTtl);
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.createTime <= expired);
+        int target = maxSize - maxSize / 4;
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        evictionCount.addAndGet(Math.max(0, before - entries.size()));
+    }
+
+    private static class Entry {
+
+        private final String[] tables;
+
+        private final long[] snapshot;
+
+        private final long total;
+
+        private final long createTime;
+
+        private Entry(String[] tables, long[] snapshot, long total, long createTime) {
+            this.tables = tables;
+            this.snapshot = snapshot;
+            this.total = total;
+            this.createTime = createTime;
+        }
+    }
+}
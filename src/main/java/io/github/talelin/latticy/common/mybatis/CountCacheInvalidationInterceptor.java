@@ -0,0 +1,86 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import io.github.talelin.latticy.common.util.TransactionUtil;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在 insert、update、delete 后使所写入的表的 count 缓存失效
+ * 写入后立即失效一次，使本事务内的查询看到新的总数；
+ * 事务结束后再失效一次，避免其它事务在提交前缓存了旧的总数，或者回滚后留下本事务内的总数
+ * 写入的表按生成的 sql 缓存，sql 已包含 ${} 替换的结果，表名由参数决定的语句同样可以缓存
+ *
+ * @author Juzi@TaleLin
+ */
+@Intercepts({@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+public class CountCacheInvalidationInterceptor implements Interceptor {
+
+    private static final List<String> UNKNOWN = Collections.emptyList();
+
+    /**
+     * 缓存的 sql 数量上限，foreach 等生成的 sql 随参数变化，超出后不再缓存新的 sql
+     */
+    private static final int MAX_CACHED_SQL = 512;
+
+    private final CountCache countCache;
+
+    /**
+     * 生成的 sql -> 写入的表
+     */
+    private final Map<String, List<String>> tables = new ConcurrentHashMap<>();
+
+    public CountCacheInvalidationInterceptor(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (!countCache.isEnabled()) {
+            return result;
+        }
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        List<String> written = writtenTables(mappedStatement.getBoundSql(args[1]).getSql());
+        Runnable invalidate = written == UNKNOWN ? countCache::invalidateAll : () -> countCache.invalidate(written);
+        invalidate.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionUtil.afterCompletion(invalidate);
+        }
+        return result;
+    }
+
+    /**
+     * 获得 sql 写入的表
+     *
+     * @param sql 生成的 sql
+     * @return 表名，无法解析时返回 UNKNOWN
+     */
+    List<String> writtenTables(String sql) {
+        List<String> cached = tables.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> parsed = parse(sql);
+        if (tables.size() < MAX_CACHED_SQL) {
+            tables.putIfAbsent(sql, parsed);
+        }
+        return parsed;
+    }
+
+    private static List<String> parse(String sql) {
+        String[] names = SqlTables.of(sql);
+        return names == null ? UNKNOWN : Arrays.asList(names);
+    }
+}
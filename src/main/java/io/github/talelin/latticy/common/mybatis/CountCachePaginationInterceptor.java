@@ -0,0 +1,91 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.sql.Connection;
+import java.util.Date;
+
+/**
+ * 带 count 缓存的分页插件
+ * 以 count 语句和参数为键，命中 CountCache 时不再执行 count 查询
+ * 注解不会被继承，需要重新声明拦截的方法
+ *
+ * @author Juzi@TaleLin
+ */
+@Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})})
+public class CountCachePaginationInterceptor extends PaginationInterceptor {
+
+    private final CountCache countCache;
+
+    public CountCachePaginationInterceptor(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    @Override
+    protected void queryTotal(String sql, MappedStatement mappedStatement, BoundSql boundSql, IPage<?> page, Connection connection) {
+        if (!countCache.isEnabled()) {
+            super.queryTotal(sql, mappedStatement, boundSql, page, connection);
+            return;
+        }
+        String[] tables = SqlTables.of(sql);
+        if (tables == null) {
+            // 无法解析查询的表，也就无法判断缓存是否失效
+            super.queryTotal(sql, mappedStatement, boundSql, page, connection);
+            return;
+        }
+        boolean estimated = page instanceof Page && ((Page<?>) page).isEstimatedTotal();
+        String key = buildKey(sql, mappedStatement, boundSql);
+        Long total = countCache.get(key, estimated);
+        if (total != null) {
+            page.setTotal(total);
+            return;
+        }
+        long[] snapshot = countCache.snapshot(tables);
+        super.queryTotal(sql, mappedStatement, boundSql, page, connection);
+        countCache.put(key, tables, snapshot, page.getTotal());
+    }
+
+    /**
+     * 以归一化的 count 语句和参数值作为缓存键，参数的取值方式与 DefaultParameterHandler 一致
+     */
+    private static String buildKey(String sql, MappedStatement mappedStatement, BoundSql boundSql) {
+        StringBuilder key = new StringBuilder(sql.length() + 32);
+        key.append(sql.trim().replaceAll("\\s+", " "));
+        Configuration configuration = mappedStatement.getConfiguration();
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        Object parameterObject = boundSql.getParameterObject();
+        MetaObject metaObject = null;
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            if (parameterMapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = parameterMapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                value = metaObject.getValue(property);
+            }
+            key.append('|').append(value instanceof Date ? ((Date) value).getTime() : value);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import io.github.talelin.autoconfigure.exception.ParameterException;
+import io.github.talelin.latticy.model.BaseModel;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 按 (create_time, id) 倒序分页的游标
+ * 记录上一页边界行的 create_time 和 id，下一页从该行之后（更早）开始，上一页从该行之前（更晚）开始，
+ * 查询只需在 (create_time, id) 索引上做范围扫描，与翻页深度无关
+ * 对客户端不透明，编码为 url 安全的 base64
+ *
+ * @author Juzi@TaleLin
+ */
+@Getter
+public class KeysetCursor {
+
+    private static final String NEXT = "n";
+
+    private static final String PREVIOUS = "p";
+
+    private final Date createTime;
+
+    private final Integer id;
+
+    /**
+     * 是否向前翻页（取更晚的记录）
+     */
+    private final boolean backward;
+
+    public KeysetCursor(Date createTime, Integer id, boolean backward) {
+        this.createTime = createTime;
+        this.id = id;
+        this.backward = backward;
+    }
+
+    /**
+     * 以某一行为边界创建游标
+     *
+     * @param model    边界行
+     * @param backward 是否向前翻页
+     * @return 游标
+     */
+    public static KeysetCursor of(BaseModel model, boolean backward) {
+        return new KeysetCursor(model.getCreateTime(), model.getId(), backward);
+    }
+
+    /**
+     * 编码游标
+     *
+     * @return 游标字符串
+     */
+    public String encode() {
+        String raw = (backward ? PREVIOUS : NEXT) + ":" + createTime.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor 游标字符串
+     * @return 游标
+     * @throws ParameterException 游标无效
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !(NEXT.equals(parts[0]) || PREVIOUS.equals(parts[0]))) {
+                throw new ParameterException(10210);
+            }
+            return new KeysetCursor(new Date(Long.parseLong(parts[1])), Integer.valueOf(parts[2]),
+                    PREVIOUS.equals(parts[0]));
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(10210);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页的查询结果
+ *
+ * @author Juzi@TaleLin
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    private List<T> records;
+
+    /**
+     * 下一页（更早的记录）的游标，没有下一页时为 null
+     */
+    private String next;
+
+    /**
+     * 上一页（更晚的记录）的游标，没有上一页时为 null
+     */
+    private String previous;
+}
@@ -10,6 +10,11 @@ public class Page<T> extends com.baomidou.mybatisplus.extension.plugins.paginati
 
     private static final long serialVersionUID = -2183463672525305273L;
 
+    /**
+     * 是否接受估算的总数，为 true 时 count 缓存不随表的写入失效，见 CountCache
+     */
+    private boolean estimatedTotal = false;
+
     /**
      * 该构造方法使得 current 总为 0
      */
@@ -56,6 +61,15 @@ public class Page<T> extends com.baomidou.mybatisplus.extension.plugins.paginati
         return super.getCurrent() + 1 < this.getPages();
     }
 
+    public boolean isEstimatedTotal() {
+        return estimatedTotal;
+    }
+
+    public Page<T> setEstimatedTotal(boolean estimatedTotal) {
+        this.estimatedTotal = estimatedTotal;
+        return this;
+    }
+
     /**
      * 重写计算偏移量，将分页从第 0 开始
      *
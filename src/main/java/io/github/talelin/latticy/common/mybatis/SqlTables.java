@@ -0,0 +1,40 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+import java.util.List;
+
+/**
+ * 解析 sql 语句涉及的表
+ *
+ * @author Juzi@TaleLin
+ */
+public class SqlTables {
+
+    private SqlTables() {
+    }
+
+    /**
+     * 解析 sql 语句涉及的表，表名统一为小写、去掉库名和反引号
+     *
+     * @param sql sql 语句
+     * @return 表名，无法解析时返回 null
+     */
+    public static String[] of(String sql) {
+        List<String> names;
+        try {
+            names = new TablesNamesFinder().getTableList(CCJSqlParserUtil.parse(sql));
+        } catch (JSQLParserException | UnsupportedOperationException e) {
+            return null;
+        }
+        String[] tables = new String[names.size()];
+        for (int i = 0; i < tables.length; i++) {
+            String name = names.get(i);
+            name = name.substring(name.lastIndexOf('.') + 1);
+            tables[i] = name.replace("`", "").toLowerCase();
+        }
+        return tables;
+    }
+}
@@ -1,6 +1,10 @@
 package io.github.talelin.latticy.common.util;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.latticy.common.mybatis.KeysetCursor;
+import io.github.talelin.latticy.common.mybatis.KeysetPage;
+import io.github.talelin.latticy.model.BaseModel;
+import io.github.talelin.latticy.vo.CursorPageResponseVO;
 import io.github.talelin.latticy.vo.PageResponseVO;
 
 import java.util.List;
@@ -21,4 +25,31 @@ public class PageUtil {
                 Math.toIntExact(iPage.getSize()));
     }
 
+    /**
+     * 分页结果附带游标，客户端可以从任意一页转为游标翻页
+     */
+    public static <T extends BaseModel> CursorPageResponseVO<T> buildWithCursor(IPage<T> iPage) {
+        List<T> records = iPage.getRecords();
+        String next = null;
+        String previous = null;
+        if (!records.isEmpty()) {
+            if (iPage.getCurrent() + 1 < iPage.getPages()) {
+                next = KeysetCursor.of(records.get(records.size() - 1), false).encode();
+            }
+            if (iPage.getCurrent() > 0) {
+                previous = KeysetCursor.of(records.get(0), true).encode();
+            }
+        }
+        return new CursorPageResponseVO<T>(Math.toIntExact(iPage.getTotal()), records,
+                Math.toIntExact(iPage.getCurrent()), Math.toIntExact(iPage.getSize()), next, previous);
+    }
+
+    /**
+     * 游标分页不统计总数，total 与 page 为 null
+     */
+    public static <T> CursorPageResponseVO<T> build(KeysetPage<T> keysetPage, int count) {
+        return new CursorPageResponseVO<T>(null, keysetPage.getRecords(), null, count,
+                keysetPage.getNext(), keysetPage.getPrevious());
+    }
+
 }
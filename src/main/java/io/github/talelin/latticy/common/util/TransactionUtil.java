@@ -0,0 +1,49 @@
+package io.github.talelin.latticy.common.util;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author Juzi@TaleLin
+ */
+public class TransactionUtil {
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * 用于更新内存中的缓存，事务回滚时缓存不受影响
+     *
+     * @param action 执行的操作
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 在当前事务结束（提交或回滚）后执行，没有事务时立即执行
+     * 用于使缓存失效，事务回滚后缓存中可能留有事务内的数据
+     *
+     * @param action 执行的操作
+     */
+    public static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+}
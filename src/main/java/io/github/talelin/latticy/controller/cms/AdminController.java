@@ -16,6 +16,7 @@ import io.github.talelin.latticy.dto.admin.UpdateUserInfoDTO;
 import io.github.talelin.latticy.model.GroupDO;
 import io.github.talelin.latticy.model.PermissionDO;
 import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.PasswordHashExecutor;
 import io.github.talelin.latticy.service.AdminService;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.vo.CreatedVO;
@@ -40,6 +41,7 @@ import javax.validation.constraints.Min;
 import javax.validation.constraints.Positive;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +60,9 @@ public class AdminController {
     @Autowired
     private GroupService groupService;
 
+    @Autowired
+    private PasswordHashExecutor passwordHashExecutor;
+
     @AdminRequired
     @GetMapping("/permission")
     @PermissionMeta(value = "查询所有可分配的权限", mount = false)
@@ -87,9 +92,19 @@ public class AdminController {
     @AdminRequired
     @PutMapping("/user/{id}/password")
     @PermissionMeta(value = "修改用户密码", mount = false)
-    public UpdatedVO changeUserPassword(@PathVariable @Positive(message = "{id.positive}") Integer id, @RequestBody @Validated ResetPasswordDTO validator) {
-        adminService.changeUserPassword(id, validator);
-        return new UpdatedVO(4);
+    public CompletableFuture<UpdatedVO> changeUserPassword(@PathVariable @Positive(message = "{id.positive}") Integer id, @RequestBody @Validated ResetPasswordDTO validator) {
+        return passwordHashExecutor.submit(() -> {
+            adminService.changeUserPassword(id, validator);
+            return new UpdatedVO(4);
+        });
+    }
+
+    @AdminRequired
+    @PutMapping("/user/{id}/revoke")
+    @PermissionMeta(value = "吊销用户令牌", mount = false)
+    public UpdatedVO revokeUserTokens(@PathVariable @Positive(message = "{id.positive}") Integer id) {
+        adminService.revokeUserTokens(id);
+        return new UpdatedVO(17);
     }
 
     @AdminRequired
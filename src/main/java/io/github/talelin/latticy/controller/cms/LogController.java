@@ -1,24 +1,33 @@
 package io.github.talelin.latticy.controller.cms;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.autoconfigure.exception.ParameterException;
 import io.github.talelin.core.annotation.GroupRequired;
 import io.github.talelin.core.annotation.PermissionMeta;
 import io.github.talelin.core.annotation.PermissionModule;
 import io.github.talelin.latticy.common.util.PageUtil;
 import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.module.log.LogExportWriter;
 import io.github.talelin.latticy.service.LogService;
+import io.github.talelin.latticy.vo.CursorPageResponseVO;
 import io.github.talelin.latticy.vo.PageResponseVO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 /**
  * @author pedro@TaleLin
@@ -32,6 +41,9 @@ public class LogController {
 	@Autowired
 	private LogService logService;
 
+	@Value("${lin.cms.log.export-timeout:3600000}")
+	private long exportTimeout;
+
 	/**
 	 * 
 	 * @RequestParam 将请求参数绑定到你控制器的方法参数上（是springmvc中接收普通参数的注解）
@@ -53,31 +65,80 @@ public class LogController {
 	 * 
 	 */
 
+	/**
+	 * 
+	 * cursor 为上一次响应中的 next 或 previous，传入时按游标翻页，忽略 page 且不统计总数
+	 * 
+	 */
+
 	@GetMapping("")
 	@GroupRequired
 	@PermissionMeta(value = "查询所有日志")
-	public PageResponseVO<LogDO> getLogs(
+	public CursorPageResponseVO<LogDO> getLogs(
 			@RequestParam(name = "start", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
 			@RequestParam(name = "end", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
 			@RequestParam(name = "name", required = false) String name,
 			@RequestParam(name = "count", required = false, defaultValue = "15") @Min(value = 1, message = "{page.count.min}") @Max(value = 30, message = "{page.count.max}") Integer count,
-			@RequestParam(name = "page", required = false, defaultValue = "0") @Min(value = 0, message = "{page.number.min}") Integer page) {
+			@RequestParam(name = "page", required = false, defaultValue = "0") @Min(value = 0, message = "{page.number.min}") Integer page,
+			@RequestParam(name = "cursor", required = false) String cursor) {
+		if (cursor != null) {
+			return PageUtil.build(logService.getLogPageByCursor(cursor, count, name, null, start, end), count);
+		}
 		IPage<LogDO> iPage = logService.getLogPage(page, count, name, start, end);
-		return PageUtil.build(iPage);
+		return PageUtil.buildWithCursor(iPage);
 	}
 
 	@GetMapping("/search")
 	@GroupRequired
 	@PermissionMeta(value = "搜索日志")
-	public PageResponseVO<LogDO> searchLogs(
+	public CursorPageResponseVO<LogDO> searchLogs(
 			@RequestParam(name = "start", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
 			@RequestParam(name = "end", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
 			@RequestParam(name = "name", required = false) String name,
 			@RequestParam(name = "keyword", required = false, defaultValue = "") String keyword,
 			@RequestParam(name = "count", required = false, defaultValue = "15") @Min(value = 1, message = "{page.count.min}") @Max(value = 30, message = "{page.count.max}") Integer count,
-			@RequestParam(name = "page", required = false, defaultValue = "0") @Min(value = 0, message = "{page.number.min}") Integer page) {
+			@RequestParam(name = "page", required = false, defaultValue = "0") @Min(value = 0, message = "{page.number.min}") Integer page,
+			@RequestParam(name = "cursor", required = false) String cursor) {
+		if (cursor != null) {
+			return PageUtil.build(logService.getLogPageByCursor(cursor, count, name, keyword, start, end), count);
+		}
 		IPage<LogDO> iPage = logService.searchLogPage(page, count, name, keyword, start, end);
-		return PageUtil.build(iPage);
+		return PageUtil.buildWithCursor(iPage);
+	}
+
+	/**
+	 * 
+	 * 以 csv 或 ndjson 格式导出日志，过滤条件与查询、搜索日志相同，keyword 为空时不搜索
+	 * 
+	 * 响应体在异步线程中逐行写出，不设置 Content-Length，使用分块传输
+	 * 
+	 * 导出使用单独的超时时间 lin.cms.log.export-timeout，不影响其它异步请求
+	 * 
+	 */
+	@GetMapping("/export")
+	@GroupRequired
+	@PermissionMeta(value = "导出日志")
+	public WebAsyncTask<Void> exportLogs(
+			@RequestParam(name = "start", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+			@RequestParam(name = "end", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+			@RequestParam(name = "name", required = false) String name,
+			@RequestParam(name = "keyword", required = false) String keyword,
+			@RequestParam(name = "format", required = false, defaultValue = "csv") String format,
+			HttpServletResponse response) {
+		LogExportWriter.Format exportFormat = LogExportWriter.Format.of(format);
+		if (exportFormat == null) {
+			throw new ParameterException(10220);
+		}
+		String searchKeyword = StringUtils.isEmpty(keyword) ? null : keyword;
+		Callable<Void> export = () -> {
+			response.setContentType(exportFormat.getContentType());
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"logs." + exportFormat.getExtension() + "\"");
+			LogExportWriter writer = new LogExportWriter(exportFormat, response.getOutputStream());
+			logService.exportLogs(name, searchKeyword, start, end, writer);
+			writer.flush();
+			return null;
+		};
+		return new WebAsyncTask<>(exportTimeout, export);
 	}
 
 	@GetMapping("/users")
@@ -0,0 +1,184 @@
+package io.github.talelin.latticy.controller.cms;
+
+import io.github.talelin.core.annotation.AdminRequired;
+import io.github.talelin.core.annotation.PermissionMeta;
+import io.github.talelin.core.annotation.PermissionModule;
+import io.github.talelin.latticy.common.mybatis.CountCache;
+import io.github.talelin.latticy.module.auth.PasswordHashExecutor;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
+import io.github.talelin.latticy.module.cache.CacheInvalidationBus;
+import io.github.talelin.latticy.module.log.LogArchiver;
+import io.github.talelin.latticy.module.log.LogSearchIndex;
+import io.github.talelin.latticy.module.log.LogWriter;
+import io.github.talelin.latticy.module.message.FanOutEngine;
+import io.github.talelin.latticy.module.message.HandshakeLimiter;
+import io.github.talelin.latticy.module.message.MessageRouter;
+import io.github.talelin.latticy.module.message.SessionReaper;
+import io.github.talelin.latticy.module.message.WebSocketInterceptor;
+import io.github.talelin.latticy.module.message.WebsocketMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行状态监控
+ *
+ * @author Juzi@TaleLin
+ */
+@Validated
+@RestController
+@RequestMapping("/cms/monitor")
+@PermissionModule(value = "监控")
+public class MonitorController {
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private PasswordHashExecutor passwordHashExecutor;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private LogWriter logWriter;
+
+    @Autowired
+    private CountCache countCache;
+
+    @Autowired
+    private LogSearchIndex logSearchIndex;
+
+    @Autowired
+    private LogArchiver logArchiver;
+
+    /**
+     * 未开启 websocket 时为 null
+     */
+    @Autowired(required = false)
+    private FanOutEngine fanOutEngine;
+
+    /**
+     * 单节点部署时为 null
+     */
+    @Autowired(required = false)
+    private MessageRouter messageRouter;
+
+    @Autowired(required = false)
+    private HandshakeLimiter handshakeLimiter;
+
+    /**
+     * 未开启握手校验时为 null
+     */
+    @Autowired(required = false)
+    private WebSocketInterceptor webSocketInterceptor;
+
+    @Autowired(required = false)
+    private WebsocketMetrics websocketMetrics;
+
+    @Autowired(required = false)
+    private SessionReaper sessionReaper;
+
+    @AdminRequired
+    @GetMapping("/token-cache")
+    @PermissionMeta(value = "查询令牌缓存统计", mount = false)
+    public Map<String, Object> getTokenCacheMetrics() {
+        return tokenCache.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/cache-invalidation")
+    @PermissionMeta(value = "查询缓存失效统计", mount = false)
+    public Map<String, Object> getCacheInvalidationMetrics() {
+        return cacheInvalidationBus.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/password-hash")
+    @PermissionMeta(value = "查询密码哈希线程池统计", mount = false)
+    public Map<String, Object> getPasswordHashMetrics() {
+        return passwordHashExecutor.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/token-revocation")
+    @PermissionMeta(value = "查询令牌吊销统计", mount = false)
+    public Map<String, Object> getTokenRevocationMetrics() {
+        return tokenRevocationStore.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/log-writer")
+    @PermissionMeta(value = "查询行为日志写入统计", mount = false)
+    public Map<String, Object> getLogWriterMetrics() {
+        return logWriter.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/count-cache")
+    @PermissionMeta(value = "查询分页总数缓存统计", mount = false)
+    public Map<String, Object> getCountCacheMetrics() {
+        return countCache.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/log-search")
+    @PermissionMeta(value = "查询日志搜索索引统计", mount = false)
+    public Map<String, Object> getLogSearchMetrics() {
+        return logSearchIndex.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/log-archive")
+    @PermissionMeta(value = "查询日志归档统计", mount = false)
+    public Map<String, Object> getLogArchiveMetrics() {
+        return logArchiver.getMetrics();
+    }
+
+    @AdminRequired
+    @GetMapping("/websocket")
+    @PermissionMeta(value = "查询websocket统计", mount = false)
+    public Map<String, Object> getWebsocketMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", fanOutEngine != null);
+        if (websocketMetrics != null) {
+            metrics.put("traffic", websocketMetrics.getMetrics());
+        }
+        if (fanOutEngine != null) {
+            metrics.put("fan_out", fanOutEngine.getMetrics());
+        }
+        if (sessionReaper != null) {
+            metrics.put("liveness", sessionReaper.getMetrics());
+        }
+        if (handshakeLimiter != null) {
+            Map<String, Object> handshake = new LinkedHashMap<>(handshakeLimiter.getMetrics());
+            if (webSocketInterceptor != null) {
+                handshake.putAll(webSocketInterceptor.getMetrics());
+            }
+            metrics.put("handshake", handshake);
+        }
+        if (messageRouter != null) {
+            metrics.put("routing", messageRouter.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Prometheus 文本格式的 websocket 统计，未开启 websocket 时为空
+     */
+    @AdminRequired
+    @GetMapping(value = "/websocket/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    @PermissionMeta(value = "查询websocket统计（Prometheus）", mount = false)
+    public String getWebsocketPrometheus() {
+        return websocketMetrics == null ? "" : websocketMetrics.toPrometheus();
+    }
+}
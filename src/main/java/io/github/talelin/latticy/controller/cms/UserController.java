@@ -1,5 +1,7 @@
 package io.github.talelin.latticy.controller.cms;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
 import io.github.talelin.autoconfigure.exception.NotFoundException;
 import io.github.talelin.autoconfigure.exception.ParameterException;
 import io.github.talelin.core.annotation.AdminRequired;
@@ -9,12 +11,17 @@ import io.github.talelin.core.annotation.RefreshRequired;
 import io.github.talelin.core.token.DoubleJWT;
 import io.github.talelin.core.token.Tokens;
 import io.github.talelin.latticy.common.LocalUser;
+import io.github.talelin.latticy.common.interceptor.AuthorizeVerifyResolverImpl;
 import io.github.talelin.latticy.dto.user.ChangePasswordDTO;
 import io.github.talelin.latticy.dto.user.LoginDTO;
+import io.github.talelin.latticy.dto.user.LogoutDTO;
 import io.github.talelin.latticy.dto.user.RegisterDTO;
 import io.github.talelin.latticy.dto.user.UpdateInfoDTO;
 import io.github.talelin.latticy.model.GroupDO;
 import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.PasswordHashExecutor;
+import io.github.talelin.latticy.module.auth.PrincipalTokenProvider;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.UserIdentityService;
 import io.github.talelin.latticy.service.UserService;
@@ -28,11 +35,13 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author pedro@TaleLin
@@ -53,6 +62,15 @@ public class UserController {
     @Autowired
     private UserIdentityService userIdentityService;
 
+    @Autowired
+    private PrincipalTokenProvider principalTokenProvider;
+
+    @Autowired
+    private PasswordHashExecutor passwordHashExecutor;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
     @Autowired
     private DoubleJWT jwt;
 
@@ -68,21 +86,44 @@ public class UserController {
 
     /**
      * 用户登陆
+     * 密码校验在密码哈希线程池中执行，不占用请求线程
      */
     @PostMapping("/login")
-    public Tokens login(@RequestBody @Validated LoginDTO validator) {
+    public CompletableFuture<Tokens> login(@RequestBody @Validated LoginDTO validator) {
         UserDO user = userService.getUserByUsername(validator.getUsername());
         if (user == null) {
             throw new NotFoundException(10021);
         }
-        boolean valid = userIdentityService.verifyUsernamePassword(
-                user.getId(),
-                user.getUsername(),
-                validator.getPassword());
-        if (!valid) {
-            throw new ParameterException(10031);
+        return passwordHashExecutor.submit(() -> {
+            boolean valid = userIdentityService.verifyUsernamePassword(
+                    user.getId(),
+                    user.getUsername(),
+                    validator.getPassword());
+            if (!valid) {
+                throw new ParameterException(10031);
+            }
+            return principalTokenProvider.generateTokens(user);
+        });
+    }
+
+    /**
+     * 退出登录，当前的 access token 和请求体中的 refresh token 在过期前不再有效
+     * 未提供有效的 refresh token 时吊销该用户已签发的所有令牌，refresh token 不能在退出后换取新的令牌
+     */
+    @PostMapping("/logout")
+    @LoginRequired
+    public UpdatedVO logout(@RequestHeader(AuthorizeVerifyResolverImpl.AUTHORIZATION_HEADER) String authorization,
+                            @RequestBody(required = false) LogoutDTO validator) {
+        Integer userId = LocalUser.getLocalPrincipal().getId();
+        String token = authorization.substring(authorization.indexOf(' ') + 1);
+        tokenRevocationStore.revokeToken(token, userId);
+        String refreshToken = validator == null ? null : validator.getRefreshToken();
+        if (isRefreshTokenOf(refreshToken, userId)) {
+            tokenRevocationStore.revokeToken(refreshToken, userId);
+        } else {
+            tokenRevocationStore.revokeUser(userId);
         }
-        return jwt.generateTokens(user.getId());
+        return new UpdatedVO(16);
     }
 
     /**
@@ -100,9 +141,11 @@ public class UserController {
      */
     @PutMapping("/change_password")
     @LoginRequired
-    public UpdatedVO updatePassword(@RequestBody @Validated ChangePasswordDTO validator) {
-        userService.changeUserPassword(validator);
-        return new UpdatedVO(4);
+    public CompletableFuture<UpdatedVO> updatePassword(@RequestBody @Validated ChangePasswordDTO validator) {
+        return passwordHashExecutor.submit(() -> {
+            userService.changeUserPassword(validator);
+            return new UpdatedVO(4);
+        });
     }
 
     /**
@@ -112,7 +155,7 @@ public class UserController {
     @RefreshRequired
     public Tokens getRefreshToken() {
         UserDO user = LocalUser.getLocalUser();
-        return jwt.generateTokens(user.getId());
+        return principalTokenProvider.generateTokens(user);
     }
 
     /**
@@ -139,4 +182,21 @@ public class UserController {
         List<GroupDO> groups = groupService.getUserGroupsByUserId(user.getId());
         return new UserInfoVO(user, groups);
     }
+
+    private boolean isRefreshTokenOf(String refreshToken, Integer userId) {
+        if (refreshToken == null) {
+            return false;
+        }
+        Map<String, Claim> claims;
+        try {
+            claims = jwt.decodeRefreshToken(refreshToken);
+        } catch (JWTVerificationException e) {
+            return false;
+        }
+        if (claims == null) {
+            return false;
+        }
+        Claim identity = claims.get("identity");
+        return identity != null && userId.equals(identity.asInt());
+    }
 }
@@ -0,0 +1,17 @@
+package io.github.talelin.latticy.dto.user;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Data
+@NoArgsConstructor
+public class LogoutDTO {
+
+    /**
+     * 与当前 access token 一起签发的 refresh token，退出时一并吊销
+     */
+    private String refreshToken;
+}
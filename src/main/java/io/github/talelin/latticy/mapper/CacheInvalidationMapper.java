@@ -0,0 +1,36 @@
+package io.github.talelin.latticy.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import io.github.talelin.latticy.model.CacheInvalidationDO;
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Repository
+public interface CacheInvalidationMapper extends BaseMapper<CacheInvalidationDO> {
+
+    /**
+     * 查询缓存区域在版本范围内的失效记录
+     *
+     * @param region       缓存区域
+     * @param afterVersion 起始版本（不含）
+     * @param toVersion    结束版本（含）
+     * @return 失效记录，按版本升序
+     */
+    List<CacheInvalidationDO> selectByVersionRange(@Param("region") String region,
+                                                   @Param("afterVersion") long afterVersion,
+                                                   @Param("toVersion") long toVersion);
+
+    /**
+     * 删除缓存区域中不晚于指定版本的失效记录
+     *
+     * @param region  缓存区域
+     * @param version 版本
+     * @return 删除的行数
+     */
+    int deleteUntilVersion(@Param("region") String region, @Param("version") long version);
+}
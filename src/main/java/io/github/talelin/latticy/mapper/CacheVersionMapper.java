@@ -0,0 +1,21 @@
+package io.github.talelin.latticy.mapper;
+
+import io.github.talelin.latticy.model.CacheVersionDO;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Repository
+public interface CacheVersionMapper extends BaseMapper<CacheVersionDO> {
+
+    /**
+     * 递增缓存区域的版本号，区域不存在时插入
+     *
+     * @param region 缓存区域
+     * @return 影响的行数
+     */
+    int increaseVersion(@Param("region") String region);
+}
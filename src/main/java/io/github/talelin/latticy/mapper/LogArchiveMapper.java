@@ -0,0 +1,92 @@
+package io.github.talelin.latticy.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 日志归档表的维护
+ * 表名由 LogPartitions 按月份生成，以 ${} 拼入语句，不接受外部输入
+ *
+ * @author Juzi@TaleLin
+ */
+@Repository
+public interface LogArchiveMapper {
+
+    /**
+     * 查询当前库中以 lin_log_ 开头的表
+     *
+     * @return 表名
+     */
+    List<String> selectArchiveTables();
+
+    /**
+     * 创建与 lin_log 结构相同的归档表，已存在时忽略
+     *
+     * @param table 归档表名
+     */
+    void createArchiveTable(@Param("table") String table);
+
+    /**
+     * 删除归档表
+     *
+     * @param table 归档表名
+     */
+    void dropArchiveTable(@Param("table") String table);
+
+    /**
+     * 查询热表中早于某一时间的最早的日志时间
+     *
+     * @param before 时间
+     * @return 最早的日志时间，没有时为 null
+     */
+    Date selectOldestCreateTime(@Param("before") Date before);
+
+    /**
+     * 查询热表中最大的日志 id
+     *
+     * @return 日志 id，热表为空时为 null
+     */
+    Integer selectMaxId();
+
+    /**
+     * 查询时间范围内最大的日志 id，通过 (create_time, id) 索引查找
+     *
+     * @param from 开始时间（含）
+     * @param to   结束时间（不含）
+     * @return 日志 id，没有日志时为 null
+     */
+    Integer selectLastIdInRange(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * 沿主键查询待归档的日志 id，从上一批的最后一个 id 之后开始，扫描的行数与批大小相当
+     *
+     * @param from    开始时间（含）
+     * @param to      结束时间（不含）
+     * @param afterId 上一批的最后一个 id（不含）
+     * @param toId    最大的 id（含）
+     * @param limit   最多返回的条数
+     * @return 日志 id
+     */
+    List<Integer> selectIdsToArchive(@Param("from") Date from, @Param("to") Date to, @Param("afterId") int afterId,
+                                     @Param("toId") int toId, @Param("limit") int limit);
+
+    /**
+     * 把日志复制到归档表
+     *
+     * @param table 归档表名
+     * @param ids   日志 id
+     * @return 复制的行数
+     */
+    int copyToArchive(@Param("table") String table, @Param("ids") List<Integer> ids);
+
+    /**
+     * 从热表中删除已归档的日志
+     *
+     * @param ids 日志 id
+     * @return 删除的行数
+     */
+    int deleteArchived(@Param("ids") List<Integer> ids);
+}
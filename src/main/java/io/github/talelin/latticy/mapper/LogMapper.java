@@ -1,12 +1,16 @@
 package io.github.talelin.latticy.mapper;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.latticy.common.mybatis.KeysetCursor;
 import io.github.talelin.latticy.common.mybatis.Page;
 import io.github.talelin.latticy.model.LogDO;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author pedro@TaleLin
@@ -16,7 +20,106 @@ public interface LogMapper extends BaseMapper<LogDO> {
 
     IPage<LogDO> findLogsByUsernameAndRange(Page<LogDO> pager, String name, Date start, Date end);
 
-    IPage<LogDO> searchLogsByUsernameAndKeywordAndRange(Page<LogDO> pager, String name, String keyword, Date start, Date end);
+    /**
+     * 分页搜索日志
+     *
+     * @param pager   分页
+     * @param name    用户名
+     * @param keyword 搜索关键字（LIKE 模式）
+     * @param start   日志开始时间
+     * @param end     日志结束时间
+     * @param ids     搜索索引给出的候选 id，为 null 时扫描日志表
+     * @param afterId 搜索索引尚未索引的 id 范围的起点，大于该 id 的日志以 LIKE 扫描
+     * @return 日志
+     */
+    IPage<LogDO> searchLogsByUsernameAndKeywordAndRange(Page<LogDO> pager, String name, String keyword, Date start, Date end, List<Integer> ids, Integer afterId);
 
-    IPage<String> getUserNames(Page<LogDO> pager);
+    /**
+     * 按 (create_time, id) 倒序的游标分页
+     *
+     * @param tables  查询的表，见 LogPartitions
+     * @param name    用户名
+     * @param keyword 搜索关键字（LIKE 模式）
+     * @param start   日志开始时间
+     * @param end     日志结束时间
+     * @param ids     搜索索引给出的候选 id，为 null 时扫描日志表
+     * @param afterId 搜索索引尚未索引的 id 范围的起点
+     * @param cursor  游标，为 null 时从最新的日志开始
+     * @param limit   最多返回的条数
+     * @return 日志，向前翻页时按 (create_time, id) 正序
+     */
+    List<LogDO> findLogsByKeyset(@Param("tables") List<String> tables, @Param("name") String name, @Param("keyword") String keyword,
+                                 @Param("start") Date start, @Param("end") Date end, @Param("ids") List<Integer> ids,
+                                 @Param("afterId") Integer afterId, @Param("cursor") KeysetCursor cursor, @Param("limit") int limit);
+
+    /**
+     * 分页查询跨越归档表的日志，须关闭分页插件的 count 查询
+     *
+     * @param pager    分页
+     * @param tables   查询的表，见 LogPartitions
+     * @param name     用户名
+     * @param keyword  搜索关键字（LIKE 模式）
+     * @param start    日志开始时间
+     * @param end      日志结束时间
+     * @param ids      搜索索引给出的候选 id，为 null 时不限
+     * @param afterId  搜索索引尚未索引的 id 范围的起点
+     * @param rowLimit 每个表最多读取的条数，不少于当前页最后一条的序号
+     * @return 日志
+     */
+    IPage<LogDO> findLogsInPartitions(Page<LogDO> pager, @Param("tables") List<String> tables,
+                                      @Param("name") String name, @Param("keyword") String keyword,
+                                      @Param("start") Date start, @Param("end") Date end,
+                                      @Param("ids") List<Integer> ids, @Param("afterId") Integer afterId,
+                                      @Param("rowLimit") long rowLimit);
+
+    /**
+     * 统计跨越归档表的日志数
+     *
+     * @param tables  查询的表，见 LogPartitions
+     * @param name    用户名
+     * @param keyword 搜索关键字（LIKE 模式）
+     * @param start   日志开始时间
+     * @param end     日志结束时间
+     * @param ids     搜索索引给出的候选 id，为 null 时不限
+     * @param afterId 搜索索引尚未索引的 id 范围的起点
+     * @return 日志数
+     */
+    Long countLogsInPartitions(@Param("tables") List<String> tables,
+                               @Param("name") String name, @Param("keyword") String keyword,
+                               @Param("start") Date start, @Param("end") Date end,
+                               @Param("ids") List<Integer> ids, @Param("afterId") Integer afterId);
+
+    /**
+     * 按时间顺序逐行读取一个表中的日志，不在内存中保存结果
+     *
+     * @param table   日志表，见 LogPartitions
+     * @param name    用户名
+     * @param keyword 搜索关键字（LIKE 模式）
+     * @param start   日志开始时间
+     * @param end     日志结束时间
+     * @param handler 处理每一条日志
+     */
+    void exportLogs(@Param("table") String table, @Param("name") String name, @Param("keyword") String keyword,
+                    @Param("start") Date start, @Param("end") Date end, ResultHandler<LogDO> handler);
+
+    /**
+     * 按 id 顺序读取日志的 id、消息和创建时间，用于构建搜索索引
+     *
+     * @param table 日志表，见 LogPartitions
+     * @param id    从该 id 之后开始读取
+     * @param limit 最多返回的条数
+     * @return 只有 id、message 和 create_time 的日志
+     */
+    List<LogDO> selectMessagesAfter(@Param("table") String table, @Param("id") Integer id, @Param("limit") int limit);
+
+    /**
+     * 按 id 顺序读取日志表中 id 范围内的日志，用于索引提交较晚的日志
+     *
+     * @param afterId 范围的起点（不含）
+     * @param toId    范围的终点（含）
+     * @return 只有 id、message 和 create_time 的日志
+     */
+    List<LogDO> selectMessagesBetween(@Param("afterId") Integer afterId, @Param("toId") Integer toId);
+
+    int insertBatch(@Param("logs") List<LogDO> logs);
 }
@@ -0,0 +1,54 @@
+package io.github.talelin.latticy.mapper;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.latticy.common.mybatis.Page;
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 记录过日志的用户名
+ *
+ * @author Juzi@TaleLin
+ */
+@Repository
+public interface LogUserMapper {
+
+    /**
+     * 插入用户名，已存在时忽略
+     *
+     * @param username 用户名
+     * @return 影响的行数
+     */
+    int insertUsername(@Param("username") String username);
+
+    /**
+     * 从日志表中补全用户名，用于升级后第一次启动
+     *
+     * @return 插入的行数
+     */
+    int insertFromLogs();
+
+    /**
+     * 查询用户名的数量
+     *
+     * @return 数量
+     */
+    long countUsernames();
+
+    /**
+     * 查询所有用户名
+     *
+     * @return 用户名
+     */
+    List<String> selectUsernames();
+
+    /**
+     * 按用户名顺序分页查询
+     *
+     * @param pager 分页
+     * @return 用户名
+     */
+    IPage<String> selectUsernamePage(Page<String> pager);
+}
@@ -0,0 +1,13 @@
+package io.github.talelin.latticy.mapper;
+
+import io.github.talelin.latticy.model.TokenRevocationDO;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Repository
+public interface TokenRevocationMapper extends BaseMapper<TokenRevocationDO> {
+
+}
@@ -0,0 +1,45 @@
+package io.github.talelin.latticy.model;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("lin_cache_invalidation")
+public class CacheInvalidationDO implements Serializable {
+
+    private static final long serialVersionUID = -6020749118893612447L;
+
+    /**
+     * 缓存区域
+     */
+    private String region;
+
+    /**
+     * 失效后缓存区域的版本号
+     */
+    private Long version;
+
+    /**
+     * 失效的用户或分组id，为空时整个区域失效
+     */
+    private Integer keyId;
+
+    /**
+     * 发布失效的节点
+     */
+    private String node;
+
+    private Date createTime;
+}
@@ -0,0 +1,36 @@
+package io.github.talelin.latticy.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("lin_cache_version")
+public class CacheVersionDO implements Serializable {
+
+    private static final long serialVersionUID = 4930583206425318744L;
+
+    /**
+     * 缓存区域
+     */
+    @TableId(value = "region", type = IdType.INPUT)
+    private String region;
+
+    /**
+     * 版本号，每次失效递增
+     */
+    private Long version;
+
+    private Date updateTime;
+}
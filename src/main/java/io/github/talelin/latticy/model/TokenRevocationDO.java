@@ -0,0 +1,50 @@
+package io.github.talelin.latticy.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * @author Juzi@TaleLin
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("lin_token_revocation")
+public class TokenRevocationDO implements Serializable {
+
+    private static final long serialVersionUID = -3318240618557602310L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Integer id;
+
+    /**
+     * 用户id
+     */
+    private Integer userId;
+
+    /**
+     * 被吊销令牌的 SHA-256 摘要，为空时表示吊销用户在 notBefore 之前签发的所有令牌
+     */
+    private String tokenId;
+
+    /**
+     * 在此时间之前签发的令牌无效
+     */
+    private Date notBefore;
+
+    /**
+     * 记录的过期时间，之后被吊销的令牌已自然过期，记录可删除
+     */
+    private Date expireTime;
+
+    private Date createTime;
+}
@@ -0,0 +1,216 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.github.talelin.latticy.common.enumeration.GroupLevelEnum;
+import io.github.talelin.latticy.common.util.TransactionUtil;
+import io.github.talelin.latticy.mapper.GroupMapper;
+import io.github.talelin.latticy.mapper.UserGroupMapper;
+import io.github.talelin.latticy.model.GroupDO;
+import io.github.talelin.latticy.model.UserGroupDO;
+import io.github.talelin.latticy.module.cache.CacheInvalidationListener;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 特殊分组登记表
+ * 超级管理员分组、游客分组的id在初始化后不会改变，查询一次后缓存
+ * 超级管理员分组的成员只会通过修改用户分组、删除用户改变，在这些操作时同步更新
+ *
+ * @author Juzi@TaleLin
+ */
+@Component
+public class GroupLevelRegistry implements CacheInvalidationListener {
+
+    @Autowired
+    private GroupMapper groupMapper;
+
+    @Autowired
+    private UserGroupMapper userGroupMapper;
+
+    private final Map<GroupLevelEnum, Integer> levelGroupIds = new ConcurrentHashMap<>();
+
+    private final AtomicReference<Set<Integer>> rootUserIds = new AtomicReference<>();
+
+    /**
+     * 超级管理员分组的成员每次变动时递增
+     * 加载期间有变动时，加载的结果可能早于变动，撤回而不是发布
+     */
+    private final AtomicLong rootUsersVersion = new AtomicLong();
+
+    /**
+     * 获得特殊分组的id
+     *
+     * @param level 分组级别
+     * @return 分组id，分组不存在时返回 null
+     */
+    public Integer getGroupId(GroupLevelEnum level) {
+        if (GroupLevelEnum.USER == level) {
+            return null;
+        }
+        Integer groupId = levelGroupIds.get(level);
+        if (groupId != null) {
+            return groupId;
+        }
+        // 分组不存在时不缓存，以便分组创建后能查询到
+        QueryWrapper<GroupDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().eq(GroupDO::getLevel, level.getValue());
+        GroupDO group = groupMapper.selectOne(wrapper);
+        if (group == null) {
+            return null;
+        }
+        levelGroupIds.put(level, group.getId());
+        return group.getId();
+    }
+
+    /**
+     * 判断用户是否为超级管理员
+     *
+     * @param userId 用户id
+     * @return 是否为超级管理员
+     */
+    public boolean isRootUser(Integer userId) {
+        return userId != null && getRootUserIds().contains(userId);
+    }
+
+    /**
+     * 获得超级管理员分组的所有成员id
+     *
+     * @return 成员id，不可修改
+     */
+    public Set<Integer> getRootUserIds() {
+        Set<Integer> ids = rootUserIds.get();
+        if (ids == null) {
+            ids = loadRootUserIds();
+        }
+        return Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * 用户加入分组后调用
+     *
+     * @param userId   用户id
+     * @param groupIds 加入的分组id
+     */
+    public void onUserGroupsAdded(Integer userId, Collection<Integer> groupIds) {
+        Integer rootGroupId = getGroupId(GroupLevelEnum.ROOT);
+        if (rootGroupId == null || groupIds == null || !groupIds.contains(rootGroupId)) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            rootUsersVersion.incrementAndGet();
+            Set<Integer> ids = rootUserIds.get();
+            if (ids != null) {
+                ids.add(userId);
+            }
+        });
+    }
+
+    /**
+     * 用户退出分组后调用
+     *
+     * @param userId   用户id
+     * @param groupIds 退出的分组id
+     */
+    public void onUserGroupsRemoved(Integer userId, Collection<Integer> groupIds) {
+        Integer rootGroupId = getGroupId(GroupLevelEnum.ROOT);
+        if (rootGroupId == null || groupIds == null || !groupIds.contains(rootGroupId)) {
+            return;
+        }
+        removeRootUser(userId);
+    }
+
+    /**
+     * 用户删除后调用
+     *
+     * @param userId 用户id
+     */
+    public void onUserDeleted(Integer userId) {
+        removeRootUser(userId);
+    }
+
+    /**
+     * 清空缓存，下次使用时重新加载
+     */
+    public void invalidate() {
+        levelGroupIds.clear();
+        rootUsersVersion.incrementAndGet();
+        rootUserIds.set(null);
+    }
+
+    @Override
+    public void onInvalidate(CacheRegion region) {
+        if (region == CacheRegion.USER || region == CacheRegion.GROUP) {
+            invalidate();
+        }
+    }
+
+    /**
+     * 其它节点修改了某个用户或分组后调用
+     * 超级管理员分组不能通过接口添加成员，用户变动只可能使其离开超级管理员分组，
+     * 因此只有该用户在已加载的成员中时才重新加载；分组变动时只清理该分组的缓存
+     *
+     * @param region 缓存区域
+     * @param key    用户id或分组id
+     */
+    @Override
+    public void onInvalidate(CacheRegion region, Integer key) {
+        if (region == CacheRegion.USER) {
+            Set<Integer> ids = rootUserIds.get();
+            if (ids != null && ids.contains(key)) {
+                rootUsersVersion.incrementAndGet();
+                rootUserIds.compareAndSet(ids, null);
+            }
+        } else if (region == CacheRegion.GROUP) {
+            if (key.equals(levelGroupIds.get(GroupLevelEnum.ROOT))) {
+                invalidate();
+            } else {
+                levelGroupIds.values().remove(key);
+            }
+        }
+    }
+
+    private void removeRootUser(Integer userId) {
+        TransactionUtil.afterCommit(() -> {
+            rootUsersVersion.incrementAndGet();
+            Set<Integer> ids = rootUserIds.get();
+            if (ids != null) {
+                ids.remove(userId);
+            }
+        });
+    }
+
+    /**
+     * 加载超级管理员分组的成员
+     * 变动方先递增版本再修改已发布的集合；加载方先发布再检查版本，版本变化时撤回发布的集合，
+     * 因此早于变动读取的成员不会留在缓存中
+     */
+    private synchronized Set<Integer> loadRootUserIds() {
+        Set<Integer> loaded = rootUserIds.get();
+        if (loaded != null) {
+            return loaded;
+        }
+        long version = rootUsersVersion.get();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        Integer rootGroupId = getGroupId(GroupLevelEnum.ROOT);
+        // 超级管理员分组不存在时不缓存
+        if (rootGroupId != null) {
+            QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
+            wrapper.lambda().eq(UserGroupDO::getGroupId, rootGroupId);
+            userGroupMapper.selectList(wrapper).forEach(relation -> ids.add(relation.getUserId()));
+            rootUserIds.set(ids);
+            if (version != rootUsersVersion.get()) {
+                rootUserIds.compareAndSet(ids, null);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.talelin.latticy.module.auth;
+
+import io.github.talelin.autoconfigure.exception.RequestLimitException;
+import io.github.talelin.latticy.common.LocalUser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希线程池
+ * 密码的加密和校验（PBKDF2）是 CPU 密集型操作，放在独立的有界线程池中执行，
+ * 避免登录高峰时占满 web 容器的请求线程；队列已满时直接拒绝，返回 429
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class PasswordHashExecutor {
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong completedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong totalExecuteNanos = new AtomicLong();
+
+    private final AtomicLong maxExecuteNanos = new AtomicLong();
+
+    private final AtomicLong lastExecuteNanos = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * 是否在线程池中执行，关闭时在调用线程中执行
+     */
+    @Value("${lin.cms.password-hash.async:true}")
+    private boolean async;
+
+    /**
+     * 线程数，小于等于 0 时取 CPU 核数
+     */
+    @Value("${lin.cms.password-hash.threads:0}")
+    private int threads;
+
+    /**
+     * 等待队列长度
+     */
+    @Value("${lin.cms.password-hash.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交密码相关的任务
+     * 任务中可以通过 LocalUser 获得提交时的当前用户；任务抛出的异常原样作为 future 的异常
+     *
+     * @param task 任务
+     * @param <T>  任务结果类型
+     * @return 任务结果
+     * @throws RequestLimitException 等待队列已满
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Supplier<T> wrapped = LocalUser.wrap(task);
+        long submitAt = System.nanoTime();
+        if (!async) {
+            execute(wrapped, future, submitAt);
+            return future;
+        }
+        try {
+            executor.execute(() -> execute(wrapped, future, submitAt));
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            log.warn("password hash queue is full, rejected");
+            throw new RequestLimitException(10140);
+        }
+        return future;
+    }
+
+    /**
+     * 获得线程池的统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long completed = completedCount.get() + failedCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("async", async);
+        metrics.put("pool_size", executor.getCorePoolSize());
+        metrics.put("active_count", executor.getActiveCount());
+        metrics.put("queue_depth", executor.getQueue().size());
+        metrics.put("queue_capacity", queueCapacity);
+        metrics.put("completed_count", completedCount.get());
+        metrics.put("failed_count", failedCount.get());
+        metrics.put("rejected_count", rejectedCount.get());
+        metrics.put("avg_execute_millis", completed == 0 ? 0D : toMillis(totalExecuteNanos.get()) / completed);
+        metrics.put("max_execute_millis", toMillis(maxExecuteNanos.get()));
+        metrics.put("last_execute_millis", toMillis(lastExecuteNanos.get()));
+        metrics.put("avg_wait_millis", completed == 0 ? 0D : toMillis(totalWaitNanos.get()) / completed);
+        metrics.put("max_wait_millis", toMillis(maxWaitNanos.get()));
+        return metrics;
+    }
+
+    private <T> void execute(Supplier<T> task, CompletableFuture<T> future, long submitAt) {
+        long startAt = System.nanoTime();
+        record(totalWaitNanos, maxWaitNanos, startAt - submitAt);
+        try {
+            T result = task.get();
+            completedCount.incrementAndGet();
+            future.complete(result);
+        } catch (Throwable e) {
+            failedCount.incrementAndGet();
+            future.completeExceptionally(e);
+        } finally {
+            long elapsed = System.nanoTime() - startAt;
+            lastExecuteNanos.set(elapsed);
+            record(totalExecuteNanos, maxExecuteNanos, elapsed);
+        }
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000D;
+    }
+}
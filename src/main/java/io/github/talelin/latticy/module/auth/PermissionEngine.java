@@ -0,0 +1,476 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.autoconfigure.bean.MetaInfo;
+import io.github.talelin.autoconfigure.bean.PermissionMetaCollector;
+import io.github.talelin.latticy.common.util.TransactionUtil;
+import io.github.talelin.latticy.mapper.GroupPermissionMapper;
+import io.github.talelin.latticy.model.GroupPermissionDO;
+import io.github.talelin.latticy.model.PermissionDO;
+import io.github.talelin.latticy.module.cache.CacheInvalidationListener;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import io.github.talelin.latticy.service.GroupService;
+import io.github.talelin.latticy.service.PermissionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 权限判断引擎
+ * 启动时为每个挂载的权限（module, name）分配一个连续的整数编号，
+ * 每个分组的权限保存为一个 BitSet，用户所在的分组集合的权限为这些 BitSet 的并集，
+ * 大部分用户所在的分组集合都是相同的几种，所以并集按分组集合缓存，
+ * 权限判断只需一次位运算
+ * 权限变动在事务提交后才生效，事务回滚时不影响已有数据
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class PermissionEngine implements CacheInvalidationListener {
+
+    private static final BitSet EMPTY = new BitSet(0);
+
+    @Autowired
+    private PermissionMetaCollector metaCollector;
+
+    @Autowired
+    private PermissionService permissionService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private GroupPermissionMapper groupPermissionMapper;
+
+    /**
+     * module + name -> 权限编号
+     */
+    private volatile Map<String, Integer> permissionIndex = Collections.emptyMap();
+
+    /**
+     * 权限id -> 权限编号
+     */
+    private volatile Map<Integer, Integer> permissionIdIndex = Collections.emptyMap();
+
+    /**
+     * 分组id -> 分组权限，Map 和 BitSet 发布后都不再修改，修改时整体替换
+     */
+    private volatile Map<Integer, BitSet> groupPermissions = Collections.emptyMap();
+
+    /**
+     * 分组集合 -> 分组集合的权限
+     */
+    private final Map<GroupSet, BitSet> groupSetPermissions = new ConcurrentHashMap<>();
+
+    /**
+     * 用户id -> 用户所在的分组集合
+     */
+    private final Map<Integer, GroupSet> userGroupSets = new ConcurrentHashMap<>();
+
+    /**
+     * 每次修改递增，防止并发加载时把过期的数据写回缓存
+     * 修改方先修改数据、再递增、最后清理缓存；读取方先写入缓存、再检查是否递增，递增了则撤回写入的缓存，
+     * 这样无论两者如何交错，基于旧数据计算的缓存都会被修改方或读取方自己清理
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 其它节点修改分组、权限的次数，重建期间收到通知时重建的结果可能已过期
+     */
+    private final AtomicLong staleCount = new AtomicLong();
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+
+    /**
+     * 判断用户是否拥有权限
+     *
+     * @param userId     用户id
+     * @param module     权限模块
+     * @param permission 权限名
+     * @return 是否拥有
+     */
+    public boolean hasPermission(Integer userId, String module, String permission) {
+        if (!ready) {
+            rebuildIfNotReady();
+        }
+        Integer bit = permissionIndex.get(key(module, permission));
+        if (bit == null) {
+            return false;
+        }
+        return getUserPermissions(userId).get(bit);
+    }
+
+    /**
+     * 判断用户是否拥有权限
+     * 令牌签发时的分组集合与缓存的不一致，且缓存早于令牌签发时，说明缓存已过期，重新加载
+     *
+     * @param principal  当前用户
+     * @param module     权限模块
+     * @param permission 权限名
+     * @return 是否拥有
+     */
+    public boolean hasPermission(PrincipalBO principal, String module, String permission) {
+        Integer userId = principal.getId();
+        String version = principal.getGroupSetVersion();
+        GroupSet cached = userGroupSets.get(userId);
+        if (cached != null && version != null && principal.getIssuedAt() != null
+                && !version.equals(cached.version()) && cached.loadedAt < principal.getIssuedAt().getTime()) {
+            userGroupSets.remove(userId, cached);
+        }
+        return hasPermission(userId, module, permission);
+    }
+
+    /**
+     * 从数据库重建
+     */
+    public synchronized void rebuild() {
+        long stale = staleCount.get();
+        QueryWrapper<PermissionDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().eq(PermissionDO::getMount, true);
+        List<PermissionDO> permissions = permissionService.list(wrapper);
+        List<GroupPermissionDO> relations = groupPermissionMapper.selectList(null);
+        rebuild(metaCollector.getMetaMap().values(), permissions, relations);
+        if (staleCount.get() != stale) {
+            ready = false;
+        }
+    }
+
+    /**
+     * 未就绪时重建，并发等待锁的请求进入后不再重复重建
+     */
+    private synchronized void rebuildIfNotReady() {
+        if (!ready) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 通过给定的权限数据重建
+     *
+     * @param metas       挂载的权限元信息
+     * @param permissions 挂载的权限
+     * @param relations   分组与权限的关联
+     */
+    public synchronized void rebuild(Collection<MetaInfo> metas, List<PermissionDO> permissions,
+                                     List<GroupPermissionDO> relations) {
+        long start = System.currentTimeMillis();
+        Map<String, Integer> index = new HashMap<>(metas.size() * 2);
+        for (MetaInfo meta : metas) {
+            index.putIfAbsent(key(meta.getModule(), meta.getPermission()), index.size());
+        }
+        Map<Integer, Integer> idIndex = new HashMap<>(permissions.size() * 2);
+        for (PermissionDO permission : permissions) {
+            Integer bit = index.get(key(permission.getModule(), permission.getName()));
+            if (bit != null) {
+                idIndex.put(permission.getId(), bit);
+            }
+        }
+        Map<Integer, BitSet> groups = new HashMap<>();
+        for (GroupPermissionDO relation : relations) {
+            Integer bit = idIndex.get(relation.getPermissionId());
+            if (bit != null) {
+                groups.computeIfAbsent(relation.getGroupId(), it -> new BitSet(index.size())).set(bit);
+            }
+        }
+        permissionIndex = index;
+        permissionIdIndex = idIndex;
+        groupPermissions = groups;
+        generation.incrementAndGet();
+        groupSetPermissions.clear();
+        userGroupSets.clear();
+        ready = true;
+        rebuildCount.incrementAndGet();
+        log.info("permission engine rebuilt, {} permissions, {} groups, costs: {}ms",
+                index.size(), groups.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 为分组添加权限（分配权限、新建分组时调用）
+     *
+     * @param groupId       分组id
+     * @param permissionIds 权限id
+     */
+    public void grant(Integer groupId, List<Integer> permissionIds) {
+        TransactionUtil.afterCommit(() -> updateGroup(groupId, permissionIds, true));
+    }
+
+    /**
+     * 删除分组的权限
+     *
+     * @param groupId       分组id
+     * @param permissionIds 权限id
+     */
+    public void revoke(Integer groupId, List<Integer> permissionIds) {
+        TransactionUtil.afterCommit(() -> updateGroup(groupId, permissionIds, false));
+    }
+
+    /**
+     * 删除分组
+     *
+     * @param groupId 分组id
+     */
+    public void removeGroup(Integer groupId) {
+        TransactionUtil.afterCommit(() -> {
+            synchronized (this) {
+                Map<Integer, BitSet> groups = new HashMap<>(groupPermissions);
+                groups.remove(groupId);
+                groupPermissions = groups;
+                generation.incrementAndGet();
+                groupSetPermissions.keySet().removeIf(groupSet -> groupSet.contains(groupId));
+                userGroupSets.values().removeIf(groupSet -> groupSet.contains(groupId));
+            }
+        });
+    }
+
+    /**
+     * 用户所在分组变动时调用
+     *
+     * @param userId 用户id
+     */
+    public void invalidateUser(Integer userId) {
+        TransactionUtil.afterCommit(() -> {
+            generation.incrementAndGet();
+            userGroupSets.remove(userId);
+        });
+    }
+
+    /**
+     * 其它节点修改数据后调用，分组、权限变动时在下次判断前重建
+     *
+     * @param region 缓存区域
+     */
+    @Override
+    public void onInvalidate(CacheRegion region) {
+        if (region == CacheRegion.TOKEN_REVOCATION) {
+            return;
+        }
+        generation.incrementAndGet();
+        if (region == CacheRegion.USER) {
+            userGroupSets.clear();
+        } else {
+            staleCount.incrementAndGet();
+            ready = false;
+        }
+    }
+
+    /**
+     * 其它节点修改了某个用户或分组后调用
+     * 用户变动时清理该用户的分组集合，分组、权限变动时从数据库重新加载该分组的权限
+     *
+     * @param region 缓存区域
+     * @param key    用户id或分组id
+     */
+    @Override
+    public void onInvalidate(CacheRegion region, Integer key) {
+        if (region == CacheRegion.USER) {
+            generation.incrementAndGet();
+            userGroupSets.remove(key);
+        } else if (region == CacheRegion.GROUP || region == CacheRegion.PERMISSION) {
+            reloadGroup(key);
+        }
+    }
+
+    /**
+     * 得到权限的数量
+     *
+     * @return 数量
+     */
+    public int getPermissionCount() {
+        return permissionIndex.size();
+    }
+
+    /**
+     * 得到已缓存的分组集合数量
+     *
+     * @return 数量
+     */
+    public int getGroupSetCount() {
+        return groupSetPermissions.size();
+    }
+
+    /**
+     * 得到重建的次数
+     *
+     * @return 次数
+     */
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    /**
+     * 从数据库重新加载分组的权限，分组已删除时移除分组
+     *
+     * @param groupId 分组id
+     */
+    private synchronized void reloadGroup(Integer groupId) {
+        if (!ready) {
+            return;
+        }
+        QueryWrapper<GroupPermissionDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().eq(GroupPermissionDO::getGroupId, groupId);
+        List<GroupPermissionDO> relations = groupPermissionMapper.selectList(wrapper);
+        Map<Integer, BitSet> groups = new HashMap<>(groupPermissions);
+        if (relations.isEmpty()) {
+            groups.remove(groupId);
+        } else {
+            BitSet bits = new BitSet(permissionIndex.size());
+            for (GroupPermissionDO relation : relations) {
+                Integer bit = permissionIdIndex.get(relation.getPermissionId());
+                if (bit != null) {
+                    bits.set(bit);
+                }
+            }
+            groups.put(groupId, bits);
+        }
+        groupPermissions = groups;
+        generation.incrementAndGet();
+        groupSetPermissions.keySet().removeIf(groupSet -> groupSet.contains(groupId));
+        // 分组删除后，其成员的分组集合也已过期
+        userGroupSets.values().removeIf(groupSet -> groupSet.contains(groupId));
+    }
+
+    private synchronized void updateGroup(Integer groupId, List<Integer> permissionIds, boolean granted) {
+        if (!ready || permissionIds == null || permissionIds.isEmpty()) {
+            return;
+        }
+        BitSet current = groupPermissions.get(groupId);
+        BitSet bits = current == null ? new BitSet(permissionIndex.size()) : (BitSet) current.clone();
+        for (Integer permissionId : permissionIds) {
+            Integer bit = permissionIdIndex.get(permissionId);
+            if (bit != null) {
+                bits.set(bit, granted);
+            }
+        }
+        Map<Integer, BitSet> groups = new HashMap<>(groupPermissions);
+        groups.put(groupId, bits);
+        groupPermissions = groups;
+        generation.incrementAndGet();
+        groupSetPermissions.keySet().removeIf(groupSet -> groupSet.contains(groupId));
+    }
+
+    /**
+     * 获得用户所在的分组id，优先使用缓存的分组集合
+     *
+     * @param userId 用户id
+     * @return 分组id，按id升序
+     */
+    public List<Integer> getUserGroupIds(Integer userId) {
+        return Arrays.stream(getUserGroupSet(userId, generation.get()).groupIds).boxed().collect(Collectors.toList());
+    }
+
+    private GroupSet getUserGroupSet(Integer userId, long gen) {
+        GroupSet groupSet = userGroupSets.get(userId);
+        if (groupSet == null) {
+            groupSet = GroupSet.of(groupService.getUserGroupIdsByUserId(userId));
+            userGroupSets.put(userId, groupSet);
+            if (gen != generation.get()) {
+                userGroupSets.remove(userId, groupSet);
+            }
+        }
+        return groupSet;
+    }
+
+    private BitSet getUserPermissions(Integer userId) {
+        long gen = generation.get();
+        GroupSet groupSet = getUserGroupSet(userId, gen);
+        BitSet bits = groupSetPermissions.get(groupSet);
+        if (bits == null) {
+            bits = union(groupSet, groupPermissions);
+            groupSetPermissions.put(groupSet, bits);
+            if (gen != generation.get()) {
+                groupSetPermissions.remove(groupSet, bits);
+            }
+        }
+        return bits;
+    }
+
+    private BitSet union(GroupSet groupSet, Map<Integer, BitSet> groups) {
+        if (groupSet.groupIds.length == 0) {
+            return EMPTY;
+        }
+        BitSet bits = new BitSet(permissionIndex.size());
+        for (int groupId : groupSet.groupIds) {
+            BitSet group = groups.get(groupId);
+            if (group != null) {
+                bits.or(group);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 计算分组集合的版本，分组集合相同时版本相同
+     *
+     * @param groupIds 分组id
+     * @return 版本
+     */
+    public static String groupSetVersion(List<Integer> groupIds) {
+        return GroupSet.of(groupIds).version();
+    }
+
+    private static String key(String module, String permission) {
+        return module + '\u0000' + permission;
+    }
+
+    /**
+     * 有序的分组id集合
+     */
+    private static class GroupSet {
+
+        private final int[] groupIds;
+
+        private final int hash;
+
+        /**
+         * 加载时间，不参与比较
+         */
+        private final long loadedAt;
+
+        private GroupSet(int[] groupIds) {
+            this.groupIds = groupIds;
+            this.hash = Arrays.hashCode(groupIds);
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        private static GroupSet of(List<Integer> groupIds) {
+            if (groupIds == null) {
+                return new GroupSet(new int[0]);
+            }
+            int[] ids = groupIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+            return new GroupSet(ids);
+        }
+
+        private String version() {
+            return Integer.toHexString(hash);
+        }
+
+        private boolean contains(int groupId) {
+            return Arrays.binarySearch(groupIds, groupId) >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupSet && Arrays.equals(groupIds, ((GroupSet) o).groupIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.Claim;
+import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.core.token.Tokens;
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.service.GroupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 携带用户简要信息的令牌
+ * 开启后，access token 中除了用户id，还携带用户名、分组集合版本以及可选的昵称和头像，
+ * 校验令牌后直接得到当前用户的 principal，完整的用户信息只在需要时查询
+ * 令牌中的信息是签发时的快照，修改昵称、头像后，刷新令牌才会更新
+ *
+ * @author Juzi@TaleLin
+ */
+@Component
+public class PrincipalTokenProvider {
+
+    public static final String USERNAME_CLAIM = "username";
+
+    public static final String NICKNAME_CLAIM = "nickname";
+
+    public static final String AVATAR_CLAIM = "avatar";
+
+    public static final String GROUP_SET_VERSION_CLAIM = "gsv";
+
+    private static final String ACCESS_TYPE = "access";
+
+    private static final String LIN_SCOPE = "lin";
+
+    @Autowired
+    private DoubleJWT jwt;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Value("${lin.cms.principal-token.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 是否在令牌中携带昵称和头像
+     */
+    @Value("${lin.cms.principal-token.include-profile:true}")
+    private boolean includeProfile;
+
+    @Value("${lin.cms.token-secret}")
+    private String secret;
+
+    @Value("${lin.cms.token-access-expire}")
+    private long accessExpire;
+
+    private Algorithm algorithm;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 生成令牌，未开启时与 DoubleJWT 生成的令牌一致
+     *
+     * @param user 用户
+     * @return 令牌
+     */
+    public Tokens generateTokens(UserDO user) {
+        Tokens tokens = jwt.generateTokens(user.getId());
+        if (enabled) {
+            tokens.setAccessToken(generateAccessToken(user));
+        }
+        return tokens;
+    }
+
+    /**
+     * 从令牌的 claims 中解析 principal
+     *
+     * @param claims 已校验的令牌 claims
+     * @return principal，令牌不携带用户信息时返回 null
+     */
+    public PrincipalBO parse(Map<String, Claim> claims) {
+        Claim username = claims.get(USERNAME_CLAIM);
+        if (!enabled || username == null || username.isNull()) {
+            return null;
+        }
+        PrincipalBO principal = new PrincipalBO();
+        principal.setId(claims.get("identity").asInt());
+        principal.setUsername(username.asString());
+        principal.setGroupSetVersion(asString(claims.get(GROUP_SET_VERSION_CLAIM)));
+        principal.setNickname(asString(claims.get(NICKNAME_CLAIM)));
+        principal.setAvatar(asString(claims.get(AVATAR_CLAIM)));
+        Claim issuedAt = claims.get("iat");
+        principal.setIssuedAt(issuedAt == null ? null : issuedAt.asDate());
+        return principal;
+    }
+
+    private String generateAccessToken(UserDO user) {
+        Date now = new Date();
+        String groupSetVersion = PermissionEngine.groupSetVersion(groupService.getUserGroupIdsByUserId(user.getId()));
+        JWTCreator.Builder builder = JWT.create()
+                .withClaim("type", ACCESS_TYPE)
+                .withClaim("identity", user.getId().longValue())
+                .withClaim("scope", LIN_SCOPE)
+                .withClaim(USERNAME_CLAIM, user.getUsername())
+                .withClaim(GROUP_SET_VERSION_CLAIM, groupSetVersion)
+                .withIssuedAt(now)
+                .withExpiresAt(new Date(now.getTime() + accessExpire * 1000));
+        if (includeProfile) {
+            // 头像只保存 key，校验令牌时再拼接 url
+            builder.withClaim(NICKNAME_CLAIM, user.getNickname())
+                    .withClaim(AVATAR_CLAIM, user.getAvatar());
+        }
+        return builder.sign(getAlgorithm());
+    }
+
+    private Algorithm getAlgorithm() {
+        if (algorithm == null) {
+            algorithm = Algorithm.HMAC256(secret);
+        }
+        return algorithm;
+    }
+
+    private static String asString(Claim claim) {
+        return claim == null || claim.isNull() ? null : claim.asString();
+    }
+}
@@ -0,0 +1,318 @@
+package io.github.talelin.latticy.module.auth;
+
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.cache.CacheInvalidationListener;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已验证令牌缓存
+ * 以 access token 的 SHA-256 摘要为键，缓存令牌校验通过后的用户信息（principal 和可选的完整用户），
+ * 缓存时长不超过令牌的过期时间（exp），同时受最大缓存时长限制
+ * 命中缓存时，可跳过令牌签名校验和用户信息的数据库查询
+ *
+ * @author Juzi@TaleLin
+ */
+@Component
+public class TokenCache implements CacheInvalidationListener {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    @Value("${lin.cms.token-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lin.cms.token-cache.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 最大缓存时长，单位秒
+     */
+    @Value("${lin.cms.token-cache.max-ttl:600}")
+    private long maxTtl;
+
+    /**
+     * 获得令牌对应的缓存
+     * 返回的是缓存用户的副本，调用方可以随意修改
+     *
+     * @param token access token
+     * @return entry | null
+     */
+    public Entry get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        return getByTokenId(hashToken(token));
+    }
+
+    /**
+     * 获得令牌摘要对应的缓存，调用方已经计算过摘要（如检查吊销）时使用，避免重复计算
+     *
+     * @param tokenId 令牌摘要，见 {@link #hashToken(String)}
+     * @return entry | null
+     */
+    public Entry getByTokenId(String tokenId) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(tokenId);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            // 过期的令牌交由正常的校验流程处理，以便抛出令牌过期异常
+            entries.remove(tokenId, entry);
+            evictionCount.incrementAndGet();
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new Entry(entry.userId, copyOf(entry.principal), copyOf(entry.user), entry.expireAt);
+    }
+
+    /**
+     * 缓存校验通过的令牌
+     *
+     * @param token    access token
+     * @param user     令牌对应的用户
+     * @param expireAt 令牌过期时间，为 null 时仅受最大缓存时长限制
+     */
+    public void put(String token, UserDO user, Date expireAt) {
+        put(token, user, null, expireAt);
+    }
+
+    /**
+     * 缓存校验通过的令牌
+     *
+     * @param token    access token
+     * @param user     令牌对应的用户
+     * @param issuedAt 令牌签发时间，用于判断令牌是否被吊销
+     * @param expireAt 令牌过期时间，为 null 时仅受最大缓存时长限制
+     */
+    public void put(String token, UserDO user, Date issuedAt, Date expireAt) {
+        if (user == null) {
+            return;
+        }
+        PrincipalBO principal = new PrincipalBO(user);
+        principal.setIssuedAt(issuedAt);
+        put(token, principal, copyOf(user), expireAt);
+    }
+
+    /**
+     * 缓存校验通过的令牌，只缓存 principal
+     *
+     * @param token     access token
+     * @param principal 令牌对应的 principal
+     * @param expireAt  令牌过期时间，为 null 时仅受最大缓存时长限制
+     */
+    public void put(String token, PrincipalBO principal, Date expireAt) {
+        if (principal == null) {
+            return;
+        }
+        put(token, copyOf(principal), null, expireAt);
+    }
+
+    private void put(String token, PrincipalBO principal, UserDO user, Date expireAt) {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + maxTtl * 1000;
+        if (expireAt != null) {
+            deadline = Math.min(deadline, expireAt.getTime());
+        }
+        if (entries.size() >= maxSize) {
+            purge();
+        }
+        entries.put(hashToken(token), new Entry(principal.getId(), principal, user, deadline));
+    }
+
+    /**
+     * 使某个用户的所有缓存失效
+     * 用户信息修改、密码修改、用户删除时调用
+     *
+     * @param userId 用户id
+     */
+    public void invalidateUser(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        if (entries.values().removeIf(entry -> userId.equals(entry.userId))) {
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    @Override
+    public void onInvalidate(CacheRegion region) {
+        if (region == CacheRegion.USER) {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void onInvalidate(CacheRegion region, Integer key) {
+        if (region == CacheRegion.USER) {
+            invalidateUser(key);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * 获得缓存统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("size", entries.size());
+        metrics.put("max_size", maxSize);
+        metrics.put("max_ttl", maxTtl);
+        metrics.put("hit_count", hits);
+        metrics.put("miss_count", misses);
+        metrics.put("hit_rate", hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        metrics.put("eviction_count", evictionCount.get());
+        metrics.put("invalidation_count", invalidationCount.get());
+        return metrics;
+    }
+
+    /**
+     * 计算令牌的 SHA-256 摘要，避免在内存中保存令牌原文
+     *
+     * @param token 令牌
+     * @return 十六进制摘要
+     */
+    public static String hashToken(String token) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 缓存已满时，先清理过期的缓存，仍然不足则淘汰四分之一的缓存
+     */
+    private synchronized void purge() {
+        if (entries.size() < maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expireAt <= now);
+        int target = maxSize - maxSize / 4;
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        evictionCount.addAndGet(Math.max(0, before - entries.size()));
+    }
+
+    private static UserDO copyOf(UserDO user) {
+        if (user == null) {
+            return null;
+        }
+        UserDO copy = UserDO.builder()
+                .username(user.getUsername())
+                .nickname(user.getNickname())
+                .avatar(user.getAvatar())
+                .email(user.getEmail())
+                .build();
+        copy.setId(user.getId());
+        copy.setCreateTime(user.getCreateTime());
+        copy.setUpdateTime(user.getUpdateTime());
+        copy.setDeleteTime(user.getDeleteTime());
+        return copy;
+    }
+
+    private static PrincipalBO copyOf(PrincipalBO principal) {
+        PrincipalBO copy = new PrincipalBO();
+        copy.setId(principal.getId());
+        copy.setUsername(principal.getUsername());
+        copy.setNickname(principal.getNickname());
+        copy.setAvatar(principal.getAvatar());
+        copy.setGroupSetVersion(principal.getGroupSetVersion());
+        copy.setIssuedAt(principal.getIssuedAt());
+        return copy;
+    }
+
+    public static class Entry {
+
+        private final Integer userId;
+
+        private final PrincipalBO principal;
+
+        /**
+         * 完整的用户信息，只缓存 principal 时为 null
+         */
+        private final UserDO user;
+
+        private final long expireAt;
+
+        private Entry(Integer userId, PrincipalBO principal, UserDO user, long expireAt) {
+            this.userId = userId;
+            this.principal = principal;
+            this.user = user;
+            this.expireAt = expireAt;
+        }
+
+        public PrincipalBO getPrincipal() {
+            return principal;
+        }
+
+        public UserDO getUser() {
+            return user;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.github.talelin.latticy.mapper.TokenRevocationMapper;
+import io.github.talelin.latticy.model.TokenRevocationDO;
+import io.github.talelin.latticy.module.cache.CacheInvalidationBus;
+import io.github.talelin.latticy.module.cache.CacheInvalidationListener;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌吊销表
+ * 吊销单个令牌（退出登录）或者吊销用户在某个时间之前签发的所有令牌（强制下线），
+ * 吊销记录保存在数据库中，启动时加载到内存，之后收到其它节点的吊销通知时只读取 id 更大的记录；
+ * 读取时跳过的 id（提交较晚的记录）在 commit-lag 毫秒内再次读取；过期的记录由定时任务删除
+ * 内存中用布隆过滤器判断令牌是否可能被吊销，只有过滤器命中时才查询精确的吊销记录，
+ * 绝大多数未被吊销的令牌只需计算几次哈希
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class TokenRevocationStore implements CacheInvalidationListener {
+
+    private static final String USER_KEY_PREFIX = "u:";
+
+    @Autowired
+    private TokenRevocationMapper tokenRevocationMapper;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${lin.cms.token-revocation.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 布隆过滤器的预期元素数量，超出后按实际数量重建
+     */
+    @Value("${lin.cms.token-revocation.expected-insertions:10000}")
+    private int expectedInsertions;
+
+    /**
+     * 布隆过滤器的误判率
+     */
+    @Value("${lin.cms.token-revocation.fpp:0.001}")
+    private double fpp;
+
+    /**
+     * 跳过的 id 等待提交的时间，单位毫秒，须大于吊销令牌的事务的最长提交时间
+     */
+    @Value("${lin.cms.token-revocation.commit-lag:10000}")
+    private long commitLag;
+
+    /**
+     * 删除过期记录的间隔，单位毫秒
+     */
+    @Value("${lin.cms.token-revocation.purge-interval:3600000}")
+    private long purgeInterval;
+
+    @Value("${lin.cms.token-refresh-expire}")
+    private long refreshExpire;
+
+    private final AtomicLong checkCount = new AtomicLong();
+
+    private final AtomicLong filterHitCount = new AtomicLong();
+
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    private final AtomicLong revokedCount = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    private volatile long lastReloadTime = 0;
+
+    private volatile long lastPurgeTime = 0;
+
+    /**
+     * 已读取的最大 id
+     */
+    private int loadedId = 0;
+
+    /**
+     * loadedId 之前尚未读到记录的 id 范围，按 id 升序
+     */
+    private List<Gap> gaps = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        snapshot = new Snapshot(expectedInsertions, fpp);
+        if (!enabled) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("load token revocations failed", e);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-revocation-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 判断令牌是否已被吊销
+     *
+     * @param tokenId  令牌摘要，见 {@link TokenCache#hashToken(String)}
+     * @param userId   令牌所属用户id
+     * @param issuedAt 令牌签发时间，为 null 时视为在所有吊销之前签发
+     * @return 是否已被吊销
+     */
+    public boolean isRevoked(String tokenId, Integer userId, Date issuedAt) {
+        if (!enabled) {
+            return false;
+        }
+        checkCount.incrementAndGet();
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current.filter.mightContain(tokenId)) {
+            filterHitCount.incrementAndGet();
+            Long expireAt = current.tokens.get(tokenId);
+            if (expireAt != null && expireAt > now) {
+                revokedCount.incrementAndGet();
+                return true;
+            }
+            if (expireAt == null) {
+                falsePositiveCount.incrementAndGet();
+            }
+        }
+        if (userId != null && current.filter.mightContain(USER_KEY_PREFIX + userId)) {
+            filterHitCount.incrementAndGet();
+            Long notBefore = current.users.get(userId);
+            if (notBefore == null) {
+                falsePositiveCount.incrementAndGet();
+            } else if (issuedAt == null || issuedAt.getTime() < notBefore) {
+                revokedCount.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 吊销单个令牌
+     *
+     * @param token  已校验的令牌
+     * @param userId 令牌所属用户id
+     */
+    public void revokeToken(String token, Integer userId) {
+        String tokenId = TokenCache.hashToken(token);
+        // 令牌过期后吊销记录即可删除，无法解析过期时间时按 refresh token 的有效期保留
+        Date expireTime = getExpiresAt(token);
+        if (expireTime == null) {
+            expireTime = new Date(System.currentTimeMillis() + refreshExpire * 1000);
+        }
+        TokenRevocationDO revocation = TokenRevocationDO.builder()
+                .userId(userId)
+                .tokenId(tokenId)
+                .expireTime(expireTime)
+                .build();
+        tokenRevocationMapper.insert(revocation);
+        addToken(tokenId, expireTime.getTime());
+        cacheInvalidationBus.publish(CacheRegion.TOKEN_REVOCATION);
+    }
+
+    /**
+     * 吊销用户当前已签发的所有令牌
+     * 令牌的签发时间精确到秒，吊销时间向下取整到秒，同一秒内吊销后重新登录不受影响
+     *
+     * @param userId 用户id
+     */
+    public void revokeUser(Integer userId) {
+        long notBefore = System.currentTimeMillis() / 1000 * 1000;
+        TokenRevocationDO revocation = TokenRevocationDO.builder()
+                .userId(userId)
+                .notBefore(new Date(notBefore))
+                .expireTime(new Date(notBefore + refreshExpire * 1000))
+                .build();
+        tokenRevocationMapper.insert(revocation);
+        addUser(userId, notBefore);
+        tokenCache.invalidateUser(userId);
+        cacheInvalidationBus.publish(CacheRegion.TOKEN_REVOCATION);
+    }
+
+    /**
+     * 从数据库重新加载所有未过期的吊销记录
+     */
+    public synchronized void reload() {
+        Date now = new Date();
+        QueryWrapper<TokenRevocationDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().gt(TokenRevocationDO::getExpireTime, now);
+        List<TokenRevocationDO> revocations = tokenRevocationMapper.selectList(wrapper);
+        Snapshot fresh = new Snapshot(Math.max(expectedInsertions, revocations.size() * 2), fpp);
+        int maxId = 0;
+        for (TokenRevocationDO revocation : revocations) {
+            if (revocation.getTokenId() != null) {
+                fresh.addToken(revocation.getTokenId(), revocation.getExpireTime().getTime());
+            } else if (revocation.getNotBefore() != null) {
+                fresh.addUser(revocation.getUserId(), revocation.getNotBefore().getTime());
+            }
+            maxId = Math.max(maxId, revocation.getId());
+        }
+        snapshot = fresh;
+        loadedId = maxId;
+        gaps = new ArrayList<>();
+        lastReloadTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 读取 loadedId 之后的吊销记录，以及之前跳过、现在已提交的记录
+     */
+    public synchronized void loadNew() {
+        long now = System.currentTimeMillis();
+        List<Gap> remaining = new ArrayList<>();
+        for (Gap gap : gaps) {
+            // 超过 commit-lag 仍未读到的 id 视为回滚或未使用
+            if (now - gap.since > commitLag) {
+                continue;
+            }
+            QueryWrapper<TokenRevocationDO> wrapper = new QueryWrapper<>();
+            wrapper.lambda().between(TokenRevocationDO::getId, gap.from, gap.to).orderByAsc(TokenRevocationDO::getId);
+            int last = gap.from - 1;
+            for (TokenRevocationDO revocation : tokenRevocationMapper.selectList(wrapper)) {
+                add(revocation, now);
+                addGap(remaining, last, revocation.getId(), gap.since);
+                last = revocation.getId();
+            }
+            addGap(remaining, last, gap.to + 1, gap.since);
+        }
+        QueryWrapper<TokenRevocationDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().gt(TokenRevocationDO::getId, loadedId).orderByAsc(TokenRevocationDO::getId);
+        for (TokenRevocationDO revocation : tokenRevocationMapper.selectList(wrapper)) {
+            add(revocation, now);
+            addGap(remaining, loadedId, revocation.getId(), now);
+            loadedId = revocation.getId();
+        }
+        gaps = remaining;
+        lastReloadTime = now;
+    }
+
+    /**
+     * 删除已过期的吊销记录，由定时任务执行
+     *
+     * @return 删除的条数
+     */
+    public int purge() {
+        QueryWrapper<TokenRevocationDO> expired = new QueryWrapper<>();
+        expired.lambda().le(TokenRevocationDO::getExpireTime, new Date());
+        int deleted = tokenRevocationMapper.delete(expired);
+        lastPurgeTime = System.currentTimeMillis();
+        return deleted;
+    }
+
+    @Override
+    public void onInvalidate(CacheRegion region) {
+        if (enabled && region == CacheRegion.TOKEN_REVOCATION) {
+            loadNew();
+        }
+    }
+
+    /**
+     * 获得吊销表的统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("token_count", current.tokens.size());
+        metrics.put("user_count", current.users.size());
+        metrics.put("capacity", current.capacity);
+        metrics.put("bit_size", current.filter.getBitSize());
+        metrics.put("hash_count", current.filter.getHashCount());
+        metrics.put("check_count", checkCount.get());
+        metrics.put("filter_hit_count", filterHitCount.get());
+        metrics.put("false_positive_count", falsePositiveCount.get());
+        metrics.put("revoked_count", revokedCount.get());
+        metrics.put("last_reload_time", lastReloadTime);
+        metrics.put("last_purge_time", lastPurgeTime);
+        return metrics;
+    }
+
+    private void purgeQuietly() {
+        try {
+            int deleted = purge();
+            if (deleted > 0) {
+                log.info("purged {} expired token revocations", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("purge token revocations failed: {}", e.getMessage());
+        }
+    }
+
+    private void add(TokenRevocationDO revocation, long now) {
+        if (revocation.getExpireTime().getTime() <= now) {
+            return;
+        }
+        if (revocation.getTokenId() != null) {
+            addToken(revocation.getTokenId(), revocation.getExpireTime().getTime());
+        } else if (revocation.getNotBefore() != null) {
+            addUser(revocation.getUserId(), revocation.getNotBefore().getTime());
+        }
+    }
+
+    /**
+     * 记录 previous 与 next 之间的 id
+     */
+    private void addGap(List<Gap> gaps, int previous, int next, long since) {
+        if (next > previous + 1 && commitLag > 0) {
+            gaps.add(new Gap(previous + 1, next - 1, since));
+        }
+    }
+
+    private static Date getExpiresAt(String token) {
+        try {
+            return JWT.decode(token).getExpiresAt();
+        } catch (JWTDecodeException e) {
+            return null;
+        }
+    }
+
+    private synchronized void addToken(String tokenId, long expireAt) {
+        ensureCapacity();
+        snapshot.addToken(tokenId, expireAt);
+    }
+
+    private synchronized void addUser(Integer userId, long notBefore) {
+        ensureCapacity();
+        snapshot.addUser(userId, notBefore);
+    }
+
+    /**
+     * 超出布隆过滤器的容量时，去掉过期的记录后重建，避免误判率升高
+     */
+    private void ensureCapacity() {
+        Snapshot current = snapshot;
+        if (current.size() < current.capacity) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long userExpire = refreshExpire * 1000;
+        int live = current.size();
+        Snapshot fresh = new Snapshot(Math.max(expectedInsertions, live * 2), fpp);
+        current.tokens.forEach((tokenId, expireAt) -> {
+            if (expireAt > now) {
+                fresh.addToken(tokenId, expireAt);
+            }
+        });
+        current.users.forEach((userId, notBefore) -> {
+            if (notBefore + userExpire > now) {
+                fresh.addUser(userId, notBefore);
+            }
+        });
+        snapshot = fresh;
+    }
+
+    /**
+     * 尚未读到记录的 id 范围
+     */
+    private static class Gap {
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * 发现空隙的时间
+         */
+        private final long since;
+
+        private Gap(int from, int to, long since) {
+            this.from = from;
+            this.to = to;
+            this.since = since;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final int capacity;
+
+        private final BloomFilter filter;
+
+        /**
+         * 令牌摘要 -> 令牌过期时间
+         */
+        private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+
+        /**
+         * 用户id -> 在此时间之前签发的令牌无效
+         */
+        private final Map<Integer, Long> users = new ConcurrentHashMap<>();
+
+        private Snapshot(int capacity, double fpp) {
+            this.capacity = capacity;
+            this.filter = new BloomFilter(capacity, fpp);
+        }
+
+        private int size() {
+            return tokens.size() + users.size();
+        }
+
+        /**
+         * 先写入精确记录再写入过滤器，过滤器命中时一定能查到记录
+         */
+        private void addToken(String tokenId, long expireAt) {
+            tokens.merge(tokenId, expireAt, Math::max);
+            filter.put(tokenId);
+        }
+
+        private void addUser(Integer userId, long notBefore) {
+            users.merge(userId, notBefore, Math::max);
+            filter.put(USER_KEY_PREFIX + userId);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.common.util.TransactionUtil;
+import io.github.talelin.latticy.model.CacheInvalidationDO;
+import io.github.talelin.latticy.model.CacheVersionDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存失效总线
+ * 本节点修改数据后发布失效（递增缓存区域的版本号，并记录失效的用户或分组id），
+ * 定时轮询各缓存区域的版本号，版本号变化时读取新增的失效记录，按键通知所有 CacheInvalidationListener，
+ * 本节点发布的失效已由调用方直接处理，不再通知；失效记录已被清理时使整个区域失效
+ * 其它节点的缓存最迟在一个轮询周期后失效
+ * 单节点部署时无需开启
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    @Value("${lin.cms.cache.invalidation.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 轮询间隔，单位毫秒
+     */
+    @Value("${lin.cms.cache.invalidation.poll-interval:1000}")
+    private long pollInterval;
+
+    @Autowired
+    private InvalidationTransport transport;
+
+    @Autowired
+    private ObjectProvider<CacheInvalidationListener> listeners;
+
+    /**
+     * 节点标识，用于识别本节点发布的失效
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<CacheRegion, RegionState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong pollCount = new AtomicLong();
+
+    private final AtomicLong pollErrorCount = new AtomicLong();
+
+    private final AtomicLong publishCount = new AtomicLong();
+
+    private final AtomicLong publishErrorCount = new AtomicLong();
+
+    private volatile boolean initialized = false;
+
+    private volatile long lastPollTime = 0;
+
+    private volatile long lastPollCost = 0;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        pollQuietly();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 发布整个缓存区域的失效，在当前事务提交后执行
+     *
+     * @param region 缓存区域
+     */
+    public void publish(CacheRegion region) {
+        publish(region, null);
+    }
+
+    /**
+     * 发布单个键的缓存失效，在当前事务提交后执行
+     * 本节点的缓存由调用方直接更新，这里只负责通知其它节点
+     *
+     * @param region 缓存区域
+     * @param key    失效的用户或分组id，为 null 时整个区域失效
+     */
+    public void publish(CacheRegion region, Integer key) {
+        if (!enabled) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                transport.publish(region, key, nodeId);
+                publishCount.incrementAndGet();
+            } catch (Exception e) {
+                publishErrorCount.incrementAndGet();
+                log.error("publish cache invalidation failed, region: " + region + ", key: " + key, e);
+            }
+        });
+    }
+
+    /**
+     * 拉取版本号，版本号变化时读取失效记录并通知监听器
+     * 第一次拉取只记录版本号，不通知
+     */
+    public synchronized void poll() {
+        long start = System.currentTimeMillis();
+        List<CacheVersionDO> versions = transport.fetchVersions();
+        for (CacheVersionDO version : versions) {
+            CacheRegion region;
+            try {
+                region = CacheRegion.valueOf(version.getRegion());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            RegionState state = states.computeIfAbsent(region, it -> new RegionState());
+            if (version.getVersion() <= state.version) {
+                continue;
+            }
+            if (!initialized) {
+                state.version = version.getVersion();
+                continue;
+            }
+            // 先读取失效记录再推进版本，读取失败时下次重试
+            List<CacheInvalidationDO> invalidations =
+                    transport.fetchInvalidations(region, state.version, version.getVersion());
+            boolean complete = invalidations.size() >= version.getVersion() - state.version;
+            state.version = version.getVersion();
+            if (complete) {
+                dispatch(region, invalidations, state);
+            } else {
+                state.regionInvalidationCount++;
+                dispatch(region, null);
+            }
+            long now = System.currentTimeMillis();
+            long lag = version.getUpdateTime() == null ? 0 : Math.max(0, now - version.getUpdateTime().getTime());
+            state.invalidationCount++;
+            state.lastLag = lag;
+            state.maxLag = Math.max(state.maxLag, lag);
+        }
+        initialized = true;
+        pollCount.incrementAndGet();
+        lastPollTime = System.currentTimeMillis();
+        lastPollCost = lastPollTime - start;
+    }
+
+    /**
+     * 获得失效总线的统计信息
+     * lag 为数据修改到本节点缓存失效的时间，staleness 为距上次成功拉取的时间
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("node_id", nodeId);
+        metrics.put("transport", transport.getClass().getSimpleName());
+        metrics.put("poll_interval", pollInterval);
+        metrics.put("poll_count", pollCount.get());
+        metrics.put("poll_error_count", pollErrorCount.get());
+        metrics.put("last_poll_time", lastPollTime);
+        metrics.put("last_poll_cost", lastPollCost);
+        metrics.put("staleness", lastPollTime == 0 ? null : System.currentTimeMillis() - lastPollTime);
+        metrics.put("publish_count", publishCount.get());
+        metrics.put("publish_error_count", publishErrorCount.get());
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (CacheRegion region : CacheRegion.values()) {
+            RegionState state = states.get(region);
+            if (state == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("version", state.version);
+            item.put("invalidation_count", state.invalidationCount);
+            item.put("key_invalidation_count", state.keyInvalidationCount);
+            item.put("region_invalidation_count", state.regionInvalidationCount);
+            item.put("self_skip_count", state.selfSkipCount);
+            item.put("last_lag", state.lastLag);
+            item.put("max_lag", state.maxLag);
+            regions.put(region.name().toLowerCase(), item);
+        }
+        metrics.put("regions", regions);
+        return metrics;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            pollErrorCount.incrementAndGet();
+            log.error("poll cache versions failed", e);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 按失效记录通知监听器，同一个键只通知一次，有整个区域失效的记录时只通知一次整个区域失效
+     */
+    private void dispatch(CacheRegion region, List<CacheInvalidationDO> invalidations, RegionState state) {
+        Set<Integer> keys = new LinkedHashSet<>();
+        for (CacheInvalidationDO invalidation : invalidations) {
+            if (nodeId.equals(invalidation.getNode())) {
+                state.selfSkipCount++;
+                continue;
+            }
+            if (invalidation.getKeyId() == null) {
+                state.regionInvalidationCount++;
+                dispatch(region, null);
+                return;
+            }
+            keys.add(invalidation.getKeyId());
+        }
+        for (Integer key : keys) {
+            state.keyInvalidationCount++;
+            dispatch(region, key);
+        }
+    }
+
+    private void dispatch(CacheRegion region, Integer key) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                if (key == null) {
+                    listener.onInvalidate(region);
+                } else {
+                    listener.onInvalidate(region, key);
+                }
+            } catch (Exception e) {
+                log.error("cache invalidation listener failed, region: " + region + ", key: " + key, e);
+            }
+        });
+    }
+
+    private static class RegionState {
+
+        private volatile long version = 0;
+
+        private volatile long invalidationCount = 0;
+
+        private volatile long keyInvalidationCount = 0;
+
+        private volatile long regionInvalidationCount = 0;
+
+        private volatile long selfSkipCount = 0;
+
+        private volatile long lastLag = 0;
+
+        private volatile long maxLag = 0;
+    }
+}
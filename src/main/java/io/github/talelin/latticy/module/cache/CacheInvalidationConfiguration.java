@@ -0,0 +1,43 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.mapper.CacheInvalidationMapper;
+import io.github.talelin.latticy.mapper.CacheVersionMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * 缓存失效传输方式配置类，通过 lin.cms.cache.invalidation.transport 选择
+ *
+ * @author Juzi@TaleLin
+ */
+@Configuration
+public class CacheInvalidationConfiguration {
+
+    /**
+     * @return 基于数据库的传输方式（默认）
+     */
+    @Bean
+    @Order
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "lin.cms.cache.invalidation", value = "transport", havingValue = "database", matchIfMissing = true)
+    public InvalidationTransport databaseInvalidationTransport(CacheVersionMapper cacheVersionMapper,
+                                                              CacheInvalidationMapper cacheInvalidationMapper,
+                                                              PlatformTransactionManager transactionManager) {
+        return new DatabaseInvalidationTransport(cacheVersionMapper, cacheInvalidationMapper, transactionManager);
+    }
+
+    /**
+     * @return 基于内存的传输方式
+     */
+    @Bean
+    @Order
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "lin.cms.cache.invalidation", value = "transport", havingValue = "memory")
+    public InvalidationTransport inMemoryInvalidationTransport() {
+        return new InMemoryInvalidationTransport();
+    }
+}
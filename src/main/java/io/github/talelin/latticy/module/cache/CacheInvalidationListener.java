@@ -0,0 +1,26 @@
+package io.github.talelin.latticy.module.cache;
+
+/**
+ * 缓存失效监听器，其它节点修改数据后，本节点的缓存通过该接口清理
+ *
+ * @author Juzi@TaleLin
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * 整个缓存区域失效时调用
+     *
+     * @param region 缓存区域
+     */
+    void onInvalidate(CacheRegion region);
+
+    /**
+     * 缓存区域中的单个键失效时调用，默认使整个区域失效
+     *
+     * @param region 缓存区域
+     * @param key    失效的键，USER 区域为用户id，GROUP、PERMISSION 区域为分组id
+     */
+    default void onInvalidate(CacheRegion region, Integer key) {
+        onInvalidate(region);
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.talelin.latticy.module.cache;
+
+/**
+ * 缓存区域，失效在节点间传播时携带区域和键
+ *
+ * @author Juzi@TaleLin
+ */
+public enum CacheRegion {
+    /**
+     * 用户信息、用户所在分组，键为用户id
+     */
+    USER,
+    /**
+     * 分组，键为分组id
+     */
+    GROUP,
+    /**
+     * 分组的权限，键为分组id
+     */
+    PERMISSION,
+    /**
+     * 令牌吊销记录
+     */
+    TOKEN_REVOCATION
+}
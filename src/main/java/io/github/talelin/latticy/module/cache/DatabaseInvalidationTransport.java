@@ -0,0 +1,71 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.mapper.CacheInvalidationMapper;
+import io.github.talelin.latticy.mapper.CacheVersionMapper;
+import io.github.talelin.latticy.model.CacheInvalidationDO;
+import io.github.talelin.latticy.model.CacheVersionDO;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 基于 lin_cache_version、lin_cache_invalidation 表的传输方式，不需要额外的中间件
+ * 递增版本号时锁住该区域的版本行，失效记录在同一事务中写入，
+ * 因此读到某个版本号时，不晚于该版本的失效记录都已可见
+ *
+ * @author Juzi@TaleLin
+ */
+public class DatabaseInvalidationTransport implements InvalidationTransport {
+
+    /**
+     * 每个缓存区域保留的失效记录数，落后更多的节点使整个区域失效
+     */
+    private static final int HISTORY_SIZE = 1000;
+
+    private final CacheVersionMapper cacheVersionMapper;
+
+    private final CacheInvalidationMapper cacheInvalidationMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public DatabaseInvalidationTransport(CacheVersionMapper cacheVersionMapper,
+                                         CacheInvalidationMapper cacheInvalidationMapper,
+                                         PlatformTransactionManager transactionManager) {
+        this.cacheVersionMapper = cacheVersionMapper;
+        this.cacheInvalidationMapper = cacheInvalidationMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 在其它事务提交后调用，需要独立的事务
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void publish(CacheRegion region, Integer key, String node) {
+        transactionTemplate.execute(status -> {
+            cacheVersionMapper.increaseVersion(region.name());
+            long version = cacheVersionMapper.selectById(region.name()).getVersion();
+            CacheInvalidationDO invalidation = CacheInvalidationDO.builder()
+                    .region(region.name())
+                    .version(version)
+                    .keyId(key)
+                    .node(node)
+                    .build();
+            cacheInvalidationMapper.insert(invalidation);
+            if (version > HISTORY_SIZE) {
+                cacheInvalidationMapper.deleteUntilVersion(region.name(), version - HISTORY_SIZE);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<CacheVersionDO> fetchVersions() {
+        return cacheVersionMapper.selectList(null);
+    }
+
+    @Override
+    public List<CacheInvalidationDO> fetchInvalidations(CacheRegion region, long afterVersion, long toVersion) {
+        return cacheInvalidationMapper.selectByVersionRange(region.name(), afterVersion, toVersion);
+    }
+}
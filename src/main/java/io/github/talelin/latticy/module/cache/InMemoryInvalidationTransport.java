@@ -0,0 +1,45 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.model.CacheInvalidationDO;
+import io.github.talelin.latticy.model.CacheVersionDO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 基于内存的传输方式，只在单个进程内有效，供测试使用
+ *
+ * @author Juzi@TaleLin
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+
+    private final Map<CacheRegion, CacheVersionDO> versions = new ConcurrentHashMap<>();
+
+    private final Map<CacheRegion, List<CacheInvalidationDO>> invalidations = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void publish(CacheRegion region, Integer key, String node) {
+        Date now = new Date();
+        CacheVersionDO current = versions.get(region);
+        long version = current == null ? 1 : current.getVersion() + 1;
+        invalidations.computeIfAbsent(region, it -> new ArrayList<>())
+                .add(new CacheInvalidationDO(region.name(), version, key, node, now));
+        versions.put(region, new CacheVersionDO(region.name(), version, now));
+    }
+
+    @Override
+    public List<CacheVersionDO> fetchVersions() {
+        return new ArrayList<>(versions.values());
+    }
+
+    @Override
+    public synchronized List<CacheInvalidationDO> fetchInvalidations(CacheRegion region, long afterVersion, long toVersion) {
+        return invalidations.getOrDefault(region, new ArrayList<>()).stream()
+                .filter(it -> it.getVersion() > afterVersion && it.getVersion() <= toVersion)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.model.CacheInvalidationDO;
+import io.github.talelin.latticy.model.CacheVersionDO;
+
+import java.util.List;
+
+/**
+ * 缓存失效的传输方式
+ * 每个缓存区域有一个单调递增的版本号，修改数据的节点递增版本号，并记录该版本失效的键，
+ * 其它节点轮询版本号，发现变化后按失效记录清理本地缓存
+ *
+ * @author Juzi@TaleLin
+ */
+public interface InvalidationTransport {
+
+    /**
+     * 递增缓存区域的版本号，并记录该版本失效的键
+     * 版本号与失效记录要么都可见，要么都不可见
+     *
+     * @param region 缓存区域
+     * @param key    失效的用户或分组id，为 null 时整个区域失效
+     * @param node   发布失效的节点
+     */
+    void publish(CacheRegion region, Integer key, String node);
+
+    /**
+     * 获得所有缓存区域当前的版本号
+     *
+     * @return 版本号
+     */
+    List<CacheVersionDO> fetchVersions();
+
+    /**
+     * 获得缓存区域在版本范围内的失效记录
+     * 较早的记录可能已被清理，返回的条数少于版本差时，调用方应使整个区域失效
+     *
+     * @param region       缓存区域
+     * @param afterVersion 起始版本（不含）
+     * @param toVersion    结束版本（含）
+     * @return 失效记录，按版本升序
+     */
+    List<CacheInvalidationDO> fetchInvalidations(CacheRegion region, long afterVersion, long toVersion);
+}
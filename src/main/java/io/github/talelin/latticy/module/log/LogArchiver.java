@@ -0,0 +1,265 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.mapper.LogArchiveMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日志归档任务
+ * 定时把热表 lin_log 中早于 hot-days 天的日志按 create_time 所在月份移入归档表 lin_log_yyyyMM，
+ * 每批复制、删除 batch-size 条，在同一个事务中完成，批次之间暂停 batch-pause 毫秒，避免长时间占用热表
+ * 保留 retention-months 个月的归档表，更早的归档表整表删除，为 0 时不删除
+ * 归档表使用 MySQL 的 CREATE TABLE ... LIKE 创建；多节点部署时只需在一个节点开启
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class LogArchiver {
+
+    @Autowired
+    private LogArchiveMapper logArchiveMapper;
+
+    @Autowired
+    private LogPartitions logPartitions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${lin.cms.log.archive.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 热表保留的天数
+     */
+    @Value("${lin.cms.log.archive.hot-days:90}")
+    private int hotDays;
+
+    /**
+     * 归档表保留的月数，为 0 时不删除
+     */
+    @Value("${lin.cms.log.archive.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${lin.cms.log.archive.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 批次之间的暂停时间，单位毫秒
+     */
+    @Value("${lin.cms.log.archive.batch-pause:100}")
+    private long batchPause;
+
+    /**
+     * 执行间隔，单位毫秒
+     */
+    @Value("${lin.cms.log.archive.interval:3600000}")
+    private long interval;
+
+    private final AtomicLong runCount = new AtomicLong();
+
+    private final AtomicLong runErrorCount = new AtomicLong();
+
+    private final AtomicLong movedCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong droppedTableCount = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private volatile String currentTable;
+
+    private volatile long currentMoved = 0;
+
+    private volatile long lastRunTime = 0;
+
+    private volatile long lastRunCost = 0;
+
+    private volatile String lastError;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一次归档和过期归档表的删除
+     */
+    public synchronized void run() {
+        long start = System.currentTimeMillis();
+        running = true;
+        currentMoved = 0;
+        try {
+            Date cutoff = Date.from(LocalDate.now().minusDays(hotDays).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            archiveBefore(cutoff);
+            dropExpired();
+            lastError = null;
+        } finally {
+            running = false;
+            currentTable = null;
+            runCount.incrementAndGet();
+            lastRunTime = start;
+            lastRunCost = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * 获得归档任务的保留策略与进度
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("hot_days", hotDays);
+        metrics.put("retention_months", retentionMonths);
+        metrics.put("batch_size", batchSize);
+        metrics.put("interval", interval);
+        metrics.put("running", running);
+        metrics.put("current_table", currentTable);
+        metrics.put("current_moved", currentMoved);
+        metrics.put("run_count", runCount.get());
+        metrics.put("run_error_count", runErrorCount.get());
+        metrics.put("moved_count", movedCount.get());
+        metrics.put("batch_count", batchCount.get());
+        metrics.put("dropped_table_count", droppedTableCount.get());
+        metrics.put("last_run_time", lastRunTime);
+        metrics.put("last_run_cost", lastRunCost);
+        metrics.put("last_error", lastError);
+        List<String> tables = new ArrayList<>();
+        for (YearMonth month : logPartitions.getMonths()) {
+            tables.add(LogPartitions.tableOf(month));
+        }
+        metrics.put("archive_tables", tables);
+        return metrics;
+    }
+
+    private void archiveBefore(Date cutoff) {
+        // 不移动 id 最大的日志，避免热表清空后 InnoDB 重启时自增 id 回退，与归档表中的 id 重复
+        // 之后写入的日志都晚于 cutoff，每次执行只需查询一次
+        Integer maxId = logArchiveMapper.selectMaxId();
+        if (maxId == null) {
+            return;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            Date oldest = logArchiveMapper.selectOldestCreateTime(cutoff);
+            if (oldest == null) {
+                return;
+            }
+            YearMonth month = LogPartitions.monthOf(oldest);
+            Date from = LogPartitions.startOf(month);
+            Date next = LogPartitions.startOf(month.plusMonths(1));
+            Date to = next.before(cutoff) ? next : cutoff;
+            String table = LogPartitions.tableOf(month);
+            logArchiveMapper.createArchiveTable(table);
+            logPartitions.add(month);
+            currentTable = table;
+            if (!moveMonth(table, from, to, maxId - 1)) {
+                // 只剩 id 最大的一条日志
+                return;
+            }
+        }
+    }
+
+    /**
+     * 分批移动一个月的日志
+     * 日志 id 随时间递增，先查出这个月最大的 id，之后沿主键从上一批的位置继续，不重复扫描已处理的范围
+     *
+     * @param toId 允许移动的最大 id
+     * @return 是否移动了日志
+     */
+    private boolean moveMonth(String table, Date from, Date to, int toId) {
+        Integer lastId = logArchiveMapper.selectLastIdInRange(from, to);
+        if (lastId == null) {
+            return false;
+        }
+        int endId = Math.min(lastId, toId);
+        int afterId = 0;
+        boolean moved = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Integer> ids = logArchiveMapper.selectIdsToArchive(from, to, afterId, endId, batchSize);
+            if (ids.isEmpty()) {
+                return moved;
+            }
+            afterId = ids.get(ids.size() - 1);
+            transactionTemplate.execute(status -> {
+                logArchiveMapper.copyToArchive(table, ids);
+                logArchiveMapper.deleteArchived(ids);
+                return null;
+            });
+            moved = true;
+            movedCount.addAndGet(ids.size());
+            batchCount.incrementAndGet();
+            currentMoved += ids.size();
+            try {
+                TimeUnit.MILLISECONDS.sleep(batchPause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return moved;
+    }
+
+    private void dropExpired() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldest = YearMonth.now().minusMonths(retentionMonths);
+        for (YearMonth month : logPartitions.getMonths()) {
+            if (!month.isBefore(oldest)) {
+                continue;
+            }
+            String table = LogPartitions.tableOf(month);
+            logArchiveMapper.dropArchiveTable(table);
+            logPartitions.remove(month);
+            droppedTableCount.incrementAndGet();
+            log.info("dropped expired log archive table {}", table);
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (Exception e) {
+            runErrorCount.incrementAndGet();
+            lastError = e.getMessage();
+            log.error("archive logs failed", e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package io.github.talelin.latticy.module.log;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.github.talelin.latticy.model.LogDO;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+
+/**
+ * 日志导出的写入器
+ * 作为 ResultHandler 逐行接收数据库读出的日志，写入后即丢弃，内存占用与导出的条数无关；
+ * 每写入 FLUSH_ROWS 条刷新一次，客户端可以持续收到数据
+ * 字段与接口返回的日志一致，额外包含 create_time
+ *
+ * @author Juzi@TaleLin
+ */
+public class LogExportWriter implements ResultHandler<LogDO> {
+
+    private static final int FLUSH_ROWS = 1000;
+
+    private static final String[] COLUMNS = {"id", "message", "user_id", "username", "status_code",
+            "method", "path", "permission", "create_time"};
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 电子表格视为公式的首字符
+     */
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+
+        CSV("text/csv;charset=UTF-8", "csv"),
+
+        NDJSON("application/x-ndjson;charset=UTF-8", "ndjson");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 按名称查找格式，不区分大小写
+         *
+         * @param name 名称
+         * @return 格式，不支持时返回 null
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Format format;
+
+    private final Writer writer;
+
+    private final JsonGenerator generator;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    private long count = 0;
+
+    public LogExportWriter(Format format, OutputStream out) throws IOException {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.NDJSON) {
+            generator = JSON_FACTORY.createGenerator(writer);
+            generator.setRootValueSeparator(null);
+            // 由调用方关闭输出流
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        } else {
+            generator = null;
+            // BOM 使 Excel 以 UTF-8 打开
+            writer.write('\uFEFF');
+            writeCsvRow(COLUMNS);
+        }
+    }
+
+    @Override
+    public void handleResult(ResultContext<? extends LogDO> context) {
+        try {
+            write(context.getResultObject());
+        } catch (IOException e) {
+            // 通常是客户端断开了连接，抛出以停止读取结果集
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写入一条日志
+     *
+     * @param record 日志
+     */
+    public void write(LogDO record) throws IOException {
+        String createTime = record.getCreateTime() == null ? null : dateFormat.format(record.getCreateTime());
+        if (format == Format.NDJSON) {
+            generator.writeStartObject();
+            writeNumberField("id", record.getId());
+            generator.writeStringField("message", record.getMessage());
+            writeNumberField("user_id", record.getUserId());
+            generator.writeStringField("username", record.getUsername());
+            writeNumberField("status_code", record.getStatusCode());
+            generator.writeStringField("method", record.getMethod());
+            generator.writeStringField("path", record.getPath());
+            generator.writeStringField("permission", record.getPermission());
+            generator.writeStringField("create_time", createTime);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } else {
+            writeCsvRow(new String[]{
+                    toString(record.getId()), record.getMessage(), toString(record.getUserId()), record.getUsername(),
+                    toString(record.getStatusCode()), record.getMethod(), record.getPath(), record.getPermission(),
+                    createTime
+            });
+        }
+        if (++count % FLUSH_ROWS == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * 写出缓冲的数据，导出结束时调用
+     */
+    public void flush() throws IOException {
+        if (generator != null) {
+            generator.flush();
+        } else {
+            writer.flush();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void writeNumberField(String name, Integer value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private void writeCsvRow(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvField(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 按 RFC 4180 转义，包含逗号、引号或换行的字段用引号包围，引号写两次
+     * 以 = + - @ 等开头的字段会被 Excel 当作公式执行，在前面加上 ' 使其按文本显示
+     */
+    private void writeCsvField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.talelin.latticy.module.log;
+
+/**
+ * 行为日志队列已满时的处理策略
+ *
+ * @author Juzi@TaleLin
+ */
+public enum LogOverflowPolicy {
+    /**
+     * 阻塞请求线程等待队列有空位，超过最长等待时间后丢弃
+     */
+    BLOCK,
+    /**
+     * 丢弃新日志
+     */
+    DROP,
+    /**
+     * 追加到本地文件，服务重启时重新写入数据库
+     */
+    SPILL
+}
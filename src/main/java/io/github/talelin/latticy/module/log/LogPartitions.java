@@ -0,0 +1,169 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.mapper.LogArchiveMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 日志表的分区路由
+ * lin_log 为热表，LogArchiver 把早于 hot-days 的日志按月移入归档表 lin_log_yyyyMM，
+ * 查询时按 start、end 只选择时间范围有重叠的归档表；热表中可能有尚未归档的旧日志，总是参与查询
+ * 归档表列表定时从数据库刷新，其它节点创建的归档表最迟在一个刷新周期后可见
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class LogPartitions {
+
+    public static final String HOT_TABLE = "lin_log";
+
+    private static final String ARCHIVE_PREFIX = HOT_TABLE + "_";
+
+    private static final Pattern ARCHIVE_TABLE = Pattern.compile(ARCHIVE_PREFIX + "\\d{6}");
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired
+    private LogArchiveMapper logArchiveMapper;
+
+    /**
+     * 归档表列表的刷新间隔，单位毫秒
+     */
+    @Value("${lin.cms.log.archive.refresh-interval:60000}")
+    private long refreshInterval;
+
+    /**
+     * 已有的归档月份，按时间倒序
+     */
+    private volatile List<YearMonth> months = Collections.emptyList();
+
+    private volatile long refreshTime = 0;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 选择与时间范围有重叠的表
+     *
+     * @param start 开始时间，为 null 时不限
+     * @param end   结束时间，为 null 时不限
+     * @return 表名，热表在前，归档表按时间倒序
+     */
+    public List<String> route(Date start, Date end) {
+        if (System.currentTimeMillis() - refreshTime >= refreshInterval) {
+            refresh();
+        }
+        List<String> tables = new ArrayList<>();
+        tables.add(HOT_TABLE);
+        // 与日志查询一致，start、end 都有值时才按时间过滤
+        boolean ranged = start != null && end != null;
+        for (YearMonth month : months) {
+            if (ranged && !overlaps(month, start, end)) {
+                continue;
+            }
+            tables.add(tableOf(month));
+        }
+        return tables;
+    }
+
+    /**
+     * 从数据库刷新归档表列表，失败时保留原来的列表
+     */
+    public synchronized void refresh() {
+        List<YearMonth> found = new ArrayList<>();
+        try {
+            for (String table : logArchiveMapper.selectArchiveTables()) {
+                if (ARCHIVE_TABLE.matcher(table).matches()) {
+                    found.add(YearMonth.parse(table.substring(ARCHIVE_PREFIX.length()), MONTH_FORMAT));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("refresh log archive tables failed: {}", e.getMessage());
+            refreshTime = System.currentTimeMillis();
+            return;
+        }
+        found.sort(Comparator.reverseOrder());
+        months = Collections.unmodifiableList(found);
+        refreshTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录新建的归档表
+     *
+     * @param month 月份
+     */
+    public synchronized void add(YearMonth month) {
+        if (months.contains(month)) {
+            return;
+        }
+        List<YearMonth> updated = new ArrayList<>(months);
+        updated.add(month);
+        updated.sort(Comparator.reverseOrder());
+        months = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * 移除已删除的归档表
+     *
+     * @param month 月份
+     */
+    public synchronized void remove(YearMonth month) {
+        List<YearMonth> updated = new ArrayList<>(months);
+        updated.remove(month);
+        months = Collections.unmodifiableList(updated);
+    }
+
+    public List<YearMonth> getMonths() {
+        return months;
+    }
+
+    /**
+     * 月份对应的归档表名
+     *
+     * @param month 月份
+     * @return 表名
+     */
+    public static String tableOf(YearMonth month) {
+        return ARCHIVE_PREFIX + month.format(MONTH_FORMAT);
+    }
+
+    /**
+     * 时间所在的月份，与日志的 create_time 一样使用服务器时区
+     *
+     * @param date 时间
+     * @return 月份
+     */
+    public static YearMonth monthOf(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZoneId.systemDefault()));
+    }
+
+    /**
+     * 月份的开始时间
+     *
+     * @param month 月份
+     * @return 该月第一天零点
+     */
+    public static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static boolean overlaps(YearMonth month, Date start, Date end) {
+        return !startOf(month).after(end) && startOf(month.plusMonths(1)).after(start);
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.talelin.latticy.module.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界无锁环形队列，多个生产者、单个消费者
+ * 生产者通过 CAS 领取序号后写入对应的槽，消费者按序号顺序读取，读到尚未写入的槽时停止，
+ * 入队不加锁也不分配节点，请求线程入队的开销只有一次 CAS
+ *
+ * @param <T> 元素
+ * @author Juzi@TaleLin
+ */
+public class LogRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    /**
+     * 下一个领取的序号
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 下一个读取的序号，只有消费者修改
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 入队，可以在任意线程调用
+     *
+     * @param item 元素，不能为 null
+     * @return 队列已满时返回 false
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) (sequence & mask), item);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 出队，只能在消费者线程调用
+     *
+     * @param consumer 元素的处理
+     * @param max      最多出队的元素数
+     * @return 出队的元素数
+     */
+    public int drain(Consumer<T> consumer, int max) {
+        long sequence = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (sequence & mask);
+            T item = slots.get(index);
+            if (item == null) {
+                // 队列为空，或者生产者已领取序号但还未写入
+                break;
+            }
+            slots.lazySet(index, null);
+            sequence++;
+            head = sequence;
+            consumer.accept(item);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 获得队列中的元素数（包括已领取序号但还未写入的）
+     *
+     * @return 元素数
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,404 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.mapper.LogMapper;
+import io.github.talelin.latticy.model.LogDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日志消息的二元组（bigram）倒排索引
+ * 消息转为小写后按相邻两个字符切分，每个二元组对应一个压缩的日志 id 列表，
+ * 搜索时对关键字的所有二元组求交集得到候选 id，再由数据库按 id 查询并以 LIKE 校验，
+ * 避免每次搜索都扫描整张日志表
+ * 索引只从数据库按 id 顺序读取日志：启动时在后台线程中读取归档表和日志表，之后每隔 catch-up-interval 毫秒
+ * 读取 scannedId 之后的新日志，因此其它节点写入的日志同样会被索引（归档只移动日志，id 不变）；
+ * 读取时跳过的 id（id 较小、提交较晚的日志，或回滚留下的空隙）在 commit-lag 毫秒内每次重新读取，
+ * 搜索时 indexedId 停在最小的空隙之前，空隙中的日志由数据库以 LIKE 扫描，与候选 id 合并，见 {@link Candidates}
+ * 构建完成前以及以下情况仍使用 LIKE 扫描：关键字少于两个字符、包含 LIKE 通配符、候选 id 超过 max-candidates
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class LogSearchIndex {
+
+    /**
+     * 二元组由两个 char 拼成一个 int
+     */
+    private final Map<Integer, PostingList> postings = new ConcurrentHashMap<>();
+
+    private final AtomicLong documentCount = new AtomicLong();
+
+    private final AtomicLong searchCount = new AtomicLong();
+
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    private final AtomicLong candidateCount = new AtomicLong();
+
+    private final AtomicLong catchUpCount = new AtomicLong();
+
+    private final AtomicLong catchUpErrorCount = new AtomicLong();
+
+    @Autowired
+    private LogMapper logMapper;
+
+    @Autowired
+    private LogPartitions logPartitions;
+
+    @Value("${lin.cms.log.search-index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 构建时每次从日志表读取的条数
+     */
+    @Value("${lin.cms.log.search-index.build-batch-size:5000}")
+    private int buildBatchSize;
+
+    /**
+     * 候选 id 的最大数量，超过时关键字的区分度太低，直接扫描日志表
+     */
+    @Value("${lin.cms.log.search-index.max-candidates:5000}")
+    private int maxCandidates;
+
+    /**
+     * 读取新日志的间隔，单位毫秒
+     */
+    @Value("${lin.cms.log.search-index.catch-up-interval:1000}")
+    private long catchUpInterval;
+
+    /**
+     * 跳过的 id 等待提交的时间，单位毫秒，须大于写入日志的事务的最长提交时间
+     */
+    @Value("${lin.cms.log.search-index.commit-lag:10000}")
+    private long commitLag;
+
+    /**
+     * 已读取的日志表的最大 id
+     */
+    private volatile int scannedId = 0;
+
+    /**
+     * scannedId 之前尚未读到日志的 id 范围，按 id 升序
+     */
+    private volatile List<Gap> gaps = new ArrayList<>();
+
+    /**
+     * 该 id 及之前的日志都已索引，之后的日志以 LIKE 扫描
+     */
+    private volatile int indexedId = 0;
+
+    private volatile boolean ready = false;
+
+    private volatile long buildTime = 0;
+
+    private volatile long buildCost = 0;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 单线程执行，构建完成后才开始读取新日志
+        scheduler.execute(this::build);
+        scheduler.scheduleWithFixedDelay(this::catchUpQuietly, catchUpInterval, catchUpInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 构建索引，先按时间顺序读取归档表，再读取日志表，日志按 id 递增的顺序加入
+     */
+    public void build() {
+        long start = System.currentTimeMillis();
+        try {
+            List<String> archives = new ArrayList<>(logPartitions.route(null, null));
+            archives.remove(LogPartitions.HOT_TABLE);
+            Collections.reverse(archives);
+            for (String table : archives) {
+                int lastId = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    List<LogDO> records = logMapper.selectMessagesAfter(table, lastId, buildBatchSize);
+                    if (records.isEmpty()) {
+                        break;
+                    }
+                    for (LogDO record : records) {
+                        add(record.getId(), record.getMessage());
+                    }
+                    lastId = records.get(records.size() - 1).getId();
+                }
+            }
+            catchUp();
+        } catch (Exception e) {
+            log.error("build log search index failed, search will scan the log table", e);
+            return;
+        }
+        buildCost = System.currentTimeMillis() - start;
+        buildTime = System.currentTimeMillis();
+        ready = !Thread.currentThread().isInterrupted();
+        log.info("built log search index of {} logs and {} terms in {}ms", documentCount.get(), postings.size(), buildCost);
+    }
+
+    /**
+     * 索引空隙中新提交的日志以及日志表中 scannedId 之后的日志
+     * 不依赖 create_time 判断是否已提交：它是请求的时间，重放的日志可能早于任意时间
+     */
+    public synchronized void catchUp() {
+        long now = System.currentTimeMillis();
+        List<Gap> remaining = new ArrayList<>();
+        for (Gap gap : gaps) {
+            // 超过 commit-lag 仍未读到的 id 视为回滚或未使用
+            if (now - gap.since > commitLag) {
+                continue;
+            }
+            int last = gap.from - 1;
+            for (LogDO record : logMapper.selectMessagesBetween(gap.from - 1, gap.to)) {
+                add(record.getId(), record.getMessage());
+                addGap(remaining, last, record.getId(), gap.since);
+                last = record.getId();
+            }
+            addGap(remaining, last, gap.to + 1, gap.since);
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<LogDO> records = logMapper.selectMessagesAfter(LogPartitions.HOT_TABLE, scannedId, buildBatchSize);
+                for (LogDO record : records) {
+                    add(record.getId(), record.getMessage());
+                    // 启动时日志表的第一条日志之前是已归档的日志
+                    if (scannedId > 0) {
+                        addGap(remaining, scannedId, record.getId(), now);
+                    }
+                    scannedId = record.getId();
+                }
+                if (records.size() < buildBatchSize) {
+                    break;
+                }
+            }
+        } finally {
+            gaps = remaining;
+            indexedId = remaining.isEmpty() ? scannedId : remaining.get(0).from - 1;
+        }
+    }
+
+    /**
+     * 查询包含关键字的候选日志 id
+     * 候选 id 是包含关键字所有二元组的日志，可能包含不含关键字的日志，须再以 LIKE 校验
+     *
+     * @param keyword 关键字
+     * @return 候选 id 以及尚未索引的 id 范围，无法使用索引时返回 null
+     */
+    public Candidates search(String keyword) {
+        if (!ready || keyword == null || keyword.length() < 2
+                || keyword.indexOf('%') >= 0 || keyword.indexOf('_') >= 0 || keyword.indexOf('\\') >= 0) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        // 先读取 indexedId，之后计算的候选 id 至少包含 indexedId 之前的所有日志
+        int indexed = indexedId;
+        List<PostingList> lists = new ArrayList<>();
+        for (int term : terms(keyword)) {
+            PostingList list = postings.get(term);
+            if (list == null) {
+                searchCount.incrementAndGet();
+                return new Candidates(new ArrayList<>(), indexed);
+            }
+            lists.add(list);
+        }
+        // 以最短的列表驱动求交集，其它列表按跳转点前进，候选 id 超过 max-candidates 时立即放弃
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        if (lists.size() == 1 && lists.get(0).size() > maxCandidates) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        PostingList.Cursor driver = lists.get(0).cursor();
+        List<PostingList.Cursor> others = new ArrayList<>(lists.size() - 1);
+        for (int i = 1; i < lists.size(); i++) {
+            others.add(lists.get(i).cursor());
+        }
+        List<Integer> ids = new ArrayList<>();
+        int id = driver.next();
+        candidates:
+        while (id >= 0) {
+            for (PostingList.Cursor other : others) {
+                int found = other.advance(id);
+                if (found < 0) {
+                    break candidates;
+                }
+                if (found > id) {
+                    id = driver.advance(found);
+                    continue candidates;
+                }
+            }
+            ids.add(id);
+            if (ids.size() > maxCandidates) {
+                fallbackCount.incrementAndGet();
+                return null;
+            }
+            id = driver.next();
+        }
+        searchCount.incrementAndGet();
+        candidateCount.addAndGet(ids.size());
+        return new Candidates(ids, indexed);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 获得索引统计信息，bytes 为倒排列表编码后的字节数，不含哈希表本身的开销，
+     * 构建期间写入的日志可能在 document_count 中计入两次
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long entries = 0;
+        long bytes = 0;
+        for (PostingList list : postings.values()) {
+            entries += list.size();
+            bytes += list.bytes();
+        }
+        long searches = searchCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", ready);
+        metrics.put("document_count", documentCount.get());
+        metrics.put("term_count", postings.size());
+        metrics.put("posting_count", entries);
+        metrics.put("bytes", bytes);
+        metrics.put("bytes_per_posting", entries == 0 ? 0D : (double) bytes / entries);
+        metrics.put("build_time", buildTime);
+        metrics.put("build_cost", buildCost);
+        metrics.put("indexed_id", indexedId);
+        metrics.put("scanned_id", scannedId);
+        metrics.put("gap_count", gaps.size());
+        metrics.put("catch_up_count", catchUpCount.get());
+        metrics.put("catch_up_error_count", catchUpErrorCount.get());
+        metrics.put("search_count", searches);
+        metrics.put("fallback_count", fallbackCount.get());
+        metrics.put("avg_candidates", searches == 0 ? 0D : (double) candidateCount.get() / searches);
+        metrics.put("max_candidates", maxCandidates);
+        return metrics;
+    }
+
+    private void catchUpQuietly() {
+        if (!ready) {
+            return;
+        }
+        try {
+            catchUp();
+            catchUpCount.incrementAndGet();
+        } catch (Exception e) {
+            catchUpErrorCount.incrementAndGet();
+            log.warn("catch up log search index failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录 previous 与 next 之间的 id，commit-lag 为 0 时不等待
+     */
+    private void addGap(List<Gap> gaps, int previous, int next, long since) {
+        if (next > previous + 1 && commitLag > 0) {
+            gaps.add(new Gap(previous + 1, next - 1, since));
+        }
+    }
+
+    private void add(Integer id, String message) {
+        if (id == null || message == null || message.length() < 2) {
+            return;
+        }
+        for (int term : terms(message)) {
+            postings.computeIfAbsent(term, it -> new PostingList()).add(id);
+        }
+        documentCount.incrementAndGet();
+    }
+
+    /**
+     * 切分二元组，与 MySQL 的 general_ci 排序规则一样不区分大小写
+     */
+    private static Set<Integer> terms(String text) {
+        String lower = text.toLowerCase();
+        Set<Integer> terms = new HashSet<>();
+        for (int i = 0; i + 1 < lower.length(); i++) {
+            terms.add(lower.charAt(i) << 16 | lower.charAt(i + 1));
+        }
+        return terms;
+    }
+
+    /**
+     * 尚未读到日志的 id 范围
+     */
+    private static class Gap {
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * 发现空隙的时间
+         */
+        private final long since;
+
+        private Gap(int from, int to, long since) {
+            this.from = from;
+            this.to = to;
+            this.since = since;
+        }
+    }
+
+    /**
+     * 搜索的候选日志
+     * 日志表中 id 不大于 indexedId 的日志只需查询 ids，大于 indexedId 的日志尚未索引，须以 LIKE 扫描
+     */
+    public static class Candidates {
+
+        private final List<Integer> ids;
+
+        private final int indexedId;
+
+        public Candidates(List<Integer> ids, int indexedId) {
+            this.ids = ids;
+            this.indexedId = indexedId;
+        }
+
+        /**
+         * @return 升序的候选 id
+         */
+        public List<Integer> getIds() {
+            return ids;
+        }
+
+        public int getIndexedId() {
+            return indexedId;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.talelin.latticy.module.log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.talelin.latticy.model.LogDO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 行为日志的本地溢出文件
+ * 队列已满或者写入数据库失败的日志以 json 行追加到文件中，服务启动时读出并重新写入数据库
+ * 进程崩溃时最后一行可能不完整，读取时跳过无法解析的行
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class LogSpillFile {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path path;
+
+    public LogSpillFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * 追加日志
+     *
+     * @param records 日志
+     * @throws IOException 写入文件失败
+     */
+    public synchronized void append(Collection<LogDO> records) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (LogDO record : records) {
+                writer.write(toJson(record));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * 读出所有日志
+     *
+     * @return 日志，文件不存在时为空
+     * @throws IOException 读取文件失败
+     */
+    public synchronized List<LogDO> readAll() throws IOException {
+        List<LogDO> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    records.add(fromJson(MAPPER.readTree(line)));
+                } catch (IOException e) {
+                    log.warn("skip broken line in log spill file {}: {}", path, e.getMessage());
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 用剩余的日志替换文件内容，没有剩余日志时删除文件
+     *
+     * @param records 剩余的日志
+     * @throws IOException 写入文件失败
+     */
+    public synchronized void replace(Collection<LogDO> records) throws IOException {
+        if (records.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (LogDO record : records) {
+                writer.write(toJson(record));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * BaseModel 的时间字段不参与 json 序列化，手动写出
+     */
+    private static String toJson(LogDO record) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("message", record.getMessage());
+        node.put("user_id", record.getUserId());
+        node.put("username", record.getUsername());
+        node.put("status_code", record.getStatusCode());
+        node.put("method", record.getMethod());
+        node.put("path", record.getPath());
+        node.put("permission", record.getPermission());
+        if (record.getCreateTime() != null) {
+            node.put("create_time", record.getCreateTime().getTime());
+        }
+        return node.toString();
+    }
+
+    private static LogDO fromJson(JsonNode node) {
+        LogDO record = LogDO.builder()
+                .message(text(node, "message"))
+                .userId(number(node, "user_id"))
+                .username(text(node, "username"))
+                .statusCode(number(node, "status_code"))
+                .method(text(node, "method"))
+                .path(text(node, "path"))
+                .permission(text(node, "permission"))
+                .build();
+        if (node.hasNonNull("create_time")) {
+            record.setCreateTime(new Date(node.get("create_time").asLong()));
+        }
+        return record;
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static Integer number(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asInt() : null;
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 预编译的行为日志模板
+ * 模板如 "{user.username}修改了密码"，编译时拆分为文本片段和占位符片段，
+ * 占位符的 getter 在编译时解析为 MethodHandle，渲染时只需一次遍历追加到 StringBuilder，
+ * 无需正则匹配、字符串替换和反射查找方法
+ * 支持的占位符：user.*（principal 中有值的属性不查询完整的用户信息）、request.*、response.*，
+ * 无法解析的占位符渲染为空字符串
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class LogTemplate {
+
+    /**
+     * principal 中有的属性，无需查询完整的用户信息
+     */
+    private static final Set<String> PRINCIPAL_PROPERTIES = new HashSet<>(Arrays.asList("id", "username", "nickname", "avatar"));
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final String template;
+
+    private final Segment[] segments;
+
+    /**
+     * 渲染结果的预估长度
+     */
+    private final int estimatedLength;
+
+    private LogTemplate(String template, Segment[] segments) {
+        this.template = template;
+        this.segments = segments;
+        this.estimatedLength = template.length() + 16 * segments.length;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template 模板
+     * @return 编译后的模板
+     */
+    public static LogTemplate compile(String template) {
+        List<Segment> segments = new ArrayList<>();
+        int from = 0;
+        while (from < template.length()) {
+            int open = template.indexOf('{', from);
+            int close = open < 0 ? -1 : template.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            if (open > from) {
+                segments.add(new Text(template.substring(from, open)));
+            }
+            segments.add(placeholder(template.substring(open + 1, close)));
+            from = close + 1;
+        }
+        if (from < template.length()) {
+            segments.add(new Text(template.substring(from)));
+        }
+        return new LogTemplate(template, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param principal 当前用户的简要信息
+     * @param user      完整的用户信息，principal 中没有的属性才会获取
+     * @param request   请求
+     * @param response  响应
+     * @return 日志消息
+     */
+    public String render(PrincipalBO principal, Supplier<UserDO> user,
+                         HttpServletRequest request, HttpServletResponse response) {
+        StringBuilder out = new StringBuilder(estimatedLength);
+        for (Segment segment : segments) {
+            segment.append(out, principal, user, request, response);
+        }
+        return out.toString();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    private static Segment placeholder(String item) {
+        int i = item.lastIndexOf('.');
+        if (i < 0) {
+            log.warn("unknown placeholder {} in log template", item);
+            return Text.EMPTY;
+        }
+        String obj = item.substring(0, i);
+        String prop = item.substring(i + 1);
+        switch (obj) {
+            case "user":
+                return new UserProperty(
+                        PRINCIPAL_PROPERTIES.contains(prop) ? accessor(PrincipalBO.class, prop) : null,
+                        accessor(UserDO.class, prop));
+            case "request":
+                return new Property(Source.REQUEST, accessor(HttpServletRequest.class, prop));
+            case "response":
+                return new Property(Source.RESPONSE, accessor(HttpServletResponse.class, prop));
+            default:
+                log.warn("unknown placeholder {} in log template", item);
+                return Text.EMPTY;
+        }
+    }
+
+    /**
+     * 解析 getter，接口类型包括父接口中的方法
+     *
+     * @return 类型为 (Object)Object 的 MethodHandle，没有该属性时返回 null
+     */
+    private static MethodHandle accessor(Class<?> type, String prop) {
+        if (prop.isEmpty()) {
+            return null;
+        }
+        String name = Character.toUpperCase(prop.charAt(0)) + prop.substring(1);
+        for (String prefix : new String[]{"get", "is"}) {
+            try {
+                Method method = type.getMethod(prefix + name);
+                return MethodHandles.publicLookup().unreflect(method).asType(ACCESSOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException ignored) {
+                // 尝试下一个前缀
+            }
+        }
+        log.warn("{} has no property {} for log template", type.getSimpleName(), prop);
+        return null;
+    }
+
+    private static Object invoke(MethodHandle accessor, Object target) {
+        if (accessor == null || target == null) {
+            return null;
+        }
+        try {
+            return (Object) accessor.invokeExact(target);
+        } catch (Throwable e) {
+            log.warn("read property for log template failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void appendValue(StringBuilder out, Object value) {
+        if (value != null) {
+            out.append(value);
+        }
+    }
+
+    private enum Source {
+        REQUEST,
+        RESPONSE
+    }
+
+    private interface Segment {
+
+        void append(StringBuilder out, PrincipalBO principal, Supplier<UserDO> user,
+                    HttpServletRequest request, HttpServletResponse response);
+    }
+
+    private static class Text implements Segment {
+
+        private static final Text EMPTY = new Text("");
+
+        private final String text;
+
+        private Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void append(StringBuilder out, PrincipalBO principal, Supplier<UserDO> user,
+                           HttpServletRequest request, HttpServletResponse response) {
+            out.append(text);
+        }
+    }
+
+    private static class UserProperty implements Segment {
+
+        private final MethodHandle principalAccessor;
+
+        private final MethodHandle userAccessor;
+
+        private UserProperty(MethodHandle principalAccessor, MethodHandle userAccessor) {
+            this.principalAccessor = principalAccessor;
+            this.userAccessor = userAccessor;
+        }
+
+        @Override
+        public void append(StringBuilder out, PrincipalBO principal, Supplier<UserDO> user,
+                           HttpServletRequest request, HttpServletResponse response) {
+            if (principal == null) {
+                return;
+            }
+            // 令牌中未携带昵称、头像时，principal 中对应的属性为 null
+            Object value = invoke(principalAccessor, principal);
+            if (value == null && userAccessor != null) {
+                value = invoke(userAccessor, user.get());
+            }
+            appendValue(out, value);
+        }
+    }
+
+    private static class Property implements Segment {
+
+        private final Source source;
+
+        private final MethodHandle accessor;
+
+        private Property(Source source, MethodHandle accessor) {
+            this.source = source;
+            this.accessor = accessor;
+        }
+
+        @Override
+        public void append(StringBuilder out, PrincipalBO principal, Supplier<UserDO> user,
+                           HttpServletRequest request, HttpServletResponse response) {
+            appendValue(out, invoke(accessor, source == Source.REQUEST ? request : response));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.core.annotation.Logger;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 行为日志模板登记表
+ * 在控制器 bean 初始化后扫描 @Logger 注解，启动时编译所有模板，请求时直接按模板取得编译结果
+ *
+ * @author Juzi@TaleLin
+ */
+@Component
+public class LogTemplateRegistry implements BeanPostProcessor {
+
+    /**
+     * 模板 -> 编译后的模板，注解的值相同时共用
+     */
+    private final Map<String, LogTemplate> templates = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> type = AopUtils.getTargetClass(bean);
+        if (!AnnotatedElementUtils.hasAnnotation(type, Controller.class)) {
+            return bean;
+        }
+        ReflectionUtils.doWithMethods(type, method -> {
+            Logger logger = AnnotationUtils.findAnnotation(method, Logger.class);
+            if (logger != null) {
+                get(logger.template());
+            }
+        });
+        return bean;
+    }
+
+    /**
+     * 获得编译后的模板，启动时未扫描到的模板在第一次使用时编译
+     *
+     * @param template 模板
+     * @return 编译后的模板
+     */
+    public LogTemplate get(String template) {
+        LogTemplate compiled = templates.get(template);
+        if (compiled == null) {
+            compiled = templates.computeIfAbsent(template, LogTemplate::compile);
+        }
+        return compiled;
+    }
+
+    /**
+     * 获得已编译的模板数
+     *
+     * @return 模板数
+     */
+    public int size() {
+        return templates.size();
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.common.util.TransactionUtil;
+import io.github.talelin.latticy.mapper.LogUserMapper;
+import io.github.talelin.latticy.model.LogDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录过日志的用户名
+ * 写入日志时把新出现的用户名插入 lin_log_user，查询日志用户时分页读取该表，不再对日志表 GROUP BY
+ * 内存中保存已插入的用户名，已知的用户名写入日志时不访问数据库
+ * 其它节点插入的用户名不在本节点的内存中，只会多一次重复插入
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class LogUserRegistry {
+
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private LogUserMapper logUserMapper;
+
+    @PostConstruct
+    public void init() {
+        if (logUserMapper.countUsernames() == 0) {
+            try {
+                int inserted = logUserMapper.insertFromLogs();
+                log.info("filled {} log usernames from lin_log", inserted);
+            } catch (Exception e) {
+                // 多个节点同时补全时，后插入的节点主键冲突
+                log.warn("fill log usernames failed: {}", e.getMessage());
+            }
+        }
+        known.addAll(logUserMapper.selectUsernames());
+    }
+
+    /**
+     * 记录日志的用户名，在写入日志的事务中调用
+     *
+     * @param records 日志
+     */
+    public void record(Collection<LogDO> records) {
+        Set<String> usernames = new HashSet<>();
+        for (LogDO record : records) {
+            String username = record.getUsername();
+            if (username != null && !known.contains(username)) {
+                usernames.add(username);
+            }
+        }
+        for (String username : usernames) {
+            logUserMapper.insertUsername(username);
+            // 事务回滚时用户名没有写入，下次写入日志时重新插入
+            TransactionUtil.afterCommit(() -> known.add(username));
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.service.LogService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 行为日志的异步批量写入
+ * 请求线程只把日志放入有界无锁环形队列，由后台线程攒批，条数达到 batchSize 或者等待超过 flushInterval 时
+ * 使用一条多行 INSERT 写入数据库，写入日志不再占用请求的数据库往返
+ * 队列已满时按 overflowPolicy 处理；服务关闭时写出队列中剩余的日志
+ * 整批写入因数据错误失败时逐条重试，单独写入仍失败的日志（如消息超长）移入死信文件，不再重新写入，
+ * 避免一条错误的日志使整批日志反复溢出、重放
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+@Component
+public class LogWriter {
+
+    /**
+     * BLOCK 策略下请求线程每次等待的时间
+     */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Autowired
+    private LogService logService;
+
+    /**
+     * 是否异步写入，关闭时在请求线程中逐条写入
+     */
+    @Value("${lin.cms.log.async:true}")
+    private boolean async;
+
+    @Value("${lin.cms.log.queue-capacity:8192}")
+    private int queueCapacity;
+
+    /**
+     * 每次写入数据库的最大条数
+     */
+    @Value("${lin.cms.log.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 日志在队列中等待的最长时间（毫秒）
+     */
+    @Value("${lin.cms.log.flush-interval:1000}")
+    private long flushInterval;
+
+    /**
+     * 队列已满时的处理策略：block、drop、spill
+     */
+    @Value("${lin.cms.log.overflow-policy:spill}")
+    private String overflowPolicy;
+
+    /**
+     * BLOCK 策略下请求线程等待的最长时间（毫秒）
+     */
+    @Value("${lin.cms.log.block-timeout:1000}")
+    private long blockTimeout;
+
+    @Value("${lin.cms.log.spill-file:logs/behavior/spill.ndjson}")
+    private String spillFilePath;
+
+    /**
+     * 无法写入数据库的日志，只保存不重放，由人工处理
+     */
+    @Value("${lin.cms.log.dead-letter-file:logs/behavior/dead-letter.ndjson}")
+    private String deadLetterFilePath;
+
+    /**
+     * 服务关闭时等待写出剩余日志的最长时间（毫秒）
+     */
+    @Value("${lin.cms.log.shutdown-timeout:10000}")
+    private long shutdownTimeout;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    private final AtomicLong replayedCount = new AtomicLong();
+
+    private final AtomicLong deadLetterCount = new AtomicLong();
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong flushedCount = new AtomicLong();
+
+    private final AtomicLong flushFailedCount = new AtomicLong();
+
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    private LogOverflowPolicy policy;
+
+    private LogRingBuffer<LogDO> buffer;
+
+    private LogSpillFile spillFile;
+
+    private LogSpillFile deadLetterFile;
+
+    private volatile boolean running;
+
+    private volatile Thread flusher;
+
+    @PostConstruct
+    public void init() {
+        policy = LogOverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        spillFile = new LogSpillFile(Paths.get(spillFilePath));
+        deadLetterFile = new LogSpillFile(Paths.get(deadLetterFilePath));
+        if (!async) {
+            return;
+        }
+        buffer = new LogRingBuffer<>(queueCapacity);
+        replay();
+        running = true;
+        Thread thread = new Thread(this::runFlusher, "log-writer");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    /**
+     * 关闭时停止接收新日志，等待后台线程写出剩余日志
+     */
+    @PreDestroy
+    public void destroy() {
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // 后台线程阻塞在数据库写入上，队列只能由它读取
+            log.warn("log writer did not finish in {}ms, {} logs left", shutdownTimeout, buffer.size());
+            return;
+        }
+        flusher = null;
+        // 停止前入队的日志
+        List<LogDO> rest = new ArrayList<>();
+        buffer.drain(rest::add, Integer.MAX_VALUE);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    /**
+     * 写入一条日志
+     *
+     * @param record 日志
+     */
+    public void write(LogDO record) {
+        if (record.getCreateTime() == null) {
+            // 记录请求时的时间，而不是写入数据库的时间
+            record.setCreateTime(new Date());
+        }
+        if (!running) {
+            logService.createLogs(Collections.singletonList(record));
+            return;
+        }
+        if (offer(record)) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                block(record);
+                break;
+            case SPILL:
+                spill(Collections.singletonList(record));
+                break;
+            default:
+                droppedCount.incrementAndGet();
+                break;
+        }
+    }
+
+    /**
+     * 获得日志写入的统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long flushes = flushCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("async", async);
+        metrics.put("running", running);
+        metrics.put("overflow_policy", policy == null ? null : policy.name().toLowerCase());
+        metrics.put("queue_depth", buffer == null ? 0 : buffer.size());
+        metrics.put("queue_capacity", buffer == null ? 0 : buffer.capacity());
+        metrics.put("batch_size", batchSize);
+        metrics.put("flush_interval", flushInterval);
+        metrics.put("enqueued_count", enqueuedCount.get());
+        metrics.put("blocked_count", blockedCount.get());
+        metrics.put("dropped_count", droppedCount.get());
+        metrics.put("spilled_count", spilledCount.get());
+        metrics.put("replayed_count", replayedCount.get());
+        metrics.put("dead_letter_count", deadLetterCount.get());
+        metrics.put("flush_count", flushes);
+        metrics.put("flushed_count", flushedCount.get());
+        metrics.put("flush_failed_count", flushFailedCount.get());
+        metrics.put("avg_batch_size", flushes == 0 ? 0D : (double) flushedCount.get() / flushes);
+        metrics.put("avg_flush_millis", flushes == 0 ? 0D : toMillis(totalFlushNanos.get()) / flushes);
+        metrics.put("max_flush_millis", toMillis(maxFlushNanos.get()));
+        return metrics;
+    }
+
+    private boolean offer(LogDO record) {
+        if (!buffer.offer(record)) {
+            return false;
+        }
+        enqueuedCount.incrementAndGet();
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return true;
+    }
+
+    private void block(LogDO record) {
+        blockedCount.incrementAndGet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+        while (!offer(record)) {
+            if (System.nanoTime() - deadline >= 0 || !running) {
+                droppedCount.incrementAndGet();
+                log.warn("log queue is full, dropped a log after waiting {}ms", blockTimeout);
+                return;
+            }
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        List<LogDO> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+        while (true) {
+            boolean stopping = !running;
+            boolean wasEmpty = batch.isEmpty();
+            buffer.drain(batch::add, batchSize - batch.size());
+            long now = System.nanoTime();
+            if (wasEmpty && !batch.isEmpty()) {
+                batchStart = now;
+            }
+            boolean due = !batch.isEmpty() && (batch.size() >= batchSize || now - batchStart >= intervalNanos);
+            if (due || (stopping && !batch.isEmpty())) {
+                flush(batch);
+                batch.clear();
+                continue;
+            }
+            if (stopping) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                // 生产者已领取序号但还未写入
+                Thread.yield();
+                continue;
+            }
+            LockSupport.parkNanos(this, batch.isEmpty() ? intervalNanos : intervalNanos - (now - batchStart));
+        }
+    }
+
+    private void flush(List<LogDO> batch) {
+        long start = System.nanoTime();
+        try {
+            List<LogDO> rest = new ArrayList<>();
+            flushedCount.addAndGet(insert(batch, rest));
+            if (!rest.isEmpty()) {
+                flushFailedCount.incrementAndGet();
+                if (policy == LogOverflowPolicy.SPILL) {
+                    spill(rest);
+                } else {
+                    droppedCount.addAndGet(rest.size());
+                }
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushCount.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * 写入一批日志，因数据错误失败时逐条重试，单独写入仍因数据错误失败的日志移入死信文件
+     * 其它错误（如数据库不可用）时停止，未写入的日志放入 rest
+     *
+     * @param batch 日志
+     * @param rest  未写入、可以稍后重试的日志
+     * @return 写入的条数
+     */
+    private int insert(List<LogDO> batch, List<LogDO> rest) {
+        try {
+            logService.createLogs(batch);
+            return batch.size();
+        } catch (DataIntegrityViolationException e) {
+            log.error("write {} logs failed, retry one by one: {}", batch.size(), e.getMessage());
+            if (batch.size() == 1) {
+                deadLetter(batch);
+                return 0;
+            }
+        } catch (Exception e) {
+            log.error("write {} logs failed: {}", batch.size(), e.getMessage());
+            rest.addAll(batch);
+            return 0;
+        }
+        int written = 0;
+        List<LogDO> dead = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            LogDO record = batch.get(i);
+            try {
+                logService.createLogs(Collections.singletonList(record));
+                written++;
+            } catch (DataIntegrityViolationException e) {
+                dead.add(record);
+            } catch (Exception e) {
+                log.error("write log failed, keep {} logs for retry: {}", batch.size() - i, e.getMessage());
+                rest.addAll(batch.subList(i, batch.size()));
+                break;
+            }
+        }
+        deadLetter(dead);
+        return written;
+    }
+
+    private void deadLetter(List<LogDO> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        deadLetterCount.addAndGet(records.size());
+        try {
+            deadLetterFile.append(records);
+            log.error("moved {} logs that cannot be written to {}", records.size(), deadLetterFile.getPath());
+        } catch (IOException e) {
+            droppedCount.addAndGet(records.size());
+            log.error("write {} logs to {} failed: {}", records.size(), deadLetterFile.getPath(), e.getMessage());
+        }
+    }
+
+    private void spill(List<LogDO> records) {
+        try {
+            spillFile.append(records);
+            spilledCount.addAndGet(records.size());
+        } catch (IOException e) {
+            droppedCount.addAndGet(records.size());
+            log.error("spill {} logs to {} failed: {}", records.size(), spillFile.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * 重新写入上次运行时溢出到文件的日志，数据库不可用时保留未写入的部分，下次启动时再写入，
+     * 无法写入的日志移入死信文件
+     */
+    private void replay() {
+        List<LogDO> records;
+        try {
+            records = spillFile.readAll();
+        } catch (IOException e) {
+            log.error("read log spill file {} failed: {}", spillFile.getPath(), e.getMessage());
+            return;
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        int written = 0;
+        List<LogDO> rest = new ArrayList<>();
+        for (int from = 0; from < records.size(); from += batchSize) {
+            List<LogDO> batch = records.subList(from, Math.min(from + batchSize, records.size()));
+            if (!rest.isEmpty()) {
+                rest.addAll(batch);
+                continue;
+            }
+            written += insert(batch, rest);
+        }
+        replayedCount.addAndGet(written);
+        try {
+            spillFile.replace(rest);
+        } catch (IOException e) {
+            log.error("rewrite log spill file {} failed: {}", spillFile.getPath(), e.getMessage());
+        }
+        log.info("replayed {} of {} spilled logs, {} left", written, records.size(), rest.size());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000D;
+    }
+}
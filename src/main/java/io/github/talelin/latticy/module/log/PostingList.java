@@ -0,0 +1,230 @@
+package io.github.talelin.latticy.module.log;
+
+import java.util.Arrays;
+
+/**
+ * 压缩的倒排列表
+ * 日志 id 升序保存（自增 id 即写入的先后顺序），相邻 id 的差值以 varint 编码，
+ * 连续写入的日志差值很小，大多数 id 只占一个字节
+ * 追加比最后一个 id 更大的 id 时直接写在末尾；乱序（并发事务先后提交、重建时的增量写入）时解码后重新编码到新的数组
+ * 每 SKIP_INTERVAL 个 id 记录一个跳转点，求交集时由 {@link Cursor} 跳过不可能匹配的块，无需解码整个列表
+ *
+ * @author Juzi@TaleLin
+ */
+public class PostingList {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final int SKIP_INTERVAL = 64;
+
+    private byte[] data = new byte[INITIAL_CAPACITY];
+
+    /**
+     * 第 k 个跳转点：第 k * SKIP_INTERVAL 个 id 之前的 id（k 为 0 时为 0），以及该 id 差值的起始位置
+     */
+    private int[] skipIds = new int[0];
+
+    private int[] skipPositions = new int[0];
+
+    private int skipCount = 0;
+
+    private int length = 0;
+
+    private int size = 0;
+
+    private int lastId = 0;
+
+    /**
+     * 加入 id，已存在时忽略
+     *
+     * @param id 日志 id，大于 0
+     */
+    public synchronized void add(int id) {
+        if (id > lastId) {
+            append(id - lastId);
+            lastId = id;
+            size++;
+            return;
+        }
+        int[] ids = decode();
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return;
+        }
+        int insertion = -index - 1;
+        int[] merged = new int[ids.length + 1];
+        System.arraycopy(ids, 0, merged, 0, insertion);
+        merged[insertion] = id;
+        System.arraycopy(ids, insertion, merged, insertion + 1, ids.length - insertion);
+        // 使用新的数组，已创建的 Cursor 继续读取旧的数组
+        data = new byte[Math.max(INITIAL_CAPACITY, data.length)];
+        skipIds = new int[0];
+        skipPositions = new int[0];
+        skipCount = 0;
+        length = 0;
+        size = 0;
+        lastId = 0;
+        for (int value : merged) {
+            append(value - lastId);
+            lastId = value;
+            size++;
+        }
+    }
+
+    /**
+     * 创建读取当前所有 id 的游标，之后加入的 id 不可见
+     *
+     * @return 游标
+     */
+    public synchronized Cursor cursor() {
+        return new Cursor(data, size, skipIds, skipPositions, skipCount);
+    }
+
+    /**
+     * 解码所有 id
+     *
+     * @return 升序的 id
+     */
+    public synchronized int[] decode() {
+        int[] ids = new int[size];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 编码后占用的字节数
+     *
+     * @return 字节数
+     */
+    public synchronized int bytes() {
+        return data.length + skipIds.length * 8;
+    }
+
+    /**
+     * 追加差值，调用前 size 为该 id 的序号
+     */
+    private void append(int delta) {
+        if (size % SKIP_INTERVAL == 0) {
+            if (skipCount == skipIds.length) {
+                skipIds = Arrays.copyOf(skipIds, Math.max(4, skipCount * 2));
+                skipPositions = Arrays.copyOf(skipPositions, skipIds.length);
+            }
+            skipIds[skipCount] = lastId;
+            skipPositions[skipCount] = length;
+            skipCount++;
+        }
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+    }
+
+    /**
+     * 按升序读取倒排列表的游标，非线程安全
+     * 创建时读取数组和长度，追加只写入长度之后的位置，重新编码时使用新的数组，因此读取期间无需加锁
+     */
+    public static class Cursor {
+
+        private final byte[] data;
+
+        private final int size;
+
+        private final int[] skipIds;
+
+        private final int[] skipPositions;
+
+        private final int skipCount;
+
+        private int index = 0;
+
+        private int position = 0;
+
+        private int current = 0;
+
+        private Cursor(byte[] data, int size, int[] skipIds, int[] skipPositions, int skipCount) {
+            this.data = data;
+            this.size = size;
+            this.skipIds = skipIds;
+            this.skipPositions = skipPositions;
+            this.skipCount = skipCount;
+        }
+
+        /**
+         * 读取下一个 id
+         *
+         * @return id，读完时返回 -1
+         */
+        public int next() {
+            if (index >= size) {
+                return -1;
+            }
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            index++;
+            current += delta;
+            return current;
+        }
+
+        /**
+         * 跳到第一个不小于 target 的 id，先按跳转点跳过整块，再在块内逐个解码
+         *
+         * @param target 目标 id
+         * @return id，没有时返回 -1
+         */
+        public int advance(int target) {
+            if (index > 0 && current >= target) {
+                return current;
+            }
+            // 最后一个前一个 id 小于 target 的跳转点，它之前的 id 都小于 target
+            int low = index / SKIP_INTERVAL + 1;
+            int high = skipCount - 1;
+            int block = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (skipIds[middle] < target) {
+                    block = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (block > 0) {
+                index = block * SKIP_INTERVAL;
+                position = skipPositions[block];
+                current = skipIds[block];
+            }
+            int id;
+            do {
+                id = next();
+            } while (id >= 0 && id < target);
+            return id;
+        }
+    }
+}
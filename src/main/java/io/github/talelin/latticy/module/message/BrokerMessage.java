@@ -0,0 +1,80 @@
+package io.github.talelin.latticy.module.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 节点间传递的消息
+ *
+ * @author Juzi@TaleLin
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BrokerMessage {
+
+    public enum Type {
+        /**
+         * 节点的在线用户、有在线会话的分组和订阅的主题（全量），同时作为节点的心跳
+         */
+        PRESENCE,
+        /**
+         * 发送给某个用户
+         */
+        USER,
+        /**
+         * 对某个分组广播
+         */
+        GROUP,
+        /**
+         * 广播
+         */
+        BROADCAST,
+        /**
+         * 发布到主题
+         */
+        TOPIC
+    }
+
+    private Type type;
+
+    /**
+     * 发送消息的节点id
+     */
+    private String source;
+
+    /**
+     * 用户id或分组id
+     */
+    private Integer target;
+
+    /**
+     * 主题，只有 TOPIC 消息携带
+     */
+    private String topic;
+
+    /**
+     * 文本消息
+     */
+    private String payload;
+
+    /**
+     * 在线用户id，只有 PRESENCE 消息携带
+     */
+    private List<Integer> userIds;
+
+    /**
+     * 有在线会话的分组id，只有 PRESENCE 消息携带
+     */
+    private List<Integer> groupIds;
+
+    /**
+     * 本节点会话订阅的主题（可以包含通配符），只有 PRESENCE 消息携带
+     */
+    private List<String> topics;
+}
@@ -0,0 +1,566 @@
+package io.github.talelin.latticy.module.message;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * websocket 消息扇出
+ * 每个会话有一个有界的发送队列，发送消息只是入队，由少量发送线程异步写出，
+ * 一个慢客户端只会积压自己的队列，不会阻塞广播和触发广播的请求
+ * 同一个会话同时只会被一个发送线程写出，保证消息顺序，也避免并发写同一个会话
+ * 握手时协商了 {@link MessageConstant#BATCH_PROTOCOL} 子协议的会话，刷新窗口内的文本消息合并为一帧 json 数组，
+ * 数组的每个元素为一条原始消息，未协商的会话仍然逐条发送
+ * 单次写出超过 sendTimeLimit 时由看门狗线程关闭会话，关闭连接使阻塞的写出失败返回，释放发送线程
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class FanOutEngine {
+
+    /**
+     * 每次调度最多写出的消息数，避免一个会话长时间占用发送线程
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    private final int capacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long flushWindowMillis;
+
+    private final int batchMaxSize;
+
+    private final int batchMaxLength;
+
+    private final long sendTimeLimitMillis;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 检查写出是否超时，发送线程可能全部阻塞，需要单独的线程
+     */
+    private final ScheduledExecutorService watchdog;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong overflowClosedCount = new AtomicLong();
+
+    private final AtomicLong slowClosedCount = new AtomicLong();
+
+    private final AtomicLong batchFrameCount = new AtomicLong();
+
+    private final AtomicLong batchedMessageCount = new AtomicLong();
+
+    private volatile WebsocketMetrics metrics;
+
+    /**
+     * @param capacity       每个会话发送队列的长度
+     * @param threads        发送线程数
+     * @param overflowPolicy 发送队列已满时的处理策略
+     */
+    public FanOutEngine(int capacity, int threads, OverflowPolicy overflowPolicy) {
+        this(capacity, threads, overflowPolicy, 10, 64, 64 * 1024);
+    }
+
+    /**
+     * @param capacity          每个会话发送队列的长度
+     * @param threads           发送线程数
+     * @param overflowPolicy    发送队列已满时的处理策略
+     * @param flushWindowMillis 合并发送的刷新窗口（毫秒）
+     * @param batchMaxSize      合并为一帧的最大消息数，达到后立即写出
+     * @param batchMaxLength    合并为一帧的消息的最大总长度（字符数）
+     */
+    public FanOutEngine(int capacity, int threads, OverflowPolicy overflowPolicy,
+                        long flushWindowMillis, int batchMaxSize, int batchMaxLength) {
+        this(capacity, threads, overflowPolicy, flushWindowMillis, batchMaxSize, batchMaxLength, 10000);
+    }
+
+    /**
+     * @param capacity            每个会话发送队列的长度
+     * @param threads             发送线程数
+     * @param overflowPolicy      发送队列已满时的处理策略
+     * @param flushWindowMillis   合并发送的刷新窗口（毫秒）
+     * @param batchMaxSize        合并为一帧的最大消息数，达到后立即写出
+     * @param batchMaxLength      合并为一帧的消息的最大总长度（字符数）
+     * @param sendTimeLimitMillis 单次写出的最长时间（毫秒），超过时关闭会话，小于等于 0 时不限制
+     */
+    public FanOutEngine(int capacity, int threads, OverflowPolicy overflowPolicy,
+                        long flushWindowMillis, int batchMaxSize, int batchMaxLength, long sendTimeLimitMillis) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.flushWindowMillis = flushWindowMillis;
+        this.batchMaxSize = Math.max(1, batchMaxSize);
+        this.batchMaxLength = batchMaxLength;
+        AtomicInteger index = new AtomicInteger();
+        // 每个会话同时最多提交一个任务，任务队列的长度不会超过会话数
+        this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ws-sender-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        if (sendTimeLimitMillis > 0) {
+            this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ws-send-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(10, sendTimeLimitMillis / 4);
+            this.watchdog.scheduleWithFixedDelay(this::closeSlowSessions, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.watchdog = null;
+        }
+    }
+
+    /**
+     * 设置收发统计，写出和发送失败时记录
+     *
+     * @param metrics 统计
+     */
+    public void setMetrics(WebsocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 登记会话，会话建立后调用
+     *
+     * @param session 会话
+     */
+    public void register(WebSocketSession session) {
+        boolean batching = MessageConstant.BATCH_PROTOCOL.equals(session.getAcceptedProtocol());
+        outboxes.putIfAbsent(session.getId(), new Outbox(session, batching));
+    }
+
+    /**
+     * 移除会话，丢弃未发送的消息
+     *
+     * @param session 会话
+     */
+    public void unregister(WebSocketSession session) {
+        Outbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.closed = true;
+            outbox.queue.clear();
+        }
+    }
+
+    /**
+     * 移除会话并在发送线程上关闭，关闭可能阻塞（例如对端已失联），不占用调用线程
+     *
+     * @param session 会话
+     * @param status  关闭状态
+     */
+    public void close(WebSocketSession session, CloseStatus status) {
+        unregister(session);
+        executor.execute(() -> {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                log.warn("close websocket session failed, session id: {}", session.getId());
+            }
+        });
+    }
+
+    /**
+     * 消息入队，立即返回
+     *
+     * @param session 会话
+     * @param message 消息
+     * @return 是否入队，会话未登记、已关闭或者消息被丢弃时返回 false
+     */
+    public boolean enqueue(WebSocketSession session, WebSocketMessage<?> message) {
+        Outbox outbox = outboxes.get(session.getId());
+        if (outbox == null || outbox.closed || !session.isOpen()) {
+            return false;
+        }
+        if (outbox.size.get() >= capacity && !handleOverflow(outbox)) {
+            return false;
+        }
+        outbox.queue.offer(new Pending(message, System.nanoTime()));
+        outbox.size.incrementAndGet();
+        outbox.enqueuedCount.incrementAndGet();
+        enqueuedCount.incrementAndGet();
+        schedule(outbox);
+        return true;
+    }
+
+    /**
+     * 关闭发送线程
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * 获得所有会话的队列深度
+     *
+     * @return 队列中的消息总数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Outbox outbox : outboxes.values()) {
+            depth += outbox.size.get();
+        }
+        return depth;
+    }
+
+    /**
+     * 获得扇出的统计信息，包括每个会话的队列深度和发送延迟
+     * 发送延迟为消息入队到写出完成的时间
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queue_capacity", capacity);
+        metrics.put("overflow_policy", overflowPolicy.name().toLowerCase());
+        metrics.put("session_count", outboxes.size());
+        metrics.put("queue_depth", getQueueDepth());
+        metrics.put("enqueued_count", enqueuedCount.get());
+        metrics.put("sent_count", sentCount.get());
+        metrics.put("dropped_count", droppedCount.get());
+        metrics.put("failed_count", failedCount.get());
+        metrics.put("overflow_closed_count", overflowClosedCount.get());
+        metrics.put("send_time_limit_millis", sendTimeLimitMillis);
+        metrics.put("slow_closed_count", slowClosedCount.get());
+        metrics.put("flush_window_millis", flushWindowMillis);
+        metrics.put("batch_frame_count", batchFrameCount.get());
+        metrics.put("batched_message_count", batchedMessageCount.get());
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        for (Outbox outbox : outboxes.values()) {
+            long sent = outbox.sentCount.get();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("session_id", outbox.session.getId());
+            item.put("user_id", SessionRegistry.getUserId(outbox.session));
+            item.put("batching", outbox.batching);
+            item.put("queue_depth", outbox.size.get());
+            item.put("enqueued_count", outbox.enqueuedCount.get());
+            item.put("sent_count", sent);
+            item.put("dropped_count", outbox.droppedCount.get());
+            item.put("failed_count", outbox.failedCount.get());
+            item.put("avg_latency_millis", sent == 0 ? 0D : toMillis(outbox.totalLatency.get()) / sent);
+            item.put("max_latency_millis", toMillis(outbox.maxLatency.get()));
+            item.put("last_latency_millis", toMillis(outbox.lastLatency));
+            sessions.add(item);
+        }
+        metrics.put("sessions", sessions);
+        return metrics;
+    }
+
+    /**
+     * 处理队列已满
+     *
+     * @return 新消息是否可以入队
+     */
+    private boolean handleOverflow(Outbox outbox) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                if (outbox.queue.poll() != null) {
+                    outbox.size.decrementAndGet();
+                }
+                drop(outbox);
+                return true;
+            case CLOSE_SESSION:
+                drop(outbox);
+                closeOverflowed(outbox);
+                return false;
+            case DROP_NEW:
+            default:
+                drop(outbox);
+                return false;
+        }
+    }
+
+    private void drop(Outbox outbox) {
+        outbox.droppedCount.incrementAndGet();
+        droppedCount.incrementAndGet();
+    }
+
+    private void closeOverflowed(Outbox outbox) {
+        if (outbox.closed) {
+            return;
+        }
+        outbox.closed = true;
+        outbox.queue.clear();
+        outbox.size.set(0);
+        overflowClosedCount.incrementAndGet();
+        // 关闭会话可能阻塞，交给发送线程执行
+        executor.execute(() -> {
+            try {
+                outbox.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.warn("close overflowed websocket session failed, session id: {}", outbox.session.getId());
+            }
+        });
+    }
+
+    /**
+     * 关闭写出超时的会话，在看门狗线程上执行
+     * 发送线程阻塞在写出上，关闭只能在这里进行，关闭连接后阻塞的写出会失败返回
+     */
+    private void closeSlowSessions() {
+        long now = System.nanoTime();
+        long limit = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        for (Outbox outbox : outboxes.values()) {
+            long startedAt = outbox.sendStartedAt;
+            if (startedAt == 0 || now - startedAt <= limit || outbox.closed) {
+                continue;
+            }
+            outbox.closed = true;
+            outbox.queue.clear();
+            outbox.size.set(0);
+            slowClosedCount.incrementAndGet();
+            log.warn("websocket send exceeded {}ms, closing session, session id: {}",
+                    sendTimeLimitMillis, outbox.session.getId());
+            try {
+                outbox.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException e) {
+                log.warn("close slow websocket session failed, session id: {}", outbox.session.getId());
+            }
+        }
+    }
+
+    private void schedule(Outbox outbox) {
+        if (outbox.scheduled.compareAndSet(false, true)) {
+            if (outbox.batching && outbox.size.get() < batchMaxSize) {
+                // 等待刷新窗口，窗口内的消息合并为一帧
+                outbox.pendingFlush = executor.schedule(() -> drain(outbox), flushWindowMillis, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(() -> drain(outbox));
+            }
+        } else if (outbox.batching && outbox.size.get() >= batchMaxSize) {
+            ScheduledFuture<?> pendingFlush = outbox.pendingFlush;
+            // 取消成功说明等待中的写出还未开始，由这里立即写出
+            if (pendingFlush != null && pendingFlush.cancel(false)) {
+                executor.execute(() -> drain(outbox));
+            }
+        }
+    }
+
+    private void drain(Outbox outbox) {
+        try {
+            if (outbox.batching) {
+                drainBatched(outbox);
+            } else {
+                drainSingle(outbox);
+            }
+        } finally {
+            outbox.scheduled.set(false);
+        }
+        // 还有消息时重新调度，排在其它会话之后，剩余的消息已经等待过，不再等待刷新窗口
+        if (!outbox.queue.isEmpty() && !outbox.closed && outbox.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(outbox));
+        }
+    }
+
+    private void drainSingle(Outbox outbox) {
+        for (int i = 0; i < DRAIN_BATCH && !outbox.closed; i++) {
+            Pending pending = outbox.queue.poll();
+            if (pending == null) {
+                break;
+            }
+            outbox.size.decrementAndGet();
+            send(outbox, pending.message, Collections.singletonList(pending));
+        }
+    }
+
+    private void drainBatched(Outbox outbox) {
+        List<Pending> batch = new ArrayList<>();
+        int length = 0;
+        int limit = Math.max(DRAIN_BATCH, batchMaxSize);
+        for (int i = 0; i < limit && !outbox.closed; i++) {
+            Pending pending = outbox.queue.poll();
+            if (pending == null) {
+                break;
+            }
+            outbox.size.decrementAndGet();
+            // 只合并文本消息，其它消息先写出已合并的消息，再单独写出
+            if (!(pending.message instanceof TextMessage)) {
+                flush(outbox, batch);
+                length = 0;
+                send(outbox, pending.message, Collections.singletonList(pending));
+                continue;
+            }
+            int payloadLength = ((TextMessage) pending.message).getPayloadLength();
+            if (!batch.isEmpty() && (batch.size() >= batchMaxSize || length + payloadLength > batchMaxLength)) {
+                flush(outbox, batch);
+                length = 0;
+            }
+            batch.add(pending);
+            length += payloadLength;
+        }
+        flush(outbox, batch);
+    }
+
+    /**
+     * 将已合并的消息编码为 json 字符串数组写出，只有一条消息时也使用数组，客户端统一按数组解析
+     */
+    private void flush(Outbox outbox, List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        StringBuilder frame = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                frame.append(',');
+            }
+            String payload = ((TextMessage) batch.get(i).message).getPayload();
+            frame.append('"').append(encoder.quoteAsString(payload)).append('"');
+        }
+        frame.append(']');
+        send(outbox, new TextMessage(frame.toString()), batch);
+        batchFrameCount.incrementAndGet();
+        batchedMessageCount.addAndGet(batch.size());
+        batch.clear();
+    }
+
+    /**
+     * 写出一帧
+     *
+     * @param message  帧
+     * @param pendings 帧包含的消息，用于统计发送延迟
+     */
+    private void send(Outbox outbox, WebSocketMessage<?> message, List<Pending> pendings) {
+        WebSocketSession session = outbox.session;
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            outbox.sendStartedAt = System.nanoTime();
+            try {
+                session.sendMessage(message);
+            } finally {
+                outbox.sendStartedAt = 0;
+            }
+            long now = System.nanoTime();
+            WebsocketMetrics current = metrics;
+            for (Pending pending : pendings) {
+                long latency = now - pending.enqueuedAt;
+                outbox.totalLatency.addAndGet(latency);
+                outbox.maxLatency.accumulateAndGet(latency, Math::max);
+                outbox.lastLatency = latency;
+                if (current != null) {
+                    current.recordSendLatency(latency);
+                }
+            }
+            outbox.sentCount.addAndGet(pendings.size());
+            sentCount.addAndGet(pendings.size());
+            if (current != null) {
+                current.recordSent(pendings.size(), byteLength(message));
+            }
+        } catch (IOException | RuntimeException e) {
+            outbox.failedCount.addAndGet(pendings.size());
+            failedCount.addAndGet(pendings.size());
+            WebsocketMetrics current = metrics;
+            if (current != null) {
+                current.recordSendFailed(pendings.size());
+            }
+            log.warn("send websocket message failed, session id: {}, error: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private static long byteLength(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage) {
+            return WebsocketMetrics.utf8Length(((TextMessage) message).getPayload());
+        }
+        return message.getPayloadLength();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000D;
+    }
+
+    private static class Pending {
+
+        private final WebSocketMessage<?> message;
+
+        private final long enqueuedAt;
+
+        private Pending(WebSocketMessage<?> message, long enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static class Outbox {
+
+        private final WebSocketSession session;
+
+        /**
+         * 是否协商了合并发送的子协议
+         */
+        private final boolean batching;
+
+        private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * ConcurrentLinkedQueue 的 size() 需要遍历，单独计数
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicLong enqueuedCount = new AtomicLong();
+
+        private final AtomicLong sentCount = new AtomicLong();
+
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private final AtomicLong failedCount = new AtomicLong();
+
+        private final AtomicLong totalLatency = new AtomicLong();
+
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        private volatile long lastLatency;
+
+        private volatile boolean closed;
+
+        /**
+         * 正在进行的写出的开始时间，没有写出时为 0
+         */
+        private volatile long sendStartedAt;
+
+        private volatile ScheduledFuture<?> pendingFlush;
+
+        private Outbox(WebSocketSession session, boolean batching) {
+            this.session = session;
+            this.batching = batching;
+        }
+    }
+}
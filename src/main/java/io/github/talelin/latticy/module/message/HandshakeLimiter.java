@@ -0,0 +1,124 @@
+package io.github.talelin.latticy.module.message;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * websocket 握手准入控制
+ * 令牌桶限制握手速率，服务重启后所有客户端同时重连时，平滑握手对数据库的压力
+ * 桶内有令牌时立即放行（accepted），否则立即拒绝握手（rejected），返回 429 和 Retry-After，
+ * 不在请求线程中等待令牌，避免重连风暴占满容器线程；Retry-After 加入随机抖动，避免客户端再次同时重连
+ *
+ * @author Juzi@TaleLin
+ */
+public class HandshakeLimiter implements HandshakeInterceptor {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 每秒放行的握手数，小于等于 0 时不限制
+     */
+    private final double rate;
+
+    /**
+     * 令牌桶容量，即允许的突发握手数
+     */
+    private final double burst;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * 可用令牌数
+     */
+    private double tokens;
+
+    private long lastRefill;
+
+    /**
+     * @param rate  每秒放行的握手数，小于等于 0 时不限制
+     * @param burst 允许的突发握手数
+     */
+    public HandshakeLimiter(double rate, int burst) {
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler webSocketHandler, Map<String, Object> attributes) throws IOException {
+        long retryAfter = acquire();
+        if (retryAfter == 0) {
+            return true;
+        }
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.getBody().write(("too many handshakes, retry after " + retryAfter + " seconds")
+                .getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler webSocketHandler, Exception exception) {
+    }
+
+    /**
+     * 获取握手许可，不阻塞
+     *
+     * @return 放行时返回 0，拒绝时返回建议客户端重试的秒数
+     */
+    public long acquire() {
+        if (rate <= 0) {
+            acceptedCount.incrementAndGet();
+            return 0;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                acceptedCount.incrementAndGet();
+                return 0;
+            }
+            wait = (long) ((1 - tokens) / rate * NANOS_PER_SECOND);
+        }
+        rejectedCount.incrementAndGet();
+        long seconds = Math.max(1, (long) Math.ceil((double) wait / NANOS_PER_SECOND));
+        return seconds + ThreadLocalRandom.current().nextLong(seconds + 1);
+    }
+
+    /**
+     * 获得准入控制的统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("rate", rate);
+        metrics.put("burst", burst);
+        synchronized (this) {
+            metrics.put("available_tokens", tokens);
+        }
+        metrics.put("accepted_count", acceptedCount.get());
+        metrics.put("rejected_count", rejectedCount.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.talelin.latticy.module.message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存的传输方式，只在单个进程内有效，供测试使用
+ * 同一个集群的节点共享一个节点表，消息在发送线程上同步投递
+ *
+ * @author Juzi@TaleLin
+ */
+public class InMemoryMessageBroker implements MessageBroker {
+
+    private static final Map<String, InMemoryMessageBroker> SHARED_CLUSTER = new ConcurrentHashMap<>();
+
+    private final String nodeId;
+
+    private final Map<String, InMemoryMessageBroker> cluster;
+
+    private volatile Consumer<BrokerMessage> receiver;
+
+    /**
+     * 加入进程内共享的集群
+     *
+     * @param nodeId 节点id
+     */
+    public InMemoryMessageBroker(String nodeId) {
+        this(nodeId, SHARED_CLUSTER);
+    }
+
+    /**
+     * @param nodeId  节点id
+     * @param cluster 集群的节点表
+     */
+    public InMemoryMessageBroker(String nodeId, Map<String, InMemoryMessageBroker> cluster) {
+        this.nodeId = nodeId;
+        this.cluster = cluster;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Consumer<BrokerMessage> receiver) {
+        this.receiver = receiver;
+        cluster.put(nodeId, this);
+    }
+
+    @Override
+    public void stop() {
+        cluster.remove(nodeId, this);
+    }
+
+    @Override
+    public void publish(BrokerMessage message) {
+        cluster.forEach((id, node) -> {
+            if (!id.equals(nodeId)) {
+                node.receive(message);
+            }
+        });
+    }
+
+    @Override
+    public boolean send(String nodeId, BrokerMessage message) {
+        InMemoryMessageBroker node = cluster.get(nodeId);
+        if (node == null) {
+            return false;
+        }
+        node.receive(message);
+        return true;
+    }
+
+    private void receive(BrokerMessage message) {
+        Consumer<BrokerMessage> current = receiver;
+        if (current != null) {
+            current.accept(message);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.talelin.latticy.module.message;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * websocket 消息的跨节点传输方式
+ * 只负责在节点间传递消息，在线用户的登记和路由由 {@link MessageRouter} 完成
+ *
+ * @author Juzi@TaleLin
+ */
+public interface MessageBroker {
+
+    /**
+     * 获得本节点的id，在所有节点中唯一
+     *
+     * @return 节点id
+     */
+    String getNodeId();
+
+    /**
+     * 开始接收其它节点的消息
+     *
+     * @param receiver 收到消息的回调
+     */
+    void start(Consumer<BrokerMessage> receiver);
+
+    /**
+     * 停止接收和发送
+     */
+    void stop();
+
+    /**
+     * 发送给所有其它节点
+     *
+     * @param message 消息
+     */
+    void publish(BrokerMessage message);
+
+    /**
+     * 发送给指定节点，不等待送达
+     *
+     * @param nodeId  节点id
+     * @param message 消息
+     * @return 是否接受发送，节点未知或者发送队列已满时返回 false
+     */
+    boolean send(String nodeId, BrokerMessage message);
+
+    /**
+     * 获得传输层的统计信息
+     *
+     * @return 统计信息
+     */
+    default Map<String, Object> getMetrics() {
+        return Collections.emptyMap();
+    }
+}
@@ -7,4 +7,21 @@ package io.github.talelin.latticy.module.message;
  */
 public class MessageConstant {
     public static final String USER_KEY = "user";
+
+    public static final String GROUP_IDS_KEY = "groupIds";
+
+    /**
+     * 合并发送的子协议，协商了该子协议的客户端收到的每一帧都是消息组成的 json 数组
+     */
+    public static final String BATCH_PROTOCOL = "lin.batch";
+
+    /**
+     * 客户端订阅主题，消息格式为 {"action": "subscribe", "topic": "book.updated.*"}
+     */
+    public static final String SUBSCRIBE_ACTION = "subscribe";
+
+    /**
+     * 客户端取消订阅主题，消息格式为 {"action": "unsubscribe", "topic": "book.updated.*"}
+     */
+    public static final String UNSUBSCRIBE_ACTION = "unsubscribe";
 }
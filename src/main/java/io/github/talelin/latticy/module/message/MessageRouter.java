@@ -0,0 +1,396 @@
+package io.github.talelin.latticy.module.message;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * websocket 消息的跨节点路由
+ * 每个节点定时（以及在线用户、分组、订阅变化时）向其它节点发布本节点的在线用户、有在线会话的分组和订阅的主题，
+ * 发送给用户的消息只投递到该用户在线的节点，分组广播只投递到该分组有在线会话的节点，
+ * 主题发布只投递到有匹配订阅的节点，只有广播投递到所有有在线用户的节点，由目标节点在本地分发
+ * 超过 3 个发布周期没有收到某个节点的在线状态时，认为该节点已下线
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class MessageRouter {
+
+    private static final int EXPIRE_INTERVALS = 3;
+
+    private final MessageBroker broker;
+
+    private final String nodeId;
+
+    /**
+     * 发布在线用户的间隔，单位毫秒
+     */
+    private final long presenceInterval;
+
+    private final Map<String, NodeState> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * 用户id -> 用户在线的其它节点
+     */
+    private final Map<Integer, Set<String>> userNodes = new ConcurrentHashMap<>();
+
+    /**
+     * 其它节点订阅的主题，订阅者为节点id
+     */
+    private final TopicTrie<String> topicNodes = new TopicTrie<>();
+
+    private final AtomicBoolean presenceDirty = new AtomicBoolean();
+
+    private final AtomicLong presencePublishCount = new AtomicLong();
+
+    private volatile Consumer<BrokerMessage> localDelivery;
+
+    private volatile Supplier<Set<Integer>> onlineUsers;
+
+    private volatile Supplier<Set<Integer>> onlineGroups;
+
+    private volatile Supplier<Set<String>> subscribedTopics;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param broker           传输方式
+     * @param presenceInterval 发布在线用户的间隔，单位毫秒
+     */
+    public MessageRouter(MessageBroker broker, long presenceInterval) {
+        this.broker = broker;
+        this.nodeId = broker.getNodeId();
+        this.presenceInterval = presenceInterval;
+    }
+
+    /**
+     * 开始路由
+     *
+     * @param localDelivery    其它节点发来的消息在本节点的分发
+     * @param onlineUsers      本节点的在线用户
+     * @param onlineGroups     本节点有在线会话的分组
+     * @param subscribedTopics 本节点会话订阅的主题
+     */
+    public synchronized void start(Consumer<BrokerMessage> localDelivery, Supplier<Set<Integer>> onlineUsers,
+                                   Supplier<Set<Integer>> onlineGroups, Supplier<Set<String>> subscribedTopics) {
+        if (scheduler != null) {
+            return;
+        }
+        this.localDelivery = localDelivery;
+        this.onlineUsers = onlineUsers;
+        this.onlineGroups = onlineGroups;
+        this.subscribedTopics = subscribedTopics;
+        broker.start(this::receive);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-router");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, presenceInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止路由，通知其它节点本节点已没有在线用户
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+        try {
+            broker.publish(presence(Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+        } catch (Exception e) {
+            log.warn("publish empty presence failed: {}", e.getMessage());
+        }
+        broker.stop();
+    }
+
+    /**
+     * 本节点的在线用户、分组或订阅变化，尽快发布，多次变化合并为一次发布
+     */
+    public void presenceChanged() {
+        ScheduledExecutorService current = scheduler;
+        if (current != null && presenceDirty.compareAndSet(false, true)) {
+            current.execute(this::publishPresenceQuietly);
+        }
+    }
+
+    /**
+     * 发送给在其它节点上在线的用户
+     *
+     * @param userId  用户id
+     * @param payload 文本消息
+     */
+    public void routeToUser(Integer userId, String payload) {
+        Set<String> targets = userNodes.get(userId);
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        BrokerMessage message = message(BrokerMessage.Type.USER, userId, payload);
+        for (String target : targets) {
+            sendTo(target, message);
+        }
+    }
+
+    /**
+     * 对其它节点上的分组广播，只投递到该分组有在线会话的节点
+     *
+     * @param groupId 分组id
+     * @param payload 文本消息
+     */
+    public void routeToGroup(Integer groupId, String payload) {
+        BrokerMessage message = null;
+        for (Map.Entry<String, NodeState> entry : nodes.entrySet()) {
+            if (!entry.getValue().groupIds.contains(groupId)) {
+                continue;
+            }
+            if (message == null) {
+                message = message(BrokerMessage.Type.GROUP, groupId, payload);
+            }
+            sendTo(entry.getKey(), message);
+        }
+    }
+
+    /**
+     * 对其它节点广播
+     *
+     * @param payload 文本消息
+     */
+    public void routeBroadcast(String payload) {
+        routeToAll(message(BrokerMessage.Type.BROADCAST, null, payload));
+    }
+
+    /**
+     * 发布到其它节点上的主题订阅者，只投递到有匹配订阅的节点
+     *
+     * @param topic   主题
+     * @param payload 文本消息
+     */
+    public void routeToTopic(String topic, String payload) {
+        Set<String> targets = topicNodes.match(topic);
+        if (targets.isEmpty()) {
+            return;
+        }
+        BrokerMessage message = message(BrokerMessage.Type.TOPIC, null, payload);
+        message.setTopic(topic);
+        for (String target : targets) {
+            sendTo(target, message);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 获得用户在线的其它节点
+     *
+     * @param userId 用户id
+     * @return 节点id，不可修改
+     */
+    public Set<String> getUserNodes(Integer userId) {
+        Set<String> targets = userNodes.get(userId);
+        return targets == null ? Collections.emptySet() : Collections.unmodifiableSet(targets);
+    }
+
+    /**
+     * 获得路由的统计信息，包括每个节点的在线用户数和投递数
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("node_id", nodeId);
+        metrics.put("broker", broker.getClass().getSimpleName());
+        metrics.put("presence_interval", presenceInterval);
+        metrics.put("presence_publish_count", presencePublishCount.get());
+        metrics.put("routed_user_count", userNodes.size());
+        long now = System.currentTimeMillis();
+        Map<String, Object> items = new LinkedHashMap<>();
+        nodes.forEach((id, state) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("user_count", state.userIds.size());
+            item.put("group_count", state.groupIds.size());
+            item.put("topic_count", state.topics.size());
+            item.put("last_seen", now - state.lastSeen);
+            item.put("sent_count", state.sentCount.get());
+            item.put("send_rejected_count", state.sendRejectedCount.get());
+            item.put("received_count", state.receivedCount.get());
+            items.put(id, item);
+        });
+        metrics.put("nodes", items);
+        metrics.put("transport", broker.getMetrics());
+        return metrics;
+    }
+
+    private void receive(BrokerMessage message) {
+        String source = message.getSource();
+        if (source == null || source.equals(nodeId) || message.getType() == null) {
+            return;
+        }
+        if (message.getType() == BrokerMessage.Type.PRESENCE) {
+            updatePresence(source, orEmpty(message.getUserIds()), orEmpty(message.getGroupIds()),
+                    orEmpty(message.getTopics()));
+            return;
+        }
+        nodes.computeIfAbsent(source, key -> new NodeState()).receivedCount.incrementAndGet();
+        Consumer<BrokerMessage> current = localDelivery;
+        if (current != null) {
+            current.accept(message);
+        }
+    }
+
+    /**
+     * 投递到所有有在线用户的节点，只用于广播
+     */
+    private void routeToAll(BrokerMessage message) {
+        nodes.forEach((id, state) -> {
+            if (!state.userIds.isEmpty()) {
+                sendTo(id, message);
+            }
+        });
+    }
+
+    private void sendTo(String target, BrokerMessage message) {
+        NodeState state = nodes.computeIfAbsent(target, key -> new NodeState());
+        if (broker.send(target, message)) {
+            state.sentCount.incrementAndGet();
+        } else {
+            state.sendRejectedCount.incrementAndGet();
+        }
+    }
+
+    private void heartbeat() {
+        publishPresenceQuietly();
+        expireNodes();
+    }
+
+    private void publishPresenceQuietly() {
+        presenceDirty.set(false);
+        try {
+            broker.publish(presence(orEmpty(onlineUsers), orEmpty(onlineGroups), orEmpty(subscribedTopics)));
+            presencePublishCount.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("publish websocket presence failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void updatePresence(String source, Collection<Integer> userIds,
+                                             Collection<Integer> groupIds, Collection<String> topics) {
+        NodeState state = nodes.computeIfAbsent(source, key -> new NodeState());
+        replaceUsers(source, state, new HashSet<>(userIds));
+        state.groupIds = new HashSet<>(groupIds);
+        replaceTopics(source, state, new HashSet<>(topics));
+        state.lastSeen = System.currentTimeMillis();
+    }
+
+    private synchronized void expireNodes() {
+        long deadline = System.currentTimeMillis() - presenceInterval * EXPIRE_INTERVALS;
+        nodes.forEach((id, state) -> {
+            if (state.lastSeen < deadline && !(state.userIds.isEmpty() && state.topics.isEmpty())) {
+                log.info("websocket node {} expired", id);
+                replaceUsers(id, state, Collections.emptySet());
+                state.groupIds = Collections.emptySet();
+                replaceTopics(id, state, Collections.emptySet());
+            }
+        });
+    }
+
+    private void replaceUsers(String source, NodeState state, Set<Integer> fresh) {
+        for (Integer userId : state.userIds) {
+            if (!fresh.contains(userId)) {
+                userNodes.computeIfPresent(userId, (key, targets) -> {
+                    targets.remove(source);
+                    return targets.isEmpty() ? null : targets;
+                });
+            }
+        }
+        for (Integer userId : fresh) {
+            if (!state.userIds.contains(userId)) {
+                userNodes.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(source);
+            }
+        }
+        state.userIds = fresh;
+    }
+
+    /**
+     * 节点的订阅变化后更新订阅树，其它节点发来的主题不合法时忽略
+     */
+    private void replaceTopics(String source, NodeState state, Set<String> fresh) {
+        for (String topic : state.topics) {
+            if (!fresh.contains(topic)) {
+                topicNodes.unsubscribe(topic, source);
+            }
+        }
+        Set<String> accepted = new HashSet<>();
+        for (String topic : fresh) {
+            try {
+                topicNodes.subscribe(topic, source);
+                accepted.add(topic);
+            } catch (IllegalArgumentException e) {
+                log.warn("ignore invalid topic {} from websocket node {}", topic, source);
+            }
+        }
+        state.topics = accepted;
+    }
+
+    private BrokerMessage presence(Collection<Integer> userIds, Collection<Integer> groupIds,
+                                   Collection<String> topics) {
+        return BrokerMessage.builder()
+                .type(BrokerMessage.Type.PRESENCE)
+                .source(nodeId)
+                .userIds(new ArrayList<>(userIds))
+                .groupIds(new ArrayList<>(groupIds))
+                .topics(new ArrayList<>(topics))
+                .build();
+    }
+
+    private static <T> Collection<T> orEmpty(Collection<T> values) {
+        return values == null ? Collections.<T>emptyList() : values;
+    }
+
+    private static <T> Collection<T> orEmpty(Supplier<Set<T>> supplier) {
+        return supplier == null ? Collections.<T>emptySet() : supplier.get();
+    }
+
+    private BrokerMessage message(BrokerMessage.Type type, Integer target, String payload) {
+        return BrokerMessage.builder()
+                .type(type)
+                .source(nodeId)
+                .target(target)
+                .payload(payload)
+                .build();
+    }
+
+    private static class NodeState {
+
+        private final AtomicLong sentCount = new AtomicLong();
+
+        private final AtomicLong sendRejectedCount = new AtomicLong();
+
+        private final AtomicLong receivedCount = new AtomicLong();
+
+        private volatile Set<Integer> userIds = Collections.emptySet();
+
+        private volatile Set<Integer> groupIds = Collections.emptySet();
+
+        private volatile Set<String> topics = Collections.emptySet();
+
+        private volatile long lastSeen = System.currentTimeMillis();
+    }
+}
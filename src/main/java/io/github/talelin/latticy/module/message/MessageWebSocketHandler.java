@@ -3,14 +3,21 @@ package io.github.talelin.latticy.module.message;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.socket.*;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author pedro@TaleLin
+ * @author Juzi@TaleLin
  */
-public class MessageWebSocketHandler implements WebSocketHandler {
+public class MessageWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
 
     @Autowired
     private WsHandler wsHandler;
 
+    @Autowired
+    private WebsocketProperties properties;
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         wsHandler.handleOpen(session);
@@ -21,6 +28,8 @@ public class MessageWebSocketHandler implements WebSocketHandler {
         if (webSocketMessage instanceof TextMessage) {
             TextMessage textMessage = (TextMessage) webSocketMessage;
             wsHandler.handleMessage(session, textMessage.getPayload());
+        } else if (webSocketMessage instanceof PongMessage) {
+            wsHandler.handlePong(session);
         }
     }
 
@@ -38,4 +47,15 @@ public class MessageWebSocketHandler implements WebSocketHandler {
     public boolean supportsPartialMessages() {
         return false;
     }
+
+    /**
+     * 握手时声明支持的子协议，客户端请求了合并发送的子协议时才会合并发送
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        if (properties.isBatchEnabled()) {
+            return Collections.singletonList(MessageConstant.BATCH_PROTOCOL);
+        }
+        return Collections.emptyList();
+    }
 }
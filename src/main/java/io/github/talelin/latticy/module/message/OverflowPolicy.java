@@ -0,0 +1,21 @@
+package io.github.talelin.latticy.module.message;
+
+/**
+ * 会话发送队列已满时的处理策略
+ *
+ * @author Juzi@TaleLin
+ */
+public enum OverflowPolicy {
+    /**
+     * 丢弃队列中最早的消息
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃新消息
+     */
+    DROP_NEW,
+    /**
+     * 关闭会话，客户端重连后重新获取数据
+     */
+    CLOSE_SESSION
+}
@@ -0,0 +1,231 @@
+package io.github.talelin.latticy.module.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * websocket 会话存活检测
+ * 会话空闲超过 pingInterval 时发送 ping，收到任何消息（包括 pong）都视为活跃，
+ * 空闲超过 idleTimeout 时回收会话（关闭回调可能永远不会触发的僵尸会话）
+ * 每个会话在时间轮中只有一个检查任务，活跃时只更新最后活跃时间，
+ * 检查到期时才根据最后活跃时间决定发送 ping、回收或者重新安排检查
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class SessionReaper {
+
+    private final FanOutEngine fanOutEngine;
+
+    private final long pingInterval;
+
+    private final long idleTimeout;
+
+    private final long tickMillis;
+
+    private final LongSupplier clock;
+
+    private final TimingWheel<Entry> wheel;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong pingCount = new AtomicLong();
+
+    private final AtomicLong pongCount = new AtomicLong();
+
+    private final AtomicLong reapedCount = new AtomicLong();
+
+    private volatile Consumer<WebSocketSession> reapCallback;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param fanOutEngine 发送 ping 使用的扇出，保证与其它消息不会并发写出
+     * @param pingInterval 空闲多久后发送 ping（毫秒）
+     * @param idleTimeout  空闲多久后回收会话（毫秒）
+     * @param tickMillis   时间轮每个 tick 的时长（毫秒）
+     * @param wheelSize    时间轮的槽数
+     */
+    public SessionReaper(FanOutEngine fanOutEngine, long pingInterval, long idleTimeout,
+                         long tickMillis, int wheelSize) {
+        this(fanOutEngine, pingInterval, idleTimeout, tickMillis, wheelSize, System::currentTimeMillis);
+    }
+
+    SessionReaper(FanOutEngine fanOutEngine, long pingInterval, long idleTimeout,
+                  long tickMillis, int wheelSize, LongSupplier clock) {
+        this.fanOutEngine = fanOutEngine;
+        this.pingInterval = pingInterval;
+        this.idleTimeout = Math.max(idleTimeout, pingInterval);
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, clock.getAsLong());
+    }
+
+    /**
+     * 开始检测
+     *
+     * @param reapCallback 回收会话的回调，负责从所有索引中移除会话并关闭
+     */
+    public synchronized void start(Consumer<WebSocketSession> reapCallback) {
+        this.reapCallback = reapCallback;
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tickQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 登记会话，会话建立后调用
+     *
+     * @param session 会话
+     */
+    public void register(WebSocketSession session) {
+        long now = clock.getAsLong();
+        Entry entry = new Entry(session, now);
+        if (entries.putIfAbsent(session.getId(), entry) == null) {
+            wheel.schedule(entry, now + pingInterval);
+        }
+    }
+
+    /**
+     * 移除会话，会话关闭后调用
+     *
+     * @param session 会话
+     */
+    public void unregister(WebSocketSession session) {
+        Entry entry = entries.remove(session.getId());
+        if (entry != null) {
+            // 检查任务到期时丢弃
+            entry.removed = true;
+        }
+    }
+
+    /**
+     * 会话收到消息
+     *
+     * @param session 会话
+     */
+    public void touch(WebSocketSession session) {
+        Entry entry = entries.get(session.getId());
+        if (entry != null) {
+            entry.lastActive = clock.getAsLong();
+        }
+    }
+
+    /**
+     * 会话收到 pong
+     *
+     * @param session 会话
+     */
+    public void pong(WebSocketSession session) {
+        pongCount.incrementAndGet();
+        touch(session);
+    }
+
+    /**
+     * 推进时间轮，处理到期的检查
+     */
+    public void tick() {
+        long now = clock.getAsLong();
+        wheel.advance(now, entry -> check(entry, now));
+    }
+
+    /**
+     * 获得存活检测的统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ping_interval", pingInterval);
+        metrics.put("idle_timeout", idleTimeout);
+        metrics.put("tracked_count", entries.size());
+        metrics.put("scheduled_count", wheel.size());
+        metrics.put("ping_count", pingCount.get());
+        metrics.put("pong_count", pongCount.get());
+        metrics.put("reaped_count", reapedCount.get());
+        return metrics;
+    }
+
+    public long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (Exception e) {
+            log.error("reap websocket sessions failed", e);
+        }
+    }
+
+    private void check(Entry entry, long now) {
+        if (entry.removed) {
+            return;
+        }
+        long idle = now - entry.lastActive;
+        if (idle >= idleTimeout || !entry.session.isOpen()) {
+            reap(entry);
+            return;
+        }
+        if (idle >= pingInterval) {
+            if (fanOutEngine.enqueue(entry.session, new PingMessage())) {
+                pingCount.incrementAndGet();
+            }
+            // 等待 pong，最迟在超时时间到达时回收
+            wheel.schedule(entry, now + Math.min(pingInterval, idleTimeout - idle));
+            return;
+        }
+        wheel.schedule(entry, entry.lastActive + pingInterval);
+    }
+
+    private void reap(Entry entry) {
+        if (!entries.remove(entry.session.getId(), entry)) {
+            return;
+        }
+        entry.removed = true;
+        reapedCount.incrementAndGet();
+        log.info("reap idle websocket session, session id: {}", entry.session.getId());
+        Consumer<WebSocketSession> callback = reapCallback;
+        if (callback != null) {
+            callback.accept(entry.session);
+        }
+    }
+
+    private static class Entry {
+
+        private final WebSocketSession session;
+
+        private volatile long lastActive;
+
+        private volatile boolean removed;
+
+        private Entry(WebSocketSession session, long lastActive) {
+            this.session = session;
+            this.lastActive = lastActive;
+        }
+    }
+}
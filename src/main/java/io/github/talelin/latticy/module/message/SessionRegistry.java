@@ -0,0 +1,202 @@
+package io.github.talelin.latticy.module.message;
+
+import io.github.talelin.latticy.model.UserDO;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * websocket 会话登记表
+ * 除了所有会话，还按用户id、分组id索引会话，向某个用户或分组发送消息时无需遍历所有会话，也无需查询数据库
+ * 一个用户可以同时打开多个会话（多个标签页、多个设备）
+ * 修改索引的操作（连接、断开、分组变化）互斥执行，查询不加锁
+ *
+ * @author Juzi@TaleLin
+ */
+public class SessionRegistry {
+
+    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+
+    private final Map<Integer, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Set<WebSocketSession>> groupSessions = new ConcurrentHashMap<>();
+
+    /**
+     * 在线用户所在的分组
+     */
+    private final Map<Integer, Set<Integer>> userGroups = new ConcurrentHashMap<>();
+
+    /**
+     * 登记会话
+     * 用户的第一个会话握手时携带的分组id作为用户所在的分组
+     *
+     * @param session 会话
+     * @return 是否为新会话
+     */
+    public synchronized boolean add(WebSocketSession session) {
+        if (!sessions.add(session)) {
+            return false;
+        }
+        Integer userId = getUserId(session);
+        if (userId == null) {
+            return true;
+        }
+        userSessions.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(session);
+        Set<Integer> groupIds = userGroups.computeIfAbsent(userId, key -> new HashSet<>(getGroupIds(session)));
+        for (Integer groupId : groupIds) {
+            groupSessions.computeIfAbsent(groupId, key -> ConcurrentHashMap.newKeySet()).add(session);
+        }
+        return true;
+    }
+
+    /**
+     * 移除会话，用户没有其它会话时移除用户的索引
+     *
+     * @param session 会话
+     * @return 会话是否存在
+     */
+    public synchronized boolean remove(WebSocketSession session) {
+        if (!sessions.remove(session)) {
+            return false;
+        }
+        Integer userId = getUserId(session);
+        if (userId == null) {
+            return true;
+        }
+        Set<WebSocketSession> set = userSessions.get(userId);
+        if (set != null) {
+            set.remove(session);
+            if (set.isEmpty()) {
+                userSessions.remove(userId);
+            }
+        }
+        Set<Integer> groupIds = set == null || set.isEmpty() ? userGroups.remove(userId) : userGroups.get(userId);
+        if (groupIds != null) {
+            for (Integer groupId : groupIds) {
+                removeFromGroup(groupId, session);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 更新在线用户所在的分组，用户不在线时忽略
+     *
+     * @param userId   用户id
+     * @param groupIds 用户现在所在的所有分组id
+     */
+    public synchronized void updateUserGroups(Integer userId, Collection<Integer> groupIds) {
+        Set<Integer> oldGroupIds = userGroups.get(userId);
+        if (oldGroupIds == null) {
+            return;
+        }
+        Set<Integer> newGroupIds = new HashSet<>(groupIds);
+        Set<WebSocketSession> set = userSessions.getOrDefault(userId, Collections.emptySet());
+        for (Integer groupId : oldGroupIds) {
+            if (!newGroupIds.contains(groupId)) {
+                set.forEach(session -> removeFromGroup(groupId, session));
+            }
+        }
+        for (Integer groupId : newGroupIds) {
+            if (!oldGroupIds.contains(groupId)) {
+                groupSessions.computeIfAbsent(groupId, key -> ConcurrentHashMap.newKeySet()).addAll(set);
+            }
+        }
+        userGroups.put(userId, newGroupIds);
+    }
+
+    /**
+     * 获得用户的所有会话
+     *
+     * @param userId 用户id
+     * @return 会话，不可修改
+     */
+    public Set<WebSocketSession> getUserSessions(Integer userId) {
+        Set<WebSocketSession> set = userSessions.get(userId);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * 获得分组内在线用户的所有会话
+     *
+     * @param groupId 分组id
+     * @return 会话，不可修改
+     */
+    public Set<WebSocketSession> getGroupSessions(Integer groupId) {
+        Set<WebSocketSession> set = groupSessions.get(groupId);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * 获得所有会话
+     *
+     * @return 会话，不可修改
+     */
+    public Set<WebSocketSession> getSessions() {
+        return Collections.unmodifiableSet(sessions);
+    }
+
+    /**
+     * 获得所有在线用户的id
+     *
+     * @return 用户id，不可修改
+     */
+    public Set<Integer> getUserIds() {
+        return Collections.unmodifiableSet(userSessions.keySet());
+    }
+
+    /**
+     * 获得有在线会话的分组id
+     *
+     * @return 分组id，不可修改
+     */
+    public Set<Integer> getGroupIds() {
+        return Collections.unmodifiableSet(groupSessions.keySet());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 获得在线用户的数量
+     *
+     * @return 在线用户数量
+     */
+    public int getUserCount() {
+        return userSessions.size();
+    }
+
+    /**
+     * 获得会话所属的用户id
+     *
+     * @param session 会话
+     * @return 用户id，未经过握手拦截（匿名会话）时返回 null
+     */
+    public static Integer getUserId(WebSocketSession session) {
+        Object user = session.getAttributes().get(MessageConstant.USER_KEY);
+        return user instanceof UserDO ? ((UserDO) user).getId() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Integer> getGroupIds(WebSocketSession session) {
+        Object groupIds = session.getAttributes().get(MessageConstant.GROUP_IDS_KEY);
+        return groupIds instanceof Collection ? (Collection<Integer>) groupIds : Collections.emptyList();
+    }
+
+    private void removeFromGroup(Integer groupId, WebSocketSession session) {
+        Set<WebSocketSession> set = groupSessions.get(groupId);
+        if (set == null) {
+            return;
+        }
+        set.remove(session);
+        if (set.isEmpty()) {
+            groupSessions.remove(groupId);
+        }
+    }
+}
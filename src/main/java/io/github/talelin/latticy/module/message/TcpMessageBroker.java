@@ -0,0 +1,376 @@
+package io.github.talelin.latticy.module.message;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 基于本机回环地址 TCP 的传输方式，用于同一台主机上的多个进程
+ * 每个节点监听 127.0.0.1 上的一个端口，节点id为 127.0.0.1:端口，
+ * 每个对端节点有一个长连接和一个发送线程，消息按行编码为 json，断开后在下次发送时重连
+ * 连接后的第一行为共享密钥，本机的其它进程不知道密钥时无法向浏览器会话投递消息
+ * 发送只是入队，对端不可用时队列满了就丢弃，不会阻塞调用方
+ *
+ * @author Juzi@TaleLin
+ */
+@Slf4j
+public class TcpMessageBroker implements MessageBroker {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 连接失败后的重连间隔，单位毫秒
+     */
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    /**
+     * 等待对端发送密钥的最长时间，单位毫秒
+     */
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+
+    private final int port;
+
+    private final String nodeId;
+
+    private final int queueCapacity;
+
+    private final String secret;
+
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong decodeErrorCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private volatile boolean running;
+
+    private volatile Consumer<BrokerMessage> receiver;
+
+    private ServerSocket serverSocket;
+
+    /**
+     * @param port          本节点监听的端口
+     * @param peerPorts     其它节点监听的端口
+     * @param queueCapacity 每个对端节点发送队列的长度
+     * @param secret        节点间的共享密钥
+     */
+    public TcpMessageBroker(int port, List<Integer> peerPorts, int queueCapacity, String secret) {
+        this.port = port;
+        this.nodeId = toNodeId(port);
+        this.queueCapacity = queueCapacity;
+        this.secret = secret;
+        for (Integer peerPort : peerPorts) {
+            if (peerPort != port) {
+                peers.put(toNodeId(peerPort), new Peer(peerPort));
+            }
+        }
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public synchronized void start(Consumer<BrokerMessage> receiver) {
+        if (running) {
+            return;
+        }
+        if (secret == null || secret.trim().isEmpty()) {
+            throw new IllegalStateException("lin.cms.websocket.broker.secret is required by the tcp broker");
+        }
+        this.receiver = receiver;
+        try {
+            serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new IllegalStateException("listen on loopback port " + port + " failed", e);
+        }
+        running = true;
+        startThread("ws-broker-accept", this::acceptLoop);
+        peers.values().forEach(peer -> startThread("ws-broker-send-" + peer.port, peer::sendLoop));
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        inbound.forEach(TcpMessageBroker::closeQuietly);
+        peers.values().forEach(Peer::close);
+    }
+
+    @Override
+    public void publish(BrokerMessage message) {
+        String line = encode(message);
+        if (line == null) {
+            return;
+        }
+        peers.values().forEach(peer -> peer.offer(line));
+    }
+
+    @Override
+    public boolean send(String nodeId, BrokerMessage message) {
+        Peer peer = peers.get(nodeId);
+        if (peer == null) {
+            return false;
+        }
+        String line = encode(message);
+        return line != null && peer.offer(line);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("port", port);
+        metrics.put("inbound_connection_count", inbound.size());
+        metrics.put("received_count", receivedCount.get());
+        metrics.put("decode_error_count", decodeErrorCount.get());
+        metrics.put("rejected_count", rejectedCount.get());
+        Map<String, Object> items = new LinkedHashMap<>();
+        peers.forEach((id, peer) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("connected", peer.socket != null);
+            item.put("queue_depth", peer.queue.size());
+            item.put("written_count", peer.writtenCount.get());
+            item.put("dropped_count", peer.droppedCount.get());
+            item.put("connect_error_count", peer.connectErrorCount.get());
+            item.put("write_error_count", peer.writeErrorCount.get());
+            items.put(id, item);
+        });
+        metrics.put("peers", items);
+        return metrics;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                inbound.add(socket);
+                startThread("ws-broker-receive-" + socket.getPort(), () -> receiveLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("accept broker connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receiveLoop(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            if (!authenticate(reader.readLine())) {
+                rejectedCount.incrementAndGet();
+                log.warn("rejected broker connection from port {} without the shared secret", socket.getPort());
+                return;
+            }
+            socket.setSoTimeout(0);
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                BrokerMessage message;
+                try {
+                    message = MAPPER.readValue(line, BrokerMessage.class);
+                } catch (IOException e) {
+                    decodeErrorCount.incrementAndGet();
+                    continue;
+                }
+                receivedCount.incrementAndGet();
+                try {
+                    receiver.accept(message);
+                } catch (Exception e) {
+                    log.error("handle broker message failed", e);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                log.warn("broker connection closed: {}", e.getMessage());
+            }
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * 以固定时间比较密钥
+     */
+    private boolean authenticate(String line) {
+        return line != null && MessageDigest.isEqual(
+                line.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encode(BrokerMessage message) {
+        try {
+            return MAPPER.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            log.error("encode broker message failed", e);
+            return null;
+        }
+    }
+
+    private static String toNodeId(int port) {
+        return "127.0.0.1:" + port;
+    }
+
+    private static void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 关闭失败无需处理
+        }
+    }
+
+    private class Peer {
+
+        private final int port;
+
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        private final AtomicLong writtenCount = new AtomicLong();
+
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private final AtomicLong connectErrorCount = new AtomicLong();
+
+        private final AtomicLong writeErrorCount = new AtomicLong();
+
+        private volatile Socket socket;
+
+        private Writer writer;
+
+        private volatile Thread thread;
+
+        private Peer(int port) {
+            this.port = port;
+        }
+
+        private boolean offer(String line) {
+            if (queue.offer(line)) {
+                return true;
+            }
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * 连接只由发送线程读写和关闭，退出时关闭连接
+         */
+        private void sendLoop() {
+            thread = Thread.currentThread();
+            try {
+                while (running) {
+                    String line;
+                    try {
+                        line = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (!connect()) {
+                        droppedCount.incrementAndGet();
+                        continue;
+                    }
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                        long written = 1;
+                        // 一次写出队列中已有的消息，减少 flush 次数
+                        while ((line = queue.poll()) != null) {
+                            writer.write(line);
+                            writer.write('\n');
+                            written++;
+                        }
+                        writer.flush();
+                        writtenCount.addAndGet(written);
+                    } catch (IOException e) {
+                        writeErrorCount.incrementAndGet();
+                        log.warn("write to broker peer {} failed: {}", port, e.getMessage());
+                        disconnect();
+                    }
+                }
+            } finally {
+                disconnect();
+            }
+        }
+
+        private boolean connect() {
+            if (socket != null) {
+                return true;
+            }
+            try {
+                Socket connected = new Socket(InetAddress.getLoopbackAddress(), port);
+                connected.setTcpNoDelay(true);
+                writer = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream(), StandardCharsets.UTF_8));
+                writer.write(secret);
+                writer.write('\n');
+                socket = connected;
+                return true;
+            } catch (IOException e) {
+                connectErrorCount.incrementAndGet();
+                // 对端未启动时，丢弃重连间隔内的消息，避免反复连接
+                sleepQuietly();
+                droppedCount.addAndGet(queue.drainTo(new ArrayList<>()));
+                return false;
+            }
+        }
+
+        private void disconnect() {
+            closeQuietly(socket);
+            socket = null;
+            writer = null;
+        }
+
+        /**
+         * 中断发送线程，由发送线程退出时关闭连接，避免与正在进行的写入并发
+         */
+        private void close() {
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+        }
+
+        private void sleepQuietly() {
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.talelin.latticy.module.message;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮
+ * 时间轮有 wheelSize 个槽，每个槽对应一个 tick，定时任务按到期的 tick 放入对应的槽，
+ * 超过一圈的任务记录剩余圈数，每个 tick 只处理一个槽，与任务总数无关
+ * 可以在任意线程添加任务，推进时间轮只能在一个线程上进行
+ *
+ * @param <T> 任务
+ * @author Juzi@TaleLin
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+
+    private final long startTime;
+
+    private final List<List<Timeout<T>>> slots;
+
+    /**
+     * 新添加的任务，推进时间轮时放入槽中，添加任务无需加锁
+     */
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 下一个要处理的 tick，只在推进线程上访问
+     */
+    private long tick;
+
+    /**
+     * @param tickMillis 每个 tick 的时长（毫秒）
+     * @param wheelSize  槽数
+     * @param startTime  起始时间（毫秒）
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startTime) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.startTime = startTime;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param item     任务
+     * @param deadline 到期时间（毫秒），早于当前 tick 时在下一次推进时到期
+     */
+    public void schedule(T item, long deadline) {
+        pending.offer(new Timeout<>(item, deadline));
+        size.incrementAndGet();
+    }
+
+    /**
+     * 推进时间轮到 now，处理经过的每个 tick 的槽
+     * 到期任务的回调中可以再次添加任务，新任务最早在下一个 tick 到期
+     *
+     * @param now      当前时间（毫秒）
+     * @param onExpire 任务到期的回调
+     */
+    public void advance(long now, Consumer<T> onExpire) {
+        long target = (now - startTime) / tickMillis;
+        while (tick <= target) {
+            transferPending();
+            List<Timeout<T>> slot = slots.get((int) (tick % slots.size()));
+            List<T> expired = new ArrayList<>();
+            Iterator<Timeout<T>> iterator = slot.iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                    continue;
+                }
+                iterator.remove();
+                size.decrementAndGet();
+                expired.add(timeout.item);
+            }
+            tick++;
+            expired.forEach(onExpire);
+        }
+    }
+
+    /**
+     * 获得未到期的任务数
+     *
+     * @return 任务数
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void transferPending() {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            long expireTick = Math.max((timeout.deadline - startTime) / tickMillis, tick);
+            timeout.rounds = (expireTick - tick) / slots.size();
+            slots.get((int) (expireTick % slots.size())).add(timeout);
+        }
+    }
+
+    private static class Timeout<T> {
+
+        private final T item;
+
+        private final long deadline;
+
+        private long rounds;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.talelin.latticy.module.message;
+
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+
+import java.util.Map;
+
+/**
+ * 主题订阅的权限校验
+ * 超级管理员可以订阅任意主题；其它用户不能订阅 # 和首级为 * 的主题（相当于订阅全部），
+ * 订阅可能匹配到受保护前缀下的主题时，需要拥有该前缀配置的权限
+ * 未登录的会话（未开启握手校验时）按没有任何权限处理
+ *
+ * @author Juzi@TaleLin
+ */
+public class TopicAuthorizer {
+
+    private final Map<String, WebsocketProperties.TopicPermission> topicPermissions;
+
+    private final GroupLevelRegistry groupLevelRegistry;
+
+    private final PermissionEngine permissionEngine;
+
+    public TopicAuthorizer(Map<String, WebsocketProperties.TopicPermission> topicPermissions,
+                           GroupLevelRegistry groupLevelRegistry, PermissionEngine permissionEngine) {
+        this.topicPermissions = topicPermissions;
+        this.groupLevelRegistry = groupLevelRegistry;
+        this.permissionEngine = permissionEngine;
+    }
+
+    /**
+     * 校验用户能否订阅主题，主题本身已经校验过格式
+     *
+     * @param userId  用户id，未登录时为 null
+     * @param pattern 主题，可以包含通配符
+     * @return 拒绝的原因，允许时返回 null
+     */
+    public String authorize(Integer userId, String pattern) {
+        if (userId != null && groupLevelRegistry.isRootUser(userId)) {
+            return null;
+        }
+        String[] segments = pattern.split("\\.", -1);
+        if (TopicTrie.SINGLE_WILDCARD.equals(segments[0]) || TopicTrie.MULTI_WILDCARD.equals(segments[0])) {
+            return "root level wildcard is not allowed";
+        }
+        if (TopicTrie.MULTI_WILDCARD.equals(segments[segments.length - 1])) {
+            return "# is not allowed";
+        }
+        for (Map.Entry<String, WebsocketProperties.TopicPermission> entry : topicPermissions.entrySet()) {
+            if (!overlaps(segments, entry.getKey().split("\\.", -1))) {
+                continue;
+            }
+            WebsocketProperties.TopicPermission required = entry.getValue();
+            if (userId == null || !permissionEngine.hasPermission(userId, required.getModule(), required.getPermission())) {
+                return "no permission to subscribe " + entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断订阅的主题能否匹配到前缀下的主题（前缀本身或以前缀开头的主题）
+     */
+    private static boolean overlaps(String[] pattern, String[] prefix) {
+        if (pattern.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (!TopicTrie.SINGLE_WILDCARD.equals(pattern[i]) && !pattern[i].equals(prefix[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,254 @@
+package io.github.talelin.latticy.module.message;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 主题订阅树
+ * 主题由点分隔的多级组成，如 book.updated.1，订阅时可以使用通配符：
+ * * 匹配一级，如 book.updated.* 匹配 book.updated.1，不匹配 book.updated 和 book.updated.1.cover
+ * # 只能作为最后一级，匹配零级或多级，如 book.# 匹配 book、book.updated 和 book.updated.1
+ * 发布时沿树逐级查找订阅者，与订阅总数无关，只与主题的级数和匹配到的分支数有关
+ * 修改订阅的操作互斥执行，查询不加锁
+ *
+ * @param <T> 订阅者
+ * @author Juzi@TaleLin
+ */
+public class TopicTrie<T> {
+
+    public static final String SINGLE_WILDCARD = "*";
+
+    public static final String MULTI_WILDCARD = "#";
+
+    /**
+     * 主题的最大级数
+     */
+    public static final int MAX_DEPTH = 16;
+
+    private final Node<T> root = new Node<>(null, null);
+
+    /**
+     * 订阅者 -> 订阅的主题，订阅者离开时据此移除所有订阅
+     */
+    private final Map<T, Set<String>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅主题
+     *
+     * @param pattern    主题，可以包含通配符
+     * @param subscriber 订阅者
+     * @return 是否为新的订阅
+     * @throws IllegalArgumentException 主题不合法
+     */
+    public synchronized boolean subscribe(String pattern, T subscriber) {
+        String[] segments = split(pattern, true);
+        Node<T> node = root;
+        for (String segment : segments) {
+            Node<T> parent = node;
+            node = parent.children.computeIfAbsent(segment, key -> new Node<>(parent, key));
+        }
+        if (!node.subscribers.add(subscriber)) {
+            return false;
+        }
+        subscriptions.computeIfAbsent(subscriber, key -> ConcurrentHashMap.newKeySet()).add(pattern);
+        return true;
+    }
+
+    /**
+     * 取消订阅
+     *
+     * @param pattern    订阅时的主题
+     * @param subscriber 订阅者
+     * @return 是否存在该订阅
+     */
+    public synchronized boolean unsubscribe(String pattern, T subscriber) {
+        Set<String> patterns = subscriptions.get(subscriber);
+        if (patterns == null || !patterns.remove(pattern)) {
+            return false;
+        }
+        if (patterns.isEmpty()) {
+            subscriptions.remove(subscriber);
+        }
+        Node<T> node = find(pattern);
+        if (node != null) {
+            node.subscribers.remove(subscriber);
+            prune(node);
+        }
+        return true;
+    }
+
+    /**
+     * 取消订阅者的所有订阅
+     *
+     * @param subscriber 订阅者
+     * @return 取消的订阅数
+     */
+    public synchronized int unsubscribeAll(T subscriber) {
+        Set<String> patterns = subscriptions.remove(subscriber);
+        if (patterns == null) {
+            return 0;
+        }
+        for (String pattern : patterns) {
+            Node<T> node = find(pattern);
+            if (node != null) {
+                node.subscribers.remove(subscriber);
+                prune(node);
+            }
+        }
+        return patterns.size();
+    }
+
+    /**
+     * 获得主题的所有订阅者，一个订阅者订阅了多个匹配的主题时只出现一次
+     *
+     * @param topic 主题，不能包含通配符
+     * @return 订阅者
+     * @throws IllegalArgumentException 主题不合法
+     */
+    public Set<T> match(String topic) {
+        String[] segments = split(topic, false);
+        Set<T> result = new HashSet<>();
+        collect(root, segments, 0, result);
+        return result;
+    }
+
+    /**
+     * 获得订阅者订阅的主题
+     *
+     * @param subscriber 订阅者
+     * @return 主题，不可修改
+     */
+    public Set<String> getSubscriptions(T subscriber) {
+        Set<String> patterns = subscriptions.get(subscriber);
+        return patterns == null ? Collections.emptySet() : Collections.unmodifiableSet(patterns);
+    }
+
+    /**
+     * 获得所有订阅者订阅的主题，多个订阅者订阅同一主题时只出现一次
+     *
+     * @return 主题
+     */
+    public Set<String> getPatterns() {
+        Set<String> result = new HashSet<>();
+        for (Set<String> patterns : subscriptions.values()) {
+            result.addAll(patterns);
+        }
+        return result;
+    }
+
+    /**
+     * 获得订阅者的数量
+     *
+     * @return 订阅者数量
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 获得订阅的总数
+     *
+     * @return 订阅总数
+     */
+    public int getSubscriptionCount() {
+        int count = 0;
+        for (Set<String> patterns : subscriptions.values()) {
+            count += patterns.size();
+        }
+        return count;
+    }
+
+    /**
+     * 校验并拆分主题
+     *
+     * @param topic    主题
+     * @param wildcard 是否允许通配符
+     * @return 主题的每一级
+     */
+    static String[] split(String topic, boolean wildcard) {
+        if (topic == null || topic.isEmpty()) {
+            throw new IllegalArgumentException("topic can not be empty");
+        }
+        String[] segments = topic.split("\\.", -1);
+        if (segments.length > MAX_DEPTH) {
+            throw new IllegalArgumentException("topic is too deep: " + topic);
+        }
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("topic contains empty segment: " + topic);
+            }
+            boolean single = SINGLE_WILDCARD.equals(segment);
+            boolean multi = MULTI_WILDCARD.equals(segment);
+            if (!single && !multi && (segment.contains(SINGLE_WILDCARD) || segment.contains(MULTI_WILDCARD))) {
+                throw new IllegalArgumentException("wildcard must be a whole segment: " + topic);
+            }
+            if ((single || multi) && !wildcard) {
+                throw new IllegalArgumentException("wildcard is not allowed: " + topic);
+            }
+            if (multi && i != segments.length - 1) {
+                throw new IllegalArgumentException("# must be the last segment: " + topic);
+            }
+        }
+        return segments;
+    }
+
+    private void collect(Node<T> node, String[] segments, int index, Set<T> result) {
+        Node<T> multi = node.children.get(MULTI_WILDCARD);
+        if (multi != null) {
+            result.addAll(multi.subscribers);
+        }
+        if (index == segments.length) {
+            result.addAll(node.subscribers);
+            return;
+        }
+        Node<T> exact = node.children.get(segments[index]);
+        if (exact != null) {
+            collect(exact, segments, index + 1, result);
+        }
+        Node<T> single = node.children.get(SINGLE_WILDCARD);
+        if (single != null) {
+            collect(single, segments, index + 1, result);
+        }
+    }
+
+    private Node<T> find(String pattern) {
+        Node<T> node = root;
+        for (String segment : pattern.split("\\.", -1)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 从下往上移除没有订阅者也没有子节点的节点
+     */
+    private void prune(Node<T> node) {
+        while (node.parent != null && node.subscribers.isEmpty() && node.children.isEmpty()) {
+            node.parent.children.remove(node.segment, node);
+            node = node.parent;
+        }
+    }
+
+    private static class Node<T> {
+
+        private final Node<T> parent;
+
+        private final String segment;
+
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+
+        private final Set<T> subscribers = ConcurrentHashMap.newKeySet();
+
+        private Node(Node<T> parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+    }
+}
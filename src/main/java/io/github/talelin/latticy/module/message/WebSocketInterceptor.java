@@ -7,10 +7,15 @@ import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.Claim;
 import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.latticy.bo.PrincipalBO;
 import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -20,11 +25,18 @@ import org.springframework.web.socket.server.HandshakeInterceptor;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static io.github.talelin.latticy.module.message.MessageConstant.GROUP_IDS_KEY;
 import static io.github.talelin.latticy.module.message.MessageConstant.USER_KEY;
 
 /**
+ * 握手时校验令牌
+ * 复用已验证令牌缓存，同一个令牌重复握手（断线重连）时无需校验签名，也无需查询用户和分组
+ *
  * @author pedro@TaleLin
  * @author Juzi@TaleLin
  */
@@ -38,6 +50,24 @@ public class WebSocketInterceptor implements HandshakeInterceptor {
     @Autowired
     private GroupService groupService;
 
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private PermissionEngine permissionEngine;
+
+    @Value("${lin.cms.token-access-expire}")
+    private long accessExpire;
+
+    private final AtomicLong cachedCount = new AtomicLong();
+
+    private final AtomicLong loadedCount = new AtomicLong();
+
+    private final AtomicLong deniedCount = new AtomicLong();
+
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler webSocketHandler, Map<String, Object> attributes) throws Exception {
         if (request instanceof ServletServerHttpRequest) {
@@ -47,6 +77,19 @@ public class WebSocketInterceptor implements HandshakeInterceptor {
                 writeMessageToBody(response, "authorization field is required");
                 return false;
             }
+            String tokenId = TokenCache.hashToken(tokenStr);
+            TokenCache.Entry cached = tokenCache.getByTokenId(tokenId);
+            if (cached != null) {
+                PrincipalBO principal = cached.getPrincipal();
+                if (tokenRevocationStore.isRevoked(tokenId, principal.getId(), principal.getIssuedAt())) {
+                    writeMessageToBody(response, "token is revoked");
+                    return false;
+                }
+                UserDO user = cached.getUser() == null ? toUser(principal) : cached.getUser();
+                cachedCount.incrementAndGet();
+                putAttributes(attributes, user);
+                return true;
+            }
             Map<String, Claim> claims;
             try {
                 claims = jwt.decodeAccessToken(tokenStr);
@@ -62,17 +105,70 @@ public class WebSocketInterceptor implements HandshakeInterceptor {
                 return false;
             }
             int identity = claims.get("identity").asInt();
+            Date issuedAt = getIssuedAt(claims);
+            if (tokenRevocationStore.isRevoked(tokenId, identity, issuedAt)) {
+                writeMessageToBody(response, "token is revoked");
+                return false;
+            }
             UserDO user = userService.getById(identity);
             if (user == null) {
                 writeMessageToBody(response, "user is not found");
                 return false;
             }
-            attributes.put(USER_KEY, user);
+            Claim exp = claims.get("exp");
+            tokenCache.put(tokenStr, user, issuedAt, exp == null || exp.isNull() ? null : exp.asDate());
+            loadedCount.incrementAndGet();
+            putAttributes(attributes, user);
             return true;
         }
         return false;
     }
 
+    /**
+     * 获得握手校验的统计信息
+     * cached 为命中已验证令牌缓存的握手数，loaded 为校验令牌并查询用户的握手数
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cached_count", cachedCount.get());
+        metrics.put("loaded_count", loadedCount.get());
+        metrics.put("denied_count", deniedCount.get());
+        return metrics;
+    }
+
+    private void putAttributes(Map<String, Object> attributes, UserDO user) {
+        attributes.put(USER_KEY, user);
+        // 用于按分组索引会话，分组变化时由 UserGroupsChangedEvent 更新，分组集合优先使用权限引擎的缓存
+        attributes.put(GROUP_IDS_KEY, permissionEngine.getUserGroupIds(user.getId()));
+    }
+
+    /**
+     * 获得令牌的签发时间，令牌没有 iat 时通过过期时间和有效期推算
+     */
+    private Date getIssuedAt(Map<String, Claim> claims) {
+        Claim iat = claims.get("iat");
+        if (iat != null && !iat.isNull()) {
+            return iat.asDate();
+        }
+        Claim exp = claims.get("exp");
+        if (exp == null || exp.isNull()) {
+            return null;
+        }
+        return new Date(exp.asDate().getTime() - accessExpire * 1000);
+    }
+
+    private static UserDO toUser(PrincipalBO principal) {
+        UserDO user = UserDO.builder()
+                .username(principal.getUsername())
+                .nickname(principal.getNickname())
+                .avatar(principal.getAvatar())
+                .build();
+        user.setId(principal.getId());
+        return user;
+    }
+
     @Override
     public void afterHandshake(ServerHttpRequest serverHttpRequest, ServerHttpResponse serverHttpResponse, WebSocketHandler webSocketHandler, Exception e) {
 
@@ -83,6 +179,7 @@ public class WebSocketInterceptor implements HandshakeInterceptor {
     }
 
     private void writeMessageToBody(ServerHttpResponse response, String message) throws IOException {
+        deniedCount.incrementAndGet();
         response.setStatusCode(HttpStatus.BAD_REQUEST);
         response.getBody().write(message.getBytes(StandardCharsets.UTF_8));
     }
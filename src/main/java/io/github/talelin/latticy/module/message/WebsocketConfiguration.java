@@ -1,24 +1,36 @@
 package io.github.talelin.latticy.module.message;
 
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import java.util.UUID;
+
 /**
  * @author pedro@TaleLin
+ * @author Juzi@TaleLin
  */
 @Configuration
 @ConditionalOnProperty(prefix = "lin.cms.websocket", value = "enable", havingValue = "true")
 @EnableWebSocket
+@EnableConfigurationProperties(WebsocketProperties.class)
 public class WebsocketConfiguration implements WebSocketConfigurer {
 
     @Value("${lin.cms.websocket.intercept:false}")
     private boolean intercepted;
 
+    @Autowired
+    private WebsocketProperties properties;
+
     @Bean
     public MessageWebSocketHandler messageWebSocketHandler() {
         return new MessageWebSocketHandler();
@@ -29,6 +41,60 @@ public class WebsocketConfiguration implements WebSocketConfigurer {
         return new WsHandlerImpl();
     }
 
+    @Bean(destroyMethod = "shutdown")
+    public FanOutEngine fanOutEngine() {
+        return new FanOutEngine(properties.getSendQueueCapacity(), properties.getSendThreads(),
+                properties.getOverflowPolicy(), properties.getBatchFlushWindow(),
+                properties.getBatchMaxSize(), properties.getBatchMaxLength(), properties.getSendTimeLimit());
+    }
+
+    @Bean
+    public TopicAuthorizer topicAuthorizer(GroupLevelRegistry groupLevelRegistry, PermissionEngine permissionEngine) {
+        return new TopicAuthorizer(properties.getTopicPermissions(), groupLevelRegistry, permissionEngine);
+    }
+
+    /**
+     * @return 基于内存的跨节点传输方式
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lin.cms.websocket.broker", value = "type", havingValue = "memory")
+    public MessageBroker inMemoryMessageBroker() {
+        String nodeId = properties.getBroker().getNodeId();
+        return new InMemoryMessageBroker(nodeId == null ? UUID.randomUUID().toString() : nodeId);
+    }
+
+    /**
+     * @return 基于回环地址 TCP 的跨节点传输方式
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lin.cms.websocket.broker", value = "type", havingValue = "tcp")
+    public MessageBroker tcpMessageBroker() {
+        WebsocketProperties.Broker broker = properties.getBroker();
+        return new TcpMessageBroker(broker.getPort(), broker.getPeerPorts(), broker.getQueueCapacity(), broker.getSecret());
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnExpression("'${lin.cms.websocket.broker.type:none}' != 'none'")
+    public MessageRouter messageRouter(MessageBroker broker) {
+        return new MessageRouter(broker, properties.getBroker().getPresenceInterval());
+    }
+
+    @Bean(destroyMethod = "stop")
+    public SessionReaper sessionReaper() {
+        return new SessionReaper(fanOutEngine(), properties.getPingInterval(), properties.getIdleTimeout(),
+                properties.getReaperTick(), properties.getReaperWheelSize());
+    }
+
+    @Bean
+    public WebsocketMetrics websocketMetrics() {
+        return new WebsocketMetrics();
+    }
+
+    @Bean
+    public HandshakeLimiter handshakeLimiter() {
+        return new HandshakeLimiter(properties.getHandshakeRate(), properties.getHandshakeBurst());
+    }
+
     @Bean
     @ConditionalOnProperty(prefix = "lin.cms.websocket", value = "intercept", havingValue = "true")
     public WebSocketInterceptor webSocketInterceptor() {
@@ -37,12 +103,14 @@ public class WebsocketConfiguration implements WebSocketConfigurer {
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry handlerRegistry) {
+        // 准入控制在令牌校验之前，被拒绝的握手不会访问数据库
         if (intercepted) {
             handlerRegistry.addHandler(messageWebSocketHandler(), "ws/message")
-                    .addInterceptors(webSocketInterceptor())
+                    .addInterceptors(handshakeLimiter(), webSocketInterceptor())
                     .setAllowedOrigins("*");
         } else {
             handlerRegistry.addHandler(messageWebSocketHandler(), "ws/message")
+                    .addInterceptors(handshakeLimiter())
                     .setAllowedOrigins("*");
         }
     }
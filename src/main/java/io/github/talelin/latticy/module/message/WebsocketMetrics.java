@@ -0,0 +1,426 @@
+package io.github.talelin.latticy.module.message;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * websocket 模块的统计
+ * 记录收发的消息数和字节数（总数和每秒速率）、发送延迟和广播耗时的分布、发送失败数和因异常关闭的会话数，
+ * 可以输出为 json 或者 Prometheus 文本格式
+ * 所有记录操作只有几次原子加法，可以在发送线程上直接调用
+ *
+ * @author Juzi@TaleLin
+ */
+public class WebsocketMetrics {
+
+    /**
+     * 速率的统计窗口，单位秒
+     */
+    private static final int RATE_WINDOW = 10;
+
+    @Autowired(required = false)
+    private FanOutEngine fanOutEngine;
+
+    @Autowired(required = false)
+    private HandshakeLimiter handshakeLimiter;
+
+    @Autowired(required = false)
+    private MessageRouter messageRouter;
+
+    @Autowired(required = false)
+    private SessionReaper sessionReaper;
+
+    private volatile SessionRegistry registry;
+
+    private volatile TopicTrie<?> topics;
+
+    private final Rate sentMessages = new Rate();
+
+    private final Rate sentBytes = new Rate();
+
+    private final Rate receivedMessages = new Rate();
+
+    private final Rate receivedBytes = new Rate();
+
+    private final AtomicLong sendFailedCount = new AtomicLong();
+
+    private final AtomicLong errorClosedCount = new AtomicLong();
+
+    private final AtomicLong publishedCount = new AtomicLong();
+
+    private final AtomicLong publishedDeliveryCount = new AtomicLong();
+
+    private final Histogram sendLatency = new Histogram();
+
+    private final Histogram broadcastDuration = new Histogram();
+
+    /**
+     * 绑定会话登记表，用于统计每个分组的会话数
+     *
+     * @param registry 会话登记表
+     */
+    public void bindRegistry(SessionRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 绑定主题订阅树，用于统计订阅数
+     *
+     * @param topics 主题订阅树
+     */
+    public void bindTopics(TopicTrie<?> topics) {
+        this.topics = topics;
+    }
+
+    /**
+     * 记录写出的一帧
+     *
+     * @param messages 帧包含的消息数，合并发送时大于 1
+     * @param bytes    帧的字节数
+     */
+    public void recordSent(int messages, long bytes) {
+        sentMessages.add(messages);
+        sentBytes.add(bytes);
+    }
+
+    /**
+     * 记录一条消息的发送延迟（入队到写出完成）
+     *
+     * @param nanos 延迟，单位纳秒
+     */
+    public void recordSendLatency(long nanos) {
+        sendLatency.record(nanos);
+    }
+
+    /**
+     * 记录发送失败
+     *
+     * @param messages 发送失败的消息数
+     */
+    public void recordSendFailed(int messages) {
+        sendFailedCount.addAndGet(messages);
+    }
+
+    /**
+     * 记录收到的一条消息
+     *
+     * @param bytes 消息的字节数
+     */
+    public void recordReceived(long bytes) {
+        receivedMessages.add(1);
+        receivedBytes.add(bytes);
+    }
+
+    /**
+     * 记录因异常关闭的会话
+     */
+    public void recordErrorClosed() {
+        errorClosedCount.incrementAndGet();
+    }
+
+    /**
+     * 记录一次广播（包括发送给用户的所有会话、分组广播）的耗时，即入队和跨节点路由的时间
+     *
+     * @param nanos 耗时，单位纳秒
+     */
+    public void recordBroadcast(long nanos) {
+        broadcastDuration.record(nanos);
+    }
+
+    /**
+     * 记录一次主题发布
+     *
+     * @param sessions 本节点上收到消息的会话数
+     */
+    public void recordPublish(int sessions) {
+        publishedCount.incrementAndGet();
+        publishedDeliveryCount.addAndGet(sessions);
+    }
+
+    /**
+     * 获得统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        SessionRegistry current = registry;
+        metrics.put("session_count", current == null ? 0 : current.size());
+        metrics.put("user_count", current == null ? 0 : current.getUserCount());
+        metrics.put("group_sessions", getGroupSessionCounts());
+        metrics.put("sent_message_count", sentMessages.total());
+        metrics.put("sent_bytes", sentBytes.total());
+        metrics.put("received_message_count", receivedMessages.total());
+        metrics.put("received_bytes", receivedBytes.total());
+        metrics.put("sent_messages_per_second", sentMessages.perSecond());
+        metrics.put("sent_bytes_per_second", sentBytes.perSecond());
+        metrics.put("received_messages_per_second", receivedMessages.perSecond());
+        metrics.put("received_bytes_per_second", receivedBytes.perSecond());
+        metrics.put("send_failed_count", sendFailedCount.get());
+        metrics.put("error_closed_count", errorClosedCount.get());
+        TopicTrie<?> currentTopics = topics;
+        metrics.put("topic_subscriber_count", currentTopics == null ? 0 : currentTopics.getSubscriberCount());
+        metrics.put("topic_subscription_count", currentTopics == null ? 0 : currentTopics.getSubscriptionCount());
+        metrics.put("published_count", publishedCount.get());
+        metrics.put("published_delivery_count", publishedDeliveryCount.get());
+        metrics.put("send_latency", sendLatency.summary());
+        metrics.put("broadcast_duration", broadcastDuration.summary());
+        return metrics;
+    }
+
+    /**
+     * 输出为 Prometheus 文本格式
+     *
+     * @return Prometheus 文本
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        SessionRegistry current = registry;
+        String node = messageRouter == null ? "local" : messageRouter.getNodeId();
+        gauge(out, "lin_websocket_sessions", "Open websocket sessions on this node",
+                "node=\"" + node + "\"", current == null ? 0 : current.size());
+        help(out, "lin_websocket_group_sessions", "gauge", "Open websocket sessions per group on this node");
+        getGroupSessionCounts().forEach((groupId, count) ->
+                sample(out, "lin_websocket_group_sessions", "group=\"" + groupId + "\"", count));
+        counter(out, "lin_websocket_sent_messages_total", "Messages written to sessions", sentMessages.total());
+        counter(out, "lin_websocket_sent_bytes_total", "Bytes written to sessions", sentBytes.total());
+        counter(out, "lin_websocket_received_messages_total", "Messages received from sessions", receivedMessages.total());
+        counter(out, "lin_websocket_received_bytes_total", "Bytes received from sessions", receivedBytes.total());
+        gauge(out, "lin_websocket_sent_messages_per_second", "Messages written per second", null, sentMessages.perSecond());
+        gauge(out, "lin_websocket_received_messages_per_second", "Messages received per second", null,
+                receivedMessages.perSecond());
+        counter(out, "lin_websocket_send_failed_total", "Messages that failed to be written", sendFailedCount.get());
+        counter(out, "lin_websocket_error_closed_total", "Sessions closed after a transport error", errorClosedCount.get());
+        TopicTrie<?> currentTopics = topics;
+        gauge(out, "lin_websocket_topic_subscriptions", "Topic subscriptions held by sessions on this node", null,
+                currentTopics == null ? 0 : currentTopics.getSubscriptionCount());
+        counter(out, "lin_websocket_published_total", "Messages published to topics", publishedCount.get());
+        sendLatency.write(out, "lin_websocket_send_latency_seconds", "Time from enqueue to write completion");
+        broadcastDuration.write(out, "lin_websocket_broadcast_duration_seconds", "Time spent fanning out one broadcast");
+        if (fanOutEngine != null) {
+            gauge(out, "lin_websocket_send_queue_depth", "Messages waiting in session send queues", null,
+                    fanOutEngine.getQueueDepth());
+        }
+        if (sessionReaper != null) {
+            counter(out, "lin_websocket_reaped_total", "Idle sessions closed by the reaper", sessionReaper.getReapedCount());
+        }
+        if (handshakeLimiter != null) {
+            Map<String, Object> handshake = handshakeLimiter.getMetrics();
+            help(out, "lin_websocket_handshakes_total", "counter", "Websocket handshakes by admission result");
+            for (String result : new String[]{"accepted", "rejected"}) {
+                sample(out, "lin_websocket_handshakes_total", "result=\"" + result + "\"",
+                        (Number) handshake.get(result + "_count"));
+            }
+        }
+        if (messageRouter != null) {
+            writeRouting(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数，无需编码
+     *
+     * @param text 字符串
+     * @return 字节数
+     */
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private Map<Integer, Integer> getGroupSessionCounts() {
+        SessionRegistry current = registry;
+        Map<Integer, Integer> counts = new TreeMap<>();
+        if (current != null) {
+            for (Integer groupId : current.getGroupIds()) {
+                counts.put(groupId, current.getGroupSessions(groupId).size());
+            }
+        }
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeRouting(StringBuilder out) {
+        Map<String, Object> nodes = (Map<String, Object>) messageRouter.getMetrics().get("nodes");
+        help(out, "lin_websocket_node_users", "gauge", "Online users reported by each remote node");
+        nodes.forEach((id, item) -> sample(out, "lin_websocket_node_users", "node=\"" + id + "\"",
+                (Number) ((Map<String, Object>) item).get("user_count")));
+        help(out, "lin_websocket_node_sent_total", "counter", "Messages routed to each remote node");
+        nodes.forEach((id, item) -> sample(out, "lin_websocket_node_sent_total", "node=\"" + id + "\"",
+                (Number) ((Map<String, Object>) item).get("sent_count")));
+        help(out, "lin_websocket_node_received_total", "counter", "Messages received from each remote node");
+        nodes.forEach((id, item) -> sample(out, "lin_websocket_node_received_total", "node=\"" + id + "\"",
+                (Number) ((Map<String, Object>) item).get("received_count")));
+    }
+
+    private static void counter(StringBuilder out, String name, String help, Number value) {
+        help(out, name, "counter", help);
+        sample(out, name, null, value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, String labels, Number value) {
+        help(out, name, "gauge", help);
+        sample(out, name, labels, value);
+    }
+
+    private static void help(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Number value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * 按秒分桶的计数，速率为最近 RATE_WINDOW 个完整秒的平均值
+     */
+    private static class Rate {
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLongArray buckets = new AtomicLongArray(RATE_WINDOW + 1);
+
+        private final AtomicLongArray seconds = new AtomicLongArray(RATE_WINDOW + 1);
+
+        private void add(long value) {
+            total.addAndGet(value);
+            long second = System.currentTimeMillis() / 1000;
+            int index = (int) (second % buckets.length());
+            long bucketSecond = seconds.get(index);
+            // 桶属于过去的某一秒时重置，并发重置时只有一个线程成功，其它线程直接累加，速率允许少量误差
+            if (bucketSecond != second && seconds.compareAndSet(index, bucketSecond, second)) {
+                buckets.set(index, 0);
+            }
+            buckets.addAndGet(index, value);
+        }
+
+        private long total() {
+            return total.get();
+        }
+
+        private double perSecond() {
+            long now = System.currentTimeMillis() / 1000;
+            long sum = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                long second = seconds.get(i);
+                if (second < now && second >= now - RATE_WINDOW) {
+                    sum += buckets.get(i);
+                }
+            }
+            return (double) sum / RATE_WINDOW;
+        }
+    }
+
+    /**
+     * 固定分桶的耗时分布，百分位取所在桶的上界
+     */
+    private static class Histogram {
+
+        /**
+         * 桶的上界，单位秒
+         */
+        private static final double[] BOUNDS = {
+                0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+        };
+
+        private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) {
+                BOUND_NANOS[i] = (long) (BOUNDS[i] * 1_000_000_000L);
+            }
+        }
+
+        /**
+         * 最后一个桶为 +Inf
+         */
+        private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong sum = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long nanos) {
+            int index = 0;
+            while (index < BOUND_NANOS.length && nanos > BOUND_NANOS[index]) {
+                index++;
+            }
+            counts.incrementAndGet(index);
+            count.incrementAndGet();
+            sum.addAndGet(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * 获得百分位，单位毫秒
+         */
+        private double percentile(double quantile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0D;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += counts.get(i);
+                if (cumulative >= rank) {
+                    return BOUNDS[i] * 1000;
+                }
+            }
+            return max.get() / 1_000_000D;
+        }
+
+        private Map<String, Object> summary() {
+            long total = count.get();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", total);
+            summary.put("avg_millis", total == 0 ? 0D : sum.get() / 1_000_000D / total);
+            summary.put("p50_millis", percentile(0.5));
+            summary.put("p90_millis", percentile(0.9));
+            summary.put("p99_millis", percentile(0.99));
+            summary.put("max_millis", max.get() / 1_000_000D);
+            return summary;
+        }
+
+        private void write(StringBuilder out, String name, String help) {
+            help(out, name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += counts.get(i);
+                sample(out, name + "_bucket", "le=\"" + BigDecimal.valueOf(BOUNDS[i]).stripTrailingZeros().toPlainString() + "\"", cumulative);
+            }
+            cumulative += counts.get(BOUNDS.length);
+            sample(out, name + "_bucket", "le=\"+Inf\"", cumulative);
+            sample(out, name + "_sum", null, sum.get() / 1_000_000_000D);
+            sample(out, name + "_count", null, cumulative);
+        }
+    }
+}
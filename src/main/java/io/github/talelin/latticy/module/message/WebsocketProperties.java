@@ -0,0 +1,389 @@
+package io.github.talelin.latticy.module.message;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * websocket 模块配置
+ *
+ * @author Juzi@TaleLin
+ */
+@ConfigurationProperties("lin.cms.websocket")
+public class WebsocketProperties {
+
+    /**
+     * 是否开启 websocket
+     */
+    private boolean enable = false;
+
+    /**
+     * 是否校验握手的令牌
+     */
+    private boolean intercept = false;
+
+    /**
+     * 每个会话发送队列的长度
+     */
+    private int sendQueueCapacity = 256;
+
+    /**
+     * 发送线程数
+     */
+    private int sendThreads = 2;
+
+    /**
+     * 发送队列已满时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * 单次写出的最长时间（毫秒），超过时关闭会话，小于等于 0 时不限制
+     */
+    private long sendTimeLimit = 10000;
+
+    /**
+     * 是否允许客户端协商合并发送的子协议
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * 合并发送的刷新窗口（毫秒）
+     */
+    private long batchFlushWindow = 10;
+
+    /**
+     * 合并为一帧的最大消息数
+     */
+    private int batchMaxSize = 64;
+
+    /**
+     * 合并为一帧的消息的最大总长度（字符数）
+     */
+    private int batchMaxLength = 64 * 1024;
+
+    /**
+     * 每秒放行的握手数，小于等于 0 时不限制
+     */
+    private double handshakeRate = 50;
+
+    /**
+     * 允许的突发握手数
+     */
+    private int handshakeBurst = 100;
+
+    /**
+     * 会话空闲多久后发送 ping（毫秒）
+     */
+    private long pingInterval = 30000;
+
+    /**
+     * 会话空闲多久后回收（毫秒）
+     */
+    private long idleTimeout = 90000;
+
+    /**
+     * 存活检测时间轮每个 tick 的时长（毫秒）
+     */
+    private long reaperTick = 1000;
+
+    /**
+     * 存活检测时间轮的槽数
+     */
+    private int reaperWheelSize = 512;
+
+    /**
+     * 每个会话最多订阅的主题数
+     */
+    private int maxSubscriptions = 64;
+
+    /**
+     * 主题前缀 -> 订阅需要的权限，订阅可能匹配到该前缀下的主题时校验，超级管理员不受限制
+     */
+    private Map<String, TopicPermission> topicPermissions = new LinkedHashMap<>();
+
+    /**
+     * 跨节点路由
+     */
+    private final Broker broker = new Broker();
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public boolean isIntercept() {
+        return intercept;
+    }
+
+    public void setIntercept(boolean intercept) {
+        this.intercept = intercept;
+    }
+
+    public int getSendQueueCapacity() {
+        return sendQueueCapacity;
+    }
+
+    public void setSendQueueCapacity(int sendQueueCapacity) {
+        this.sendQueueCapacity = sendQueueCapacity;
+    }
+
+    public int getSendThreads() {
+        return sendThreads;
+    }
+
+    public void setSendThreads(int sendThreads) {
+        this.sendThreads = sendThreads;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getSendTimeLimit() {
+        return sendTimeLimit;
+    }
+
+    public void setSendTimeLimit(long sendTimeLimit) {
+        this.sendTimeLimit = sendTimeLimit;
+    }
+
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    public void setBatchEnabled(boolean batchEnabled) {
+        this.batchEnabled = batchEnabled;
+    }
+
+    public long getBatchFlushWindow() {
+        return batchFlushWindow;
+    }
+
+    public void setBatchFlushWindow(long batchFlushWindow) {
+        this.batchFlushWindow = batchFlushWindow;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public int getBatchMaxLength() {
+        return batchMaxLength;
+    }
+
+    public void setBatchMaxLength(int batchMaxLength) {
+        this.batchMaxLength = batchMaxLength;
+    }
+
+    public double getHandshakeRate() {
+        return handshakeRate;
+    }
+
+    public void setHandshakeRate(double handshakeRate) {
+        this.handshakeRate = handshakeRate;
+    }
+
+    public int getHandshakeBurst() {
+        return handshakeBurst;
+    }
+
+    public void setHandshakeBurst(int handshakeBurst) {
+        this.handshakeBurst = handshakeBurst;
+    }
+
+    public long getPingInterval() {
+        return pingInterval;
+    }
+
+    public void setPingInterval(long pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getReaperTick() {
+        return reaperTick;
+    }
+
+    public void setReaperTick(long reaperTick) {
+        this.reaperTick = reaperTick;
+    }
+
+    public int getReaperWheelSize() {
+        return reaperWheelSize;
+    }
+
+    public void setReaperWheelSize(int reaperWheelSize) {
+        this.reaperWheelSize = reaperWheelSize;
+    }
+
+    public int getMaxSubscriptions() {
+        return maxSubscriptions;
+    }
+
+    public void setMaxSubscriptions(int maxSubscriptions) {
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    public Map<String, TopicPermission> getTopicPermissions() {
+        return topicPermissions;
+    }
+
+    public void setTopicPermissions(Map<String, TopicPermission> topicPermissions) {
+        this.topicPermissions = topicPermissions;
+    }
+
+    public Broker getBroker() {
+        return broker;
+    }
+
+    /**
+     * 订阅主题需要的权限
+     */
+    public static class TopicPermission {
+
+        /**
+         * 权限模块
+         */
+        private String module;
+
+        /**
+         * 权限名
+         */
+        private String permission;
+
+        public String getModule() {
+            return module;
+        }
+
+        public void setModule(String module) {
+            this.module = module;
+        }
+
+        public String getPermission() {
+            return permission;
+        }
+
+        public void setPermission(String permission) {
+            this.permission = permission;
+        }
+    }
+
+    /**
+     * 跨节点路由配置
+     */
+    public static class Broker {
+
+        /**
+         * 传输方式：none（单节点）、memory（仅单进程，测试使用）、tcp（同一主机上的多个进程）
+         */
+        private String type = "none";
+
+        /**
+         * 节点id，memory 方式使用，为空时随机生成
+         */
+        private String nodeId;
+
+        /**
+         * 本节点监听的回环端口，tcp 方式使用
+         */
+        private int port = 7301;
+
+        /**
+         * 其它节点监听的回环端口，tcp 方式使用
+         */
+        private List<Integer> peerPorts = new ArrayList<>();
+
+        /**
+         * 每个对端节点发送队列的长度，tcp 方式使用
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 节点间的共享密钥，tcp 方式必须配置，连接后的第一行须为该密钥，否则断开
+         */
+        private String secret;
+
+        /**
+         * 发布在线用户的间隔（毫秒）
+         */
+        private long presenceInterval = 5000;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public List<Integer> getPeerPorts() {
+            return peerPorts;
+        }
+
+        public void setPeerPorts(List<Integer> peerPorts) {
+            this.peerPorts = peerPorts;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getPresenceInterval() {
+            return presenceInterval;
+        }
+
+        public void setPresenceInterval(long presenceInterval) {
+            this.presenceInterval = presenceInterval;
+        }
+    }
+}
@@ -34,6 +34,13 @@ public interface WsHandler {
      */
     void handleMessage(WebSocketSession session, String message);
 
+    /**
+     * 收到 pong
+     *
+     * @param session 会话
+     */
+    void handlePong(WebSocketSession session);
+
     /**
      * 发送消息
      *
@@ -104,6 +111,24 @@ public interface WsHandler {
      */
     void broadCastToGroup(Integer groupId, TextMessage message) throws IOException;
 
+    /**
+     * 发布到主题，只有订阅了匹配主题的会话会收到消息
+     *
+     * @param topic   主题，如 book.updated.1，不能包含通配符
+     * @param message 消息
+     * @throws IOException 异常
+     */
+    void publish(String topic, String message) throws IOException;
+
+    /**
+     * 发布到主题，只有订阅了匹配主题的会话会收到消息
+     *
+     * @param topic   主题，如 book.updated.1，不能包含通配符
+     * @param message 文本消息
+     * @throws IOException 异常
+     */
+    void publish(String topic, TextMessage message) throws IOException;
+
     /**
      * 处理会话异常
      *
@@ -115,7 +140,7 @@ public interface WsHandler {
     /**
      * 获得所有的 websocket 会话
      *
-     * @return 所有 websocket 会话
+     * @return 所有 websocket 会话，不可修改
      */
     Set<WebSocketSession> getSessions();
 
@@ -1,50 +1,113 @@
 package io.github.talelin.latticy.module.message;
 
-import io.github.talelin.latticy.model.UserDO;
-import io.github.talelin.latticy.service.GroupService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.talelin.latticy.common.event.UserGroupsChangedEvent;
+import io.github.talelin.latticy.mapper.UserGroupMapper;
+import io.github.talelin.latticy.model.UserGroupDO;
+import io.github.talelin.latticy.module.cache.CacheInvalidationListener;
+import io.github.talelin.latticy.module.cache.CacheRegion;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author pedro@TaleLin
  * @author Juzi@TaleLin
  */
 @Slf4j
-public class WsHandlerImpl implements WsHandler {
+public class WsHandlerImpl implements WsHandler, CacheInvalidationListener {
 
-    private final AtomicInteger connectionCount = new AtomicInteger(0);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private CopyOnWriteArraySet<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    private final SessionRegistry registry = new SessionRegistry();
+
+    /**
+     * 会话订阅的主题
+     */
+    private final TopicTrie<WebSocketSession> topics = new TopicTrie<>();
+
+    @Autowired
+    private WebsocketProperties properties;
+
+    @Autowired
+    private UserGroupMapper userGroupMapper;
+
+    @Autowired
+    private FanOutEngine fanOutEngine;
+
+    @Autowired
+    private TopicAuthorizer topicAuthorizer;
+
+    /**
+     * 跨节点路由，单节点部署时为 null
+     */
+    @Autowired(required = false)
+    private MessageRouter router;
 
     @Autowired
-    private GroupService groupService;
+    private WebsocketMetrics metrics;
+
+    @Autowired
+    private SessionReaper reaper;
+
+    @PostConstruct
+    public void init() {
+        metrics.bindRegistry(registry);
+        metrics.bindTopics(topics);
+        fanOutEngine.setMetrics(metrics);
+        reaper.start(this::reap);
+        if (router != null) {
+            router.start(this::deliverLocally, registry::getUserIds, registry::getGroupIds, topics::getPatterns);
+        }
+    }
 
     @Override
     public void handleOpen(WebSocketSession session) {
-        sessions.add(session);
-        int cnt = connectionCount.incrementAndGet();
-        log.info("a new connection opened，current online count：{}", cnt);
+        registry.add(session);
+        fanOutEngine.register(session);
+        reaper.register(session);
+        presenceChanged(session);
+        log.info("a new connection opened，current online count：{}", registry.size());
     }
 
     @Override
     public void handleClose(WebSocketSession session) {
-        sessions.remove(session);
-        int cnt = connectionCount.decrementAndGet();
-        log.info("a connection closed，current online count：{}", cnt);
+        registry.remove(session);
+        fanOutEngine.unregister(session);
+        reaper.unregister(session);
+        if (topics.unsubscribeAll(session) > 0) {
+            routingChanged();
+        }
+        presenceChanged(session);
+        log.info("a connection closed，current online count：{}", registry.size());
     }
 
     @Override
     public void handleMessage(WebSocketSession session, String message) {
-        // 只处理前端传来的文本消息，并且直接丢弃了客户端传来的消息
+        metrics.recordReceived(WebsocketMetrics.utf8Length(message));
+        reaper.touch(session);
+        // 只处理前端传来的订阅、取消订阅消息，丢弃其它消息
+        handleSubscription(session, message);
+    }
+
+    @Override
+    public void handlePong(WebSocketSession session) {
+        reaper.pong(session);
     }
 
     @Override
@@ -54,20 +117,15 @@ public class WsHandlerImpl implements WsHandler {
 
     @Override
     public void sendMessage(Integer userId, TextMessage message) throws IOException {
-        Optional<WebSocketSession> userSession = sessions.stream().filter(session -> {
-            if (!session.isOpen()) {
-                return false;
-            }
-            Map<String, Object> attributes = session.getAttributes();
-            if (!attributes.containsKey(MessageConstant.USER_KEY)) {
-                return false;
-            }
-            UserDO user = (UserDO) attributes.get(MessageConstant.USER_KEY);
-            return user.getId().equals(userId);
-        }).findFirst();
-        if (userSession.isPresent()) {
-            userSession.get().sendMessage(message);
+        long start = System.nanoTime();
+        // 用户的每个会话（多个标签页、多个设备）都会收到消息，包括其它节点上的会话
+        for (WebSocketSession session : registry.getUserSessions(userId)) {
+            fanOutEngine.enqueue(session, message);
+        }
+        if (router != null) {
+            router.routeToUser(userId, message.getPayload());
         }
+        metrics.recordBroadcast(System.nanoTime() - start);
     }
 
     @Override
@@ -77,27 +135,25 @@ public class WsHandlerImpl implements WsHandler {
 
     @Override
     public void sendMessage(WebSocketSession session, TextMessage message) throws IOException {
-        session.sendMessage(message);
+        // 只是入队，由发送线程异步写出
+        fanOutEngine.enqueue(session, message);
     }
 
     @Override
     public void broadCast(String message) throws IOException {
-        for (WebSocketSession session : sessions) {
-            if (!session.isOpen()) {
-                continue;
-            }
-            sendMessage(session, message);
-        }
+        broadCast(new TextMessage(message));
     }
 
     @Override
     public void broadCast(TextMessage message) throws IOException {
-        for (WebSocketSession session : sessions) {
-            if (!session.isOpen()) {
-                continue;
-            }
-            session.sendMessage(message);
+        long start = System.nanoTime();
+        for (WebSocketSession session : registry.getSessions()) {
+            fanOutEngine.enqueue(session, message);
+        }
+        if (router != null) {
+            router.routeBroadcast(message.getPayload());
         }
+        metrics.recordBroadcast(System.nanoTime() - start);
     }
 
     @Override
@@ -107,37 +163,222 @@ public class WsHandlerImpl implements WsHandler {
 
     @Override
     public void broadCastToGroup(Integer groupId, TextMessage message) throws IOException {
-        List<Integer> userIds = groupService.getGroupUserIds(groupId);
+        long start = System.nanoTime();
+        for (WebSocketSession session : registry.getGroupSessions(groupId)) {
+            fanOutEngine.enqueue(session, message);
+        }
+        if (router != null) {
+            router.routeToGroup(groupId, message.getPayload());
+        }
+        metrics.recordBroadcast(System.nanoTime() - start);
+    }
+
+    @Override
+    public void publish(String topic, String message) throws IOException {
+        publish(topic, new TextMessage(message));
+    }
+
+    @Override
+    public void publish(String topic, TextMessage message) throws IOException {
+        long start = System.nanoTime();
+        Set<WebSocketSession> sessions = topics.match(topic);
         for (WebSocketSession session : sessions) {
-            if (!session.isOpen()) {
-                continue;
-            }
-            Map<String, Object> attributes = session.getAttributes();
-            if (!attributes.containsKey(MessageConstant.USER_KEY)) {
-                continue;
-            }
-            UserDO user = (UserDO) attributes.get(MessageConstant.USER_KEY);
-            boolean matched = userIds.stream().anyMatch(id -> id.equals(user.getId()));
-            if (!matched) {
-                continue;
+            fanOutEngine.enqueue(session, message);
+        }
+        if (router != null) {
+            router.routeToTopic(topic, message.getPayload());
+        }
+        metrics.recordPublish(sessions.size());
+        metrics.recordBroadcast(System.nanoTime() - start);
+    }
+
+    /**
+     * 处理订阅、取消订阅消息，处理结果回复给客户端
+     * 如 {"action": "subscribe", "topic": "book.updated.*", "success": true}
+     *
+     * @param session 会话
+     * @param message 客户端发来的消息
+     */
+    private void handleSubscription(WebSocketSession session, String message) {
+        if (message == null || !message.startsWith("{")) {
+            return;
+        }
+        JsonNode request;
+        try {
+            request = MAPPER.readTree(message);
+        } catch (IOException e) {
+            return;
+        }
+        String action = request.path("action").asText();
+        String topic = request.path("topic").asText(null);
+        String error = null;
+        try {
+            if (MessageConstant.SUBSCRIBE_ACTION.equals(action)) {
+                Set<String> subscribed = topics.getSubscriptions(session);
+                if (!subscribed.contains(topic) && subscribed.size() >= properties.getMaxSubscriptions()) {
+                    error = "too many subscriptions";
+                } else {
+                    error = topic == null ? null : topicAuthorizer.authorize(SessionRegistry.getUserId(session), topic);
+                }
+                if (error == null) {
+                    topics.subscribe(topic, session);
+                    // 订阅时会话可能已经关闭，关闭回调中的取消订阅已经执行过
+                    if (!session.isOpen()) {
+                        topics.unsubscribeAll(session);
+                    }
+                    routingChanged();
+                }
+            } else if (MessageConstant.UNSUBSCRIBE_ACTION.equals(action)) {
+                if (topics.unsubscribe(topic, session)) {
+                    routingChanged();
+                }
+            } else {
+                return;
             }
-            session.sendMessage(message);
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        }
+        ObjectNode reply = MAPPER.createObjectNode();
+        reply.put("action", action);
+        reply.put("topic", topic);
+        reply.put("success", error == null);
+        if (error != null) {
+            reply.put("message", error);
+        }
+        fanOutEngine.enqueue(session, new TextMessage(reply.toString()));
+    }
+
+    /**
+     * 分发其它节点发来的消息，只发送给本节点的会话
+     *
+     * @param message 其它节点发来的消息
+     */
+    private void deliverLocally(BrokerMessage message) {
+        Set<WebSocketSession> sessions;
+        switch (message.getType()) {
+            case USER:
+                sessions = registry.getUserSessions(message.getTarget());
+                break;
+            case GROUP:
+                sessions = registry.getGroupSessions(message.getTarget());
+                break;
+            case BROADCAST:
+                sessions = registry.getSessions();
+                break;
+            case TOPIC:
+                if (message.getTopic() == null) {
+                    return;
+                }
+                sessions = topics.match(message.getTopic());
+                break;
+            default:
+                return;
+        }
+        TextMessage text = new TextMessage(message.getPayload());
+        for (WebSocketSession session : sessions) {
+            fanOutEngine.enqueue(session, text);
+        }
+    }
+
+    /**
+     * 回收空闲超时的会话，会话的关闭回调可能不会触发，直接从所有索引中移除
+     */
+    private void reap(WebSocketSession session) {
+        if (registry.remove(session)) {
+            presenceChanged(session);
+        }
+        if (topics.unsubscribeAll(session) > 0) {
+            routingChanged();
+        }
+        fanOutEngine.close(session, CloseStatus.SESSION_NOT_RELIABLE);
+        log.info("an idle connection reaped，current online count：{}", registry.size());
+    }
+
+    private void presenceChanged(WebSocketSession session) {
+        if (router != null && SessionRegistry.getUserId(session) != null) {
+            router.presenceChanged();
+        }
+    }
+
+    /**
+     * 订阅或在线分组变化，其它节点据此决定主题发布和分组广播是否投递到本节点
+     */
+    private void routingChanged() {
+        if (router != null) {
+            router.presenceChanged();
+        }
+    }
+
+    /**
+     * 用户所在分组变化时，更新分组的会话索引
+     *
+     * @param event 分组变化事件
+     */
+    @EventListener
+    public void onUserGroupsChanged(UserGroupsChangedEvent event) {
+        registry.updateUserGroups(event.getUserId(), event.getGroupIds());
+        routingChanged();
+    }
+
+    /**
+     * 其它节点修改了用户，无法得知是哪个用户，重新查询所有在线用户的分组
+     */
+    @Override
+    public void onInvalidate(CacheRegion region) {
+        if (region != CacheRegion.USER) {
+            return;
+        }
+        List<Integer> userIds = new ArrayList<>(registry.getUserIds());
+        if (userIds.isEmpty()) {
+            return;
         }
+        QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().in(UserGroupDO::getUserId, userIds);
+        Map<Integer, List<Integer>> userGroups = new HashMap<>();
+        userIds.forEach(userId -> userGroups.put(userId, new ArrayList<>()));
+        for (UserGroupDO relation : userGroupMapper.selectList(wrapper)) {
+            userGroups.get(relation.getUserId()).add(relation.getGroupId());
+        }
+        userGroups.forEach(registry::updateUserGroups);
+        routingChanged();
+    }
+
+    /**
+     * 其它节点修改了用户，用户在线时重新查询其分组
+     */
+    @Override
+    public void onInvalidate(CacheRegion region, Integer key) {
+        if (region != CacheRegion.USER || !registry.getUserIds().contains(key)) {
+            return;
+        }
+        QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().eq(UserGroupDO::getUserId, key);
+        List<Integer> groupIds = userGroupMapper.selectList(wrapper).stream()
+                .map(UserGroupDO::getGroupId)
+                .collect(Collectors.toList());
+        registry.updateUserGroups(key, groupIds);
+        routingChanged();
     }
 
     @Override
     public void handleError(WebSocketSession session, Throwable error) {
         log.error("websocket error：{}，session id： {}", error.getMessage(), session.getId());
         log.error("", error);
+        // 传输出错后会话已不可用，主动关闭，关闭回调中移除会话
+        // 与回收、发送超时一样由发送线程关闭，避免与正在进行的发送并发
+        if (session.isOpen()) {
+            fanOutEngine.close(session, CloseStatus.SERVER_ERROR);
+        }
+        metrics.recordErrorClosed();
     }
 
     @Override
-    public CopyOnWriteArraySet<WebSocketSession> getSessions() {
-        return sessions;
+    public Set<WebSocketSession> getSessions() {
+        return registry.getSessions();
     }
 
     @Override
     public int getConnectionCount() {
-        return connectionCount.get();
+        return registry.size();
     }
 }
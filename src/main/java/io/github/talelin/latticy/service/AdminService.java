@@ -41,6 +41,13 @@ public interface AdminService {
      */
     boolean changeUserPassword(Integer id, ResetPasswordDTO dto);
 
+    /**
+     * 吊销用户已签发的所有令牌（强制下线）
+     *
+     * @param id 用户id
+     */
+    void revokeUserTokens(Integer id);
+
     /**
      * 删除用户
      *
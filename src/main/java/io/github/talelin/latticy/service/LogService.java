@@ -2,9 +2,12 @@ package io.github.talelin.latticy.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
+import io.github.talelin.latticy.common.mybatis.KeysetPage;
 import io.github.talelin.latticy.model.LogDO;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author pedro@TaleLin
@@ -37,6 +40,30 @@ public interface LogService extends IService<LogDO> {
      */
     IPage<LogDO> searchLogPage(Integer page, Integer count, String name, String keyword, Date start, Date end);
 
+    /**
+     * 按游标分页获取日志，不统计总数，翻页深度不影响查询速度
+     *
+     * @param cursor  游标，为空时从最新的日志开始
+     * @param count   当前页数目
+     * @param name    用户名
+     * @param keyword 搜索关键字，为 null 时不搜索
+     * @param start   日志开启时间
+     * @param end     日志结束时间
+     * @return 日志数据以及上一页、下一页的游标
+     */
+    KeysetPage<LogDO> getLogPageByCursor(String cursor, Integer count, String name, String keyword, Date start, Date end);
+
+    /**
+     * 按时间顺序逐条读取日志，用于导出，不在内存中保存结果
+     *
+     * @param name    用户名
+     * @param keyword 搜索关键字，为 null 时不搜索
+     * @param start   日志开启时间
+     * @param end     日志结束时间
+     * @param handler 处理每一条日志
+     */
+    void exportLogs(String name, String keyword, Date start, Date end, ResultHandler<LogDO> handler);
+
     /**
      * 分页获取日志用户名（以被记录日志的用户）
      *
@@ -61,4 +88,13 @@ public interface LogService extends IService<LogDO> {
     boolean createLog(String message, String permission, Integer userId,
                       String username, String method, String path,
                       Integer status);
+
+    /**
+     * 批量创建日志记录，使用一条多行 INSERT 写入
+     * 日志和新出现的用户名在同一个事务中写入，任一失败时整批回滚
+     *
+     * @param logs 日志记录，未设置创建时间时使用写入时间
+     * @return 是否成功
+     */
+    boolean createLogs(List<LogDO> logs);
 }
@@ -6,6 +6,8 @@ import io.github.talelin.autoconfigure.exception.ForbiddenException;
 import io.github.talelin.autoconfigure.exception.NotFoundException;
 import io.github.talelin.latticy.bo.GroupPermissionBO;
 import io.github.talelin.latticy.common.enumeration.GroupLevelEnum;
+import io.github.talelin.latticy.common.event.UserGroupsChangedEvent;
+import io.github.talelin.latticy.common.util.TransactionUtil;
 import io.github.talelin.latticy.common.mybatis.Page;
 import io.github.talelin.latticy.dto.admin.DispatchPermissionDTO;
 import io.github.talelin.latticy.dto.admin.DispatchPermissionsDTO;
@@ -20,16 +22,24 @@ import io.github.talelin.latticy.model.GroupPermissionDO;
 import io.github.talelin.latticy.model.PermissionDO;
 import io.github.talelin.latticy.model.UserDO;
 import io.github.talelin.latticy.model.UserIdentityDO;
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
+import io.github.talelin.latticy.module.cache.CacheInvalidationBus;
+import io.github.talelin.latticy.module.cache.CacheRegion;
 import io.github.talelin.latticy.service.AdminService;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.PermissionService;
 import io.github.talelin.latticy.service.UserIdentityService;
 import io.github.talelin.latticy.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +68,24 @@ public class AdminServiceImpl implements AdminService {
     @Autowired
     private GroupPermissionMapper groupPermissionMapper;
 
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private PermissionEngine permissionEngine;
+
+    @Autowired
+    private GroupLevelRegistry groupLevelRegistry;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public IPage<UserDO> getUserPageByGroupId(Integer groupId, Integer count, Integer page) {
         Page<UserDO> pager = new Page<>(page, count);
@@ -77,7 +105,16 @@ public class AdminServiceImpl implements AdminService {
     @Override
     public boolean changeUserPassword(Integer id, ResetPasswordDTO dto) {
         throwUserNotExistById(id);
-        return userIdentityService.changePassword(id, dto.getNewPassword());
+        boolean ok = userIdentityService.changePassword(id, dto.getNewPassword());
+        tokenCache.invalidateUser(id);
+        cacheInvalidationBus.publish(CacheRegion.USER, id);
+        return ok;
+    }
+
+    @Override
+    public void revokeUserTokens(Integer id) {
+        throwUserNotExistById(id);
+        tokenRevocationStore.revokeUser(id);
     }
 
     @Transactional
@@ -87,7 +124,13 @@ public class AdminServiceImpl implements AdminService {
         boolean userRemoved = userService.removeById(id);
         QueryWrapper<UserIdentityDO> wrapper = new QueryWrapper<>();
         wrapper.lambda().eq(UserIdentityDO::getUserId, id);
-        return userRemoved && userIdentityService.remove(wrapper);
+        boolean identityRemoved = userIdentityService.remove(wrapper);
+        // 携带用户信息的令牌不再查询用户，需要吊销已签发的令牌
+        tokenRevocationStore.revokeUser(id);
+        permissionEngine.invalidateUser(id);
+        groupLevelRegistry.onUserDeleted(id);
+        cacheInvalidationBus.publish(CacheRegion.USER, id);
+        return userRemoved && identityRemoved;
     }
 
     @Override
@@ -103,7 +146,12 @@ public class AdminServiceImpl implements AdminService {
         List<Integer> deleteIds = existGroupIds.stream().filter(it -> !newGroupIds.contains(it)).collect(Collectors.toList());
         // 添加newGroupIds有，而existGroupIds没有的
         List<Integer> addIds = newGroupIds.stream().filter(it -> !existGroupIds.contains(it)).collect(Collectors.toList());
-        return groupService.deleteUserGroupRelations(id, deleteIds) && groupService.addUserGroupRelations(id, addIds);
+        boolean ok = groupService.deleteUserGroupRelations(id, deleteIds) && groupService.addUserGroupRelations(id, addIds);
+        permissionEngine.invalidateUser(id);
+        cacheInvalidationBus.publish(CacheRegion.USER, id);
+        UserGroupsChangedEvent event = new UserGroupsChangedEvent(this, id, newGroupIds);
+        TransactionUtil.afterCommit(() -> eventPublisher.publishEvent(event));
+        return ok;
     }
 
     @Override
@@ -129,7 +177,9 @@ public class AdminServiceImpl implements AdminService {
                     .map(id -> new GroupPermissionDO(group.getId(), id))
                     .collect(Collectors.toList());
             groupPermissionMapper.insertBatch(relations);
+            permissionEngine.grant(group.getId(), dto.getPermissionIds());
         }
+        cacheInvalidationBus.publish(CacheRegion.GROUP, group.getId());
         return true;
     }
 
@@ -159,13 +209,19 @@ public class AdminServiceImpl implements AdminService {
             throw new ForbiddenException(10075);
         }
         throwGroupNotExistById(id);
-        return groupService.removeById(id);
+        boolean ok = groupService.removeById(id);
+        permissionEngine.removeGroup(id);
+        cacheInvalidationBus.publish(CacheRegion.GROUP, id);
+        return ok;
     }
 
     @Override
     public boolean dispatchPermission(DispatchPermissionDTO dto) {
         GroupPermissionDO groupPermission = new GroupPermissionDO(dto.getGroupId(), dto.getPermissionId());
-        return groupPermissionMapper.insert(groupPermission) > 0;
+        boolean ok = groupPermissionMapper.insert(groupPermission) > 0;
+        permissionEngine.grant(dto.getGroupId(), Collections.singletonList(dto.getPermissionId()));
+        cacheInvalidationBus.publish(CacheRegion.PERMISSION, dto.getGroupId());
+        return ok;
     }
 
     @Override
@@ -173,12 +229,18 @@ public class AdminServiceImpl implements AdminService {
         List<GroupPermissionDO> relations = dto.getPermissionIds().stream()
                 .map(id -> new GroupPermissionDO(dto.getGroupId(), id))
                 .collect(Collectors.toList());
-        return groupPermissionMapper.insertBatch(relations) > 0;
+        boolean ok = groupPermissionMapper.insertBatch(relations) > 0;
+        permissionEngine.grant(dto.getGroupId(), dto.getPermissionIds());
+        cacheInvalidationBus.publish(CacheRegion.PERMISSION, dto.getGroupId());
+        return ok;
     }
 
     @Override
     public boolean removePermissions(RemovePermissionsDTO dto) {
-        return groupPermissionMapper.deleteBatchByGroupIdAndPermissionId(dto.getGroupId(), dto.getPermissionIds()) > 0;
+        boolean ok = groupPermissionMapper.deleteBatchByGroupIdAndPermissionId(dto.getGroupId(), dto.getPermissionIds()) > 0;
+        permissionEngine.revoke(dto.getGroupId(), dto.getPermissionIds());
+        cacheInvalidationBus.publish(CacheRegion.PERMISSION, dto.getGroupId());
+        return ok;
     }
 
     @Override
@@ -12,6 +12,7 @@ import io.github.talelin.latticy.mapper.UserGroupMapper;
 import io.github.talelin.latticy.model.GroupDO;
 import io.github.talelin.latticy.model.PermissionDO;
 import io.github.talelin.latticy.model.UserGroupDO;
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.PermissionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,9 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, GroupDO> implemen
     @Autowired
     private UserGroupMapper userGroupMapper;
 
+    @Autowired
+    private GroupLevelRegistry groupLevelRegistry;
+
     @Override
     public List<GroupDO> getUserGroupsByUserId(Integer userId) {
         return this.baseMapper.selectGroupsByUserId(userId);
@@ -71,12 +75,7 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, GroupDO> implemen
 
     @Override
     public boolean checkIsRootByUserId(Integer userId) {
-        QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
-        Integer rootGroupId = this.getParticularGroupIdByLevel(GroupLevelEnum.ROOT);
-        wrapper.lambda().eq(UserGroupDO::getUserId, userId)
-                .eq(UserGroupDO::getGroupId, rootGroupId);
-        UserGroupDO relation = userGroupMapper.selectOne(wrapper);
-        return relation != null;
+        return groupLevelRegistry.isRootUser(userId);
     }
 
     @Override
@@ -91,7 +90,9 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, GroupDO> implemen
         wrapper.lambda()
                 .eq(UserGroupDO::getUserId, userId)
                 .in(UserGroupDO::getGroupId, deleteIds);
-        return userGroupMapper.delete(wrapper) > 0;
+        boolean ok = userGroupMapper.delete(wrapper) > 0;
+        groupLevelRegistry.onUserGroupsRemoved(userId, deleteIds);
+        return ok;
     }
 
     @Override
@@ -104,7 +105,9 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, GroupDO> implemen
             throw new ForbiddenException(10077);
         }
         List<UserGroupDO> relations = addIds.stream().map(it -> new UserGroupDO(userId, it)).collect(Collectors.toList());
-        return userGroupMapper.insertBatch(relations) > 0;
+        boolean inserted = userGroupMapper.insertBatch(relations) > 0;
+        groupLevelRegistry.onUserGroupsAdded(userId, addIds);
+        return inserted;
     }
 
     @Override
@@ -129,8 +132,8 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, GroupDO> implemen
 
     @Override
     public Integer getParticularGroupIdByLevel(GroupLevelEnum level) {
-        GroupDO group = this.getParticularGroupByLevel(level);
-        return group == null ? 0 : group.getId();
+        Integer groupId = groupLevelRegistry.getGroupId(level);
+        return groupId == null ? 0 : groupId;
     }
 
     private boolean checkGroupExistByIds(List<Integer> ids) {
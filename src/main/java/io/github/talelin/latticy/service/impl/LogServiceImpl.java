@@ -2,13 +2,27 @@ package io.github.talelin.latticy.service.impl;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import io.github.talelin.latticy.common.mybatis.CountCache;
+import io.github.talelin.latticy.common.mybatis.KeysetCursor;
+import io.github.talelin.latticy.common.mybatis.KeysetPage;
 import io.github.talelin.latticy.common.mybatis.Page;
 import io.github.talelin.latticy.mapper.LogMapper;
+import io.github.talelin.latticy.mapper.LogUserMapper;
 import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.module.log.LogPartitions;
+import io.github.talelin.latticy.module.log.LogSearchIndex;
+import io.github.talelin.latticy.module.log.LogUserRegistry;
 import io.github.talelin.latticy.service.LogService;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author pedro@TaleLin
@@ -17,28 +31,128 @@ import java.util.Date;
 @Service
 public class LogServiceImpl extends ServiceImpl<LogMapper, LogDO> implements LogService {
 
+    @Autowired
+    private LogSearchIndex logSearchIndex;
+
+    @Autowired
+    private LogUserRegistry logUserRegistry;
+
+    @Autowired
+    private LogUserMapper logUserMapper;
+
+    @Autowired
+    private LogPartitions logPartitions;
+
+    @Autowired
+    private CountCache countCache;
+
     @Override
     public IPage<LogDO> getLogPage(Integer page, Integer count, String name, Date start, Date end) {
-        Page<LogDO> pager = new Page<>(page, count);
+        // 日志持续写入，总数允许有偏差
+        Page<LogDO> pager = new Page<LogDO>(page, count).setEstimatedTotal(true);
+        List<String> tables = logPartitions.route(start, end);
+        if (tables.size() > 1) {
+            return pageAcrossPartitions(pager, tables, name, null, start, end, null);
+        }
         IPage<LogDO> iPage = this.baseMapper.findLogsByUsernameAndRange(pager, name, start, end);
         return iPage;
     }
 
     @Override
     public IPage<LogDO> searchLogPage(Integer page, Integer count, String name, String keyword, Date start, Date end) {
-        Page<LogDO> pager = new Page<>(page, count);
-        IPage<LogDO> iPage = this.baseMapper.searchLogsByUsernameAndKeywordAndRange(pager, name, "%" + keyword + "%", start, end);
+        Page<LogDO> pager = new Page<LogDO>(page, count).setEstimatedTotal(true);
+        LogSearchIndex.Candidates candidates = logSearchIndex.search(keyword);
+        List<String> tables = logPartitions.route(start, end);
+        if (tables.size() > 1) {
+            return pageAcrossPartitions(pager, tables, name, "%" + keyword + "%", start, end, candidates);
+        }
+        IPage<LogDO> iPage = this.baseMapper.searchLogsByUsernameAndKeywordAndRange(pager, name, "%" + keyword + "%", start, end,
+                candidates == null ? null : candidates.getIds(), candidates == null ? null : candidates.getIndexedId());
         return iPage;
     }
 
+    @Override
+    public KeysetPage<LogDO> getLogPageByCursor(String cursor, Integer count, String name, String keyword, Date start, Date end) {
+        KeysetCursor current = StringUtils.isEmpty(cursor) ? null : KeysetCursor.decode(cursor);
+        boolean backward = current != null && current.isBackward();
+        LogSearchIndex.Candidates candidates = keyword == null ? null : logSearchIndex.search(keyword);
+        // 多查一条判断是否还有更多
+        List<LogDO> records = new ArrayList<>(this.baseMapper.findLogsByKeyset(logPartitions.route(start, end), name,
+                keyword == null ? null : "%" + keyword + "%", start, end,
+                candidates == null ? null : candidates.getIds(), candidates == null ? null : candidates.getIndexedId(),
+                current, count + 1));
+        boolean hasMore = records.size() > count;
+        if (hasMore) {
+            records.remove(records.size() - 1);
+        }
+        if (backward) {
+            Collections.reverse(records);
+        }
+        if (records.isEmpty()) {
+            return new KeysetPage<>(records, null, null);
+        }
+        // 向后翻页时游标所在的行之前还有记录，向前翻页时游标所在的行之后还有记录
+        boolean hasNext = backward || hasMore;
+        boolean hasPrevious = backward ? hasMore : current != null;
+        LogDO first = records.get(0);
+        LogDO last = records.get(records.size() - 1);
+        return new KeysetPage<>(records,
+                hasNext ? KeysetCursor.of(last, false).encode() : null,
+                hasPrevious ? KeysetCursor.of(first, true).encode() : null);
+    }
+
+    @Override
+    public void exportLogs(String name, String keyword, Date start, Date end, ResultHandler<LogDO> handler) {
+        List<String> tables = new ArrayList<>(logPartitions.route(start, end));
+        // 先导出较早的归档表，热表最后
+        Collections.reverse(tables);
+        String pattern = keyword == null ? null : "%" + keyword + "%";
+        for (String table : tables) {
+            this.baseMapper.exportLogs(table, name, pattern, start, end, handler);
+        }
+    }
+
+    /**
+     * 分页查询跨越归档表的日志
+     * 每个表最多读取到当前页为止的日志，由数据库合并排序后取当前页；
+     * 总数为各表日志数之和，单独统计并按估算模式缓存（带搜索候选 id 时不缓存）
+     */
+    private IPage<LogDO> pageAcrossPartitions(Page<LogDO> pager, List<String> tables, String name, String keyword,
+                                              Date start, Date end, LogSearchIndex.Candidates candidates) {
+        pager.setSearchCount(false);
+        List<Integer> ids = candidates == null ? null : candidates.getIds();
+        Integer afterId = candidates == null ? null : candidates.getIndexedId();
+        String[] partitions = tables.toArray(new String[0]);
+        String key = null;
+        if (countCache.isEnabled() && ids == null) {
+            key = "lin_log_partitions|" + String.join(",", tables) + "|" + name + "|" + keyword
+                    + "|" + (start == null ? null : start.getTime()) + "|" + (end == null ? null : end.getTime());
+        }
+        Long total = key == null ? null : countCache.get(key, true);
+        if (total == null) {
+            long[] snapshot = countCache.snapshot(partitions);
+            total = this.baseMapper.countLogsInPartitions(tables, name, keyword, start, end, ids, afterId);
+            if (key != null) {
+                countCache.put(key, partitions, snapshot, total);
+            }
+        }
+        pager.setTotal(total);
+        if (total == 0) {
+            return pager;
+        }
+        long rowLimit = (pager.getCurrent() + 1) * pager.getSize();
+        return this.baseMapper.findLogsInPartitions(pager, tables, name, keyword, start, end, ids, afterId, rowLimit);
+    }
+
     @Override
     public IPage<String> getUserNamePage(Integer page, Integer count) {
-        Page<LogDO> pager = new Page<>(page, count);
-        IPage<String> iPage = this.baseMapper.getUserNames(pager);
+        Page<String> pager = new Page<>(page, count);
+        IPage<String> iPage = logUserMapper.selectUsernamePage(pager);
         return iPage;
     }
 
     @Override
+    @Transactional
     public boolean createLog(String message, String permission, Integer userId, String username, String method, String path, Integer status) {
         LogDO record = LogDO.builder()
                 .message(message)
@@ -51,6 +165,23 @@ public class LogServiceImpl extends ServiceImpl<LogMapper, LogDO> implements Log
         if (permission != null) {
             record.setPermission(permission);
         }
-        return this.baseMapper.insert(record) > 0;
+        boolean ok = this.baseMapper.insert(record) > 0;
+        logUserRegistry.record(Collections.singletonList(record));
+        return ok;
+    }
+
+    @Override
+    @Transactional
+    public boolean createLogs(List<LogDO> logs) {
+        if (logs.isEmpty()) {
+            return true;
+        }
+        Date now = new Date();
+        logs.stream()
+                .filter(record -> record.getCreateTime() == null)
+                .forEach(record -> record.setCreateTime(now));
+        boolean ok = this.baseMapper.insertBatch(logs) == logs.size();
+        logUserRegistry.record(logs);
+        return ok;
     }
 }
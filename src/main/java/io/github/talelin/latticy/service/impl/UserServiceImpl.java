@@ -21,6 +21,10 @@ import io.github.talelin.latticy.model.GroupDO;
 import io.github.talelin.latticy.model.PermissionDO;
 import io.github.talelin.latticy.model.UserDO;
 import io.github.talelin.latticy.model.UserGroupDO;
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.cache.CacheInvalidationBus;
+import io.github.talelin.latticy.module.cache.CacheRegion;
 import io.github.talelin.latticy.service.GroupService;
 import io.github.talelin.latticy.service.PermissionService;
 import io.github.talelin.latticy.service.UserIdentityService;
@@ -54,6 +58,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserDO> implements
     @Autowired
     private UserGroupMapper userGroupMapper;
 
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private GroupLevelRegistry groupLevelRegistry;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
     @Transactional
     @Override
     public UserDO createUser(RegisterDTO dto) {
@@ -106,6 +119,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserDO> implements
         }
         BeanUtil.copyProperties(dto, user);
         this.baseMapper.updateById(user);
+        tokenCache.invalidateUser(user.getId());
+        cacheInvalidationBus.publish(CacheRegion.USER, user.getId());
         return user;
     }
 
@@ -120,6 +135,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserDO> implements
         if (!valid) {
             throw new FailedException(10011);
         }
+        tokenCache.invalidateUser(user.getId());
+        cacheInvalidationBus.publish(CacheRegion.USER, user.getId());
         return user;
     }
 
@@ -188,11 +205,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserDO> implements
 
     @Override
     public Integer getRootUserId() {
-        Integer rootGroupId = groupService.getParticularGroupIdByLevel(GroupLevelEnum.ROOT);
-        QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
-        wrapper.lambda().eq(UserGroupDO::getGroupId, rootGroupId);
-        UserGroupDO userGroupDO = userGroupMapper.selectOne(wrapper);
-        return userGroupDO == null ? 0 : userGroupDO.getUserId();
+        return groupLevelRegistry.getRootUserIds().stream().min(Integer::compareTo).orElse(0);
     }
 
     private void checkGroupsExist(List<Integer> ids) {
@@ -0,0 +1,31 @@
+package io.github.talelin.latticy.vo;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 支持游标的分页数据 view object
+ * 按页码分页时 total、page 有值；按游标分页时不统计总数，total、page 为 null
+ * next、previous 为下一页、上一页的游标，作为 cursor 参数传入即可翻页
+ *
+ * @author Juzi@TaleLin
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class CursorPageResponseVO<T> extends PageResponseVO<T> {
+
+    private String next;
+
+    private String previous;
+
+    public CursorPageResponseVO(Integer total, List<T> items, Integer page, Integer count,
+                                String next, String previous) {
+        super(total, items, page, count);
+        this.next = next;
+        this.previous = previous;
+    }
+}
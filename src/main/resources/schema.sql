@@ -40,7 +40,10 @@ CREATE TABLE lin_log
     create_time datetime(3)      NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
     update_time datetime(3)      NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     delete_time datetime(3)               DEFAULT NULL,
-    PRIMARY KEY (id)
+    PRIMARY KEY (id),
+    KEY delete_time_create_time_id (delete_time, create_time, id),
+    KEY username_delete_time_create_time_id (username, delete_time, create_time, id),
+    KEY create_time_id (create_time, id)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_general_ci;
@@ -158,6 +161,67 @@ CREATE TABLE lin_user_group
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_general_ci;
 
+-- ----------------------------
+-- 缓存版本表，用于多节点间的缓存失效
+-- ----------------------------
+DROP TABLE IF EXISTS lin_cache_version;
+CREATE TABLE lin_cache_version
+(
+    region      varchar(32)         NOT NULL COMMENT '缓存区域',
+    version     bigint(20) unsigned NOT NULL DEFAULT 0 COMMENT '版本号，每次失效递增',
+    update_time datetime(3)         NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (region)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_general_ci;
+
+-- ----------------------------
+-- 缓存失效记录表，记录每个版本失效的键，与版本号在同一事务中写入
+-- ----------------------------
+DROP TABLE IF EXISTS lin_cache_invalidation;
+CREATE TABLE lin_cache_invalidation
+(
+    region      varchar(32)         NOT NULL COMMENT '缓存区域',
+    version     bigint(20) unsigned NOT NULL COMMENT '失效后缓存区域的版本号',
+    key_id      int(10) unsigned             DEFAULT NULL COMMENT '失效的用户或分组id，为空时整个区域失效',
+    node        varchar(36)         NOT NULL COMMENT '发布失效的节点',
+    create_time datetime(3)         NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (region, version)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_general_ci;
+
+-- ----------------------------
+-- 令牌吊销表，退出登录、强制下线的令牌在过期前无效
+-- ----------------------------
+DROP TABLE IF EXISTS lin_token_revocation;
+CREATE TABLE lin_token_revocation
+(
+    id          int(10) unsigned NOT NULL AUTO_INCREMENT,
+    user_id     int(10) unsigned NOT NULL COMMENT '用户id',
+    token_id    varchar(64)               DEFAULT NULL COMMENT '令牌摘要，为空时吊销用户在 not_before 之前签发的所有令牌',
+    not_before  datetime(3)               DEFAULT NULL COMMENT '在此时间之前签发的令牌无效',
+    expire_time datetime(3)      NOT NULL COMMENT '记录过期时间，过期后可删除',
+    create_time datetime(3)      NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id),
+    KEY expire_time (expire_time)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_general_ci;
+
+-- ----------------------------
+-- 日志用户表，记录写过日志的用户名，查询日志用户时无需扫描日志表
+-- ----------------------------
+DROP TABLE IF EXISTS lin_log_user;
+CREATE TABLE lin_log_user
+(
+    username    varchar(24) NOT NULL COMMENT '用户名',
+    create_time datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (username)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_general_ci;
+
 -- ----------------------------
 -- 插入超级管理员
 -- 插入root分组
@@ -0,0 +1,123 @@
+package io.github.talelin.latticy.common.mybatis;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.latticy.mapper.GroupMapper;
+import io.github.talelin.latticy.model.GroupDO;
+import io.github.talelin.latticy.service.GroupService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@Rollback
+@ActiveProfiles("test")
+public class CountCacheTest {
+
+    private static final String[] TABLES = {"lin_group"};
+
+    @Autowired
+    private CountCache countCache;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private GroupMapper groupMapper;
+
+    private Object estimatedTtl;
+
+    @Before
+    public void setUp() {
+        countCache.invalidateAll();
+        estimatedTtl = ReflectionTestUtils.getField(countCache, "estimatedTtl");
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.setField(countCache, "estimatedTtl", estimatedTtl);
+    }
+
+    @Test
+    public void getAfterPut() {
+        countCache.put("count-a", TABLES, countCache.snapshot(TABLES), 12);
+        assertEquals(Long.valueOf(12), countCache.get("count-a", false));
+        assertNull(countCache.get("count-b", false));
+    }
+
+    @Test
+    public void invalidateTable() {
+        countCache.put("count-a", TABLES, countCache.snapshot(TABLES), 12);
+        countCache.invalidate(Collections.singletonList("lin_user"));
+        assertEquals(Long.valueOf(12), countCache.get("count-a", false));
+        countCache.invalidate(Collections.singletonList("lin_group"));
+        assertNull(countCache.get("count-a", false));
+    }
+
+    @Test
+    public void writeDuringQuery() {
+        long[] snapshot = countCache.snapshot(TABLES);
+        countCache.invalidate(Collections.singletonList("lin_group"));
+        countCache.put("count-a", TABLES, snapshot, 12);
+        assertNull(countCache.get("count-a", false));
+    }
+
+    @Test
+    public void estimatedIgnoresWrites() {
+        ReflectionTestUtils.setField(countCache, "estimatedTtl", 60000L);
+        countCache.put("count-a", TABLES, countCache.snapshot(TABLES), 12);
+        countCache.put("count-b", TABLES, countCache.snapshot(TABLES), 0);
+        countCache.invalidate(Collections.singletonList("lin_group"));
+        assertEquals(Long.valueOf(12), countCache.get("count-a", true));
+        assertNull(countCache.get("count-a", false));
+        // 过时的 0 会使分页插件跳过数据查询
+        assertNull(countCache.get("count-b", true));
+    }
+
+    @Test
+    public void pageTotalAfterInsert() {
+        IPage<GroupDO> before = groupService.getGroupPage(0, 10);
+        groupMapper.insert(GroupDO.builder().name("count-cache").info("count cache").build());
+        IPage<GroupDO> after = groupService.getGroupPage(0, 10);
+        assertEquals(before.getTotal() + 1, after.getTotal());
+    }
+
+    @Test
+    public void parseTables() {
+        assertArrayEquals(new String[]{"lin_log"},
+                SqlTables.of("SELECT COUNT(1) FROM `lin_log` l WHERE l.delete_time IS NULL"));
+        assertArrayEquals(new String[]{"lin_user", "lin_user_group"},
+                SqlTables.of("SELECT COUNT(1) FROM lin_user u WHERE u.id IN (SELECT user_id FROM lin_user_group)"));
+        assertArrayEquals(new String[]{"lin_log"}, SqlTables.of("INSERT INTO lin_log (message) VALUES (?)"));
+    }
+
+    @Test
+    public void cacheWrittenTablesBySql() {
+        CountCacheInvalidationInterceptor interceptor = new CountCacheInvalidationInterceptor(countCache);
+        // ${} 替换后的表名不同，生成的 sql 也不同
+        String sql = "INSERT INTO lin_log_2020 (message) VALUES (?)";
+        assertEquals(Collections.singletonList("lin_log_2020"), interceptor.writtenTables(sql));
+        assertEquals(Collections.singletonList("lin_log_2021"),
+                interceptor.writtenTables("INSERT INTO lin_log_2021 (message) VALUES (?)"));
+        assertSame(interceptor.writtenTables(sql), interceptor.writtenTables(sql));
+        // 无法解析时失效全部
+        assertTrue(interceptor.writtenTables("not a sql").isEmpty());
+    }
+}
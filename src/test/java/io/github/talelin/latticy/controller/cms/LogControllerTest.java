@@ -15,13 +15,20 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -157,4 +164,25 @@ public class LogControllerTest {
                 .andExpect(MockMvcResultMatchers.
                         jsonPath("$.items").isArray());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void exportLogs() throws Exception {
+        MvcResult result = mvc.perform(get("/cms/log/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // 导出使用单独的超时时间
+        assertEquals(3600000L, result.getRequest().getAsyncContext().getTimeout());
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"logs.csv\""))
+                .andExpect(content().string(startsWith("\uFEFFid,message,")));
+    }
+
+    @Test
+    public void exportLogsWithUnknownFormat() throws Exception {
+        mvc.perform(get("/cms/log/export").param("format", "xlsx"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+    }
+}
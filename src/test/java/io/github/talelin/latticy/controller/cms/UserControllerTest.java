@@ -2,15 +2,22 @@ package io.github.talelin.latticy.controller.cms;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import io.github.talelin.autoconfigure.exception.TokenInvalidException;
+import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.core.token.Tokens;
 import io.github.talelin.latticy.common.LocalUser;
+import io.github.talelin.latticy.common.interceptor.AuthorizeVerifyResolverImpl;
 import io.github.talelin.latticy.dto.user.ChangePasswordDTO;
 import io.github.talelin.latticy.dto.user.LoginDTO;
+import io.github.talelin.latticy.dto.user.LogoutDTO;
 import io.github.talelin.latticy.dto.user.RegisterDTO;
 import io.github.talelin.latticy.dto.user.UpdateInfoDTO;
 import io.github.talelin.latticy.mapper.GroupMapper;
 import io.github.talelin.latticy.mapper.UserMapper;
 import io.github.talelin.latticy.model.GroupDO;
 import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import io.github.talelin.latticy.module.auth.TokenRevocationStore;
 import io.github.talelin.latticy.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
@@ -21,20 +28,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -58,6 +74,15 @@ public class UserControllerTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private DoubleJWT jwt;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private AuthorizeVerifyResolverImpl authorizeVerifyResolver;
+
     private String email = "13129982604@qq.com";
 
     private String password = "123456";
@@ -140,8 +165,12 @@ public class UserControllerTest {
         mapper.setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES);
         String content = mapper.writeValueAsString(dto1);
 
-        mvc.perform(post("/cms/user/login")
+        MvcResult result = mvc.perform(post("/cms/user/login")
                 .contentType(MediaType.APPLICATION_JSON).content(content))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.access_token").isNotEmpty())
@@ -210,14 +239,61 @@ public class UserControllerTest {
         String content = mapper.writeValueAsString(dto1);
 
 
-        mvc.perform(MockMvcRequestBuilders.put("/cms/user/change_password")
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.put("/cms/user/change_password")
                 .contentType(MediaType.APPLICATION_JSON).content(content))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // 异步处理开始后，请求线程上不再保留登录用户
+        assertNull(LocalUser.getLocalPrincipal());
+
+        mvc.perform(asyncDispatch(result))
                 .andDo(print())
                 .andExpect(status().isCreated())
                 .andExpect(MockMvcResultMatchers.
                         jsonPath("$.message").value("密码修改成功"));
     }
 
+    @Test
+    public void logout() throws Exception {
+        GroupDO group = GroupDO.builder().name("少林足球").info("致敬周星星").build();
+        groupMapper.insert(group);
+        RegisterDTO dto = new RegisterDTO();
+        dto.setGroupIds(Arrays.asList(group.getId()));
+        dto.setEmail(email);
+        dto.setConfirmPassword(password);
+        dto.setPassword(password);
+        dto.setUsername(username);
+        userService.createUser(dto);
+
+        UserDO user = userService.getUserByUsername(username);
+        LocalUser.setLocalUser(user);
+        Tokens tokens = jwt.generateTokens(user.getId());
+        String token = tokens.getAccessToken();
+        LogoutDTO logout = new LogoutDTO();
+        logout.setRefreshToken(tokens.getRefreshToken());
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES);
+
+        mvc.perform(post("/cms/user/logout")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(logout)))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.
+                        jsonPath("$.message").value("退出登录成功"));
+
+        assertTrue(tokenRevocationStore.isRevoked(TokenCache.hashToken(token), user.getId(), new Date()));
+        // 测试环境不注册权限拦截器，直接校验 /cms/user/refresh 使用的 refresh token
+        MockHttpServletRequest refresh = new MockHttpServletRequest("GET", "/cms/user/refresh");
+        refresh.addHeader("Authorization", "Bearer " + tokens.getRefreshToken());
+        try {
+            authorizeVerifyResolver.handleRefresh(refresh, new MockHttpServletResponse(), null);
+            fail("refresh token should be revoked after logout");
+        } catch (TokenInvalidException e) {
+            assertEquals(10040, e.getCode());
+        }
+    }
+
     @Test
     public void refreshToken() throws Exception {
         GroupDO group = GroupDO.builder().name("少林足球").info("致敬周星星").build();
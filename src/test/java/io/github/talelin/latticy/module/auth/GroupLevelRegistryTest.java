@@ -0,0 +1,73 @@
+package io.github.talelin.latticy.module.auth;
+
+import io.github.talelin.latticy.common.enumeration.GroupLevelEnum;
+import io.github.talelin.latticy.mapper.GroupMapper;
+import io.github.talelin.latticy.mapper.UserGroupMapper;
+import io.github.talelin.latticy.mapper.UserMapper;
+import io.github.talelin.latticy.model.GroupDO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.model.UserGroupDO;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@Rollback
+@ActiveProfiles("test")
+public class GroupLevelRegistryTest {
+
+    @Autowired
+    private GroupLevelRegistry groupLevelRegistry;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private GroupMapper groupMapper;
+
+    @Autowired
+    private UserGroupMapper userGroupMapper;
+
+    @After
+    public void tearDown() {
+        // 测试数据会回滚，清空缓存避免影响其它测试
+        groupLevelRegistry.invalidate();
+    }
+
+    @Test
+    public void getGroupId() {
+        GroupDO root = mockRootGroup();
+        assertEquals(root.getId(), groupLevelRegistry.getGroupId(GroupLevelEnum.ROOT));
+        assertNull(groupLevelRegistry.getGroupId(GroupLevelEnum.USER));
+    }
+
+    @Test
+    public void isRootUser() {
+        GroupDO root = mockRootGroup();
+        UserDO user = UserDO.builder().nickname("pedro大大").username("pedro大大").build();
+        userMapper.insert(user);
+        userGroupMapper.insert(new UserGroupDO(user.getId(), root.getId()));
+        assertTrue(groupLevelRegistry.isRootUser(user.getId()));
+        assertFalse(groupLevelRegistry.isRootUser(user.getId() + 1));
+    }
+
+    private GroupDO mockRootGroup() {
+        groupLevelRegistry.invalidate();
+        GroupDO group = GroupDO.builder().name("root").info("超级用户组").level(GroupLevelEnum.ROOT).build();
+        groupMapper.insert(group);
+        return group;
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.talelin.latticy.module.auth;
+
+import io.github.talelin.autoconfigure.exception.ParameterException;
+import io.github.talelin.autoconfigure.exception.RequestLimitException;
+import io.github.talelin.latticy.common.LocalUser;
+import io.github.talelin.latticy.model.UserDO;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "lin.cms.password-hash.async=true",
+        "lin.cms.password-hash.threads=1",
+        "lin.cms.password-hash.queue-capacity=1"
+})
+@ActiveProfiles("test")
+public class PasswordHashExecutorTest {
+
+    @Autowired
+    private PasswordHashExecutor passwordHashExecutor;
+
+    @After
+    public void tearDown() {
+        LocalUser.clearLocalUser();
+    }
+
+    @Test
+    public void submit() throws Exception {
+        UserDO user = UserDO.builder().username("pedro").nickname("pedro").build();
+        user.setId(100);
+        LocalUser.setLocalUser(user);
+        String caller = Thread.currentThread().getName();
+        CompletableFuture<String> future = passwordHashExecutor.submit(() -> {
+            assertNotEquals(caller, Thread.currentThread().getName());
+            return LocalUser.getLocalUser().getUsername();
+        });
+        assertEquals("pedro", future.get());
+    }
+
+    @Test
+    public void submitFailed() throws Exception {
+        CompletableFuture<Object> future = passwordHashExecutor.submit(() -> {
+            throw new ParameterException(10031);
+        });
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ParameterException);
+        }
+    }
+
+    @Test
+    public void reject() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        // 占满线程和队列
+        CompletableFuture<Boolean> running = passwordHashExecutor.submit(() -> await(latch));
+        CompletableFuture<Boolean> queued = passwordHashExecutor.submit(() -> await(latch));
+        try {
+            passwordHashExecutor.submit(() -> true);
+            fail();
+        } catch (RequestLimitException e) {
+            assertEquals(10140, e.getCode());
+        } finally {
+            latch.countDown();
+        }
+        assertTrue(running.get());
+        assertTrue(queued.get());
+        Map<String, Object> metrics = passwordHashExecutor.getMetrics();
+        assertTrue((Long) metrics.get("rejected_count") >= 1);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+}
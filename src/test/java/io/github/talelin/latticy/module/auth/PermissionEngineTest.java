@@ -0,0 +1,134 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.github.talelin.autoconfigure.bean.MetaInfo;
+import io.github.talelin.autoconfigure.bean.PermissionMetaCollector;
+import io.github.talelin.latticy.mapper.UserGroupMapper;
+import io.github.talelin.latticy.model.GroupPermissionDO;
+import io.github.talelin.latticy.model.PermissionDO;
+import io.github.talelin.latticy.model.UserGroupDO;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class PermissionEngineTest {
+
+    private static final Integer USER_ID = 999;
+
+    private static final Integer GROUP_ID = 999;
+
+    private static final Integer PERMISSION_ID = 999;
+
+    @Autowired
+    private PermissionEngine permissionEngine;
+
+    @Autowired
+    private PermissionMetaCollector metaCollector;
+
+    @Autowired
+    private UserGroupMapper userGroupMapper;
+
+    private MetaInfo meta;
+
+    @Before
+    public void setUp() {
+        Collection<MetaInfo> metas = metaCollector.getMetaMap().values();
+        meta = metas.iterator().next();
+        PermissionDO permission = PermissionDO.builder().module(meta.getModule()).name(meta.getPermission()).build();
+        permission.setId(PERMISSION_ID);
+        List<PermissionDO> permissions = Collections.singletonList(permission);
+        List<GroupPermissionDO> relations = Collections.singletonList(new GroupPermissionDO(GROUP_ID, PERMISSION_ID));
+        permissionEngine.rebuild(metas, permissions, relations);
+        userGroupMapper.insert(new UserGroupDO(USER_ID, GROUP_ID));
+    }
+
+    @After
+    public void tearDown() {
+        removeRelation();
+        permissionEngine.rebuild();
+    }
+
+    @Test
+    public void hasPermission() {
+        assertTrue(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+        assertFalse(permissionEngine.hasPermission(USER_ID, meta.getModule(), "不存在的权限"));
+        assertFalse(permissionEngine.hasPermission(USER_ID + 1, meta.getModule(), meta.getPermission()));
+    }
+
+    @Test
+    public void rebuildOnceAfterInvalidation() throws Exception {
+        long before = permissionEngine.getRebuildCount();
+        permissionEngine.onInvalidate(CacheRegion.GROUP);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission());
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 等待锁的请求不再重复重建
+        assertEquals(before + 1, permissionEngine.getRebuildCount());
+    }
+
+    @Test
+    public void revokeAndGrant() {
+        permissionEngine.revoke(GROUP_ID, Collections.singletonList(PERMISSION_ID));
+        assertFalse(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+        permissionEngine.grant(GROUP_ID, Collections.singletonList(PERMISSION_ID));
+        assertTrue(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+    }
+
+    @Test
+    public void removeGroup() {
+        assertTrue(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+        permissionEngine.removeGroup(GROUP_ID);
+        assertFalse(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+    }
+
+    @Test
+    public void invalidateUser() {
+        assertTrue(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+        removeRelation();
+        permissionEngine.invalidateUser(USER_ID);
+        assertFalse(permissionEngine.hasPermission(USER_ID, meta.getModule(), meta.getPermission()));
+    }
+
+    private void removeRelation() {
+        QueryWrapper<UserGroupDO> wrapper = new QueryWrapper<>();
+        wrapper.lambda().eq(UserGroupDO::getUserId, USER_ID).eq(UserGroupDO::getGroupId, GROUP_ID);
+        userGroupMapper.delete(wrapper);
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.auth0.jwt.interfaces.Claim;
+import io.github.talelin.autoconfigure.exception.TokenInvalidException;
+import io.github.talelin.core.token.DoubleJWT;
+import io.github.talelin.core.token.Tokens;
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.common.LocalUser;
+import io.github.talelin.latticy.common.interceptor.AuthorizeVerifyResolverImpl;
+import io.github.talelin.latticy.dto.user.RegisterDTO;
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.service.AdminService;
+import io.github.talelin.latticy.service.UserService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "lin.cms.principal-token.enabled=true")
+@ActiveProfiles("test")
+public class PrincipalTokenProviderTest {
+
+    @Autowired
+    private PrincipalTokenProvider principalTokenProvider;
+
+    @Autowired
+    private DoubleJWT jwt;
+
+    @Autowired
+    private AuthorizeVerifyResolverImpl authorizeVerifyResolver;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AdminService adminService;
+
+    @After
+    public void tearDown() {
+        LocalUser.clearLocalUser();
+    }
+
+    @Test
+    public void generateAndParse() {
+        UserDO user = UserDO.builder().username("pedro").nickname("pedro大大").avatar("avatar.png").build();
+        user.setId(100);
+        Tokens tokens = principalTokenProvider.generateTokens(user);
+        Map<String, Claim> claims = jwt.decodeAccessToken(tokens.getAccessToken());
+        PrincipalBO principal = principalTokenProvider.parse(claims);
+        assertNotNull(principal);
+        assertEquals(Integer.valueOf(100), principal.getId());
+        assertEquals("pedro", principal.getUsername());
+        assertEquals("pedro大大", principal.getNickname());
+        assertEquals("avatar.png", principal.getAvatar());
+        assertEquals(PermissionEngine.groupSetVersion(Collections.emptyList()), principal.getGroupSetVersion());
+        assertNotNull(principal.getIssuedAt());
+    }
+
+    @Test
+    public void parsePlainToken() {
+        Map<String, Claim> claims = jwt.decodeAccessToken(jwt.generateTokens(100).getAccessToken());
+        assertNull(principalTokenProvider.parse(claims));
+    }
+
+    @Test(expected = TokenInvalidException.class)
+    @Transactional
+    public void rejectDeletedUser() throws InterruptedException {
+        RegisterDTO dto = new RegisterDTO();
+        dto.setUsername("pedro&佩德罗");
+        dto.setPassword("123456");
+        dto.setConfirmPassword("123456");
+        UserDO user = userService.createUser(dto);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + principalTokenProvider.generateTokens(user).getAccessToken());
+        assertTrue(authorizeVerifyResolver.handleLogin(request, new MockHttpServletResponse(), null));
+
+        // 吊销时间精确到秒，同一秒内签发的令牌不受影响
+        Thread.sleep(1000);
+        adminService.deleteUser(user.getId());
+        authorizeVerifyResolver.handleLogin(request, new MockHttpServletResponse(), null);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.talelin.latticy.module.auth;
+
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class TokenCacheTest {
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    private UserDO user;
+
+    @Before
+    public void setUp() {
+        tokenCache.invalidateAll();
+        user = UserDO.builder().username("pedro").nickname("pedro").build();
+        user.setId(100);
+    }
+
+    @Test
+    public void getAfterPut() {
+        Date expireAt = new Date(System.currentTimeMillis() + 60000);
+        tokenCache.put("token-a", user, expireAt);
+        UserDO cached = tokenCache.get("token-a").getUser();
+        assertNotNull(cached);
+        assertNotSame(user, cached);
+        assertEquals("pedro", cached.getUsername());
+        assertNull(tokenCache.get("token-b"));
+        assertEquals("pedro", tokenCache.getByTokenId(TokenCache.hashToken("token-a")).getUser().getUsername());
+    }
+
+    @Test
+    public void getPrincipal() {
+        PrincipalBO principal = new PrincipalBO(user);
+        tokenCache.put("token-a", principal, null);
+        TokenCache.Entry entry = tokenCache.get("token-a");
+        assertNotNull(entry);
+        assertNull(entry.getUser());
+        assertEquals(Integer.valueOf(100), entry.getPrincipal().getId());
+        assertEquals("pedro", entry.getPrincipal().getUsername());
+    }
+
+    @Test
+    public void getExpired() {
+        Date expireAt = new Date(System.currentTimeMillis() - 1000);
+        tokenCache.put("token-a", user, expireAt);
+        assertNull(tokenCache.get("token-a"));
+    }
+
+    @Test
+    public void invalidateUser() {
+        Date expireAt = new Date(System.currentTimeMillis() + 60000);
+        tokenCache.put("token-a", user, expireAt);
+        tokenCache.put("token-b", user, expireAt);
+        tokenCache.invalidateUser(100);
+        assertNull(tokenCache.get("token-a"));
+        assertNull(tokenCache.get("token-b"));
+    }
+
+    @Test
+    public void counters() {
+        long hits = tokenCache.getHitCount();
+        long misses = tokenCache.getMissCount();
+        tokenCache.put("token-a", user, null);
+        tokenCache.get("token-a");
+        tokenCache.get("token-c");
+        assertEquals(hits + 1, tokenCache.getHitCount());
+        assertEquals(misses + 1, tokenCache.getMissCount());
+    }
+}
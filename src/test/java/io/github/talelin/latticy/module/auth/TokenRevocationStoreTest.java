@@ -0,0 +1,120 @@
+package io.github.talelin.latticy.module.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import io.github.talelin.latticy.mapper.TokenRevocationMapper;
+import io.github.talelin.latticy.model.TokenRevocationDO;
+import io.github.talelin.latticy.module.cache.CacheRegion;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@Rollback
+@ActiveProfiles("test")
+public class TokenRevocationStoreTest {
+
+    private static final Integer USER_ID = 999;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private TokenRevocationMapper tokenRevocationMapper;
+
+    @After
+    public void tearDown() {
+        // 测试数据会回滚，重新加载避免影响其它测试
+        tokenRevocationMapper.delete(null);
+        tokenRevocationStore.reload();
+    }
+
+    @Test
+    public void revokeToken() {
+        String token = mockToken();
+        String tokenId = TokenCache.hashToken(token);
+        assertFalse(tokenRevocationStore.isRevoked(tokenId, USER_ID, new Date()));
+        tokenRevocationStore.revokeToken(token, USER_ID);
+        assertTrue(tokenRevocationStore.isRevoked(tokenId, USER_ID, new Date()));
+        assertFalse(tokenRevocationStore.isRevoked(TokenCache.hashToken(mockToken()), USER_ID, new Date()));
+    }
+
+    @Test
+    public void revokeUser() {
+        Date issuedAt = new Date(System.currentTimeMillis() - 60 * 1000);
+        tokenRevocationStore.revokeUser(USER_ID);
+        assertTrue(tokenRevocationStore.isRevoked("token", USER_ID, issuedAt));
+        assertFalse(tokenRevocationStore.isRevoked("token", USER_ID + 1, issuedAt));
+        // 吊销之后签发的令牌有效
+        Date later = new Date(System.currentTimeMillis() + 1000);
+        assertFalse(tokenRevocationStore.isRevoked("token", USER_ID, later));
+    }
+
+    @Test
+    public void reload() {
+        String token = mockToken();
+        tokenRevocationStore.revokeToken(token, USER_ID);
+        tokenRevocationStore.reload();
+        assertTrue(tokenRevocationStore.isRevoked(TokenCache.hashToken(token), USER_ID, new Date()));
+        assertEquals(1, tokenRevocationStore.getMetrics().get("token_count"));
+    }
+
+    @Test
+    public void loadNew() {
+        tokenRevocationStore.reload();
+        // 其它节点写入的吊销记录
+        String tokenId = TokenCache.hashToken(mockToken());
+        tokenRevocationMapper.insert(TokenRevocationDO.builder().userId(USER_ID).tokenId(tokenId)
+                .expireTime(new Date(System.currentTimeMillis() + 3600 * 1000)).build());
+        assertFalse(tokenRevocationStore.isRevoked(tokenId, USER_ID, new Date()));
+        tokenRevocationStore.onInvalidate(CacheRegion.TOKEN_REVOCATION);
+        assertTrue(tokenRevocationStore.isRevoked(tokenId, USER_ID, new Date()));
+    }
+
+    @Test
+    public void purge() {
+        tokenRevocationMapper.insert(TokenRevocationDO.builder().userId(USER_ID).tokenId("expired")
+                .expireTime(new Date(System.currentTimeMillis() - 1000)).build());
+        tokenRevocationStore.revokeUser(USER_ID);
+        assertEquals(1, tokenRevocationStore.purge());
+        assertEquals(1, tokenRevocationMapper.selectCount(null).intValue());
+    }
+
+    @Test
+    public void bloomFilter() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("key-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50);
+    }
+
+    private String mockToken() {
+        return JWT.create()
+                .withClaim("identity", USER_ID.longValue())
+                .withClaim("nonce", System.nanoTime())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 3600 * 1000))
+                .sign(Algorithm.HMAC256("secret"));
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.talelin.latticy.module.cache;
+
+import io.github.talelin.latticy.model.UserDO;
+import io.github.talelin.latticy.module.auth.TokenCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class CacheInvalidationBusTest {
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private InvalidationTransport transport;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Before
+    public void setUp() {
+        // 第一次拉取只记录版本号
+        cacheInvalidationBus.poll();
+        UserDO user = UserDO.builder().username("pedro").nickname("pedro").build();
+        user.setId(100);
+        tokenCache.put("token-a", user, null);
+        UserDO other = UserDO.builder().username("other").nickname("other").build();
+        other.setId(101);
+        tokenCache.put("token-b", other, null);
+    }
+
+    @Test
+    public void transport() {
+        assertTrue(transport instanceof InMemoryInvalidationTransport);
+    }
+
+    @Test
+    public void pollAfterPublish() {
+        // 模拟其它节点修改了用户
+        transport.publish(CacheRegion.USER, 100, "other-node");
+        assertNotNull(tokenCache.get("token-a"));
+        cacheInvalidationBus.poll();
+        assertNull(tokenCache.get("token-a"));
+        // 只有被修改的用户失效
+        assertNotNull(tokenCache.get("token-b"));
+    }
+
+    @Test
+    public void pollRegion() {
+        transport.publish(CacheRegion.USER, null, "other-node");
+        cacheInvalidationBus.poll();
+        assertNull(tokenCache.get("token-a"));
+        assertNull(tokenCache.get("token-b"));
+    }
+
+    @Test
+    public void skipSelfPublished() {
+        // 本节点发布的失效已由调用方处理
+        transport.publish(CacheRegion.USER, 100, cacheInvalidationBus.getNodeId());
+        cacheInvalidationBus.poll();
+        assertNotNull(tokenCache.get("token-a"));
+    }
+
+    @Test
+    public void pollOtherRegion() {
+        transport.publish(CacheRegion.PERMISSION, 1, "other-node");
+        cacheInvalidationBus.poll();
+        assertNotNull(tokenCache.get("token-a"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getMetrics() {
+        transport.publish(CacheRegion.GROUP, 1, "other-node");
+        transport.publish(CacheRegion.GROUP, 2, cacheInvalidationBus.getNodeId());
+        cacheInvalidationBus.poll();
+        Map<String, Object> metrics = cacheInvalidationBus.getMetrics();
+        Map<String, Object> regions = (Map<String, Object>) metrics.get("regions");
+        Map<String, Object> group = (Map<String, Object>) regions.get("group");
+        assertNotNull(group);
+        assertTrue((Long) group.get("invalidation_count") >= 1);
+        assertTrue((Long) group.get("key_invalidation_count") >= 1);
+        assertTrue((Long) group.get("self_skip_count") >= 1);
+        assertEquals("InMemoryInvalidationTransport", metrics.get("transport"));
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.model.LogDO;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogExportWriterTest {
+
+    @Test
+    public void neutralizeFormulas() throws IOException {
+        assertEquals("1,'=SUM(A1:A2),100,'@pedro,200,GET,'-1,'+1,",
+                writeCsv(log("=SUM(A1:A2)", "@pedro", "-1", "+1")));
+        assertEquals("1,'\tcmd,100,pedro,200,GET,/,,", writeCsv(log("\tcmd", "pedro", "/", null)));
+        // 需要加引号的字段先加 ' 再转义
+        assertEquals("1,\"'=1+1,2\",100,pedro,200,GET,/,,",
+                writeCsv(log("=1+1,2", "pedro", "/", null)));
+        // 只处理首字符
+        assertEquals("1,a=1,100,pedro,200,GET,/,,", writeCsv(log("a=1", "pedro", "/", null)));
+    }
+
+    private static LogDO log(String message, String username, String path, String permission) {
+        LogDO log = LogDO.builder().message(message).userId(100).username(username).statusCode(200)
+                .method("GET").path(path).permission(permission).build();
+        log.setId(1);
+        return log;
+    }
+
+    private static String writeCsv(LogDO log) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogExportWriter writer = new LogExportWriter(LogExportWriter.Format.CSV, out);
+        writer.write(log);
+        writer.flush();
+        return out.toString(StandardCharsets.UTF_8.name()).split("\r\n")[1];
+    }
+}
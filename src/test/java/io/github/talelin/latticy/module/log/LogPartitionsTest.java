@@ -0,0 +1,54 @@
+package io.github.talelin.latticy.module.log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class LogPartitionsTest {
+
+    @Autowired
+    private LogPartitions logPartitions;
+
+    @After
+    public void tearDown() {
+        logPartitions.remove(YearMonth.of(2020, 1));
+        logPartitions.remove(YearMonth.of(2020, 2));
+    }
+
+    @Test
+    public void routeHotTableOnly() {
+        assertEquals(Collections.singletonList("lin_log"), logPartitions.route(null, null));
+    }
+
+    @Test
+    public void routeByRange() {
+        logPartitions.add(YearMonth.of(2020, 1));
+        logPartitions.add(YearMonth.of(2020, 2));
+
+        assertEquals(Arrays.asList("lin_log", "lin_log_202002", "lin_log_202001"),
+                logPartitions.route(null, null));
+        Date start = LogPartitions.startOf(YearMonth.of(2020, 2));
+        Date end = new Date(LogPartitions.startOf(YearMonth.of(2020, 3)).getTime() - 1);
+        assertEquals(Arrays.asList("lin_log", "lin_log_202002"), logPartitions.route(start, end));
+        // 跨月的范围
+        Date middle = new Date(start.getTime() - 1);
+        assertEquals(Arrays.asList("lin_log", "lin_log_202002", "lin_log_202001"),
+                logPartitions.route(middle, end));
+        // 只有一端有值时不过滤
+        assertEquals(3, logPartitions.route(start, null).size());
+    }
+}
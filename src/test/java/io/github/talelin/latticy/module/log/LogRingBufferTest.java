@@ -0,0 +1,73 @@
+package io.github.talelin.latticy.module.log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void offerAndDrain() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(3);
+        // 容量向上取整为 2 的幂
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drain(drained::add, 2));
+        assertEquals(Arrays.asList(0, 1), drained);
+        // 绕回数组开头
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        assertFalse(buffer.offer(6));
+        buffer.drain(drained::add, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10000;
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        Set<Integer> received = new HashSet<>();
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        while (received.size() < producers * perProducer) {
+            buffer.drain(item -> {
+                assertTrue(received.add(item));
+                // 同一个生产者的元素保持入队顺序
+                int producer = item / perProducer;
+                assertTrue(item > last[producer]);
+                last[producer] = item;
+            }, 32);
+        }
+        done.await();
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.talelin.latticy.module.log;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.latticy.mapper.LogMapper;
+import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.service.LogService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@Rollback
+@ActiveProfiles("test")
+public class LogSearchIndexTest {
+
+    @Autowired
+    private LogSearchIndex logSearchIndex;
+
+    @Autowired
+    private LogService logService;
+
+    @Autowired
+    private LogMapper logMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        // 等待启动时的后台构建完成
+        for (int i = 0; i < 100 && !logSearchIndex.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(logSearchIndex.isReady());
+    }
+
+    @Test
+    public void searchCandidates() {
+        List<LogDO> logs = new ArrayList<>();
+        for (String message : Arrays.asList("Pedro 修改了密码", "pedro 登录", "juzi 修改了分组")) {
+            logs.add(LogDO.builder().message(message).userId(100).username("pedro")
+                    .method("GET").path("/").statusCode(200).build());
+        }
+        logService.createLogs(logs);
+        logSearchIndex.catchUp();
+
+        List<Integer> ids = logSearchIndex.search("修改了").getIds();
+        assertNotNull(ids);
+        assertTrue(ids.contains(logs.get(0).getId()));
+        assertTrue(ids.contains(logs.get(2).getId()));
+        assertTrue(!ids.contains(logs.get(1).getId()));
+        // 不区分大小写
+        List<Integer> pedro = logSearchIndex.search("PEDRO").getIds();
+        assertTrue(pedro.contains(logs.get(0).getId()));
+        assertTrue(pedro.contains(logs.get(1).getId()));
+        assertTrue(logSearchIndex.search("不存在的关键字").getIds().isEmpty());
+    }
+
+    @Test
+    public void tooManyCandidates() {
+        List<LogDO> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(LogDO.builder().message("常见的关键字 " + i).userId(100).username("pedro")
+                    .method("GET").path("/").statusCode(200).build());
+        }
+        logService.createLogs(logs);
+        logSearchIndex.catchUp();
+
+        Object maxCandidates = ReflectionTestUtils.getField(logSearchIndex, "maxCandidates");
+        ReflectionTestUtils.setField(logSearchIndex, "maxCandidates", 2);
+        try {
+            assertNull(logSearchIndex.search("常见的关键字"));
+            assertNull(logSearchIndex.search("常见"));
+            assertEquals(1, logSearchIndex.search("常见的关键字 1").getIds().size());
+        } finally {
+            ReflectionTestUtils.setField(logSearchIndex, "maxCandidates", maxCandidates);
+        }
+    }
+
+    @Test
+    public void fallbackToScan() {
+        assertNull(logSearchIndex.search("改"));
+        assertNull(logSearchIndex.search("100%"));
+        assertNull(logSearchIndex.search("user_id"));
+    }
+
+    @Test
+    public void searchUnindexedLogs() {
+        // 其它节点写入、尚未索引的日志在 indexedId 之后，由 LIKE 扫描
+        LogSearchIndex.Candidates before = logSearchIndex.search("未索引的日志");
+        logService.createLog("未索引的日志", null, 100, "pedro", "GET", "/", 200);
+
+        assertTrue(before.getIds().isEmpty());
+        IPage<LogDO> iPage = logService.searchLogPage(0, 10, null, "未索引的日志", null, null);
+        assertEquals(1, iPage.getRecords().size());
+        assertTrue(iPage.getRecords().get(0).getId() > before.getIndexedId());
+    }
+
+    @Test
+    public void indexLateCommits() {
+        Object commitLag = ReflectionTestUtils.getField(logSearchIndex, "commitLag");
+        ReflectionTestUtils.setField(logSearchIndex, "commitLag", 60000L);
+        try {
+            LogDO first = log("提交较早的日志");
+            // 读取时不可见的日志，相当于其它节点尚未提交、id 较小的日志
+            LogDO late = log("提交较晚的日志");
+            late.setDeleteTime(new Date());
+            LogDO last = log("提交较早的日志");
+            logMapper.insert(first);
+            logMapper.insert(late);
+            logMapper.insert(last);
+            logSearchIndex.catchUp();
+
+            LogSearchIndex.Candidates candidates = logSearchIndex.search("提交较晚");
+            assertEquals(late.getId() - 1, candidates.getIndexedId());
+            assertTrue(logSearchIndex.search("提交较早").getIds().contains(last.getId()));
+
+            jdbcTemplate.update("UPDATE lin_log SET delete_time = NULL WHERE id = ?", late.getId());
+            logSearchIndex.catchUp();
+            candidates = logSearchIndex.search("提交较晚");
+            assertTrue(candidates.getIds().contains(late.getId()));
+            assertEquals(last.getId().intValue(), candidates.getIndexedId());
+        } finally {
+            ReflectionTestUtils.setField(logSearchIndex, "commitLag", commitLag);
+            logSearchIndex.catchUp();
+        }
+    }
+
+    @Test
+    public void searchLogPage() {
+        // 候选 id 包含所有二元组但不包含关键字，由 LIKE 排除
+        logService.createLog("abc bcd", null, 100, "pedro", "GET", "/", 200);
+        logService.createLog("xx abcd xx", null, 100, "pedro", "GET", "/", 200);
+
+        IPage<LogDO> iPage = logService.searchLogPage(0, 10, null, "abcd", null, null);
+        assertEquals(1, iPage.getRecords().size());
+        assertEquals("xx abcd xx", iPage.getRecords().get(0).getMessage());
+    }
+
+    private static LogDO log(String message) {
+        return LogDO.builder().message(message).userId(100).username("pedro")
+                .method("GET").path("/").statusCode(200).build();
+    }
+}
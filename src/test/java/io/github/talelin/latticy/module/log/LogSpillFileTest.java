@@ -0,0 +1,87 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.model.LogDO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogSpillFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAndReadAll() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("behavior/spill.ndjson");
+        LogSpillFile file = new LogSpillFile(path);
+        assertTrue(file.readAll().isEmpty());
+
+        LogDO first = log("修改了 pedro 的信息");
+        first.setCreateTime(new Date(1577836800000L));
+        file.append(Arrays.asList(first, log("second")));
+        file.append(Collections.singletonList(log("third")));
+
+        List<LogDO> records = file.readAll();
+        assertEquals(3, records.size());
+        assertEquals("修改了 pedro 的信息", records.get(0).getMessage());
+        assertEquals(Integer.valueOf(100), records.get(0).getUserId());
+        assertEquals(Integer.valueOf(200), records.get(0).getStatusCode());
+        assertEquals(1577836800000L, records.get(0).getCreateTime().getTime());
+        assertNull(records.get(1).getCreateTime());
+        assertEquals("third", records.get(2).getMessage());
+    }
+
+    @Test
+    public void skipBrokenLine() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("spill.ndjson");
+        LogSpillFile file = new LogSpillFile(path);
+        file.append(Collections.singletonList(log("first")));
+        // 进程崩溃时写了一半的行
+        Files.write(path, "{\"message\":\"sec".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        List<LogDO> records = file.readAll();
+        assertEquals(1, records.size());
+        assertEquals("first", records.get(0).getMessage());
+    }
+
+    @Test
+    public void replace() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("spill.ndjson");
+        LogSpillFile file = new LogSpillFile(path);
+        file.append(Arrays.asList(log("first"), log("second")));
+
+        file.replace(Collections.singletonList(log("second")));
+        List<LogDO> records = file.readAll();
+        assertEquals(1, records.size());
+        assertEquals("second", records.get(0).getMessage());
+
+        file.replace(Collections.emptyList());
+        assertFalse(Files.exists(path));
+    }
+
+    private static LogDO log(String message) {
+        return LogDO.builder()
+                .message(message)
+                .userId(100)
+                .username("pedro")
+                .method("PUT")
+                .path("/cms/user")
+                .statusCode(200)
+                .permission("修改用户")
+                .build();
+    }
+}
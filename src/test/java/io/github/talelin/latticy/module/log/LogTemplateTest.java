@@ -0,0 +1,80 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.bo.PrincipalBO;
+import io.github.talelin.latticy.model.UserDO;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogTemplateTest {
+
+    private PrincipalBO principal;
+
+    private UserDO user;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        user = UserDO.builder().username("pedro").nickname("pedro大大").email("pedro@example.com").build();
+        user.setId(2);
+        principal = new PrincipalBO(user);
+        request = new MockHttpServletRequest("PUT", "/cms/user/2");
+        request.setServletPath("/cms/user/2");
+        response = new MockHttpServletResponse();
+        response.setStatus(201);
+    }
+
+    @Test
+    public void render() {
+        LogTemplate template = LogTemplate.compile("{user.username}({user.id}) {request.method} {request.servletPath} -> {response.status}");
+        assertEquals("pedro(2) PUT /cms/user/2 -> 201", template.render(principal, () -> user, request, response));
+    }
+
+    @Test
+    public void renderText() {
+        assertEquals("修改了密码", LogTemplate.compile("修改了密码").render(principal, () -> user, request, response));
+        assertEquals("", LogTemplate.compile("").render(principal, () -> user, request, response));
+        // 未闭合的括号原样输出
+        assertEquals("a {user.username", LogTemplate.compile("a {user.username")
+                .render(principal, () -> user, request, response));
+    }
+
+    @Test
+    public void loadUserOnlyWhenNeeded() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<UserDO> loader = () -> {
+            loads.incrementAndGet();
+            return user;
+        };
+        LogTemplate template = LogTemplate.compile("{user.nickname}");
+        assertEquals("pedro大大", template.render(principal, loader, request, response));
+        assertEquals(0, loads.get());
+
+        // principal 中没有的属性
+        template = LogTemplate.compile("{user.email}");
+        assertEquals("pedro@example.com", template.render(principal, loader, request, response));
+        assertEquals(1, loads.get());
+
+        // 令牌中未携带昵称
+        principal.setNickname(null);
+        template = LogTemplate.compile("{user.nickname}");
+        assertEquals("pedro大大", template.render(principal, loader, request, response));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void unknownPlaceholder() {
+        LogTemplate template = LogTemplate.compile("[{user.unknown}][{session.id}][{nodot}][{request.unknown}]");
+        assertEquals("[][][][]", template.render(principal, () -> user, request, response));
+        assertEquals("[]", LogTemplate.compile("[{user.username}]").render(null, () -> null, request, response));
+    }
+}
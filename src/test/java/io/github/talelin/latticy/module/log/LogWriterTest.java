@@ -0,0 +1,118 @@
+package io.github.talelin.latticy.module.log;
+
+import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.service.LogService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class LogWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogService logService;
+
+    private LogWriter writer;
+
+    private LogSpillFile spillFile;
+
+    private LogSpillFile deadLetterFile;
+
+    @Before
+    public void setUp() {
+        Path root = folder.getRoot().toPath();
+        spillFile = new LogSpillFile(root.resolve("spill.ndjson"));
+        deadLetterFile = new LogSpillFile(root.resolve("dead-letter.ndjson"));
+        logService = mock(LogService.class);
+        writer = new LogWriter();
+        ReflectionTestUtils.setField(writer, "logService", logService);
+        ReflectionTestUtils.setField(writer, "async", true);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 16);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "flushInterval", 1000L);
+        ReflectionTestUtils.setField(writer, "overflowPolicy", "spill");
+        ReflectionTestUtils.setField(writer, "blockTimeout", 1000L);
+        ReflectionTestUtils.setField(writer, "spillFilePath", spillFile.getPath().toString());
+        ReflectionTestUtils.setField(writer, "deadLetterFilePath", deadLetterFile.getPath().toString());
+        ReflectionTestUtils.setField(writer, "shutdownTimeout", 1000L);
+    }
+
+    @After
+    public void tearDown() {
+        writer.destroy();
+    }
+
+    @Test
+    public void replayMovesBadRowsToDeadLetter() throws Exception {
+        rejectBadRows();
+        spillFile.append(Arrays.asList(log("first"), log("bad"), log("third")));
+
+        writer.init();
+
+        assertFalse(Files.exists(spillFile.getPath()));
+        List<LogDO> dead = deadLetterFile.readAll();
+        assertEquals(1, dead.size());
+        assertEquals("bad", dead.get(0).getMessage());
+        assertEquals(2L, writer.getMetrics().get("replayed_count"));
+        assertEquals(1L, writer.getMetrics().get("dead_letter_count"));
+    }
+
+    @Test
+    public void replayKeepsLogsWhenDatabaseIsDown() throws Exception {
+        doThrow(new CannotGetJdbcConnectionException("database is down")).when(logService).createLogs(anyList());
+        spillFile.append(Arrays.asList(log("first"), log("second")));
+
+        writer.init();
+
+        assertEquals(2, spillFile.readAll().size());
+        assertFalse(Files.exists(deadLetterFile.getPath()));
+        assertEquals(0L, writer.getMetrics().get("replayed_count"));
+    }
+
+    @Test
+    public void flushMovesBadRowsToDeadLetter() throws Exception {
+        rejectBadRows();
+        writer.init();
+
+        writer.write(log("first"));
+        writer.write(log("bad"));
+        writer.destroy();
+
+        assertEquals(1L, writer.getMetrics().get("flushed_count"));
+        assertEquals(1, deadLetterFile.readAll().size());
+        assertFalse(Files.exists(spillFile.getPath()));
+    }
+
+    private void rejectBadRows() {
+        doAnswer(invocation -> {
+            List<LogDO> logs = invocation.getArgument(0);
+            if (logs.stream().anyMatch(record -> "bad".equals(record.getMessage()))) {
+                throw new DataIntegrityViolationException("message is too long");
+            }
+            return true;
+        }).when(logService).createLogs(anyList());
+    }
+
+    private static LogDO log(String message) {
+        return LogDO.builder().message(message).userId(100).username("pedro")
+                .method("GET").path("/").statusCode(200).build();
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.talelin.latticy.module.log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PostingListTest {
+
+    @Test
+    public void appendInOrder() {
+        PostingList list = new PostingList();
+        list.add(1);
+        list.add(2);
+        list.add(300);
+        list.add(1 << 30);
+        assertEquals(4, list.size());
+        assertArrayEquals(new int[]{1, 2, 300, 1 << 30}, list.decode());
+    }
+
+    @Test
+    public void addOutOfOrder() {
+        PostingList list = new PostingList();
+        list.add(10);
+        list.add(30);
+        list.add(20);
+        list.add(5);
+        // 重复的 id 被忽略
+        list.add(20);
+        list.add(30);
+        assertArrayEquals(new int[]{5, 10, 20, 30}, list.decode());
+    }
+
+    @Test
+    public void compressSmallDeltas() {
+        PostingList list = new PostingList();
+        for (int i = 1; i <= 1000; i++) {
+            list.add(100000 + i);
+        }
+        assertEquals(1000, list.size());
+        // 第一个 id 占 3 个字节，之后每个差值 1 个字节
+        assertTrue(list.bytes() < 1000 * 2);
+        int[] ids = list.decode();
+        assertEquals(100001, ids[0]);
+        assertEquals(101000, ids[999]);
+    }
+
+    @Test
+    public void cursorAdvance() {
+        PostingList list = new PostingList();
+        for (int i = 1; i <= 1000; i++) {
+            list.add(i * 3);
+        }
+        PostingList.Cursor cursor = list.cursor();
+        assertEquals(3, cursor.next());
+        assertEquals(6, cursor.next());
+        // 跨越多个跳转点
+        assertEquals(1500, cursor.advance(1500));
+        assertEquals(1503, cursor.advance(1501));
+        // 不会后退
+        assertEquals(1503, cursor.advance(10));
+        assertEquals(1506, cursor.next());
+        assertEquals(3000, cursor.advance(2998));
+        assertEquals(-1, cursor.advance(3001));
+        assertEquals(-1, cursor.next());
+    }
+
+    @Test
+    public void cursorSnapshot() {
+        PostingList list = new PostingList();
+        list.add(10);
+        list.add(30);
+        PostingList.Cursor cursor = list.cursor();
+        list.add(40);
+        list.add(20);
+        assertEquals(10, cursor.next());
+        assertEquals(30, cursor.next());
+        assertEquals(-1, cursor.next());
+        assertArrayEquals(new int[]{10, 20, 30, 40}, list.decode());
+        PostingList.Cursor reordered = list.cursor();
+        assertEquals(20, reordered.advance(11));
+        assertEquals(40, reordered.advance(31));
+    }
+}
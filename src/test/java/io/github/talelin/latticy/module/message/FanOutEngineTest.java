@@ -0,0 +1,156 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static io.github.talelin.latticy.module.message.SessionRegistryTest.mockSession;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FanOutEngineTest {
+
+    private FanOutEngine engine;
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void enqueue() throws Exception {
+        engine = new FanOutEngine(16, 2, OverflowPolicy.DROP_NEW);
+        WebSocketSession session = mockSession("1", 100);
+        engine.register(session);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(engine.enqueue(session, new TextMessage("hello" + i)));
+        }
+        verify(session, timeout(1000).times(3)).sendMessage(any(WebSocketMessage.class));
+        // 未登记的会话
+        assertFalse(engine.enqueue(mockSession("2", 101), new TextMessage("hello")));
+    }
+
+    @Test
+    public void dropNew() throws Exception {
+        engine = new FanOutEngine(2, 1, OverflowPolicy.DROP_NEW);
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession session = blockingSession(latch);
+        engine.register(session);
+        fill(session);
+        assertFalse(engine.enqueue(session, new TextMessage("dropped")));
+        latch.countDown();
+        Map<String, Object> metrics = engine.getMetrics();
+        assertEquals(1L, metrics.get("dropped_count"));
+    }
+
+    @Test
+    public void dropOldest() throws Exception {
+        engine = new FanOutEngine(2, 1, OverflowPolicy.DROP_OLDEST);
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession session = blockingSession(latch);
+        engine.register(session);
+        fill(session);
+        assertTrue(engine.enqueue(session, new TextMessage("newest")));
+        assertEquals(2, engine.getQueueDepth());
+        latch.countDown();
+        verify(session, timeout(1000)).sendMessage(new TextMessage("newest"));
+    }
+
+    @Test
+    public void closeSession() throws Exception {
+        engine = new FanOutEngine(2, 1, OverflowPolicy.CLOSE_SESSION);
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession session = blockingSession(latch);
+        engine.register(session);
+        fill(session);
+        assertFalse(engine.enqueue(session, new TextMessage("overflow")));
+        latch.countDown();
+        verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1L, engine.getMetrics().get("overflow_closed_count"));
+    }
+
+    @Test
+    public void batch() throws Exception {
+        engine = new FanOutEngine(16, 1, OverflowPolicy.DROP_NEW, 100, 64, 1024);
+        WebSocketSession session = mockSession("1", 100);
+        when(session.getAcceptedProtocol()).thenReturn(MessageConstant.BATCH_PROTOCOL);
+        WebSocketSession legacy = mockSession("2", 101);
+        engine.register(session);
+        engine.register(legacy);
+        engine.enqueue(session, new TextMessage("a"));
+        engine.enqueue(session, new TextMessage("{\"b\":1}"));
+        engine.enqueue(legacy, new TextMessage("a"));
+        engine.enqueue(legacy, new TextMessage("{\"b\":1}"));
+        verify(session, timeout(1000)).sendMessage(new TextMessage("[\"a\",\"{\\\"b\\\":1}\"]"));
+        verify(legacy, timeout(1000)).sendMessage(new TextMessage("a"));
+        verify(legacy, timeout(1000)).sendMessage(new TextMessage("{\"b\":1}"));
+    }
+
+    @Test
+    public void batchMaxSize() throws Exception {
+        // 刷新窗口很长，达到最大消息数时立即写出
+        engine = new FanOutEngine(16, 1, OverflowPolicy.DROP_NEW, 60_000, 2, 1024);
+        WebSocketSession session = mockSession("1", 100);
+        when(session.getAcceptedProtocol()).thenReturn(MessageConstant.BATCH_PROTOCOL);
+        engine.register(session);
+        engine.enqueue(session, new TextMessage("a"));
+        engine.enqueue(session, new TextMessage("b"));
+        verify(session, timeout(1000)).sendMessage(new TextMessage("[\"a\",\"b\"]"));
+    }
+
+    @Test
+    public void closeSlowSession() throws Exception {
+        engine = new FanOutEngine(16, 1, OverflowPolicy.DROP_NEW, 10, 64, 1024, 100);
+        // 写出一直阻塞，直到会话被关闭
+        CountDownLatch closed = new CountDownLatch(1);
+        WebSocketSession slow = blockingSession(closed);
+        doAnswer(invocation -> {
+            closed.countDown();
+            return null;
+        }).when(slow).close(any(CloseStatus.class));
+        WebSocketSession other = mockSession("2", 101);
+        engine.register(slow);
+        engine.register(other);
+        engine.enqueue(slow, new TextMessage("blocking"));
+        engine.enqueue(other, new TextMessage("hello"));
+        // 只有一个发送线程，慢会话被关闭后其它会话才能收到消息
+        verify(slow, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(other, timeout(1000)).sendMessage(new TextMessage("hello"));
+        assertEquals(1L, engine.getMetrics().get("slow_closed_count"));
+        assertFalse(engine.enqueue(slow, new TextMessage("after close")));
+    }
+
+    /**
+     * 第一条消息阻塞发送线程，之后再填满队列
+     */
+    private void fill(WebSocketSession session) throws InterruptedException {
+        engine.enqueue(session, new TextMessage("blocking"));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (engine.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        engine.enqueue(session, new TextMessage("queued1"));
+        engine.enqueue(session, new TextMessage("queued2"));
+    }
+
+    private static WebSocketSession blockingSession(CountDownLatch latch) throws Exception {
+        WebSocketSession session = mockSession("1", 100);
+        doAnswer(invocation -> {
+            latch.await();
+            return null;
+        }).when(session).sendMessage(any(WebSocketMessage.class));
+        return session;
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HandshakeLimiterTest {
+
+    @Test
+    public void acquire() {
+        HandshakeLimiter limiter = new HandshakeLimiter(0.5, 2);
+        assertEquals(0, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        long retryAfter = limiter.acquire();
+        // 2 秒后才有令牌，加上随机抖动不超过 4 秒
+        assertTrue(retryAfter >= 2 && retryAfter <= 4);
+        Map<String, Object> metrics = limiter.getMetrics();
+        assertEquals(2L, metrics.get("accepted_count"));
+        assertEquals(1L, metrics.get("rejected_count"));
+    }
+
+    @Test
+    public void rejectWithoutWaiting() {
+        // 10 毫秒后就有令牌，也不在调用线程中等待
+        HandshakeLimiter limiter = new HandshakeLimiter(100, 1);
+        assertEquals(0, limiter.acquire());
+        long start = System.nanoTime();
+        long retryAfter = limiter.acquire();
+        assertTrue(System.nanoTime() - start < 5_000_000);
+        assertTrue(retryAfter >= 1 && retryAfter <= 2);
+        Map<String, Object> metrics = limiter.getMetrics();
+        assertEquals(1L, metrics.get("accepted_count"));
+        assertEquals(1L, metrics.get("rejected_count"));
+    }
+
+    @Test
+    public void unlimited() {
+        HandshakeLimiter limiter = new HandshakeLimiter(0, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.acquire());
+        }
+    }
+}
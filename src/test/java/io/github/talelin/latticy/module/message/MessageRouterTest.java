@@ -0,0 +1,124 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MessageRouterTest {
+
+    private final Map<String, InMemoryMessageBroker> cluster = new ConcurrentHashMap<>();
+
+    private final List<BrokerMessage> deliveredA = new CopyOnWriteArrayList<>();
+
+    private final List<BrokerMessage> deliveredB = new CopyOnWriteArrayList<>();
+
+    private final Set<Integer> onlineB = ConcurrentHashMap.newKeySet();
+
+    private final Set<Integer> groupsB = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> topicsB = ConcurrentHashMap.newKeySet();
+
+    private MessageRouter routerA;
+
+    private MessageRouter routerB;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        routerA = new MessageRouter(new InMemoryMessageBroker("a", cluster), 60_000);
+        routerB = new MessageRouter(new InMemoryMessageBroker("b", cluster), 60_000);
+        onlineB.addAll(Arrays.asList(100, 101));
+        groupsB.add(1);
+        topicsB.add("book.*");
+        routerA.start(deliveredA::add, Collections::emptySet, Collections::emptySet, Collections::emptySet);
+        routerB.start(deliveredB::add, () -> onlineB, () -> groupsB, () -> topicsB);
+        awaitNodes(100, Collections.singleton("b"));
+    }
+
+    @After
+    public void tearDown() {
+        routerA.stop();
+        routerB.stop();
+    }
+
+    @Test
+    public void routeToUser() {
+        routerA.routeToUser(100, "hello");
+        // 用户不在其它节点上在线
+        routerA.routeToUser(102, "hello");
+        assertEquals(1, deliveredB.size());
+        BrokerMessage message = deliveredB.get(0);
+        assertEquals(BrokerMessage.Type.USER, message.getType());
+        assertEquals("a", message.getSource());
+        assertEquals(Integer.valueOf(100), message.getTarget());
+        assertEquals("hello", message.getPayload());
+        assertTrue(deliveredA.isEmpty());
+    }
+
+    @Test
+    public void routeToGroup() {
+        routerA.routeToGroup(1, "hello");
+        // 分组在节点 b 上没有在线会话
+        routerA.routeToGroup(2, "hello");
+        routerA.routeBroadcast("hello");
+        assertEquals(2, deliveredB.size());
+        assertEquals(BrokerMessage.Type.GROUP, deliveredB.get(0).getType());
+        assertEquals(BrokerMessage.Type.BROADCAST, deliveredB.get(1).getType());
+        // 节点 a 没有在线用户，不会收到广播
+        routerB.routeBroadcast("hello");
+        assertTrue(deliveredA.isEmpty());
+    }
+
+    @Test
+    public void routeToTopic() {
+        routerA.routeToTopic("book.updated", "hello");
+        // 节点 b 没有匹配的订阅
+        routerA.routeToTopic("log.created", "hello");
+        routerA.routeToTopic("book.updated.1", "hello");
+        assertEquals(1, deliveredB.size());
+        assertEquals(BrokerMessage.Type.TOPIC, deliveredB.get(0).getType());
+        assertEquals("book.updated", deliveredB.get(0).getTopic());
+    }
+
+    @Test
+    public void presenceChanged() throws InterruptedException {
+        onlineB.remove(100);
+        onlineB.add(102);
+        routerB.presenceChanged();
+        awaitNodes(100, Collections.emptySet());
+        assertEquals(new HashSet<>(Collections.singleton("b")), routerA.getUserNodes(102));
+        routerA.routeToUser(100, "hello");
+        assertTrue(deliveredB.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getMetrics() {
+        routerA.routeToUser(100, "hello");
+        Map<String, Object> nodes = (Map<String, Object>) routerA.getMetrics().get("nodes");
+        Map<String, Object> nodeB = (Map<String, Object>) nodes.get("b");
+        assertEquals(2, nodeB.get("user_count"));
+        assertEquals(1L, nodeB.get("sent_count"));
+        nodes = (Map<String, Object>) routerB.getMetrics().get("nodes");
+        assertEquals(1L, ((Map<String, Object>) nodes.get("a")).get("received_count"));
+    }
+
+    private void awaitNodes(Integer userId, Set<String> expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!routerA.getUserNodes(userId).equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, routerA.getUserNodes(userId));
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.talelin.latticy.module.message.SessionRegistryTest.mockSession;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionReaperTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final List<WebSocketSession> reaped = new ArrayList<>();
+
+    private FanOutEngine fanOutEngine;
+
+    private SessionReaper reaper;
+
+    @Before
+    public void setUp() {
+        fanOutEngine = mock(FanOutEngine.class);
+        when(fanOutEngine.enqueue(any(WebSocketSession.class), any(PingMessage.class))).thenReturn(true);
+        reaper = new SessionReaper(fanOutEngine, 100, 300, 10, 16, clock::get);
+        reaper.start(reaped::add);
+        reaper.stop();
+    }
+
+    @Test
+    public void pingAndReap() {
+        WebSocketSession session = mockSession("1", 100);
+        reaper.register(session);
+        advance(90);
+        verify(fanOutEngine, never()).enqueue(eq(session), any(PingMessage.class));
+        advance(110);
+        verify(fanOutEngine, times(1)).enqueue(eq(session), any(PingMessage.class));
+        advance(300);
+        assertEquals(1, reaped.size());
+        assertEquals(1L, reaper.getReapedCount());
+        assertEquals(0, reaper.getMetrics().get("tracked_count"));
+    }
+
+    @Test
+    public void pongKeepsAlive() {
+        WebSocketSession session = mockSession("1", 100);
+        reaper.register(session);
+        for (long time = 0; time <= 1000; time += 50) {
+            advance(time);
+            reaper.pong(session);
+        }
+        assertTrue(reaped.isEmpty());
+    }
+
+    @Test
+    public void unregister() {
+        WebSocketSession session = mockSession("1", 100);
+        reaper.register(session);
+        reaper.unregister(session);
+        advance(1000);
+        assertTrue(reaped.isEmpty());
+        verify(fanOutEngine, never()).enqueue(eq(session), any(PingMessage.class));
+    }
+
+    /**
+     * 逐个 tick 推进到指定时间
+     */
+    private void advance(long time) {
+        while (clock.get() < time) {
+            clock.addAndGet(10);
+            reaper.tick();
+        }
+    }
+}
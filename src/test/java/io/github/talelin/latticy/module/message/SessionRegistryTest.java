@@ -0,0 +1,98 @@
+package io.github.talelin.latticy.module.message;
+
+import io.github.talelin.latticy.model.UserDO;
+import org.junit.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionRegistryTest {
+
+    @Test
+    public void addAndRemove() {
+        SessionRegistry registry = new SessionRegistry();
+        WebSocketSession tab1 = mockSession("1", 100);
+        WebSocketSession tab2 = mockSession("2", 100);
+        WebSocketSession other = mockSession("3", 101);
+        assertTrue(registry.add(tab1));
+        assertTrue(registry.add(tab2));
+        assertTrue(registry.add(other));
+        assertFalse(registry.add(tab1));
+        assertEquals(3, registry.size());
+        assertEquals(2, registry.getUserCount());
+        assertEquals(2, registry.getUserSessions(100).size());
+
+        assertTrue(registry.remove(tab1));
+        assertFalse(registry.remove(tab1));
+        assertEquals(1, registry.getUserSessions(100).size());
+        assertTrue(registry.remove(tab2));
+        assertTrue(registry.getUserSessions(100).isEmpty());
+        assertEquals(1, registry.getUserCount());
+    }
+
+    @Test
+    public void groupSessions() {
+        SessionRegistry registry = new SessionRegistry();
+        WebSocketSession tab1 = mockSession("1", 100, 2, 3);
+        WebSocketSession tab2 = mockSession("2", 100, 2, 3);
+        WebSocketSession other = mockSession("3", 101, 3);
+        registry.add(tab1);
+        registry.add(tab2);
+        registry.add(other);
+        assertEquals(2, registry.getGroupSessions(2).size());
+        assertEquals(3, registry.getGroupSessions(3).size());
+
+        registry.updateUserGroups(100, Arrays.asList(3, 4));
+        assertTrue(registry.getGroupSessions(2).isEmpty());
+        assertEquals(3, registry.getGroupSessions(3).size());
+        assertEquals(2, registry.getGroupSessions(4).size());
+
+        // 新会话使用更新后的分组
+        WebSocketSession tab3 = mockSession("4", 100, 2, 3);
+        registry.add(tab3);
+        assertTrue(registry.getGroupSessions(2).isEmpty());
+        assertEquals(3, registry.getGroupSessions(4).size());
+
+        registry.remove(tab1);
+        registry.remove(tab2);
+        registry.remove(tab3);
+        assertTrue(registry.getGroupSessions(4).isEmpty());
+        assertEquals(1, registry.getGroupSessions(3).size());
+        // 不在线的用户忽略
+        registry.updateUserGroups(100, Arrays.asList(2));
+        assertTrue(registry.getGroupSessions(2).isEmpty());
+    }
+
+    @Test
+    public void anonymousSession() {
+        SessionRegistry registry = new SessionRegistry();
+        WebSocketSession session = mockSession("1", null);
+        assertTrue(registry.add(session));
+        assertEquals(1, registry.size());
+        assertEquals(0, registry.getUserCount());
+        assertTrue(registry.remove(session));
+    }
+
+    static WebSocketSession mockSession(String id, Integer userId, Integer... groupIds) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        if (userId != null) {
+            UserDO user = UserDO.builder().username("user" + userId).build();
+            user.setId(userId);
+            attributes.put(MessageConstant.USER_KEY, user);
+            attributes.put(MessageConstant.GROUP_IDS_KEY, Arrays.asList(groupIds));
+        }
+        when(session.getId()).thenReturn(id);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
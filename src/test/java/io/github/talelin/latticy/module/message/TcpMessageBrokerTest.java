@@ -0,0 +1,120 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpMessageBrokerTest {
+
+    private static final String SECRET = "broker-secret";
+
+    private TcpMessageBroker brokerA;
+
+    private TcpMessageBroker brokerB;
+
+    @After
+    public void tearDown() {
+        if (brokerA != null) {
+            brokerA.stop();
+        }
+        if (brokerB != null) {
+            brokerB.stop();
+        }
+    }
+
+    @Test
+    public void send() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        brokerA = new TcpMessageBroker(portA, Collections.singletonList(portB), 16, SECRET);
+        brokerB = new TcpMessageBroker(portB, Collections.singletonList(portA), 16, SECRET);
+        BlockingQueue<BrokerMessage> received = new LinkedBlockingQueue<>();
+        brokerA.start(message -> {
+        });
+        brokerB.start(received::add);
+
+        BrokerMessage message = BrokerMessage.builder()
+                .type(BrokerMessage.Type.USER)
+                .source(brokerA.getNodeId())
+                .target(100)
+                .payload("你好")
+                .build();
+        assertTrue(brokerA.send(brokerB.getNodeId(), message));
+        BrokerMessage delivered = received.poll(2, TimeUnit.SECONDS);
+        assertNotNull(delivered);
+        assertEquals(message, delivered);
+
+        brokerA.publish(BrokerMessage.builder()
+                .type(BrokerMessage.Type.PRESENCE)
+                .source(brokerA.getNodeId())
+                .userIds(Collections.singletonList(100))
+                .build());
+        delivered = received.poll(2, TimeUnit.SECONDS);
+        assertNotNull(delivered);
+        assertEquals(Collections.singletonList(100), delivered.getUserIds());
+    }
+
+    @Test
+    public void sendToUnknownNode() throws Exception {
+        brokerA = new TcpMessageBroker(freePort(), Collections.emptyList(), 16, SECRET);
+        brokerA.start(message -> {
+        });
+        assertFalse(brokerA.send("127.0.0.1:1", BrokerMessage.builder().build()));
+    }
+
+    @Test
+    public void rejectWithoutSecret() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        brokerA = new TcpMessageBroker(portA, Collections.singletonList(portB), 16, "wrong-secret");
+        brokerB = new TcpMessageBroker(portB, Collections.singletonList(portA), 16, SECRET);
+        BlockingQueue<BrokerMessage> received = new LinkedBlockingQueue<>();
+        brokerA.start(message -> {
+        });
+        brokerB.start(received::add);
+        BrokerMessage message = BrokerMessage.builder()
+                .type(BrokerMessage.Type.BROADCAST)
+                .source(brokerA.getNodeId())
+                .payload("你好")
+                .build();
+        assertTrue(brokerA.send(brokerB.getNodeId(), message));
+        // 本机的其它进程直接发送消息
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), portB);
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writer.write("{\"type\":\"BROADCAST\",\"payload\":\"你好\"}\n");
+            writer.flush();
+            assertNull(received.poll(1, TimeUnit.SECONDS));
+        }
+        assertEquals(2L, brokerB.getMetrics().get("rejected_count"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requireSecret() throws Exception {
+        brokerA = new TcpMessageBroker(freePort(), Collections.emptyList(), 16, null);
+        brokerA.start(message -> {
+        });
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
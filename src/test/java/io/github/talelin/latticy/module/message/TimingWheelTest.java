@@ -0,0 +1,60 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void advance() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 50);
+        // 超过一圈
+        wheel.schedule("c", 175);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(19, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(29, expired::add);
+        assertEquals(Arrays.asList("a"), expired);
+        wheel.advance(80, expired::add);
+        assertEquals(Arrays.asList("a", "b"), expired);
+        assertEquals(1, wheel.size());
+        wheel.advance(169, expired::add);
+        assertEquals(2, expired.size());
+        wheel.advance(179, expired::add);
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void scheduleInPast() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.advance(100, item -> {
+        });
+        wheel.schedule("late", 50);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(110, expired::add);
+        assertEquals(Arrays.asList("late"), expired);
+    }
+
+    @Test
+    public void rescheduleOnExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 10);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(10, item -> {
+            expired.add(item);
+            wheel.schedule(item, 30);
+        });
+        assertEquals(1, expired.size());
+        wheel.advance(30, expired::add);
+        assertEquals(2, expired.size());
+    }
+}
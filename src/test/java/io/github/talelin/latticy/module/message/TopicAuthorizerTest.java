@@ -0,0 +1,70 @@
+package io.github.talelin.latticy.module.message;
+
+import io.github.talelin.latticy.module.auth.GroupLevelRegistry;
+import io.github.talelin.latticy.module.auth.PermissionEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TopicAuthorizerTest {
+
+    private static final Integer ROOT = 1;
+
+    private static final Integer AUDITOR = 2;
+
+    private static final Integer USER = 3;
+
+    private TopicAuthorizer authorizer;
+
+    @Before
+    public void setUp() {
+        WebsocketProperties.TopicPermission permission = new WebsocketProperties.TopicPermission();
+        permission.setModule("日志");
+        permission.setPermission("查询所有日志");
+        Map<String, WebsocketProperties.TopicPermission> permissions = new LinkedHashMap<>();
+        permissions.put("log", permission);
+        WebsocketProperties.TopicPermission deleted = new WebsocketProperties.TopicPermission();
+        deleted.setModule("图书");
+        deleted.setPermission("删除图书");
+        permissions.put("book.deleted", deleted);
+        GroupLevelRegistry groupLevelRegistry = mock(GroupLevelRegistry.class);
+        when(groupLevelRegistry.isRootUser(ROOT)).thenReturn(true);
+        PermissionEngine permissionEngine = mock(PermissionEngine.class);
+        when(permissionEngine.hasPermission(AUDITOR, "日志", "查询所有日志")).thenReturn(true);
+        authorizer = new TopicAuthorizer(permissions, groupLevelRegistry, permissionEngine);
+    }
+
+    @Test
+    public void rejectWildcards() {
+        assertNotNull(authorizer.authorize(USER, "#"));
+        assertNotNull(authorizer.authorize(USER, "*.updated"));
+        assertNotNull(authorizer.authorize(USER, "book.#"));
+        assertNotNull(authorizer.authorize(null, "#"));
+        assertNull(authorizer.authorize(USER, "book.updated.*"));
+        // 超级管理员不受限制
+        assertNull(authorizer.authorize(ROOT, "#"));
+        assertNull(authorizer.authorize(ROOT, "*.updated"));
+    }
+
+    @Test
+    public void rejectWithoutPermission() {
+        assertNotNull(authorizer.authorize(USER, "log.created"));
+        assertNotNull(authorizer.authorize(USER, "log"));
+        assertNotNull(authorizer.authorize(null, "log.created"));
+        // 通配符可能匹配到受保护的主题
+        assertNotNull(authorizer.authorize(USER, "book.*"));
+        assertNotNull(authorizer.authorize(USER, "book.deleted.1"));
+        assertNull(authorizer.authorize(USER, "book"));
+        assertNull(authorizer.authorize(USER, "logs.created"));
+        assertNull(authorizer.authorize(AUDITOR, "log.created"));
+        assertNull(authorizer.authorize(AUDITOR, "log.*"));
+        assertNull(authorizer.authorize(ROOT, "log.created"));
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TopicTrieTest {
+
+    @Test
+    public void match() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("book.updated.1", "exact");
+        trie.subscribe("book.updated.*", "single");
+        trie.subscribe("book.#", "multi");
+        trie.subscribe("log.created", "log");
+
+        assertEquals(new HashSet<>(Arrays.asList("exact", "single", "multi")), trie.match("book.updated.1"));
+        assertEquals(new HashSet<>(Arrays.asList("single", "multi")), trie.match("book.updated.2"));
+        // * 只匹配一级
+        assertEquals(Collections.singleton("multi"), trie.match("book.updated"));
+        assertEquals(Collections.singleton("multi"), trie.match("book.updated.1.cover"));
+        // # 匹配零级
+        assertEquals(Collections.singleton("multi"), trie.match("book"));
+        assertEquals(Collections.singleton("log"), trie.match("log.created"));
+        assertTrue(trie.match("log.deleted").isEmpty());
+    }
+
+    @Test
+    public void matchOnce() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("book.*", "a");
+        trie.subscribe("book.updated", "a");
+        trie.subscribe("#", "a");
+        assertEquals(Collections.singleton("a"), trie.match("book.updated"));
+        assertFalse(trie.subscribe("book.*", "a"));
+        assertEquals(3, trie.getSubscriptionCount());
+        assertEquals(1, trie.getSubscriberCount());
+    }
+
+    @Test
+    public void unsubscribe() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("book.updated.*", "a");
+        trie.subscribe("book.updated.*", "b");
+        trie.subscribe("book.#", "a");
+
+        assertTrue(trie.unsubscribe("book.updated.*", "a"));
+        assertFalse(trie.unsubscribe("book.updated.*", "a"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), trie.match("book.updated.1"));
+
+        assertEquals(1, trie.unsubscribeAll("a"));
+        assertEquals(Collections.singleton("b"), trie.match("book.updated.1"));
+        assertTrue(trie.getSubscriptions("a").isEmpty());
+
+        trie.unsubscribeAll("b");
+        assertTrue(trie.match("book.updated.1").isEmpty());
+        assertEquals(0, trie.getSubscriberCount());
+        // 移除后可以再次订阅
+        trie.subscribe("book.updated.*", "b");
+        assertEquals(Collections.singleton("b"), trie.match("book.updated.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void publishWildcard() {
+        new TopicTrie<String>().match("book.*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiWildcardNotLast() {
+        new TopicTrie<String>().subscribe("book.#.cover", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialWildcard() {
+        new TopicTrie<String>().subscribe("book.update*", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptySegment() {
+        new TopicTrie<String>().subscribe("book..updated", "a");
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.talelin.latticy.module.message;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static io.github.talelin.latticy.module.message.SessionRegistryTest.mockSession;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WebsocketMetricsTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getMetrics() {
+        WebsocketMetrics metrics = new WebsocketMetrics();
+        SessionRegistry registry = new SessionRegistry();
+        registry.add(mockSession("1", 100, 1, 2));
+        registry.add(mockSession("2", 101, 2));
+        metrics.bindRegistry(registry);
+        for (int i = 0; i < 99; i++) {
+            metrics.recordSendLatency(200_000);
+        }
+        metrics.recordSendLatency(30_000_000);
+        metrics.recordSent(2, 10);
+        metrics.recordSendFailed(1);
+        metrics.recordErrorClosed();
+
+        Map<String, Object> result = metrics.getMetrics();
+        assertEquals(2, result.get("session_count"));
+        Map<Integer, Integer> groupSessions = (Map<Integer, Integer>) result.get("group_sessions");
+        assertEquals(Integer.valueOf(1), groupSessions.get(1));
+        assertEquals(Integer.valueOf(2), groupSessions.get(2));
+        assertEquals(2L, result.get("sent_message_count"));
+        assertEquals(10L, result.get("sent_bytes"));
+        assertEquals(1L, result.get("send_failed_count"));
+        assertEquals(1L, result.get("error_closed_count"));
+        Map<String, Object> latency = (Map<String, Object>) result.get("send_latency");
+        assertEquals(100L, latency.get("count"));
+        assertEquals(0.25, (Double) latency.get("p50_millis"), 1e-9);
+        assertEquals(0.25, (Double) latency.get("p99_millis"), 1e-9);
+        assertEquals(30.0, (Double) latency.get("max_millis"), 1e-9);
+    }
+
+    @Test
+    public void toPrometheus() {
+        WebsocketMetrics metrics = new WebsocketMetrics();
+        metrics.recordSendLatency(200_000);
+        metrics.recordBroadcast(2_000_000);
+        metrics.recordReceived(5);
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE lin_websocket_send_latency_seconds histogram\n"));
+        assertTrue(text.contains("lin_websocket_send_latency_seconds_bucket{le=\"0.0001\"} 0\n"));
+        assertTrue(text.contains("lin_websocket_send_latency_seconds_bucket{le=\"0.00025\"} 1\n"));
+        assertTrue(text.contains("lin_websocket_send_latency_seconds_count 1\n"));
+        assertTrue(text.contains("lin_websocket_broadcast_duration_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("lin_websocket_received_bytes_total 5\n"));
+        assertTrue(text.contains("lin_websocket_sessions{node=\"local\"} 0\n"));
+    }
+
+    @Test
+    public void utf8Length() {
+        assertEquals(5, WebsocketMetrics.utf8Length("hello"));
+        assertEquals(6, WebsocketMetrics.utf8Length("你好"));
+        assertEquals(4, WebsocketMetrics.utf8Length("😀"));
+    }
+}
@@ -2,8 +2,13 @@ package io.github.talelin.latticy.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import io.github.talelin.autoconfigure.exception.ParameterException;
+import io.github.talelin.latticy.common.mybatis.KeysetPage;
 import io.github.talelin.latticy.mapper.LogMapper;
+import io.github.talelin.latticy.mapper.LogUserMapper;
 import io.github.talelin.latticy.model.LogDO;
+import io.github.talelin.latticy.module.log.LogExportWriter;
+import io.github.talelin.latticy.module.log.LogUserRegistry;
 import io.github.talelin.latticy.service.LogService;
 import org.junit.After;
 import org.junit.Before;
@@ -14,10 +19,24 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -32,6 +51,9 @@ public class LogServiceImplTest {
     @Autowired
     private LogMapper logMapper;
 
+    @Autowired
+    private LogUserRegistry logUserRegistry;
+
     @Before
     public void setUp() throws Exception {
     }
@@ -85,6 +107,20 @@ public class LogServiceImplTest {
         assertTrue(iPage.getRecords().size() > 0);
     }
 
+    @Test
+    public void getDistinctUserNames() {
+        logService.createLog("a", null, 100, "log-user-b", "GET", "/", 200);
+        logService.createLog("b", null, 100, "log-user-b", "GET", "/", 200);
+        List<LogDO> logs = new ArrayList<>();
+        logs.add(LogDO.builder().message("c").userId(100).username("log-user-a").build());
+        logs.add(LogDO.builder().message("d").userId(100).username("log-user-b").build());
+        logService.createLogs(logs);
+
+        List<String> names = logService.getUserNamePage(0, 30).getRecords();
+        assertEquals(1, names.stream().filter("log-user-b"::equals).count());
+        assertTrue(names.indexOf("log-user-a") < names.indexOf("log-user-b"));
+    }
+
     @Test
     public void createOneLog() {
         String message = "put your face to the light!";
@@ -102,4 +138,120 @@ public class LogServiceImplTest {
 
         assertEquals(logDO.getPermission(), permission);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createLogs() {
+        String message = "batch log";
+        Date createTime = new Date(1577836800000L);
+        List<LogDO> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(LogDO.builder().message(message).userId(100).username("pedro")
+                    .method("GET").path("/").statusCode(200).permission("查看lin的信息").build());
+        }
+        logs.get(0).setCreateTime(createTime);
+        assertTrue(logService.createLogs(logs));
+
+        QueryWrapper<LogDO> condition = new QueryWrapper<>();
+        condition.eq("message", message).orderByAsc("create_time");
+        List<LogDO> saved = logMapper.selectList(condition);
+        assertEquals(3, saved.size());
+        assertEquals(createTime.getTime(), saved.get(0).getCreateTime().getTime());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void createLogsRollbackWithUsername() {
+        String message = "rollback batch log";
+        List<LogDO> logs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            logs.add(LogDO.builder().message(message).userId(100).username("rollback-user")
+                    .method("GET").path("/").statusCode(200).build());
+        }
+        Object logUserMapper = ReflectionTestUtils.getField(logUserRegistry, "logUserMapper");
+        LogUserMapper failing = mock(LogUserMapper.class);
+        when(failing.insertUsername(anyString())).thenThrow(new IllegalStateException("insert username failed"));
+        ReflectionTestUtils.setField(logUserRegistry, "logUserMapper", failing);
+        try {
+            logService.createLogs(logs);
+            fail();
+        } catch (IllegalStateException e) {
+            // 用户名写入失败时日志一起回滚，重新写入不会产生重复的日志
+        } finally {
+            ReflectionTestUtils.setField(logUserRegistry, "logUserMapper", logUserMapper);
+        }
+
+        QueryWrapper<LogDO> condition = new QueryWrapper<>();
+        condition.eq("message", message);
+        assertEquals(0, logMapper.selectCount(condition).intValue());
+    }
+
+    @Test
+    public void getLogsByCursor() {
+        // 相同的 create_time，按 id 区分先后
+        Date createTime = new Date(1577836800000L);
+        List<LogDO> logs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            LogDO log = LogDO.builder().message("keyset " + i).userId(100).username("keyset")
+                    .method("GET").path("/").statusCode(200).permission("查看lin的信息").build();
+            log.setCreateTime(createTime);
+            logs.add(log);
+        }
+        logService.createLogs(logs);
+
+        KeysetPage<LogDO> first = logService.getLogPageByCursor(null, 2, "keyset", null, null, null);
+        assertEquals(2, first.getRecords().size());
+        assertEquals("keyset 4", first.getRecords().get(0).getMessage());
+        assertNull(first.getPrevious());
+
+        KeysetPage<LogDO> second = logService.getLogPageByCursor(first.getNext(), 2, "keyset", null, null, null);
+        assertEquals("keyset 2", second.getRecords().get(0).getMessage());
+        assertEquals("keyset 1", second.getRecords().get(1).getMessage());
+
+        KeysetPage<LogDO> last = logService.getLogPageByCursor(second.getNext(), 2, "keyset", null, null, null);
+        assertEquals(1, last.getRecords().size());
+        assertEquals("keyset 0", last.getRecords().get(0).getMessage());
+        assertNull(last.getNext());
+
+        KeysetPage<LogDO> back = logService.getLogPageByCursor(last.getPrevious(), 2, "keyset", null, null, null);
+        assertEquals("keyset 2", back.getRecords().get(0).getMessage());
+        assertEquals("keyset 1", back.getRecords().get(1).getMessage());
+        assertEquals(second.getPrevious(), back.getPrevious());
+
+        KeysetPage<LogDO> top = logService.getLogPageByCursor(back.getPrevious(), 2, "keyset", null, null, null);
+        assertEquals("keyset 4", top.getRecords().get(0).getMessage());
+        assertNull(top.getPrevious());
+    }
+
+    @Test(expected = ParameterException.class)
+    public void getLogsByInvalidCursor() {
+        logService.getLogPageByCursor("not-a-cursor", 2, null, null, null, null);
+    }
+
+    @Test
+    public void exportLogs() throws IOException {
+        logService.createLog("export \"quoted\", with comma", null, 100, "exporter", "GET", "/", 200);
+        logService.createLog("export plain", null, 100, "exporter", "GET", "/", 200);
+        logService.createLog("other", null, 100, "exporter", "GET", "/", 200);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        LogExportWriter csvWriter = new LogExportWriter(LogExportWriter.Format.CSV, csv);
+        logService.exportLogs("exporter", "export", null, null, csvWriter);
+        csvWriter.flush();
+        assertEquals(2, csvWriter.getCount());
+        String[] lines = csv.toString(StandardCharsets.UTF_8.name()).split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("\uFEFFid,message,user_id,username,status_code,method,path,permission,create_time", lines[0]);
+        assertTrue(lines[1].contains(",\"export \"\"quoted\"\", with comma\",100,exporter,200,GET,/,,"));
+        assertTrue(lines[2].contains(",export plain,100,exporter,200,GET,/,,"));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        LogExportWriter ndjsonWriter = new LogExportWriter(LogExportWriter.Format.NDJSON, ndjson);
+        logService.exportLogs("exporter", null, null, null, ndjsonWriter);
+        ndjsonWriter.flush();
+        lines = ndjson.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].startsWith("{\"id\":"));
+        assertTrue(lines[2].contains("\"message\":\"other\",\"user_id\":100,\"username\":\"exporter\""));
+        assertTrue(lines[2].contains("\"permission\":null"));
+    }
+}
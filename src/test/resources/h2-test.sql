@@ -145,3 +145,58 @@ CREATE TABLE lin_user_group
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4;
 
+-- ----------------------------
+-- 缓存版本表
+-- ----------------------------
+DROP TABLE IF EXISTS lin_cache_version;
+CREATE TABLE lin_cache_version
+(
+    region      varchar(32)         NOT NULL COMMENT '缓存区域',
+    version     bigint(20) unsigned NOT NULL DEFAULT 0 COMMENT '版本号，每次失效递增',
+    update_time datetime(3)         NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (region)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- ----------------------------
+-- 缓存失效记录表
+-- ----------------------------
+DROP TABLE IF EXISTS lin_cache_invalidation;
+CREATE TABLE lin_cache_invalidation
+(
+    region      varchar(32)         NOT NULL COMMENT '缓存区域',
+    version     bigint(20) unsigned NOT NULL COMMENT '失效后缓存区域的版本号',
+    key_id      int(10) unsigned             DEFAULT NULL COMMENT '失效的用户或分组id',
+    node        varchar(36)         NOT NULL COMMENT '发布失效的节点',
+    create_time datetime(3)         NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (region, version)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- ----------------------------
+-- 令牌吊销表
+-- ----------------------------
+DROP TABLE IF EXISTS lin_token_revocation;
+CREATE TABLE lin_token_revocation
+(
+    id          int(10) unsigned NOT NULL AUTO_INCREMENT,
+    user_id     int(10) unsigned NOT NULL COMMENT '用户id',
+    token_id    varchar(64)               DEFAULT NULL COMMENT '令牌摘要',
+    not_before  datetime(3)               DEFAULT NULL COMMENT '在此时间之前签发的令牌无效',
+    expire_time datetime(3)      NOT NULL COMMENT '记录过期时间',
+    create_time datetime(3)      NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- ----------------------------
+-- 日志用户表
+-- ----------------------------
+DROP TABLE IF EXISTS lin_log_user;
+CREATE TABLE lin_log_user
+(
+    username    varchar(24) NOT NULL COMMENT '用户名',
+    create_time datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (username)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;